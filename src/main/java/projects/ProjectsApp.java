@@ -1,28 +1,63 @@
 package projects;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
+import projects.dao.ArchivePolicy;
+import projects.entity.MaterialRequirement;
 import projects.entity.Project;
 import projects.exception.DbException;
+import projects.http.ProjectHttpServer;
+import projects.render.JsonRenderer;
+import projects.render.TextRenderer;
+import projects.service.CatalogReport;
+import projects.service.ConflictMergePolicy;
 import projects.service.ProjectService;
+import projects.similarity.SimilarProject;
 
 public class ProjectsApp {
 
+  private static final int DEFAULT_HTTP_PORT = 8080;
+  private static final int DEFAULT_ARCHIVE_IDLE_DAYS = 90;
+  private static final int CONSOLE_BUFFER_SIZE = 64 * 1024;
+  
+  /* The listing only prints the ID and name, so nothing else is read. */
+  private static final List<String> SUMMARY_COLUMNS = List.of("project_id", "project_name");
+  
+  private static final int SIMILAR_PROJECTS = 10;
+
   //@formatter:off
   private List<String> operations = List.of(
       "1) Add aproject", 
       "2) List projects",
       "3) Select a project",
       "4) Update project details",
-      "5) Delete a project"
+      "5) Delete a project",
+      "6) Log time on the current project",
+      "7) Build a shopping list for several projects",
+      "8) Find projects similar to the current project",
+      "9) Copy the current project into a new project",
+      "10) Print the estimate accuracy report as CSV"
       );
   //@formatter:on
 
   // Creating Scanner object
   private Scanner scanner = new Scanner(System.in);
 
+  // Buffered console output, flushed whenever the user is asked for input and at the end of a
+  // batch mode
+  private PrintWriter out = new PrintWriter(
+      new BufferedWriter(new OutputStreamWriter(System.out), CONSOLE_BUFFER_SIZE), false);
+
   // Creating project service object
   ProjectService projectService = new ProjectService();
   
@@ -31,12 +66,100 @@ public class ProjectsApp {
 
   
   /**
-   * The starting point of project application.
-   * @param args Unused
+   * The starting point of project application. With no arguments the interactive menu is started.
+   * The other modes are:
+   * <ul>
+   * <li>{@code --http [port]} serves the project service as a JSON API.</li>
+   * <li>{@code --first-result} lists the projects once and prints the time since JVM start. Used
+   * by the startup benchmark.</li>
+   * <li>{@code --cds-training} exercises the startup code paths and exits. Used to build the
+   * AppCDS archive.</li>
+   * <li>{@code --archive [days]} moves completed projects that haven't changed for the given
+   * number of days (default 90) into the archive tables.</li>
+   * </ul>
+   * @param args Optional mode selection
    */
   public static void main(String[] args) {
-    // Calling processUserSelections method
-    new ProjectsApp().processUserSelections();
+    String mode = args.length > 0 ? args[0] : "";
+    
+    switch(mode) {
+      case "--http":
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT;
+        new ProjectHttpServer(new ProjectService(), port).start();
+        break;
+        
+      case "--first-result":
+        new ProjectsApp().printFirstResult();
+        break;
+        
+      case "--cds-training":
+        new ProjectsApp().runCdsTraining();
+        break;
+        
+      case "--archive":
+        int idleDays = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ARCHIVE_IDLE_DAYS;
+        new ProjectsApp().archiveProjects(idleDays);
+        break;
+        
+      default:
+        // Open the first connection while the menu is printed and the user reads it
+        ProjectService.warmUp();
+        
+        // Calling processUserSelections method
+        new ProjectsApp().processUserSelections();
+    }
+  }
+
+
+  /**
+   * Lists the projects once and reports the time from JVM start to the first result.
+   */
+  private void printFirstResult() {
+    ProjectService.warmUp();
+    int count = projectService.fetchAllProjects().size();
+    long elapsed = ProcessHandle.current().info().startInstant()
+        .map(start -> Duration.between(start, Instant.now()).toMillis()).orElse(-1L);
+    
+    out.println("First result: " + count + " projects after " + elapsed + " ms");
+    out.flush();
+  }
+
+
+  /**
+   * Archives the completed projects that haven't changed for the given number of days.
+   * @param idleDays The days since the last change
+   */
+  private void archiveProjects(int idleDays) {
+    int archived = projectService.archiveProjects(ArchivePolicy.completedAndIdleFor(idleDays));
+    
+    out.println("Archived " + archived + " projects.");
+    out.flush();
+  }
+
+
+  /**
+   * Loads and initializes the classes used on startup so that they are recorded in the AppCDS
+   * archive. If a database is reachable, a listing is also fetched so that the driver's connection
+   * and query classes are included.
+   */
+  private void runCdsTraining() {
+    ProjectService.warmUp();
+    
+    Project project = new Project();
+    project.setProjectName("Training");
+    project.setVersion(0);
+    StringBuilder output = new StringBuilder();
+    
+    try {
+      TextRenderer.INSTANCE.renderProject(project, output);
+      JsonRenderer.INSTANCE.renderProject(project, output);
+      projectService.fetchAllProjects();
+    } catch(Exception e) {
+      out.println("No database available during training: " + e);
+    }
+    
+    printOperations();
+    out.flush();
   }
   
 
@@ -76,14 +199,34 @@ public class ProjectsApp {
           case 5:
             deleteProject();
             break;
+            
+          case 6:
+            logTime();
+            break;
+            
+          case 7:
+            printShoppingList();
+            break;
+            
+          case 8:
+            printSimilarProjects();
+            break;
+            
+          case 9:
+            copyProject();
+            break;
+            
+          case 10:
+            printCatalogReport();
+            break;
                
           default:
-            System.out.println("\n" + selection + " is not a valid selection. Try again.");
+            out.println("\n" + selection + " is not a valid selection. Try again.");
             break;
         }
 
       } catch (Exception e) {
-        System.out.println("\nError: " + e + " Try again.");
+        out.println("\nError: " + e + " Try again.");
       }
     }
   }
@@ -100,7 +243,7 @@ public class ProjectsApp {
     Integer projectId = getIntInput("Enter the ID of the project to delete");
     
     projectService.deleteProject(projectId);
-    System.out.println("Project " + projectId + " was deleted successfully.");
+    out.println("Project " + projectId + " was deleted successfully.");
     
     // Set currentProject
     if(Objects.nonNull(currentProject) && currentProject.getProjectId().equals(projectId)) {
@@ -116,7 +259,7 @@ public class ProjectsApp {
   private void updateProjectDetails() {
     // Checking if the project is null
     if(Objects.isNull(currentProject)) {
-      System.out.println("\nPlease select a project.");
+      out.println("\nPlease select a project.");
       return;
     }
 
@@ -145,13 +288,126 @@ public class ProjectsApp {
     project.setDifficulty(Objects.isNull(difficulty) ? currentProject.getDifficulty() : difficulty);
     project.setNotes(Objects.isNull(projectName) ? currentProject.getNotes() : notes);
     project.setProjectId(currentProject.getProjectId());
+    project.setVersion(currentProject.getVersion());
 
-    // Calling modifyProjectDetails method from project service to update a project
-    projectService.modifyProjectDetails(project);
+    // Calling modifyProjectDetails method, merging with changes other users made since selection
+    projectService.modifyProjectDetails(project, ConflictMergePolicy.threeWay(currentProject));
     currentProject = projectService.fetchProjectById(currentProject.getProjectId());   
   }
 
 
+  /**
+   * A method collects a work session from the user and logs it against the current project. The
+   * hours are added to the project's actual hours on the next flush.
+   */
+  private void logTime() {
+    if(Objects.isNull(currentProject)) {
+      out.println("\nPlease select a project.");
+      return;
+    }
+
+    BigDecimal hours = getDecimalInput("Enter the hours worked");
+    String notes = getStringInput("Enter notes about the work");
+
+    projectService.logTime(currentProject.getProjectId(), hours, notes);
+    out.println("Logged " + hours + " hours on project " + currentProject.getProjectId() + ".");
+  }
+
+
+  /**
+   * A method collects project IDs from the user and prints the materials they need in total, one
+   * line per material.
+   */
+  private void printShoppingList() {
+    listProjects();
+    
+    String input = getStringInput("Enter the project IDs, separated by commas");
+    
+    if(Objects.isNull(input)) {
+      return;
+    }
+    
+    List<Integer> projectIds = new ArrayList<>();
+    
+    for(String id : input.split(",")) {
+      try {
+        projectIds.add(Integer.valueOf(id.trim()));
+      } catch(NumberFormatException e) {
+        throw new DbException(id.trim() + " is not a valid project ID.");
+      }
+    }
+    
+    List<MaterialRequirement> requirements = projectService.fetchMaterialRequirements(projectIds);
+    
+    if(requirements.isEmpty()) {
+      out.println("\nThese projects need no materials.");
+      return;
+    }
+    
+    out.println("\nShopping list:");
+    requirements.forEach(requirement -> out.println("   " + requirement.getMaterialName() + ": "
+        + requirement.getNumRequired() + " required, cost " + requirement.getCost() + " ("
+        + requirement.getProjectCount() + " project(s))"));
+  }
+
+
+  /**
+   * A method prints the projects whose materials and steps are most like the current project's.
+   */
+  private void printSimilarProjects() {
+    if(Objects.isNull(currentProject)) {
+      out.println("\nPlease select a project.");
+      return;
+    }
+    
+    List<SimilarProject> similar =
+        projectService.fetchSimilarProjects(currentProject.getProjectId(), SIMILAR_PROJECTS);
+    
+    if(similar.isEmpty()) {
+      out.println("\nNo similar projects found.");
+      return;
+    }
+    
+    out.println("\nSimilar projects:");
+    similar.forEach(project -> out.println("   " + project));
+  }
+
+
+  /**
+   * Copies the current project with its materials, steps and categories under a new name, and
+   * makes the copy the current project.
+   */
+  private void copyProject() {
+    if(Objects.isNull(currentProject)) {
+      out.println("\nPlease select a project.");
+      return;
+    }
+    
+    String projectName = getStringInput("Enter the name of the new project");
+    Integer projectId = projectService.cloneProject(currentProject.getProjectId(), projectName);
+    
+    currentProject = projectService.fetchProjectById(projectId);
+    out.println("\nCreated project " + projectId + " as a copy.");
+  }
+
+
+  /**
+   * Prints the estimate accuracy and material cost per category and difficulty over all projects.
+   */
+  private void printCatalogReport() {
+    CatalogReport report = projectService.generateCatalogReport();
+    
+    out.println("\nEstimate accuracy report (" + report.getProjectCount() + " projects):");
+    
+    try {
+      report.writeCsv(out);
+    } catch(IOException e) {
+      // PrintWriter never throws, it records errors instead
+      throw new UncheckedIOException(e);
+    }
+  }
+
+
   /**
    * A method prints list of projects on the console, get user selection, 
    * and fetch project detail based on the user selection.
@@ -170,12 +426,14 @@ public class ProjectsApp {
    * A method prints list of projects on the console.
    */
   private void listProjects() {
-    List<Project> projects = projectService.fetchAllProjects();
+    List<Project> projects = projectService.fetchAllProjects(SUMMARY_COLUMNS);
     
-    System.out.println("\nProjects:");
+    out.println("\nProjects:");
     
-    projects.forEach(project -> System.out.println(
-        "  " + project.getProjectId() + ": " + project.getProjectName()));
+    for(Project project : projects) {
+      render(TextRenderer.INSTANCE::renderSummary, project);
+      out.println();
+    }
     
   }
 
@@ -211,7 +469,9 @@ public class ProjectsApp {
 
     // Calling addProject method from project service to add a project
     Project dbProject = projectService.addProject(project);
-    System.out.println("You have successfully created project: " + dbProject);
+    out.print("You have successfully created project: ");
+    render(TextRenderer.INSTANCE::renderProject, dbProject);
+    out.println();
 
   }
 
@@ -239,7 +499,8 @@ public class ProjectsApp {
    * @return true
    */
   private boolean exitMenu() {
-    System.out.println("Exiting the menu.");
+    out.println("Exiting the menu.");
+    out.flush();
     return true;
   }
 
@@ -314,7 +575,9 @@ public class ProjectsApp {
    * @return The user's input or {@code null}.
    */
   private String getStringInput(String prompt) {
-    System.out.print(prompt + ": ");
+    out.print(prompt);
+    out.print(": ");
+    out.flush();
 
     // Calling nextLine method from the scanner object and assign to local input variable
     String input = scanner.nextLine();
@@ -322,18 +585,39 @@ public class ProjectsApp {
     return input.isBlank() ? null : input.trim();
   }
 
+  /**
+   * Renders an entity straight into the buffered console writer.
+   * @param renderer The renderer method to use
+   * @param project The project to render
+   */
+  private void render(Rendering renderer, Project project) {
+    try {
+      renderer.render(project, out);
+    } catch(IOException e) {
+      // PrintWriter never throws, it records errors instead
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Rendering {
+    void render(Project project, Appendable out) throws IOException;
+  }
+
   /**
    * A method prints list of operation on the console and current project if it is not null.
    */
   private void printOperations() {
-    System.out.println("\nThese are the available selections. Press the Enter key to quite:");
+    out.println("\nThese are the available selections. Press the Enter key to quite:");
     // Printing out every element from operation list
-    operations.forEach(line -> System.out.println("  " + line));
+    operations.forEach(line -> out.println("  " + line));
     
     if(Objects.isNull(currentProject)) {
-      System.out.println("\nYou are not working with a project.");
+      out.println("\nYou are not working with a project.");
     }else {
-      System.out.println("\nYou are working with a project: " + currentProject);
+      out.print("\nYou are working with a project: ");
+      render(TextRenderer.INSTANCE::renderProject, currentProject);
+      out.println();
     }
   }
 
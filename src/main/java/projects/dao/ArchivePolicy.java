@@ -0,0 +1,60 @@
+package projects.dao;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import projects.entity.Project;
+
+/**
+ * Decides which projects are cold enough to move to the archive tables. A project qualifies when
+ * it has its actual hours recorded, meaning the work is done, and neither the project nor any of
+ * its children has changed for the given number of days.
+ */
+public class ArchivePolicy {
+  private final int idleDays;
+
+  private ArchivePolicy(int idleDays) {
+    this.idleDays = idleDays;
+  }
+
+  /**
+   * @param idleDays The number of days since the last change
+   * @return A policy that archives completed projects untouched for that many days
+   */
+  public static ArchivePolicy completedAndIdleFor(int idleDays) {
+    if(idleDays < 0) {
+      throw new IllegalArgumentException("The idle days can't be negative.");
+    }
+
+    return new ArchivePolicy(idleDays);
+  }
+
+  public int getIdleDays() {
+    return idleDays;
+  }
+
+  /**
+   * @return The SQL condition on the project table. It has one parameter, the idle days.
+   */
+  String getCondition() {
+    return "deleted_at IS NULL AND actual_hours IS NOT NULL "
+        + "AND updated_at < NOW() - INTERVAL ? DAY";
+  }
+
+  /**
+   * The same condition for a project kept in memory.
+   * @param project A live project
+   * @param lastChanged When the project or one of its children last changed
+   * @param now The current time
+   * @return true if the policy archives the project
+   */
+  boolean isMetBy(Project project, Instant lastChanged, Instant now) {
+    return Objects.nonNull(project.getActualHours())
+        && lastChanged.isBefore(now.minus(idleDays, ChronoUnit.DAYS));
+  }
+
+  @Override
+  public String toString() {
+    return "completed and idle for " + idleDays + " days";
+  }
+}
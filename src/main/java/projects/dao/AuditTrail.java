@@ -0,0 +1,543 @@
+package projects.dao;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import projects.entity.AuditRecord;
+import projects.exception.DbException;
+import projects.exception.ErrorReporter;
+import projects.render.JsonRenderer;
+import provided.util.DaoBase;
+
+/**
+ * Writes the history of changes to projects and their children to the project_audit table. The
+ * DAOs capture the column values before and after each change and hand the records over when the
+ * change commits. When the records are written depends on the durability mode:
+ * <ul>
+ * <li>{@link Durability#SYNC} writes them in the changing transaction, so they commit or roll back
+ * with the change. Every change pays for one more INSERT.</li>
+ * <li>{@link Durability#GROUP_COMMIT} queues them after the change has committed and waits until
+ * the background writer has written them. Changes that commit while the writer is busy share its
+ * next INSERT, so under load many changes pay for one round trip between them.</li>
+ * <li>{@link Durability#ASYNC} queues them and returns at once. Records still queued when the
+ * process dies are lost.</li>
+ * <li>{@link Durability#OFF} records nothing and skips the reads that capturing needs.</li>
+ * </ul>
+ *
+ * <p>
+ * The queue holds at most a fixed number of records; a committer that finds it full waits for the
+ * writer to catch up, so a slow audit table slows writers down instead of exhausting memory. The
+ * writer takes up to a batch of records at a time and writes each shard's part of the batch with a
+ * multi-row INSERT on that shard, next to the project rows. A batch that fails is retried a few
+ * times and then dropped, and the drop is counted. On shutdown the queue is drained.
+ * </p>
+ *
+ * <p>
+ * Archiving, restoring and purging move or remove rows that are already recorded and are not
+ * audited. The actual hours that logged time adds to a project are recorded as the time_entry rows
+ * that caused them.
+ * </p>
+ */
+public class AuditTrail extends DaoBase {
+  /**
+   * When the audit records of a change are written. See {@link AuditTrail}.
+   */
+  public enum Durability {
+    OFF, SYNC, GROUP_COMMIT, ASYNC;
+  }
+
+  public static final int DEFAULT_CAPACITY = 10_000;
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  private static final String AUDIT_TABLE = "project_audit";
+  private static final int ROWS_PER_STATEMENT = 500;
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_DELAY_MILLIS = 500;
+  private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+  private static final double SMOOTHING = 0.2;
+
+  private final Durability durability;
+  private final int capacity;
+  private final int batchSize;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final Deque<Submission> queue = new ArrayDeque<>();
+  private int queuedRecords;
+  private int peakQueuedRecords;
+  private boolean closed;
+  private Thread writer;
+
+  /* Written by write(), which runs one batch at a time. */
+  private volatile long flushCount;
+  private volatile long writtenCount;
+  private volatile long droppedCount;
+  private volatile long lastFlushNanos;
+  private volatile long maxFlushNanos;
+  private volatile double averageFlushNanos;
+
+  /**
+   * @param durability When records are written
+   * @param capacity The most records the queue holds before committers wait
+   * @param batchSize The most records the writer takes at a time
+   */
+  public AuditTrail(Durability durability, int capacity, int batchSize) {
+    this.durability = durability;
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+
+    if(usesQueue()) {
+      writer = new Thread(this::writeQueued, "audit-writer");
+      writer.setDaemon(true);
+      writer.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(this::close, "audit-shutdown"));
+    }
+  }
+
+  /**
+   * Returns the trail the DAOs record to. It is configured with the system properties
+   * {@code projects.audit.durability} (off, sync, group-commit or async; default async),
+   * {@code projects.audit.capacity} and {@code projects.audit.batch}.
+   * @return The shared audit trail
+   */
+  public static AuditTrail getDefault() {
+    return DefaultHolder.INSTANCE;
+  }
+
+  /**
+   * @return true if changes are recorded. The DAOs skip capturing values otherwise.
+   */
+  public boolean isCapturing() {
+    return durability != Durability.OFF;
+  }
+
+  public Durability getDurability() {
+    return durability;
+  }
+
+  /**
+   * Called by a DAO just before it commits a change. In {@link Durability#SYNC} mode the records
+   * are written in the change's transaction.
+   * @param conn The connection of the changing transaction
+   * @param records The records of the change
+   * @throws SQLException Thrown if the records can't be written. The caller rolls back.
+   */
+  public void beforeCommit(Connection conn, List<AuditRecord> records) throws SQLException {
+    if(durability == Durability.SYNC && !records.isEmpty()) {
+      insertRecords(conn, records);
+    }
+  }
+
+  /**
+   * Called by a DAO after a change has committed. Queues the records, and in
+   * {@link Durability#GROUP_COMMIT} mode waits until they are written. Never fails: the change is
+   * already committed, so a record that can't be written is reported and counted as dropped.
+   * @param records The records of the change
+   */
+  public void afterCommit(List<AuditRecord> records) {
+    if(!usesQueue() || records.isEmpty()) {
+      return;
+    }
+
+    Submission submission = new Submission(records, durability == Durability.GROUP_COMMIT);
+
+    if(!enqueue(submission)) {
+      // Closed for shutdown; write on the caller's thread instead
+      write(List.of(submission));
+    }
+
+    if(Objects.nonNull(submission.written)) {
+      try {
+        submission.written.get();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch(ExecutionException e) {
+        // The writer has already reported the failure
+      }
+    }
+  }
+
+  /**
+   * @return The number of records waiting to be written
+   */
+  public int getQueueDepth() {
+    lock.lock();
+
+    try {
+      return queuedRecords;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The highest number of records that have waited in the queue at once
+   */
+  public int getPeakQueueDepth() {
+    lock.lock();
+
+    try {
+      return peakQueuedRecords;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of batches the writer has written
+   */
+  public long getFlushCount() {
+    return flushCount;
+  }
+
+  /**
+   * @return The number of records written by the writer
+   */
+  public long getWrittenCount() {
+    return writtenCount;
+  }
+
+  /**
+   * @return The number of records given up on after repeated failures
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * @return How long the last batch took to write, in milliseconds
+   */
+  public double getLastFlushMillis() {
+    return lastFlushNanos / 1e6;
+  }
+
+  /**
+   * @return The exponentially smoothed time to write a batch, in milliseconds
+   */
+  public double getAverageFlushMillis() {
+    return averageFlushNanos / 1e6;
+  }
+
+  /**
+   * @return The longest time a batch took to write, in milliseconds
+   */
+  public double getMaxFlushMillis() {
+    return maxFlushNanos / 1e6;
+  }
+
+  /**
+   * Stops accepting records, lets the writer write the queued ones and waits for it to finish.
+   */
+  public void close() {
+    lock.lock();
+
+    try {
+      if(closed) {
+        return;
+      }
+
+      closed = true;
+      notEmpty.signalAll();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+
+    if(Objects.nonNull(writer)) {
+      try {
+        writer.join(CLOSE_TIMEOUT_MILLIS);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT,
+        "audit %s: queued=%d (peak %d), flushes=%d, written=%d, dropped=%d, "
+            + "flush ms last=%.1f avg=%.1f max=%.1f",
+        durability, getQueueDepth(), getPeakQueueDepth(), flushCount, writtenCount, droppedCount,
+        getLastFlushMillis(), getAverageFlushMillis(), getMaxFlushMillis());
+  }
+
+  private boolean usesQueue() {
+    return durability == Durability.GROUP_COMMIT || durability == Durability.ASYNC;
+  }
+
+  /**
+   * Adds a submission to the queue, waiting while the queue is full. A submission larger than the
+   * whole queue is let in once the queue is empty.
+   * @return false if the trail is closed
+   */
+  private boolean enqueue(Submission submission) {
+    int size = submission.records.size();
+    boolean interrupted = false;
+
+    lock.lock();
+
+    try {
+      while(!closed && queuedRecords > 0 && queuedRecords + size > capacity) {
+        try {
+          notFull.await();
+        } catch(InterruptedException e) {
+          // The change is committed; its records are queued regardless
+          interrupted = true;
+        }
+      }
+
+      if(closed) {
+        return false;
+      }
+
+      queue.add(submission);
+      queuedRecords += size;
+      peakQueuedRecords = Math.max(peakQueuedRecords, queuedRecords);
+      notEmpty.signal();
+      return true;
+
+    } finally {
+      lock.unlock();
+
+      if(interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Takes the submissions for the next batch, waiting until there is at least one.
+   * @return The submissions, or null once the trail is closed and the queue is empty
+   */
+  private List<Submission> takeBatch() {
+    lock.lock();
+
+    try {
+      while(queue.isEmpty()) {
+        if(closed) {
+          return null;
+        }
+
+        notEmpty.awaitUninterruptibly();
+      }
+
+      List<Submission> batch = new ArrayList<>();
+      int size = 0;
+
+      while(!queue.isEmpty()
+          && (batch.isEmpty() || size + queue.peek().records.size() <= batchSize)) {
+        Submission submission = queue.poll();
+        size += submission.records.size();
+        batch.add(submission);
+      }
+
+      queuedRecords -= size;
+      notFull.signalAll();
+      return batch;
+
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void writeQueued() {
+    List<Submission> batch;
+
+    while(Objects.nonNull(batch = takeBatch())) {
+      write(batch);
+    }
+  }
+
+  /**
+   * Writes a batch, each shard's records with multi-row INSERTs on that shard, and tells the
+   * waiting committers.
+   */
+  private synchronized void write(List<Submission> batch) {
+    long start = System.nanoTime();
+    Map<Integer, List<AuditRecord>> byShard = new LinkedHashMap<>();
+
+    for(Submission submission : batch) {
+      for(AuditRecord record : submission.records) {
+        int shard = DbConnection.getShardMap().shardFor(record.getProjectId());
+        byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(record);
+      }
+    }
+
+    DbException failure = null;
+    long written = 0;
+
+    for(Map.Entry<Integer, List<AuditRecord>> shardRecords : byShard.entrySet()) {
+      try {
+        writeShard(shardRecords.getKey(), shardRecords.getValue());
+        written += shardRecords.getValue().size();
+      } catch(DbException e) {
+        failure = e;
+        droppedCount += shardRecords.getValue().size();
+        ErrorReporter.report("audit-trail", "Dropping " + shardRecords.getValue().size()
+            + " audit records for shard " + shardRecords.getKey(), e);
+      }
+    }
+
+    long elapsed = System.nanoTime() - start;
+    flushCount++;
+    writtenCount += written;
+    lastFlushNanos = elapsed;
+    maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+    averageFlushNanos = flushCount == 1 ? elapsed
+        : averageFlushNanos + SMOOTHING * (elapsed - averageFlushNanos);
+
+    for(Submission submission : batch) {
+      if(Objects.nonNull(submission.written)) {
+        if(Objects.isNull(failure)) {
+          submission.written.complete(null);
+        }
+        else {
+          submission.written.completeExceptionally(failure);
+        }
+      }
+    }
+  }
+
+  private void writeShard(int shard, List<AuditRecord> records) {
+    for(int attempt = 1;; attempt++) {
+      try(Connection conn = DbConnection.getConnection(shard)) {
+        insertRecords(conn, records);
+        return;
+
+      } catch(SQLException | DbException e) {
+        if(attempt == MAX_ATTEMPTS) {
+          throw e instanceof DbException ? (DbException)e : new DbException(e);
+        }
+      }
+
+      try {
+        TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS * attempt);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DbException(e);
+      }
+    }
+  }
+
+  /**
+   * Inserts records with multi-row INSERT statements of up to {@link #ROWS_PER_STATEMENT} rows.
+   */
+  private void insertRecords(Connection conn, List<AuditRecord> records) throws SQLException {
+    for(int from = 0; from < records.size(); from += ROWS_PER_STATEMENT) {
+      List<AuditRecord> chunk =
+          records.subList(from, Math.min(records.size(), from + ROWS_PER_STATEMENT));
+      String row = "(?, ?, ?, ?, ?, ?, ?)";
+
+      // @formatter:off
+      String sql = ""
+          + "INSERT INTO " + AUDIT_TABLE + " "
+          + "(project_id, entity, entity_id, change_type, before_values, after_values, changed_at) "
+          + "VALUES " + String.join(", ", Collections.nCopies(chunk.size(), row));
+      // @formatter:on
+
+      try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+        int index = 1;
+
+        for(AuditRecord record : chunk) {
+          setParameter(stmt, index++, record.getProjectId(), Integer.class);
+          setParameter(stmt, index++, record.getEntity(), String.class);
+          setParameter(stmt, index++, record.getEntityId(), Integer.class);
+          setParameter(stmt, index++, record.getChangeType().name(), String.class);
+          setParameter(stmt, index++, toJson(record.getBeforeValues()), String.class);
+          setParameter(stmt, index++, toJson(record.getAfterValues()), String.class);
+          setParameter(stmt, index++, record.getChangedAt(), LocalDateTime.class);
+        }
+
+        stmt.executeUpdate();
+      }
+    }
+  }
+
+  /**
+   * Encodes column values as a JSON object. Numbers stay numbers; everything else is a string.
+   */
+  private String toJson(Map<String, Object> values) {
+    if(Objects.isNull(values)) {
+      return null;
+    }
+
+    StringBuilder json = new StringBuilder("{");
+
+    for(Map.Entry<String, Object> column : values.entrySet()) {
+      if(json.length() > 1) {
+        json.append(", ");
+      }
+
+      appendString(json, column.getKey());
+      json.append(": ");
+      Object value = column.getValue();
+
+      if(Objects.isNull(value)) {
+        json.append("null");
+      }
+      else if(value instanceof BigDecimal) {
+        json.append(((BigDecimal)value).toPlainString());
+      }
+      else if(value instanceof Number) {
+        json.append(value);
+      }
+      else {
+        appendString(json, value.toString());
+      }
+    }
+
+    return json.append('}').toString();
+  }
+
+  private void appendString(StringBuilder json, String value) {
+    try {
+      JsonRenderer.appendString(value, json);
+    } catch(IOException e) {
+      // A StringBuilder never throws
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * The records of one committed change. Group-commit callers wait on {@link #written}.
+   */
+  private static class Submission {
+    private final List<AuditRecord> records;
+    private final CompletableFuture<Void> written;
+
+    Submission(List<AuditRecord> records, boolean awaited) {
+      this.records = records;
+      this.written = awaited ? new CompletableFuture<>() : null;
+    }
+  }
+
+  /**
+   * Creates the default trail on first use.
+   */
+  private static class DefaultHolder {
+    private static final AuditTrail INSTANCE = new AuditTrail(
+        Durability.valueOf(System.getProperty("projects.audit.durability", "async")
+            .trim().toUpperCase(Locale.ROOT).replace('-', '_')),
+        Integer.getInteger("projects.audit.capacity", DEFAULT_CAPACITY),
+        Integer.getInteger("projects.audit.batch", DEFAULT_BATCH_SIZE));
+  }
+}
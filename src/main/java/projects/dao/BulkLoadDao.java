@@ -0,0 +1,255 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ * Writes generated project graphs in bulk. Unlike {@link ProjectDao#insertProject(Project)}, the
+ * project IDs are supplied by the caller, so children can be written without reading generated
+ * keys back, material names are resolved to catalog IDs once per call, and each table is written
+ * with multi-row INSERT statements of up to {@link #ROWS_PER_STATEMENT} rows. Foreign key and
+ * unique checks are switched off for the loading session; the caller is responsible for handing in
+ * consistent graphs.
+ */
+public class BulkLoadDao extends DaoBase {
+  private static final String CATEGORY_TABLE = "category";
+  private static final String MATERIAL_TABLE = "material";
+  private static final String PROJECT_TABLE = "project";
+  private static final String PROJECT_CATEGORY_TABLE = "project_category";
+  private static final String STEP_TABLE = "step";
+
+  private static final int ROWS_PER_STATEMENT = 1000;
+
+  private final MaterialCatalog materialCatalog = new MaterialCatalog();
+
+  /**
+   * Returns the highest project ID in use on a shard, counting archived projects, whose IDs come
+   * back into use when they are restored.
+   * @param shard The shard number
+   * @return The highest ID, or 0 if the shard has no projects
+   * @throws DbException Thrown if an error occurs.
+   */
+  public int fetchMaxProjectId(int shard) {
+    // @formatter:off
+    String sql = ""
+        + "SELECT GREATEST("
+        + "(SELECT COALESCE(MAX(project_id), 0) FROM " + PROJECT_TABLE + "), "
+        + "(SELECT COALESCE(MAX(project_id), 0) FROM "
+        + ProjectArchiver.archiveOf(PROJECT_TABLE) + "))";
+    // @formatter:on
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try(ResultSet rs = stmt.executeQuery()) {
+          rs.next();
+          return rs.getInt(1);
+        }
+      }
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  /**
+   * Makes sure a shard has the given categories under their given IDs. Categories that already
+   * exist with those IDs are left as they are.
+   * @param shard The shard number
+   * @param categories The categories, with their IDs set
+   * @throws DbException Thrown if an error occurs.
+   */
+  public void ensureCategories(int shard, List<Category> categories) {
+    String sql =
+        "INSERT IGNORE INTO " + CATEGORY_TABLE + " (category_id, category_name) VALUES (?, ?)";
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      startTransaction(conn);
+
+      try {
+        try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+          for(Category category : categories) {
+            setParameter(stmt, 1, category.getCategoryId(), Integer.class);
+            setParameter(stmt, 2, category.getCategoryName(), String.class);
+            stmt.addBatch();
+          }
+
+          stmt.executeBatch();
+        }
+
+        commitTransaction(conn);
+
+      } catch(SQLException e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  /**
+   * Inserts complete project graphs that all belong on the same shard in one transaction. The
+   * project IDs must be set and must route to the shard; the categories must exist on the shard.
+   * @param shard The shard number
+   * @param projects The projects with their materials, steps and categories
+   * @return The number of rows written
+   * @throws DbException Thrown if an error occurs. Nothing is written in that case.
+   */
+  public long insertProjectGraphs(int shard, List<Project> projects) {
+    List<Material> materials = new ArrayList<>();
+    List<Step> steps = new ArrayList<>();
+    List<Integer[]> links = new ArrayList<>();
+    Set<String> materialNames = new HashSet<>();
+
+    for(Project project : projects) {
+      materials.addAll(project.getMaterials());
+      steps.addAll(project.getSteps());
+
+      for(Category category : project.getCategories()) {
+        links.add(new Integer[] {project.getProjectId(), category.getCategoryId()});
+      }
+    }
+
+    materials.forEach(material -> materialNames.add(material.getMaterialName()));
+    Map<String, Integer> catalogIds = materialCatalog.resolve(shard, materialNames);
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      try(Statement stmt = conn.createStatement()) {
+        stmt.execute("SET SESSION foreign_key_checks = 0, unique_checks = 0");
+      }
+
+      startTransaction(conn);
+
+      try {
+        // @formatter:off
+        insertRows(conn, PROJECT_TABLE,
+            "project_id, project_name, estimated_hours, actual_hours, difficulty, notes",
+            projects, (stmt, index, project) -> {
+              setParameter(stmt, index++, project.getProjectId(), Integer.class);
+              setParameter(stmt, index++, project.getProjectName(), String.class);
+              setParameter(stmt, index++, project.getEstimatedHours(), BigDecimal.class);
+              setParameter(stmt, index++, project.getActualHours(), BigDecimal.class);
+              setParameter(stmt, index++, project.getDifficulty(), Integer.class);
+              setParameter(stmt, index++, project.getNotes(), String.class);
+              return index;
+            });
+
+        insertRows(conn, MATERIAL_TABLE,
+            "project_id, material_catalog_id, num_required, cost",
+            materials, (stmt, index, material) -> {
+              setParameter(stmt, index++, material.getProjectId(), Integer.class);
+              setParameter(stmt, index++, catalogIds.get(material.getMaterialName()),
+                  Integer.class);
+              setParameter(stmt, index++, material.getNumRequired(), Integer.class);
+              setParameter(stmt, index++, material.getCost(), BigDecimal.class);
+              return index;
+            });
+
+        insertRows(conn, STEP_TABLE,
+            "project_id, step_text, step_order",
+            steps, (stmt, index, step) -> {
+              setParameter(stmt, index++, step.getProjectId(), Integer.class);
+              setParameter(stmt, index++, step.getStepText(), String.class);
+              setParameter(stmt, index++, step.getStepOrder(), Integer.class);
+              return index;
+            });
+
+        insertRows(conn, PROJECT_CATEGORY_TABLE,
+            "project_id, category_id",
+            links, (stmt, index, link) -> {
+              setParameter(stmt, index++, link[0], Integer.class);
+              setParameter(stmt, index++, link[1], Integer.class);
+              return index;
+            });
+        // @formatter:on
+
+        commitTransaction(conn);
+        return (long)projects.size() + materials.size() + steps.size() + links.size();
+
+      } catch(SQLException e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  /**
+   * Inserts rows with multi-row INSERT statements. A statement for a full chunk is prepared once
+   * and reused; the remainder gets its own statement.
+   */
+  private <T> void insertRows(Connection conn, String table, String columns, List<T> rows,
+      RowBinder<T> binder) throws SQLException {
+    int columnCount = columns.split(",").length;
+    int fullChunks = rows.size() / ROWS_PER_STATEMENT;
+
+    if(fullChunks > 0) {
+      try(PreparedStatement stmt =
+          conn.prepareStatement(insertSql(table, columns, columnCount, ROWS_PER_STATEMENT))) {
+        for(int chunk = 0; chunk < fullChunks; chunk++) {
+          int from = chunk * ROWS_PER_STATEMENT;
+          bindRows(stmt, rows.subList(from, from + ROWS_PER_STATEMENT), binder);
+          stmt.executeUpdate();
+        }
+      }
+    }
+
+    List<T> rest = rows.subList(fullChunks * ROWS_PER_STATEMENT, rows.size());
+
+    if(!rest.isEmpty()) {
+      try(PreparedStatement stmt =
+          conn.prepareStatement(insertSql(table, columns, columnCount, rest.size()))) {
+        bindRows(stmt, rest, binder);
+        stmt.executeUpdate();
+      }
+    }
+  }
+
+  private <T> void bindRows(PreparedStatement stmt, List<T> rows, RowBinder<T> binder)
+      throws SQLException {
+    int index = 1;
+
+    for(T row : rows) {
+      index = binder.bind(stmt, index, row);
+    }
+  }
+
+  private String insertSql(String table, String columns, int columnCount, int rowCount) {
+    String row = "(" + String.join(", ", Collections.nCopies(columnCount, "?")) + ")";
+
+    return "INSERT INTO " + table + " (" + columns + ") VALUES "
+        + String.join(", ", Collections.nCopies(rowCount, row));
+  }
+
+  /**
+   * Sets the parameters of one row of a multi-row INSERT.
+   */
+  @FunctionalInterface
+  private interface RowBinder<T> {
+    /**
+     * @param stmt The statement
+     * @param index The index of the row's first parameter
+     * @param row The row
+     * @return The index of the next row's first parameter
+     */
+    int bind(PreparedStatement stmt, int index, T row) throws SQLException;
+  }
+}
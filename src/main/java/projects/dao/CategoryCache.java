@@ -0,0 +1,154 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import projects.entity.Category;
+import provided.util.DaoBase;
+
+/**
+ * Holds the whole category table in memory as an immutable ID-to-{@link Category} map. Categories
+ * are a small reference table that rarely changes, so project fetches only read category IDs from
+ * project_category and resolve them here instead of joining to category every time. All projects
+ * share the same Category instances, which are read-only: their setters throw
+ * {@link UnsupportedOperationException}.
+ *
+ * <p>
+ * The map is loaded on first use. After that a cheap fingerprint of the table (row count, highest
+ * ID and a checksum of the names) is compared at most once per check interval, and the map is
+ * reloaded if it changed or if an unknown ID is seen.
+ * </p>
+ */
+class CategoryCache extends DaoBase {
+  private static final String CATEGORY_TABLE = "category";
+  private static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  private volatile Snapshot snapshot;
+
+  /**
+   * Resolves category IDs to the cached categories, loading or refreshing the cache on the given
+   * connection when needed.
+   * @param conn The connection to use if the cache must be loaded
+   * @param categoryIds The IDs to resolve
+   * @return The categories, in the order of the IDs
+   * @throws SQLException Thrown if the cache can't be loaded
+   */
+  List<Category> resolve(Connection conn, Collection<Integer> categoryIds) throws SQLException {
+    Snapshot current = current(conn);
+
+    if(!current.categories.keySet().containsAll(categoryIds)) {
+      // A category was added since the last load
+      current = load(conn);
+    }
+
+    List<Category> categories = new ArrayList<>(categoryIds.size());
+
+    for(Integer categoryId : categoryIds) {
+      Category category = current.categories.get(categoryId);
+
+      if(Objects.nonNull(category)) {
+        categories.add(category);
+      }
+    }
+
+    return categories;
+  }
+
+  private Snapshot current(Connection conn) throws SQLException {
+    Snapshot current = snapshot;
+
+    if(Objects.isNull(current)) {
+      return load(conn);
+    }
+
+    if(System.nanoTime() - current.checkedAt > CHECK_INTERVAL_NANOS) {
+      String fingerprint = fingerprint(conn);
+
+      if(!fingerprint.equals(current.fingerprint)) {
+        return load(conn);
+      }
+
+      current = new Snapshot(current.categories, fingerprint);
+      snapshot = current;
+    }
+
+    return current;
+  }
+
+  private synchronized Snapshot load(Connection conn) throws SQLException {
+    String fingerprint = fingerprint(conn);
+    String sql = "SELECT * FROM " + CATEGORY_TABLE;
+    Map<Integer, Category> categories = new HashMap<>();
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      try(ResultSet rs = stmt.executeQuery()) {
+        while(rs.next()) {
+          Category category = new SharedCategory(extract(rs, Category.class));
+          categories.put(category.getCategoryId(), category);
+        }
+      }
+    }
+
+    Snapshot loaded = new Snapshot(Map.copyOf(categories), fingerprint);
+    snapshot = loaded;
+    return loaded;
+  }
+
+  private String fingerprint(Connection conn) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "SELECT COUNT(*), COALESCE(MAX(category_id), 0), COALESCE(SUM(CRC32(category_name)), 0) "
+        + "FROM " + CATEGORY_TABLE;
+    // @formatter:on
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      try(ResultSet rs = stmt.executeQuery()) {
+        rs.next();
+        return rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3);
+      }
+    }
+  }
+
+  /**
+   * A cached category. Every project that has the category holds this instance, so changing it
+   * would change the category for all of them.
+   */
+  private static final class SharedCategory extends Category {
+    SharedCategory(Category category) {
+      super.setCategoryId(category.getCategoryId());
+      super.setCategoryName(category.getCategoryName());
+    }
+
+    @Override
+    public void setCategoryId(Integer categoryId) {
+      throw new UnsupportedOperationException("Cached categories are read-only");
+    }
+
+    @Override
+    public void setCategoryName(String categoryName) {
+      throw new UnsupportedOperationException("Cached categories are read-only");
+    }
+  }
+
+  /**
+   * An immutable view of the category table.
+   */
+  private static class Snapshot {
+    private final Map<Integer, Category> categories;
+    private final String fingerprint;
+    private final long checkedAt = System.nanoTime();
+
+    Snapshot(Map<Integer, Category> categories, String fingerprint) {
+      this.categories = categories;
+      this.fingerprint = fingerprint;
+    }
+  }
+}
@@ -2,31 +2,219 @@ package projects.dao;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import projects.dao.ShardMap.Shard;
 import projects.exception.DbException;
 
 public class DbConnection {
 
-  
-  private static String HOST = "localhost";  
-  private static String PASSWORD = "projects";  
+
+  private static String HOST = "localhost";
+  private static String PASSWORD = "projects";
   private static int PORT = 3306;
   private static String SCHEMA = "projects";
   private static String USER = "projects";
-  
+
+  private static final String DRIVER_CLASS = "com.mysql.cj.jdbc.Driver";
+
+  /*
+   * A warm connection older than this is closed instead of used, because the server's wait_timeout
+   * or an idle cut by a proxy may already have closed it on the other side.
+   */
+  private static final long WARM_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(30);
+  private static final int WARM_VALIDATION_TIMEOUT_SECONDS = 1;
+
+  private static final AtomicReference<WarmConnection> warmConnection = new AtomicReference<>();
+
+  private static final ShardMap SHARD_MAP =
+      ShardMap.fromSystemProperty(new Shard(HOST, PORT, SCHEMA));
+
+  /*
+   * Optional second endpoints for hedged reads, one per shard in shard order, from the
+   * projects.secondaries system property (host:port/schema,...). Usually replicas.
+   */
+  private static final List<Shard> SECONDARIES =
+      ShardMap.parseEndpoints(System.getProperty("projects.secondaries"));
+
+  /**
+   * @return A connection to the first (or only) shard.
+   */
   public static Connection getConnection() {
-    String uri = 
-        String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false", 
-            HOST, PORT, SCHEMA, USER, PASSWORD);
+    return getConnection(0);
+  }
+
+  /**
+   * Returns a connection to the given shard. A connection opened by {@link #warmUp()} is used
+   * first if one is waiting, is younger than 30 seconds and answers a validity check; otherwise it
+   * is closed and a fresh connection is opened. When there is more than one shard, the session is
+   * set up so that auto-increment IDs generated on shard i are all congruent to i + 1 modulo the
+   * shard count, which keeps IDs globally unique and lets {@link ShardMap#shardFor} route by ID. If
+   * a {@link Deadline} is active, the connection is bounded by it.
+   * @param shard The shard number
+   * @return The connection
+   */
+  public static Connection getConnection(int shard) {
+    if(shard == 0) {
+      Connection warm = takeWarmConnection();
+      
+      if(Objects.nonNull(warm)) {
+        System.out.println("Successfully obtained connection!");
+        return track(warm);
+      }
+    }
     
     try {
-      Connection conn = DriverManager.getConnection(uri);
+      Connection conn = openConnection(shard);
       System.out.println("Successfully obtained connection!");
-      return conn;
+      return track(conn);
     } catch (SQLException e) {
       System.out.println("Error getting connection.");
       throw new DbException(e);
     }
   }
-  
+
+  /**
+   * @return The warm connection if one is waiting and still usable, otherwise null
+   */
+  private static Connection takeWarmConnection() {
+    WarmConnection warm = warmConnection.getAndSet(null);
+    
+    if(Objects.isNull(warm)) {
+      return null;
+    }
+    
+    try {
+      if(System.nanoTime() - warm.openedAt <= WARM_MAX_AGE_NANOS
+          && warm.conn.isValid(WARM_VALIDATION_TIMEOUT_SECONDS)) {
+        return warm.conn;
+      }
+      
+      warm.conn.close();
+    } catch(SQLException e) {
+      // Unusable; a fresh connection is opened instead
+    }
+    
+    return null;
+  }
+
+  /**
+   * @param shard The shard number
+   * @return true if a second endpoint is configured for the shard
+   */
+  static boolean hasSecondary(int shard) {
+    return shard < SECONDARIES.size();
+  }
+
+  /**
+   * Returns a connection to the shard's second endpoint, which serves hedged reads. If a
+   * {@link Deadline} is active, the connection is bounded by it.
+   * @param shard The shard number
+   * @return The connection
+   */
+  static Connection getSecondaryConnection(int shard) {
+    return track(getConnection(SECONDARIES.get(shard)));
+  }
+
+  private static Connection track(Connection conn) {
+    return Deadline.current().map(deadline -> deadline.track(conn)).orElse(conn);
+  }
+
+  /**
+   * Starts loading the MySQL driver and opening a connection to the first shard on a background
+   * thread, so that the connection is ready by the time the user picks the first menu option. The
+   * connection is handed to the next {@link #getConnection()} call. Failures are ignored here; the
+   * first real request reports them.
+   */
+  public static void warmUp() {
+    Thread thread = new Thread(() -> {
+      try {
+        Class.forName(DRIVER_CLASS);
+        Connection conn = openConnection(0);
+        
+        // Run a trivial statement to load and initialize the driver's statement and result classes
+        try(PreparedStatement stmt = conn.prepareStatement("SELECT 1")) {
+          stmt.executeQuery().close();
+        }
+        
+        if(!warmConnection.compareAndSet(null, new WarmConnection(conn))) {
+          conn.close();
+        }
+      } catch(Exception e) {
+        // Ignored, see above
+      }
+    }, "connection-warm-up");
+    
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Returns a connection to an endpoint outside the shard map, such as a replica. No session
+   * settings are applied.
+   * @param endpoint The endpoint
+   * @return The connection
+   */
+  static Connection getConnection(Shard endpoint) {
+    try {
+      return openConnection(endpoint);
+    } catch (SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  private static Connection openConnection(Shard endpoint) throws SQLException {
+    String uri =
+        String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false",
+            endpoint.getHost(), endpoint.getPort(), endpoint.getSchema(), USER, PASSWORD);
+    
+    Deadline deadline = Deadline.current().orElse(null);
+    
+    if(Objects.nonNull(deadline)) {
+      uri += "&connectTimeout=" + deadline.connectTimeoutMillis();
+    }
+
+    return DriverManager.getConnection(uri);
+  }
+
+  private static Connection openConnection(int shard) throws SQLException {
+    Connection conn = openConnection(SHARD_MAP.getShard(shard));
+
+    if(SHARD_MAP.getShardCount() > 1) {
+      try(Statement stmt = conn.createStatement()) {
+        stmt.execute(String.format(
+            "SET SESSION auto_increment_increment = %d, auto_increment_offset = %d",
+            SHARD_MAP.getShardCount(), shard + 1));
+      } catch(SQLException e) {
+        conn.close();
+        throw e;
+      }
+    }
+
+    return conn;
+  }
+
+  /**
+   * @return The shard map in use
+   */
+  public static ShardMap getShardMap() {
+    return SHARD_MAP;
+  }
+
+  /**
+   * A connection opened ahead of time and when it was opened.
+   */
+  private static class WarmConnection {
+    private final Connection conn;
+    private final long openedAt = System.nanoTime();
+
+    WarmConnection(Connection conn) {
+      this.conn = conn;
+    }
+  }
 }
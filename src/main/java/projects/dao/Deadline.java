@@ -0,0 +1,252 @@
+package projects.dao;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import projects.exception.DeadlineExceededException;
+
+/**
+ * A time budget for one request. While a deadline is active on a thread (see
+ * {@link #call(Supplier)}), every database access on that thread is bounded by it:
+ * <ul>
+ * <li>New connections use the remaining time as their connect timeout.</li>
+ * <li>Every statement gets the remaining time as its query timeout, rounded up to whole seconds
+ * because that is the JDBC granularity.</li>
+ * <li>When the deadline passes, statements that are still running are cancelled with
+ * {@link Statement#cancel()}, which kills the query on the server. This is what makes the deadline
+ * precise to the millisecond.</li>
+ * </ul>
+ * A deadline inside another deadline never extends it. Work handed to other threads keeps the
+ * deadline if it is wrapped with {@link #propagate(Supplier)}.
+ */
+public final class Deadline {
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private static final ScheduledExecutorService TIMER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "deadline-timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final boolean bounded;
+  private final long expiresAtNanos;
+  private final List<Statement> statements = new ArrayList<>();
+
+  private boolean cancelled;
+  private ScheduledFuture<?> timer;
+
+  private Deadline(boolean bounded, long expiresAtNanos) {
+    this.bounded = bounded;
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  /**
+   * Creates a deadline the given time from now, or the current deadline's expiry if that is
+   * sooner.
+   * @param budget The time budget
+   * @return The deadline. It takes effect when {@link #call(Supplier)} is invoked.
+   */
+  public static Deadline after(Duration budget) {
+    long expiresAt = System.nanoTime() + budget.toNanos();
+    Deadline outer = CURRENT.get();
+
+    if(Objects.nonNull(outer) && outer.bounded && outer.expiresAtNanos - expiresAt < 0) {
+      expiresAt = outer.expiresAtNanos;
+    }
+
+    return new Deadline(true, expiresAt);
+  }
+
+  /**
+   * Creates a deadline with the same expiry as the current one, or no expiry if there is none. It
+   * can be cancelled without affecting the current deadline, which is how the losing half of a
+   * hedged read is stopped.
+   * @return The deadline
+   */
+  static Deadline inheritCurrent() {
+    Deadline outer = CURRENT.get();
+
+    return Objects.isNull(outer) ? new Deadline(false, 0)
+        : new Deadline(outer.bounded, outer.expiresAtNanos);
+  }
+
+  /**
+   * @return The deadline active on this thread, if any
+   */
+  public static Optional<Deadline> current() {
+    return Optional.ofNullable(CURRENT.get());
+  }
+
+  /**
+   * Wraps a task so that it runs under the deadline active on the calling thread, if any, when it
+   * is executed on another thread.
+   * @param task The task
+   * @return The wrapped task
+   */
+  static <T> Callable<T> propagate(Supplier<T> task) {
+    Deadline deadline = CURRENT.get();
+
+    return Objects.isNull(deadline) ? task::get : () -> deadline.runWith(task);
+  }
+
+  /**
+   * Runs a task under this deadline. A deadline is meant to be used for one call.
+   * @param task The task
+   * @return The task's result
+   * @throws DeadlineExceededException if the deadline passes before the task completes.
+   */
+  public <T> T call(Supplier<T> task) {
+    try {
+      check();
+      return runWith(task);
+    } catch(DeadlineExceededException e) {
+      throw e;
+    } catch(RuntimeException e) {
+      if(isExpired()) {
+        throw new DeadlineExceededException("The request deadline passed.", e);
+      }
+
+      throw e;
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * @return true if the deadline has passed or was cancelled
+   */
+  public synchronized boolean isExpired() {
+    return cancelled || (bounded && System.nanoTime() - expiresAtNanos >= 0);
+  }
+
+  /**
+   * @return The time left, or null if the deadline has no time limit
+   */
+  public Duration remaining() {
+    return bounded ? Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime())) : null;
+  }
+
+  /**
+   * Expires the deadline now and cancels the statements that are still running under it.
+   */
+  public void cancel() {
+    List<Statement> running;
+
+    synchronized(this) {
+      cancelled = true;
+      running = new ArrayList<>(statements);
+      statements.clear();
+    }
+
+    for(Statement stmt : running) {
+      try {
+        if(!stmt.isClosed()) {
+          stmt.cancel();
+        }
+      } catch(SQLException e) {
+        // The statement finished or its connection closed in the meantime
+      }
+    }
+  }
+
+  /**
+   * @throws DeadlineExceededException if the deadline has passed.
+   */
+  void check() {
+    if(isExpired()) {
+      throw new DeadlineExceededException("The request deadline passed.");
+    }
+  }
+
+  /**
+   * @return The connect timeout in milliseconds for a new connection, or 0 for no limit
+   * @throws DeadlineExceededException if the deadline has passed.
+   */
+  int connectTimeoutMillis() {
+    check();
+
+    if(!bounded) {
+      return 0;
+    }
+
+    long millis = TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()) + 1;
+    return (int)Math.min(Integer.MAX_VALUE, Math.max(1, millis));
+  }
+
+  /**
+   * Returns a view of the connection that places every statement it creates under this deadline.
+   * @param conn The connection
+   * @return The tracked connection
+   */
+  Connection track(Connection conn) {
+    return (Connection)Proxy.newProxyInstance(DbConnection.class.getClassLoader(),
+        new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+          try {
+            Object result = method.invoke(conn, args);
+
+            if(result instanceof Statement) {
+              watch((Statement)result);
+            }
+
+            return result;
+          } catch(InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+  private void watch(Statement stmt) throws SQLException {
+    if(isExpired()) {
+      stmt.close();
+      throw new SQLTimeoutException("The request deadline passed.");
+    }
+
+    if(bounded) {
+      long seconds = TimeUnit.NANOSECONDS.toSeconds(expiresAtNanos - System.nanoTime()) + 1;
+      stmt.setQueryTimeout((int)Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    synchronized(this) {
+      statements.add(stmt);
+
+      if(bounded && Objects.isNull(timer)) {
+        timer = TIMER.schedule(this::cancel, expiresAtNanos - System.nanoTime(),
+            TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private <T> T runWith(Supplier<T> task) {
+    Deadline previous = CURRENT.get();
+    CURRENT.set(this);
+
+    try {
+      return task.get();
+    } finally {
+      CURRENT.set(previous);
+    }
+  }
+
+  private synchronized void release() {
+    if(Objects.nonNull(timer)) {
+      timer.cancel(false);
+    }
+
+    statements.clear();
+  }
+}
@@ -0,0 +1,128 @@
+package projects.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import projects.entity.AuditRecord;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/**
+ * Describes the rows a save wrote to a project graph as {@link AuditRecord}s: the project row if
+ * one of its columns or its version changed, and every material, step and category link that was
+ * inserted, updated or deleted. Both repositories describe their saves here, so a save reports the
+ * same changes whichever of them stores the graph.
+ */
+final class GraphChanges {
+  static final String PROJECT_TABLE = "project";
+  static final String MATERIAL_TABLE = "material";
+  static final String STEP_TABLE = "step";
+  static final String PROJECT_CATEGORY_TABLE = "project_category";
+
+  private GraphChanges() {
+  }
+
+  /**
+   * @param saved The graph as saved, with the IDs and versions of the save
+   * @param stored The graph as it was stored before the save. Empty for a new project.
+   * @param isNew true if the save inserted the project
+   * @return The records of the rows that changed, the project row first
+   */
+  static List<AuditRecord> describe(Project saved, Project stored, boolean isNew) {
+    Integer projectId = saved.getProjectId();
+    List<AuditRecord> records = new ArrayList<>();
+
+    if(isNew) {
+      records.add(AuditRecord.insert(PROJECT_TABLE, projectId, projectId, projectValues(saved)));
+    }
+    else {
+      // The version is compared too: a save that only changes children still writes the row
+      Map<String, Object> before = projectValues(stored);
+      Map<String, Object> after = projectValues(saved);
+      before.put("version", stored.getVersion());
+      after.put("version", saved.getVersion());
+      records.add(AuditRecord.update(PROJECT_TABLE, projectId, projectId, before, after));
+    }
+
+    Map<Integer, Material> storedMaterials = new HashMap<>();
+    stored.getMaterials().forEach(material -> storedMaterials.put(material.getMaterialId(),
+        material));
+
+    for(Material material : saved.getMaterials()) {
+      Material old = storedMaterials.remove(material.getMaterialId());
+
+      records.add(Objects.isNull(old)
+          ? AuditRecord.insert(MATERIAL_TABLE, material.getMaterialId(), projectId,
+              materialValues(material))
+          : AuditRecord.update(MATERIAL_TABLE, material.getMaterialId(), projectId,
+              materialValues(old), materialValues(material)));
+    }
+
+    storedMaterials.values().forEach(material -> records.add(AuditRecord.delete(MATERIAL_TABLE,
+        material.getMaterialId(), projectId, materialValues(material))));
+
+    Map<Integer, Step> storedSteps = new HashMap<>();
+    stored.getSteps().forEach(step -> storedSteps.put(step.getStepId(), step));
+
+    for(Step step : saved.getSteps()) {
+      Step old = storedSteps.remove(step.getStepId());
+
+      records.add(Objects.isNull(old)
+          ? AuditRecord.insert(STEP_TABLE, step.getStepId(), projectId, stepValues(step))
+          : AuditRecord.update(STEP_TABLE, step.getStepId(), projectId, stepValues(old),
+              stepValues(step)));
+    }
+
+    storedSteps.values().forEach(step -> records.add(AuditRecord.delete(STEP_TABLE,
+        step.getStepId(), projectId, stepValues(step))));
+
+    Set<Integer> linked = new LinkedHashSet<>();
+    stored.getCategories().forEach(category -> linked.add(category.getCategoryId()));
+
+    for(Category category : saved.getCategories()) {
+      if(!linked.remove(category.getCategoryId())) {
+        records.add(AuditRecord.insert(PROJECT_CATEGORY_TABLE, category.getCategoryId(),
+            projectId, Map.of("category_id", category.getCategoryId())));
+      }
+    }
+
+    linked.forEach(categoryId -> records.add(AuditRecord.delete(PROJECT_CATEGORY_TABLE,
+        categoryId, projectId, Map.of("category_id", categoryId))));
+
+    // Unchanged rows produce no update record
+    records.removeIf(Objects::isNull);
+    return records;
+  }
+
+  static Map<String, Object> projectValues(Project project) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("project_name", project.getProjectName());
+    values.put("estimated_hours", project.getEstimatedHours());
+    values.put("actual_hours", project.getActualHours());
+    values.put("difficulty", project.getDifficulty());
+    values.put("notes", project.getNotes());
+    return values;
+  }
+
+  static Map<String, Object> materialValues(Material material) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("material_name", material.getMaterialName());
+    values.put("num_required", material.getNumRequired());
+    values.put("cost", material.getCost());
+    return values;
+  }
+
+  static Map<String, Object> stepValues(Step step) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("step_text", step.getStepText());
+    values.put("step_order", step.getStepOrder());
+    return values;
+  }
+}
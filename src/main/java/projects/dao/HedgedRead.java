@@ -0,0 +1,187 @@
+package projects.dao;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import projects.exception.DbException;
+import projects.exception.DeadlineExceededException;
+
+/**
+ * Runs a read against the primary endpoint and, if it hasn't answered within the recent 95th
+ * percentile of primary latency, sends the same read to the secondary endpoint and takes whichever
+ * answer arrives first. The loser's statements are cancelled. Only about one read in twenty is
+ * duplicated, but a slow primary no longer sets the latency of the reads that hit it.
+ *
+ * <p>
+ * If the primary fails before the hedge delay, the secondary is tried at once. The read fails only
+ * if both endpoints fail or the current {@link Deadline} passes.
+ * </p>
+ */
+class HedgedRead {
+  private static final double HEDGE_PERCENTILE = 0.95;
+  private static final int WINDOW_SIZE = 512;
+  private static final int MIN_SAMPLES = 20;
+  private static final long DEFAULT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "hedged-read");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final long[] window = new long[WINDOW_SIZE];
+  private long samples;
+  private long hedgeDelayNanos = DEFAULT_DELAY_NANOS;
+
+  /**
+   * Runs the read with hedging.
+   * @param read The read. Its argument is true when it should use the secondary endpoint.
+   * @return The first successful result
+   * @throws DbException if both attempts fail.
+   * @throws DeadlineExceededException if the current deadline passes first.
+   */
+  <T> T execute(Function<Boolean, T> read) {
+    Deadline deadline = Deadline.current().orElse(null);
+    CompletionService<T> completions = new ExecutorCompletionService<>(EXECUTOR);
+
+    Deadline primaryScope = Deadline.inheritCurrent();
+    Deadline secondaryScope = null;
+    long start = System.nanoTime();
+
+    Future<T> primary = completions.submit(() -> primaryScope.call(() -> read.apply(false)));
+    RuntimeException failure = null;
+    int pending = 1;
+
+    try {
+      Future<T> done = completions.poll(getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+
+      // The primary is slow or failed early: send the read to the secondary too
+      if(Objects.isNull(done) || failed(done)) {
+        if(Objects.nonNull(done)) {
+          failure = causeOf(done);
+          pending--;
+          done = null;
+        }
+
+        Deadline scope = Deadline.inheritCurrent();
+        secondaryScope = scope;
+        completions.submit(() -> scope.call(() -> read.apply(true)));
+        pending++;
+      }
+
+      while(true) {
+        if(Objects.isNull(done)) {
+          done = waitForNext(completions, deadline);
+        }
+
+        if(!failed(done)) {
+          if(done == primary) {
+            record(System.nanoTime() - start);
+          }
+
+          return done.get();
+        }
+
+        failure = causeOf(done);
+
+        if(--pending == 0) {
+          throw failure;
+        }
+
+        done = null;
+      }
+    } catch(InterruptedException | ExecutionException e) {
+      if(e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+
+      throw new DbException(e);
+    } finally {
+      // Stop whichever attempt is still running
+      primaryScope.cancel();
+
+      if(Objects.nonNull(secondaryScope)) {
+        if(!primary.isDone()) {
+          record(System.nanoTime() - start);
+        }
+
+        secondaryScope.cancel();
+      }
+    }
+  }
+
+  private <T> Future<T> waitForNext(CompletionService<T> completions, Deadline deadline)
+      throws InterruptedException {
+    if(Objects.isNull(deadline) || Objects.isNull(deadline.remaining())) {
+      return completions.take();
+    }
+
+    Future<T> next = completions.poll(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS);
+
+    if(Objects.isNull(next)) {
+      throw new DeadlineExceededException("The request deadline passed.");
+    }
+
+    return next;
+  }
+
+  private RuntimeException causeOf(Future<?> future) {
+    try {
+      future.get();
+      return new DbException("The read did not fail.");
+    } catch(ExecutionException e) {
+      return e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause()
+          : new DbException(e.getCause());
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new DbException(e);
+    }
+  }
+
+  /**
+   * @return true if the completed future ended with an exception
+   */
+  private boolean failed(Future<?> future) {
+    try {
+      future.get();
+      return false;
+    } catch(ExecutionException e) {
+      return true;
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return true;
+    }
+  }
+
+  /**
+   * @return The current hedge delay: the primary latency percentile once enough reads have been
+   *         seen, a fixed default before that
+   */
+  synchronized long getHedgeDelayNanos() {
+    return hedgeDelayNanos;
+  }
+
+  /**
+   * Records one primary latency. When the primary lost to the secondary, its elapsed time at that
+   * point is recorded, which understates it but keeps slow periods from dragging the percentile
+   * down.
+   */
+  private synchronized void record(long nanos) {
+    window[(int)(samples % WINDOW_SIZE)] = nanos;
+    samples++;
+
+    // Sorting the window costs a few microseconds, so the percentile is refreshed every 32 reads
+    if(samples == MIN_SAMPLES || (samples > MIN_SAMPLES && samples % 32 == 0)) {
+      long[] sorted = Arrays.copyOf(window, (int)Math.min(samples, WINDOW_SIZE));
+      Arrays.sort(sorted);
+      hedgeDelayNanos = sorted[(int)Math.floor(HEDGE_PERCENTILE * (sorted.length - 1))];
+    }
+  }
+}
@@ -0,0 +1,801 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import projects.entity.AuditRecord;
+import projects.entity.Category;
+import projects.entity.CompactProject;
+import projects.entity.Material;
+import projects.entity.MaterialRequirement;
+import projects.entity.Project;
+import projects.entity.ProjectSummary;
+import projects.entity.Step;
+import projects.entity.TimeEntry;
+import projects.exception.DbException;
+import projects.exception.ProjectArchivedException;
+import projects.exception.ProjectConflictException;
+
+/**
+ * A {@link ProjectRepository} that keeps the project graphs in memory, for tests and for
+ * deployments without a database. It follows the same rules as {@link ProjectDao}: generated IDs,
+ * optimistic versions, cascading deletes and name ordering.
+ *
+ * <p>
+ * All projects are held in one immutable snapshot. Readers take the current snapshot and never
+ * wait. A writer builds the changed project graph and a copy of the snapshot on the side and
+ * publishes both with a single volatile write, so a change is all-or-nothing and never seen half
+ * done, and a failed write leaves nothing behind. Writers are serialized; each write copies the
+ * project map, which suits the few thousand projects a test or an edge device holds. The caller's
+ * objects are only given their new IDs and versions after the snapshot is published, and the
+ * repository only ever hands out copies, so nothing a caller does to a returned project changes
+ * the stored one.
+ * </p>
+ *
+ * <p>
+ * Like the category table, the categories are reference data: a project can only link categories
+ * registered with {@link #addCategory(Category)}.
+ * </p>
+ *
+ * <p>
+ * Archived projects are held in a second snapshot and, as in the archive tables, are left out of
+ * everything but fetches by ID, ID pages, clones and deletes. Logged time is added to the projects'
+ * actual hours; the time entries themselves are not kept, because nothing reads them back.
+ * </p>
+ */
+public class InMemoryProjectRepository implements ProjectRepository {
+  //@formatter:off
+  private static final List<String> PROJECT_COLUMNS = List.of(
+      "project_id", "project_name", "estimated_hours", "actual_hours", "difficulty", "notes",
+      "version");
+  //@formatter:on
+
+  private static final Comparator<Project> PROJECT_NAME_ORDER = Comparator
+      .comparing(Project::getProjectName, String.CASE_INSENSITIVE_ORDER)
+      .thenComparing(Project::getProjectName);
+
+  private static final Comparator<Step> STEP_ORDER =
+      Comparator.comparing(Step::getStepOrder, Comparator.nullsLast(Comparator.naturalOrder()));
+
+  private final Map<Integer, Category> categories = new ConcurrentHashMap<>();
+
+  /* The stored graphs by project ID. Replaced, never modified. */
+  private volatile NavigableMap<Integer, Project> snapshot =
+      Collections.unmodifiableNavigableMap(new TreeMap<>());
+
+  /* The archived graphs by project ID. Replaced, never modified. */
+  private volatile NavigableMap<Integer, Project> archive =
+      Collections.unmodifiableNavigableMap(new TreeMap<>());
+
+  /* When each live project last changed, for the archive policy. Writers only. */
+  private final Map<Integer, Instant> lastChanged = new HashMap<>();
+
+  private int lastProjectId;
+  private int lastMaterialId;
+  private int lastStepId;
+
+  /**
+   * Registers a category that projects may link to, or renames a registered one.
+   * @param category The category with its ID and name
+   */
+  public void addCategory(Category category) {
+    categories.put(category.getCategoryId(), copyCategory(category));
+  }
+
+  /**
+   * @return The registered categories in ID order
+   */
+  public List<Category> fetchAllCategories() {
+    List<Category> all = new ArrayList<>();
+    new TreeMap<>(categories).values().forEach(category -> all.add(copyCategory(category)));
+    return all;
+  }
+
+  /**
+   * @return The number of live projects
+   */
+  public int size() {
+    return snapshot.size();
+  }
+
+  @Override
+  public synchronized Project insertProject(Project project) {
+    Project stored = copyDetails(project);
+    stored.setProjectId(lastProjectId + 1);
+    stored.setVersion(0);
+
+    publish(stored);
+    lastProjectId++;
+
+    project.setProjectId(stored.getProjectId());
+    project.setVersion(0);
+    return project;
+  }
+
+  @Override
+  public List<Project> fetchAllProjects() {
+    return fetchAllProjects(PROJECT_COLUMNS);
+  }
+
+  @Override
+  public List<Project> fetchAllProjects(Collection<String> columns) {
+    Set<String> selected = new HashSet<>();
+
+    for(String column : columns) {
+      if(!PROJECT_COLUMNS.contains(column)) {
+        throw new DbException("Unknown project column: " + column);
+      }
+
+      selected.add(column);
+    }
+
+    List<Project> projects = new ArrayList<>();
+
+    for(Project stored : snapshot.values()) {
+      Project project = new Project();
+      project.setProjectId(stored.getProjectId());
+      project.setProjectName(stored.getProjectName());
+      project.setNotes(stored.getNotes());
+
+      if(selected.contains("estimated_hours")) {
+        project.setEstimatedHours(stored.getEstimatedHours());
+      }
+
+      if(selected.contains("actual_hours")) {
+        project.setActualHours(stored.getActualHours());
+      }
+
+      if(selected.contains("difficulty")) {
+        project.setDifficulty(stored.getDifficulty());
+      }
+
+      if(selected.contains("version")) {
+        project.setVersion(stored.getVersion());
+      }
+
+      projects.add(project);
+    }
+
+    projects.sort(PROJECT_NAME_ORDER);
+    return projects;
+  }
+
+  /**
+   * Fetches a live project, or an archived one if there is no live project with the ID.
+   */
+  @Override
+  public Optional<Project> fetchProjectById(Integer projectId) {
+    return Optional.ofNullable(snapshot.get(projectId))
+        .or(() -> Optional.ofNullable(archive.get(projectId))).map(this::copyGraph);
+  }
+
+  /**
+   * Same as {@link #fetchProjectById(Integer)}; the text is already in memory.
+   */
+  @Override
+  public Optional<Project> fetchProjectById(Integer projectId, boolean lazyText) {
+    return fetchProjectById(projectId);
+  }
+
+  @Override
+  public Optional<CompactProject> fetchCompactProjectById(Integer projectId) {
+    return Optional.ofNullable(snapshot.get(projectId)).map(CompactProject::of);
+  }
+
+  @Override
+  public List<MaterialRequirement> fetchMaterialRequirements(Collection<Integer> projectIds) {
+    Map<Integer, Project> projects = snapshot;
+    Map<String, MaterialRequirement> totals = new TreeMap<>();
+
+    for(Integer projectId : new LinkedHashSet<>(projectIds)) {
+      Project project = projects.get(projectId);
+
+      if(Objects.isNull(project)) {
+        continue;
+      }
+
+      Set<String> counted = new HashSet<>();
+
+      for(Material material : project.getMaterials()) {
+        MaterialRequirement total = totals.computeIfAbsent(material.getMaterialName(), name -> {
+          MaterialRequirement requirement = new MaterialRequirement();
+          requirement.setMaterialName(name);
+          return requirement;
+        });
+
+        MaterialRequirement row = new MaterialRequirement();
+
+        // Like SUM(), nulls don't count
+        if(Objects.nonNull(material.getNumRequired())) {
+          row.setNumRequired(material.getNumRequired());
+        }
+
+        if(Objects.nonNull(material.getCost())) {
+          row.setCost(material.getCost());
+        }
+
+        row.setProjectCount(counted.add(material.getMaterialName()) ? 1 : 0);
+        total.add(row);
+      }
+    }
+
+    return new ArrayList<>(totals.values());
+  }
+
+  /**
+   * @return 1. All projects are in one partition.
+   */
+  @Override
+  public int getShardCount() {
+    return 1;
+  }
+
+  /**
+   * @return 0. All projects are in one partition.
+   */
+  @Override
+  public int shardFor(Integer projectId) {
+    return 0;
+  }
+
+  @Override
+  public List<Integer> fetchProjectIdPage(int shard, int afterProjectId, int limit) {
+    if(shard != 0) {
+      throw new DbException("Unknown shard: " + shard);
+    }
+
+    // A project is live or archived, never both once a writer is done with it
+    TreeSet<Integer> candidates = new TreeSet<>();
+    firstKeys(snapshot, afterProjectId, limit, candidates);
+    firstKeys(archive, afterProjectId, limit, candidates);
+
+    List<Integer> page = new ArrayList<>();
+
+    for(Integer projectId : candidates) {
+      if(page.size() == limit) {
+        break;
+      }
+
+      page.add(projectId);
+    }
+
+    return page;
+  }
+
+  @Override
+  public int fetchMaxProjectId(int shard) {
+    if(shard != 0) {
+      throw new DbException("Unknown shard: " + shard);
+    }
+
+    NavigableMap<Integer, Project> projects = snapshot;
+    return projects.isEmpty() ? 0 : projects.lastKey();
+  }
+
+  @Override
+  public List<ProjectSummary> fetchProjectSummaries(int shard, int afterProjectId,
+      int toProjectId) {
+    if(shard != 0) {
+      throw new DbException("Unknown shard: " + shard);
+    }
+
+    List<ProjectSummary> summaries = new ArrayList<>();
+
+    if(toProjectId <= afterProjectId) {
+      return summaries;
+    }
+
+    for(Project stored : snapshot.subMap(afterProjectId, false, toProjectId, true).values()) {
+      ProjectSummary summary = new ProjectSummary();
+      summary.setProjectId(stored.getProjectId());
+      summary.setDifficulty(stored.getDifficulty());
+      summary.setEstimatedHours(stored.getEstimatedHours());
+      summary.setActualHours(stored.getActualHours());
+
+      for(Material material : stored.getMaterials()) {
+        if(Objects.nonNull(material.getCost())) {
+          summary.setMaterialCost(summary.getMaterialCost().add(material.getCost()));
+        }
+      }
+
+      summary.getCategories().addAll(stored.getCategories());
+      summaries.add(summary);
+    }
+
+    return summaries;
+  }
+
+  @Override
+  public List<Project> fetchProjectPage(int shard, int afterProjectId, int limit) {
+    if(shard != 0) {
+      throw new DbException("Unknown shard: " + shard);
+    }
+
+    List<Project> page = new ArrayList<>();
+
+    for(Project stored : snapshot.tailMap(afterProjectId, false).values()) {
+      if(page.size() == limit) {
+        break;
+      }
+
+      Project project = copyGraph(stored);
+      project.getCategories().clear();
+      page.add(project);
+    }
+
+    return page;
+  }
+
+  @Override
+  public synchronized boolean modifyProjectDetails(Project project) {
+    Project current = snapshot.get(project.getProjectId());
+
+    if(Objects.isNull(current)) {
+      refuseIfArchived(project.getProjectId());
+      return false;
+    }
+
+    if(!current.getVersion().equals(project.getVersion())) {
+      throw new ProjectConflictException(copyGraph(current));
+    }
+
+    Project stored = copyDetails(project);
+    stored.setProjectId(current.getProjectId());
+    stored.setVersion(current.getVersion() + 1);
+    stored.getMaterials().addAll(current.getMaterials());
+    stored.getSteps().addAll(current.getSteps());
+    stored.getCategories().addAll(current.getCategories());
+
+    publish(stored);
+    project.setVersion(stored.getVersion());
+    return true;
+  }
+
+  /**
+   * Saves a whole project graph. The stored graph is compared with the incoming one as in
+   * {@link ProjectDao#saveProject(Project)}: materials and steps without a stored ID get new IDs,
+   * changed ones get a new version, and the project version is advanced if anything changed.
+   * @throws DbException Thrown if a linked category is not registered. Nothing is saved.
+   */
+  @Override
+  public synchronized Optional<List<AuditRecord>> saveProject(Project project) {
+    boolean isNew = Objects.isNull(project.getProjectId());
+    Project current;
+
+    if(isNew) {
+      current = new Project();
+      current.setProjectId(lastProjectId + 1);
+      current.setVersion(0);
+    }
+    else {
+      current = snapshot.get(project.getProjectId());
+
+      if(Objects.isNull(current)) {
+        refuseIfArchived(project.getProjectId());
+        return Optional.empty();
+      }
+
+      if(!current.getVersion().equals(project.getVersion())) {
+        throw new ProjectConflictException(copyGraph(current));
+      }
+    }
+
+    Project stored = copyDetails(project);
+    stored.setProjectId(current.getProjectId());
+    stored.setVersion(current.getVersion());
+
+    // The caller's children get their new IDs and versions only once the graph is published
+    Map<Material, Material> savedMaterials = new HashMap<>();
+    Map<Step, Step> savedSteps = new HashMap<>();
+    int materialId = lastMaterialId;
+    int stepId = lastStepId;
+    boolean changed = false;
+
+    Map<Integer, Material> storedMaterials = new HashMap<>();
+    current.getMaterials().forEach(material -> storedMaterials.put(material.getMaterialId(),
+        material));
+
+    for(Material material : project.getMaterials()) {
+      required(material.getMaterialName(), "material_name");
+      Material old = storedMaterials.remove(material.getMaterialId());
+      Material saved = copyMaterial(material);
+      saved.setProjectId(stored.getProjectId());
+
+      if(Objects.isNull(old)) {
+        saved.setMaterialId(++materialId);
+        saved.setVersion(0);
+        changed = true;
+      }
+      else if(!Objects.equals(material.getMaterialName(), old.getMaterialName())
+          || !Objects.equals(material.getNumRequired(), old.getNumRequired())
+          || !sameDecimal(material.getCost(), old.getCost())) {
+        saved.setVersion(old.getVersion() + 1);
+        changed = true;
+      }
+      else {
+        saved = old;
+      }
+
+      stored.getMaterials().add(saved);
+      savedMaterials.put(material, saved);
+    }
+
+    Map<Integer, Step> storedSteps = new HashMap<>();
+    current.getSteps().forEach(step -> storedSteps.put(step.getStepId(), step));
+    int position = 0;
+
+    for(Step step : project.getSteps()) {
+      position++;
+      required(step.getStepText(), "step_text");
+      Step old = storedSteps.remove(step.getStepId());
+      Step saved = copyStep(step);
+      saved.setProjectId(stored.getProjectId());
+
+      if(Objects.isNull(saved.getStepOrder())) {
+        saved.setStepOrder(position);
+      }
+
+      if(Objects.isNull(old)) {
+        saved.setStepId(++stepId);
+        saved.setVersion(0);
+        changed = true;
+      }
+      else if(!Objects.equals(saved.getStepText(), old.getStepText())
+          || !Objects.equals(saved.getStepOrder(), old.getStepOrder())) {
+        saved.setVersion(old.getVersion() + 1);
+        changed = true;
+      }
+      else {
+        saved = old;
+      }
+
+      stored.getSteps().add(saved);
+      savedSteps.put(step, saved);
+    }
+
+    stored.getSteps().sort(STEP_ORDER);
+
+    Set<Integer> linked = new HashSet<>();
+    current.getCategories().forEach(category -> linked.add(category.getCategoryId()));
+
+    for(Category category : project.getCategories()) {
+      Category registered = categories.get(category.getCategoryId());
+
+      if(Objects.isNull(registered)) {
+        throw new DbException("Unknown category ID=" + category.getCategoryId());
+      }
+
+      if(stored.getCategories().stream()
+          .noneMatch(link -> link.getCategoryId().equals(registered.getCategoryId()))) {
+        stored.getCategories().add(registered);
+        changed |= !linked.remove(registered.getCategoryId());
+      }
+    }
+
+    changed |= !storedMaterials.isEmpty() || !storedSteps.isEmpty() || !linked.isEmpty();
+
+    if(!isNew && (changed || detailsChanged(project, current))) {
+      stored.setVersion(current.getVersion() + 1);
+    }
+
+    publish(stored);
+    lastMaterialId = materialId;
+    lastStepId = stepId;
+
+    if(isNew) {
+      lastProjectId++;
+    }
+
+    project.setProjectId(stored.getProjectId());
+    project.setVersion(stored.getVersion());
+
+    savedMaterials.forEach((material, saved) -> {
+      material.setProjectId(saved.getProjectId());
+      material.setMaterialId(saved.getMaterialId());
+      material.setVersion(saved.getVersion());
+    });
+
+    savedSteps.forEach((step, saved) -> {
+      step.setProjectId(saved.getProjectId());
+      step.setStepId(saved.getStepId());
+      step.setStepOrder(saved.getStepOrder());
+      step.setVersion(saved.getVersion());
+    });
+
+    return Optional.of(GraphChanges.describe(stored, current, isNew));
+  }
+
+  /**
+   * Copies a live or archived project. The copy is live.
+   */
+  @Override
+  public synchronized Optional<Integer> cloneProject(Integer projectId, String projectName) {
+    Project original = snapshot.containsKey(projectId) ? snapshot.get(projectId)
+        : archive.get(projectId);
+
+    if(Objects.isNull(original)) {
+      return Optional.empty();
+    }
+
+    Project template = copyDetails(original);
+    template.setProjectName(projectName);
+    template.setActualHours(null);
+    template.getCategories().addAll(original.getCategories());
+
+    for(Material material : original.getMaterials()) {
+      Material copy = copyMaterial(material);
+      copy.setMaterialId(null);
+      template.getMaterials().add(copy);
+    }
+
+    for(Step step : original.getSteps()) {
+      Step copy = copyStep(step);
+      copy.setStepId(null);
+      template.getSteps().add(copy);
+    }
+
+    saveProject(template);
+    return Optional.of(template.getProjectId());
+  }
+
+  /**
+   * Deletes a live or archived project. Its materials, steps and category links are part of the
+   * stored graph and go with it.
+   */
+  @Override
+  public synchronized boolean deleteProject(Integer projectId) {
+    if(snapshot.containsKey(projectId)) {
+      snapshot = without(snapshot, projectId);
+      lastChanged.remove(projectId);
+      return true;
+    }
+
+    if(archive.containsKey(projectId)) {
+      archive = without(archive, projectId);
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Adds the hours to the projects' actual hours and advances their versions, all in one
+   * published snapshot.
+   * @throws DbException Thrown if a project is not live. Nothing is changed.
+   */
+  @Override
+  public synchronized Map<Integer, BigDecimal> insertTimeEntries(int shard,
+      List<TimeEntry> entries) {
+    if(shard != 0) {
+      throw new DbException("Unknown shard: " + shard);
+    }
+
+    Map<Integer, BigDecimal> hoursByProject = new TreeMap<>();
+
+    for(TimeEntry entry : entries) {
+      hoursByProject.merge(entry.getProjectId(), entry.getHours(), BigDecimal::add);
+    }
+
+    List<Project> updated = new ArrayList<>();
+
+    for(Map.Entry<Integer, BigDecimal> projectHours : hoursByProject.entrySet()) {
+      Integer projectId = projectHours.getKey();
+      Project current = snapshot.get(projectId);
+
+      if(Objects.isNull(current)) {
+        // The same SQL state the database reports, so that callers can tell a bad entry apart
+        throw new DbException(new SQLIntegrityConstraintViolationException("Project with ID="
+            + projectId + (archive.containsKey(projectId) ? " is archived." : " does not exist."),
+            "23000"));
+      }
+
+      Project stored = copyDetails(current);
+      stored.setProjectId(projectId);
+      stored.setVersion(current.getVersion() + 1);
+      stored.setActualHours((Objects.isNull(current.getActualHours()) ? BigDecimal.ZERO
+          : current.getActualHours()).add(projectHours.getValue()));
+      stored.getMaterials().addAll(current.getMaterials());
+      stored.getSteps().addAll(current.getSteps());
+      stored.getCategories().addAll(current.getCategories());
+      updated.add(stored);
+    }
+
+    publish(updated);
+    return hoursByProject;
+  }
+
+  /**
+   * Moves the qualifying projects to the archive. A project is published to the archive before it
+   * leaves the live snapshot, so a concurrent fetch by ID always finds it.
+   */
+  @Override
+  public synchronized int archiveProjects(ArchivePolicy policy) {
+    Instant now = Instant.now();
+    TreeMap<Integer, Project> live = new TreeMap<>(snapshot);
+    TreeMap<Integer, Project> archived = new TreeMap<>(archive);
+    int count = 0;
+
+    for(Project project : snapshot.values()) {
+      if(policy.isMetBy(project, lastChanged.get(project.getProjectId()), now)) {
+        live.remove(project.getProjectId());
+        archived.put(project.getProjectId(), project);
+        lastChanged.remove(project.getProjectId());
+        count++;
+      }
+    }
+
+    archive = Collections.unmodifiableNavigableMap(archived);
+    snapshot = Collections.unmodifiableNavigableMap(live);
+    return count;
+  }
+
+  @Override
+  public synchronized boolean restoreProject(Integer projectId) {
+    Project project = archive.get(projectId);
+
+    if(Objects.isNull(project)) {
+      return false;
+    }
+
+    publish(project);
+    archive = without(archive, projectId);
+    return true;
+  }
+
+  /**
+   * Makes a live project look unchanged since the given time, as setting its updated_at column
+   * would in the database. For tests of the archive policy.
+   * @param projectId The project ID
+   * @param changedAt The time of the last change
+   */
+  synchronized void setLastChanged(Integer projectId, Instant changedAt) {
+    if(snapshot.containsKey(projectId)) {
+      lastChanged.put(projectId, changedAt);
+    }
+  }
+
+  /**
+   * Publishes a snapshot in which the given graph replaces the stored one with the same ID. Only
+   * called by writers, which hold the lock.
+   */
+  private void publish(Project stored) {
+    publish(List.of(stored));
+  }
+
+  /**
+   * Publishes a snapshot in which each of the given graphs replaces the stored one with the same
+   * ID. Only called by writers, which hold the lock.
+   */
+  private void publish(List<Project> stored) {
+    TreeMap<Integer, Project> next = new TreeMap<>(snapshot);
+    Instant now = Instant.now();
+
+    for(Project project : stored) {
+      next.put(project.getProjectId(), project);
+      lastChanged.put(project.getProjectId(), now);
+    }
+
+    snapshot = Collections.unmodifiableNavigableMap(next);
+  }
+
+  private NavigableMap<Integer, Project> without(NavigableMap<Integer, Project> projects,
+      Integer projectId) {
+    TreeMap<Integer, Project> next = new TreeMap<>(projects);
+    next.remove(projectId);
+    return Collections.unmodifiableNavigableMap(next);
+  }
+
+  /**
+   * Adds the first IDs above afterProjectId, up to the limit, to the set.
+   */
+  private void firstKeys(NavigableMap<Integer, Project> projects, int afterProjectId, int limit,
+      Set<Integer> ids) {
+    int added = 0;
+
+    for(Integer projectId : projects.tailMap(afterProjectId, false).keySet()) {
+      if(added++ == limit) {
+        break;
+      }
+
+      ids.add(projectId);
+    }
+  }
+
+  /**
+   * Explains a change to a missing project that is archived, as the database implementation does.
+   */
+  private void refuseIfArchived(Integer projectId) {
+    if(archive.containsKey(projectId)) {
+      throw new ProjectArchivedException(projectId);
+    }
+  }
+
+  /**
+   * Rejects a missing value for a NOT NULL column, as the database would.
+   */
+  private void required(Object value, String column) {
+    if(Objects.isNull(value)) {
+      throw new DbException("Column '" + column + "' cannot be null");
+    }
+  }
+
+  private boolean detailsChanged(Project project, Project stored) {
+    return !Objects.equals(project.getProjectName(), stored.getProjectName())
+        || !sameDecimal(project.getEstimatedHours(), stored.getEstimatedHours())
+        || !sameDecimal(project.getActualHours(), stored.getActualHours())
+        || !Objects.equals(project.getDifficulty(), stored.getDifficulty())
+        || !Objects.equals(project.getNotes(), stored.getNotes());
+  }
+
+  private boolean sameDecimal(BigDecimal a, BigDecimal b) {
+    return Objects.isNull(a) ? Objects.isNull(b) : Objects.nonNull(b) && a.compareTo(b) == 0;
+  }
+
+  /**
+   * Copies a project's own fields. The ID and version are left to the caller.
+   */
+  private Project copyDetails(Project project) {
+    required(project.getProjectName(), "project_name");
+    Project copy = new Project();
+    copy.setProjectName(project.getProjectName());
+    copy.setEstimatedHours(project.getEstimatedHours());
+    copy.setActualHours(project.getActualHours());
+    copy.setDifficulty(project.getDifficulty());
+    copy.setNotes(project.getNotes());
+    return copy;
+  }
+
+  private Project copyGraph(Project stored) {
+    Project copy = copyDetails(stored);
+    copy.setProjectId(stored.getProjectId());
+    copy.setVersion(stored.getVersion());
+    stored.getMaterials().forEach(material -> copy.getMaterials().add(copyMaterial(material)));
+    stored.getSteps().forEach(step -> copy.getSteps().add(copyStep(step)));
+    stored.getCategories().forEach(category -> copy.getCategories().add(copyCategory(category)));
+    return copy;
+  }
+
+  private Material copyMaterial(Material material) {
+    Material copy = new Material();
+    copy.setMaterialId(material.getMaterialId());
+    copy.setProjectId(material.getProjectId());
+    copy.setMaterialName(material.getMaterialName());
+    copy.setNumRequired(material.getNumRequired());
+    copy.setCost(material.getCost());
+    copy.setVersion(material.getVersion());
+    return copy;
+  }
+
+  private Step copyStep(Step step) {
+    Step copy = new Step();
+    copy.setStepId(step.getStepId());
+    copy.setProjectId(step.getProjectId());
+    copy.setStepText(step.getStepText());
+    copy.setStepOrder(step.getStepOrder());
+    copy.setVersion(step.getVersion());
+    return copy;
+  }
+
+  private Category copyCategory(Category category) {
+    Category copy = new Category();
+    copy.setCategoryId(category.getCategoryId());
+    copy.setCategoryName(category.getCategoryName());
+    return copy;
+  }
+}
@@ -0,0 +1,104 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ * Loads a large TEXT column for a group of rows the first time any one of them is read. The rows
+ * fetched together, such as the projects of one shard in a listing, share a loader, so reading the
+ * column for all of them costs one extra query instead of one per row, and nothing at all if the
+ * column is never read.
+ */
+class LazyTextLoader extends DaoBase {
+  /* Keeps the IN list well below the server's placeholder limit. */
+  private static final int MAX_IDS_PER_QUERY = 1000;
+
+  private final int shard;
+  private final String table;
+  private final String idColumn;
+  private final String textColumn;
+  private final List<Integer> ids = new ArrayList<>();
+
+  private Map<Integer, String> texts;
+
+  /**
+   * @param shard The shard that holds the rows
+   * @param table The table
+   * @param idColumn The primary key column
+   * @param textColumn The column to load lazily
+   */
+  LazyTextLoader(int shard, String table, String idColumn, String textColumn) {
+    this.shard = shard;
+    this.table = table;
+    this.idColumn = idColumn;
+    this.textColumn = textColumn;
+  }
+
+  /**
+   * Adds a row to the group. All rows must be added before the first value is read.
+   * @param id The row's primary key
+   * @return A supplier that returns the row's text, loading the whole group on first use
+   */
+  Supplier<String> register(Integer id) {
+    ids.add(id);
+    return () -> get(id);
+  }
+
+  private synchronized String get(Integer id) {
+    if(Objects.isNull(texts)) {
+      texts = load();
+    }
+
+    return texts.get(id);
+  }
+
+  private Map<Integer, String> load() {
+    if(ids.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<Integer, String> loaded = new HashMap<>();
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      for(int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+        List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_QUERY));
+        String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+
+        // @formatter:off
+        String sql = ""
+            + "SELECT " + idColumn + ", " + textColumn + " "
+            + "FROM " + table + " "
+            + "WHERE " + idColumn + " IN (" + placeholders + ")";
+        // @formatter:on
+
+        try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+          for(int index = 0; index < chunk.size(); index++) {
+            setParameter(stmt, index + 1, chunk.get(index), Integer.class);
+          }
+
+          try(ResultSet rs = stmt.executeQuery()) {
+            while(rs.next()) {
+              loaded.put(rs.getInt(1), rs.getString(2));
+            }
+          }
+        }
+      }
+
+      return loaded;
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ * Maps material names to their material_catalog IDs. Every shard has its own catalog, so the same
+ * name can have different IDs on different shards.
+ *
+ * <p>
+ * Catalog entries are never changed or removed, so a name's ID never goes stale and is cached per
+ * shard after the first lookup. Unknown names are added in their own autocommit statements rather
+ * than in the caller's transaction: if the caller rolls back, the new entry stays and the cached ID
+ * remains valid.
+ * </p>
+ */
+class MaterialCatalog extends DaoBase {
+  private static final String MATERIAL_CATALOG_TABLE = "material_catalog";
+  private static final int MAX_CACHED_NAMES = 100_000;
+  private static final int NAMES_PER_QUERY = 1000;
+
+  private final Map<Integer, Map<String, Integer>> idsByShard = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the catalog IDs of material names on a shard, adding names that aren't in the catalog
+   * yet.
+   * @param shard The shard number
+   * @param names The material names. Null names are ignored.
+   * @return The catalog ID of each name
+   * @throws DbException Thrown if an error occurs.
+   */
+  Map<String, Integer> resolve(int shard, Collection<String> names) {
+    Map<String, Integer> cache =
+        idsByShard.computeIfAbsent(shard, key -> new ConcurrentHashMap<>());
+    Map<String, Integer> ids = new HashMap<>();
+    Set<String> missing = new LinkedHashSet<>();
+
+    for(String name : names) {
+      if(Objects.nonNull(name)) {
+        Integer id = cache.get(name);
+
+        if(Objects.isNull(id)) {
+          missing.add(name);
+        }
+        else {
+          ids.put(name, id);
+        }
+      }
+    }
+
+    if(missing.isEmpty()) {
+      return ids;
+    }
+
+    // An occasional full reload is cheaper than tracking recency for what is almost always a hit
+    if(cache.size() + missing.size() > MAX_CACHED_NAMES) {
+      cache.clear();
+    }
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      List<String> pending = new ArrayList<>(missing);
+
+      for(int from = 0; from < pending.size(); from += NAMES_PER_QUERY) {
+        List<String> chunk =
+            pending.subList(from, Math.min(pending.size(), from + NAMES_PER_QUERY));
+
+        insertNames(conn, chunk);
+        Map<String, Integer> found = fetchIds(conn, chunk);
+
+        if(found.size() != chunk.size()) {
+          throw new DbException(
+              "Material names could not be added to the catalog on shard " + shard);
+        }
+
+        cache.putAll(found);
+        ids.putAll(found);
+      }
+
+      return ids;
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  /**
+   * Adds the names that aren't in the catalog yet. Names another session added in the meantime are
+   * skipped.
+   */
+  private void insertNames(Connection conn, List<String> names) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "INSERT IGNORE INTO " + MATERIAL_CATALOG_TABLE + " (material_name) VALUES "
+        + String.join(", ", Collections.nCopies(names.size(), "(?)"));
+    // @formatter:on
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      for(int index = 0; index < names.size(); index++) {
+        setParameter(stmt, index + 1, names.get(index), String.class);
+      }
+
+      stmt.executeUpdate();
+    }
+  }
+
+  private Map<String, Integer> fetchIds(Connection conn, List<String> names) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "SELECT material_catalog_id, material_name FROM " + MATERIAL_CATALOG_TABLE + " "
+        + "WHERE material_name IN (" + String.join(", ", Collections.nCopies(names.size(), "?"))
+        + ")";
+    // @formatter:on
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      for(int index = 0; index < names.size(); index++) {
+        setParameter(stmt, index + 1, names.get(index), String.class);
+      }
+
+      try(ResultSet rs = stmt.executeQuery()) {
+        Map<String, Integer> ids = new HashMap<>();
+
+        while(rs.next()) {
+          ids.put(rs.getString("material_name"), rs.getInt("material_catalog_id"));
+        }
+
+        return ids;
+      }
+    }
+  }
+}
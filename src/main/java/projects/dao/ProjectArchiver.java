@@ -0,0 +1,239 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ * Moves cold project graphs out of the live tables into archive tables on the same shard, and back.
+ * Each archive table has the same columns in the same order as its live table, so rows are copied
+ * with {@code INSERT ... SELECT *}. Listings only read the live tables and so never see archived
+ * projects, while {@link ProjectDao#fetchProjectById(Integer)} falls back to the archive.
+ *
+ * <p>
+ * Every project is moved in its own transaction, so an archive run never holds more than one
+ * project graph's locks at a time.
+ * </p>
+ */
+public class ProjectArchiver extends DaoBase {
+  private static final String PROJECT_TABLE = "project";
+
+  //@formatter:off
+  private static final List<String> CHILD_TABLES = List.of(
+      "material", "step", "project_category", "time_entry");
+  //@formatter:on
+
+  private static final int PROJECTS_PER_SCAN = 100;
+
+  /**
+   * @param table A live table name
+   * @return The name of its archive table
+   */
+  static String archiveOf(String table) {
+    return table + "_archive";
+  }
+
+  /**
+   * Archives every project on every shard that meets the policy.
+   * @param policy The archive policy
+   * @return The number of projects archived
+   * @throws DbException Thrown if an error occurs. Projects archived before the error stay
+   *         archived.
+   */
+  public int archive(ArchivePolicy policy) {
+    int archived = 0;
+
+    for(int shard = 0; shard < DbConnection.getShardMap().getShardCount(); shard++) {
+      archived += archiveShard(shard, policy);
+    }
+
+    return archived;
+  }
+
+  /**
+   * Moves an archived project back into the live tables.
+   * @param projectId The project ID
+   * @return true if the project was restored, false if it is not archived.
+   * @throws DbException Thrown if an error occurs.
+   */
+  public boolean restore(Integer projectId) {
+    // @formatter:off
+    String sql = ""
+        + "SELECT project_id FROM " + archiveOf(PROJECT_TABLE) + " "
+        + "WHERE project_id = ? "
+        + "FOR UPDATE";
+    // @formatter:on
+
+    int shard = DbConnection.getShardMap().shardFor(projectId);
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      startTransaction(conn);
+
+      try {
+        boolean found;
+
+        try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+          setParameter(stmt, 1, projectId, Integer.class);
+
+          try(ResultSet rs = stmt.executeQuery()) {
+            found = rs.next();
+          }
+        }
+
+        if(found) {
+          move(conn, projectId, ProjectArchiver::archiveOf, UnaryOperator.identity());
+          touch(conn, projectId);
+        }
+
+        commitTransaction(conn);
+        return found;
+
+      } catch(SQLException e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  private int archiveShard(int shard, ArchivePolicy policy) {
+    // @formatter:off
+    String sql = ""
+        + "SELECT project_id FROM " + PROJECT_TABLE + " "
+        + "WHERE " + policy.getCondition() + " "
+        + "LIMIT " + PROJECTS_PER_SCAN;
+    // @formatter:on
+
+    int archived = 0;
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      List<Integer> projectIds;
+
+      do {
+        projectIds = new ArrayList<>();
+
+        try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+          setParameter(stmt, 1, policy.getIdleDays(), Integer.class);
+
+          try(ResultSet rs = stmt.executeQuery()) {
+            while(rs.next()) {
+              projectIds.add(rs.getInt(1));
+            }
+          }
+        }
+
+        for(Integer projectId : projectIds) {
+          if(archiveProject(conn, projectId, policy)) {
+            archived++;
+          }
+        }
+      } while(projectIds.size() == PROJECTS_PER_SCAN);
+
+      return archived;
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  /**
+   * Archives one project if it still meets the policy once its row is locked. A project that was
+   * changed since the scan is left alone.
+   */
+  private boolean archiveProject(Connection conn, Integer projectId, ArchivePolicy policy)
+      throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "SELECT project_id FROM " + PROJECT_TABLE + " "
+        + "WHERE project_id = ? AND " + policy.getCondition() + " "
+        + "FOR UPDATE";
+    // @formatter:on
+
+    startTransaction(conn);
+
+    try {
+      boolean eligible;
+
+      try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+        setParameter(stmt, 1, projectId, Integer.class);
+        setParameter(stmt, 2, policy.getIdleDays(), Integer.class);
+
+        try(ResultSet rs = stmt.executeQuery()) {
+          eligible = rs.next();
+        }
+      }
+
+      if(eligible) {
+        move(conn, projectId, UnaryOperator.identity(), ProjectArchiver::archiveOf);
+      }
+
+      commitTransaction(conn);
+      return eligible;
+
+    } catch(SQLException e) {
+      rollbackTransaction(conn);
+      throw e;
+    }
+  }
+
+  /**
+   * Copies a project graph from one set of tables to the other and deletes the source rows. The
+   * project row is copied first and deleted last so that the foreign keys hold throughout.
+   * @param source Maps a live table name to the table to copy from
+   * @param target Maps a live table name to the table to copy to
+   */
+  private void move(Connection conn, Integer projectId, UnaryOperator<String> source,
+      UnaryOperator<String> target) throws SQLException {
+    copy(conn, projectId, source.apply(PROJECT_TABLE), target.apply(PROJECT_TABLE));
+
+    for(String table : CHILD_TABLES) {
+      copy(conn, projectId, source.apply(table), target.apply(table));
+    }
+
+    for(String table : CHILD_TABLES) {
+      delete(conn, projectId, source.apply(table));
+    }
+
+    delete(conn, projectId, source.apply(PROJECT_TABLE));
+  }
+
+  private void copy(Connection conn, Integer projectId, String from, String to)
+      throws SQLException {
+    String sql = "INSERT INTO " + to + " SELECT * FROM " + from + " WHERE project_id = ?";
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      setParameter(stmt, 1, projectId, Integer.class);
+      stmt.executeUpdate();
+    }
+  }
+
+  /**
+   * Marks a restored project as just changed so that the next archive run doesn't move it straight
+   * back.
+   */
+  private void touch(Connection conn, Integer projectId) throws SQLException {
+    String sql = "UPDATE " + PROJECT_TABLE + " SET updated_at = NOW() WHERE project_id = ?";
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      setParameter(stmt, 1, projectId, Integer.class);
+      stmt.executeUpdate();
+    }
+  }
+
+  private void delete(Connection conn, Integer projectId, String table) throws SQLException {
+    String sql = "DELETE FROM " + table + " WHERE project_id = ?";
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      setParameter(stmt, 1, projectId, Integer.class);
+      stmt.executeUpdate();
+    }
+  }
+}
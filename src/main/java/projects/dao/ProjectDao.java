@@ -5,16 +5,41 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import projects.entity.AuditRecord;
 import projects.entity.Category;
+import projects.entity.CompactMaterial;
+import projects.entity.CompactProject;
+import projects.entity.CompactStep;
 import projects.entity.Material;
+import projects.entity.MaterialRequirement;
 import projects.entity.Project;
+import projects.entity.ProjectSummary;
 import projects.entity.Step;
+import projects.entity.TimeEntry;
 import projects.exception.DbException;
+import projects.exception.ProjectArchivedException;
+import projects.exception.ProjectConflictException;
 import provided.util.DaoBase;
 
 /**
@@ -23,51 +48,121 @@ import provided.util.DaoBase;
  *
  */
 @SuppressWarnings("unused")
-public class ProjectDao extends DaoBase {
+public class ProjectDao extends DaoBase implements ProjectRepository {
 
   private static final String CATEGORY_TABLE = "category";
+  private static final String MATERIAL_CATALOG_TABLE = "material_catalog";
   private static final String MATERIAL_TABLE = "material";
   private static final String PROJECT_TABLE = "project";
   private static final String PROJECT_CATEGORY_TABLE = "project_category";
   private static final String STEP_TABLE = "step";
   
+  /* The project columns a projection may select. */
+  //@formatter:off
+  private static final List<String> PROJECT_COLUMNS = List.of(
+      "project_id", "project_name", "estimated_hours", "actual_hours", "difficulty", "notes",
+      "version");
+  //@formatter:on
+  
+  /* Every project column except the notes TEXT, which is loaded on first access instead. */
+  private static final List<String> LISTING_COLUMNS = List.of(
+      "project_id", "project_name", "estimated_hours", "actual_hours", "difficulty", "version");
+  
+  private static final String STEP_LISTING_COLUMNS = "step_id, project_id, step_order, version";
+  
+  private static final int IDS_PER_QUERY = 1000;
+  
+  /*
+   * Approximates the case-insensitive collation MySQL uses for ORDER BY project_name, so that the
+   * merged shard results come out in the same order a single shard would return them.
+   */
+  private static final Comparator<Project> PROJECT_NAME_ORDER = Comparator
+      .comparing(Project::getProjectName, String.CASE_INSENSITIVE_ORDER)
+      .thenComparing(Project::getProjectName);
+  
+  /* Shared by every ProjectDao that isn't given its own. */
+  private static final CategoryCache SHARED_CATEGORY_CACHE = new CategoryCache();
+  
+  private static final MaterialCatalog SHARED_MATERIAL_CATALOG = new MaterialCatalog();
+  
+  private static final ProjectPurger PURGER = new ProjectPurger();
+  
+  private static final ProjectArchiver ARCHIVER = new ProjectArchiver();
+  
+  private static final TimeEntryDao TIME_ENTRIES = new TimeEntryDao();
+  
+  private static final HedgedRead HEDGED_READ = new HedgedRead();
+  
+  private static final AuditTrail AUDIT = AuditTrail.getDefault();
+  
+  private static final ExecutorService SCATTER_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "shard-query");
+    thread.setDaemon(true);
+    return thread;
+  });
+  
+  private final CategoryCache categoryCache;
+  
+  private final MaterialCatalog materialCatalog;
+  
+  /**
+   * Creates a DAO that shares the process-wide category cache and material catalog.
+   */
+  public ProjectDao() {
+    this(SHARED_CATEGORY_CACHE, SHARED_MATERIAL_CATALOG);
+  }
+  
+  /**
+   * Creates a DAO with its own caches, for a caller that recreates the tables the shared ones
+   * were loaded from.
+   * @param categoryCache Resolves category IDs
+   * @param materialCatalog Maps material names to catalog IDs
+   */
+  ProjectDao(CategoryCache categoryCache, MaterialCatalog materialCatalog) {
+    this.categoryCache = categoryCache;
+    this.materialCatalog = materialCatalog;
+  }
+  
+  /**
+   * Prepares for the first request in the background: preloads the entity mapping metadata and
+   * starts opening a database connection. Also starts the purger, which removes projects deleted
+   * in earlier runs.
+   */
+  public static void warmUp() {
+    preloadMappings(Project.class, Material.class, Step.class, Category.class,
+        CompactProject.class, CompactMaterial.class, CompactStep.class);
+    DbConnection.warmUp();
+    PURGER.start();
+  }
+
+  
   /**
    * A method that inserts a project into database.
    * @param project Project object
    * @return inserted project with the primary key.
    * @throws DbException Thrown if an error occurs inserting the row.
    */
+  @Override
   public Project insertProject(Project project) {
+    int shard = DbConnection.getShardMap().nextInsertShard();
+    List<AuditRecord> audit = new ArrayList<>();
     
-    // @formatter:off
-    String sql = ""
-        + "INSERT INTO " + PROJECT_TABLE + " "
-        + "(project_name, estimated_hours, actual_hours, difficulty, notes) "
-        + "VALUES "
-        + "(?, ?, ?, ?, ?)";
-    // @formatter:on
-    
-    try(Connection conn = DbConnection.getConnection()){
+    try(Connection conn = DbConnection.getConnection(shard)){
       // start transaction
       startTransaction(conn);
       
-      try(PreparedStatement stmt = conn.prepareStatement(sql)){
-        setParameter(stmt, 1, project.getProjectName(), String.class);
-        setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-        setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-        setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-        setParameter(stmt, 5, project.getNotes(), String.class);
+      try{
+        insertProjectRow(conn, project);
         
-        stmt.executeUpdate();
+        if(AUDIT.isCapturing()) {
+          audit.add(AuditRecord.insert(PROJECT_TABLE, project.getProjectId(),
+              project.getProjectId(), GraphChanges.projectValues(project)));
+          AUDIT.beforeCommit(conn, audit);
+        }
         
-        Integer projectId = getLastInsertId(conn, PROJECT_TABLE);
         // Commit transaction
         commitTransaction(conn);
         
-        project.setProjectId(projectId);
-        
-        return project;
-        
       }catch(SQLException e) {
         // Roll back transaction if SQL exception happens
          rollbackTransaction(conn);
@@ -77,25 +172,184 @@ public class ProjectDao extends DaoBase {
     }catch(SQLException e) {
       throw new DbException(e);
     }
+    
+    AUDIT.afterCommit(audit);
+    return project;
+  }
+
+  
+  /**
+   * Inserts the project row and sets the generated ID and initial version on the project. The
+   * caller is responsible for the transaction.
+   * @param conn Connection
+   * @param project Project object
+   * @throws SQLException
+   */
+  private void insertProjectRow(Connection conn, Project project) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "INSERT INTO " + PROJECT_TABLE + " "
+        + "(project_name, estimated_hours, actual_hours, difficulty, notes) "
+        + "VALUES "
+        + "(?, ?, ?, ?, ?)";
+    // @formatter:on
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, project.getProjectName(), String.class);
+      setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+      setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+      setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+      setParameter(stmt, 5, project.getNotes(), String.class);
+      
+      stmt.executeUpdate();
+    }
+    
+    project.setProjectId(getLastInsertId(conn, PROJECT_TABLE));
+    project.setVersion(0);
   }
 
   
   /**
-   * A method that fetches all projects from database.
-   * @return List of all projects
+   * A method that fetches all projects from database. The notes are not read with the list. They
+   * are loaded on first access, in one query per shard for all the listed projects.
+   * @return List of all projects sorted by project name
    */
+  @Override
   public List<Project> fetchAllProjects() {
-    String sql = "SELECT * FROM " + PROJECT_TABLE + " ORDER BY project_name";
+    return fetchAllProjects(LISTING_COLUMNS);
+  }
+
+  
+  /**
+   * A method that fetches all projects from database with only the given columns. The project ID
+   * and name are always read. The other fields stay null unless selected, except the notes, which
+   * are loaded on first access when not selected. With more than one shard, every shard is queried
+   * in parallel and the per-shard results, each already sorted by name, are merged.
+   * @param columns The project columns to read, for example "project_id" and "project_name"
+   * @return List of all projects sorted by project name
+   * @throws DbException Thrown if a column is not a project column.
+   */
+  @Override
+  public List<Project> fetchAllProjects(Collection<String> columns) {
+    Set<String> selected = new LinkedHashSet<>(List.of("project_id", "project_name"));
+    
+    for(String column : columns) {
+      if(!PROJECT_COLUMNS.contains(column)) {
+        throw new DbException("Unknown project column: " + column);
+      }
+      
+      selected.add(column);
+    }
+    
+    String selectList = String.join(", ", selected);
+    boolean lazyNotes = !selected.contains("notes");
+    ShardMap shardMap = DbConnection.getShardMap();
+    
+    if(shardMap.getShardCount() == 1) {
+      return fetchAllProjects(0, selectList, lazyNotes);
+    }
+    
+    List<Future<List<Project>>> futures = new ArrayList<>();
+    
+    for(int shard = 0; shard < shardMap.getShardCount(); shard++) {
+      int target = shard;
+      futures.add(SCATTER_EXECUTOR.submit(
+          Deadline.propagate(() -> fetchAllProjects(target, selectList, lazyNotes))));
+    }
+    
+    return mergeByProjectName(gather(futures));
+  }
+
+  
+  /**
+   * Waits for the per-shard results of a scatter query. If one shard fails, the others are
+   * cancelled.
+   * @param futures The per-shard queries
+   * @return The results, in shard order
+   * @throws DbException Thrown if a shard query failed.
+   */
+  private <T> List<T> gather(List<Future<T>> futures) {
+    List<T> results = new ArrayList<>();
+    
+    try {
+      for(Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DbException(e);
+    } catch(ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      throw e.getCause() instanceof DbException 
+          ? (DbException)e.getCause() : new DbException(e.getCause());
+    }
+    
+    return results;
+  }
+
+  
+  /**
+   * Merges lists of projects that are each sorted by name into a single sorted list.
+   * @param sortedLists The sorted lists
+   * @return The merged list
+   */
+  private List<Project> mergeByProjectName(List<List<Project>> sortedLists) {
+    int total = sortedLists.stream().mapToInt(List::size).sum();
+    List<Project> merged = new ArrayList<>(total);
+    PriorityQueue<PeekingIterator> heads = new PriorityQueue<>(
+        Comparator.comparing(PeekingIterator::peek, PROJECT_NAME_ORDER));
+    
+    for(List<Project> list : sortedLists) {
+      if(!list.isEmpty()) {
+        heads.add(new PeekingIterator(list.iterator()));
+      }
+    }
+    
+    while(!heads.isEmpty()) {
+      PeekingIterator head = heads.poll();
+      merged.add(head.next());
+      
+      if(head.hasNext()) {
+        heads.add(head);
+      }
+    }
+    
+    return merged;
+  }
+
+  
+  /**
+   * A method that fetches all projects from one shard.
+   * @param shard The shard number
+   * @param selectList The columns to read
+   * @param lazyNotes Whether to attach a loader that reads the notes of all the shard's projects on
+   *        first access
+   * @return List of the shard's projects sorted by name
+   */
+  private List<Project> fetchAllProjects(int shard, String selectList, boolean lazyNotes) {
+    // @formatter:off
+    String sql = ""
+        + "SELECT " + selectList + " FROM " + PROJECT_TABLE + " "
+        + "WHERE deleted_at IS NULL "
+        + "ORDER BY project_name";
+    // @formatter:on
+    LazyTextLoader notesLoader = new LazyTextLoader(shard, PROJECT_TABLE, "project_id", "notes");
 
-    try (Connection conn = DbConnection.getConnection()) {
+    try (Connection conn = DbConnection.getConnection(shard)) {
       startTransaction(conn);
       
       try (PreparedStatement stmt = conn.prepareStatement(sql)) {
         try(ResultSet rs = stmt.executeQuery()){
-          List<Project> projects = new LinkedList<>();
+          List<Project> projects = new ArrayList<>();
           
           while(rs.next()) {
-            projects.add(extract(rs, Project.class));  
+            Project project = extract(rs, Project.class);
+            
+            if(lazyNotes) {
+              project.setNotesLoader(notesLoader.register(project.getProjectId()));
+            }
+            
+            projects.add(project);  
           }
           
           return projects;
@@ -118,29 +372,58 @@ public class ProjectDao extends DaoBase {
    * @return Optional<Project> 
    * @throws DbException
    */
+  @Override
   public Optional<Project> fetchProjectById(Integer projectId) {
-    String sql = "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+    return fetchProjectById(projectId, false);
+  }
+
+  
+  /**
+   * A method that fetches a single project from database by a given project ID. Projects that have
+   * been moved to the archive tables are found there if they are not in the live tables.
+   * @param projectId Integer
+   * @param lazyText If true, the project notes and the step text are not read with the project.
+   *        They are loaded on first access, all the step text in one query.
+   * @return Optional<Project> 
+   * @throws DbException
+   */
+  @Override
+  public Optional<Project> fetchProjectById(Integer projectId, boolean lazyText) {
+    return fetchProjectById(projectId, lazyText, false);
+  }
+
+  
+  /**
+   * A method that fetches a single project like {@link #fetchProjectById(Integer)}, but if the
+   * shard's primary is slower than usual, the same read is also sent to the shard's secondary
+   * endpoint and the first answer wins. Without a configured secondary this is a plain fetch.
+   * @param projectId Integer
+   * @return Optional<Project>
+   * @throws DbException
+   */
+  @Override
+  public Optional<Project> fetchProjectByIdHedged(Integer projectId) {
+    if(!DbConnection.hasSecondary(shardFor(projectId))) {
+      return fetchProjectById(projectId);
+    }
+    
+    return HEDGED_READ.execute(secondary -> fetchProjectById(projectId, false, secondary));
+  }
+
+  
+  private Optional<Project> fetchProjectById(Integer projectId, boolean lazyText,
+      boolean secondary) {
+    int shard = shardFor(projectId);
     
-    try(Connection conn = DbConnection.getConnection()){
+    try(Connection conn = secondary ? DbConnection.getSecondaryConnection(shard)
+        : DbConnection.getConnection(shard)){
       startTransaction(conn);
       
       try{
-        Project project = null;
-        
-        try(PreparedStatement stmt = conn.prepareStatement(sql)){
-          setParameter(stmt, 1, projectId, Integer.class);
-          
-          try(ResultSet rs = stmt.executeQuery()){
-            if(rs.next()) {
-              project = extract(rs, Project.class);
-            }
-          }
-        }
+        Project project = fetchProjectById(conn, projectId, lazyText);
         
-        if(Objects.nonNull(project)) {
-          project.getMaterials().addAll(fetchMaterialsForProject(conn, projectId));
-          project.getSteps().addAll(fetchStepsForProject(conn, projectId));
-          project.getCategories().addAll(fetchCategoriesForProject(conn, projectId));
+        if(Objects.isNull(project)) {
+          project = fetchArchivedProjectById(conn, projectId);
         }
         
         commitTransaction(conn);
@@ -157,162 +440,1077 @@ public class ProjectDao extends DaoBase {
 
   
   /**
-   * This method fetches list of categories that associated with a single project by a given project ID.
+   * This method fetches a single project with its materials, steps, and categories on the given
+   * connection. The caller is responsible for the transaction.
    * @param conn Connection
    * @param projectId Integer
-   * @return List of categories
+   * @return The project or null if it does not exist
    * @throws SQLException
    */
-  private List<Category> fetchCategoriesForProject(Connection conn, Integer projectId) throws SQLException {
+  private Project fetchProjectById(Connection conn, Integer projectId) throws SQLException {
+    return fetchProjectById(conn, projectId, false);
+  }
+
+  
+  /**
+   * This method fetches a single project with its materials, steps, and categories on the given
+   * connection, optionally leaving the large TEXT columns to be loaded on first access.
+   * @param conn Connection
+   * @param projectId Integer
+   * @param lazyText Whether the notes and step text are loaded on first access
+   * @return The project or null if it does not exist
+   * @throws SQLException
+   */
+  private Project fetchProjectById(Connection conn, Integer projectId, boolean lazyText)
+      throws SQLException {
+    String selectList = lazyText ? String.join(", ", LISTING_COLUMNS) : "*";
     // @formatter:off
     String sql = ""
-        + "SELECT c.* " 
-        + "FROM " + CATEGORY_TABLE + " c "
-        + "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
-        + "WHERE project_id = ?";
+        + "SELECT " + selectList + " FROM " + PROJECT_TABLE + " "
+        + "WHERE project_id = ? AND deleted_at IS NULL";
     // @formatter:on
+    Project project = null;
     
     try(PreparedStatement stmt = conn.prepareStatement(sql)){
       setParameter(stmt, 1, projectId, Integer.class);
       
       try(ResultSet rs = stmt.executeQuery()){
-        List<Category> categories = new LinkedList<>();
-        
-        while(rs.next()) {
-          categories.add(extract(rs, Category.class));
+        if(rs.next()) {
+          project = extract(rs, Project.class);
         }
-        
-        return categories;
       }
     }
+    
+    if(Objects.nonNull(project)) {
+      if(lazyText) {
+        LazyTextLoader notesLoader =
+            new LazyTextLoader(shardFor(projectId), PROJECT_TABLE, "project_id", "notes");
+        project.setNotesLoader(notesLoader.register(projectId));
+      }
+      
+      project.getMaterials().addAll(fetchMaterialsForProject(conn, projectId));
+      project.getSteps().addAll(fetchStepsForProject(conn, projectId, lazyText));
+      project.getCategories().addAll(fetchCategoriesForProject(conn, projectId));
+    }
+    
+    return project;
   }
 
   
   /**
-   * This method fetches list of steps that associated with a single project by a given project ID.
+   * Fetches a project and its children from the archive tables. The caller is responsible for the
+   * transaction.
    * @param conn Connection
    * @param projectId Integer
-   * @return List of steps
+   * @return The archived project or null if it is not archived
    * @throws SQLException
    */
-  private List<Step> fetchStepsForProject(Connection conn, Integer projectId) throws SQLException {
-    String sql = "SELECT * FROM " + STEP_TABLE + " WHERE project_id = ?";
+  private Project fetchArchivedProjectById(Connection conn, Integer projectId) throws SQLException {
+    String sql = "SELECT * FROM " + ProjectArchiver.archiveOf(PROJECT_TABLE) + " WHERE project_id = ?";
+    Project project = null;
     
     try(PreparedStatement stmt = conn.prepareStatement(sql)){
       setParameter(stmt, 1, projectId, Integer.class);
       
       try(ResultSet rs = stmt.executeQuery()){
-        List<Step> steps = new LinkedList<>();
-        
-        while(rs.next()) {
-          steps.add(extract(rs, Step.class));
+        if(rs.next()) {
+          project = extract(rs, Project.class);
         }
-        
-        return steps;
       }
-    }  
+    }
+    
+    if(Objects.nonNull(project)) {
+      project.getMaterials().addAll(fetchMaterials(conn, ProjectArchiver.archiveOf(MATERIAL_TABLE),
+          projectId, Material.class));
+      project.getSteps().addAll(
+          fetchChildren(conn, ProjectArchiver.archiveOf(STEP_TABLE), projectId, Step.class));
+      project.getCategories().addAll(fetchCategoriesForProject(conn,
+          ProjectArchiver.archiveOf(PROJECT_CATEGORY_TABLE), projectId));
+    }
+    
+    return project;
   }
 
   
   /**
-   * This method fetches list of materials that associated with a single project by a given project ID.
-   * @param conn Connection
-   * @param projectId Integer
-   * @return List of materials
-   * @throws SQLException
+   * A method that totals the materials of a set of projects per catalog material, for example for
+   * a shopping list. Each shard groups its material rows by the integer catalog ID, reading only
+   * the index on (project_id, material_catalog_id, num_required, cost), and joins just the grouped
+   * rows to the catalog for their names. Catalog IDs differ between shards, so the shard totals are
+   * merged by name. Deleted and archived projects are not counted.
+   * @param projectIds The project IDs
+   * @return The totals, sorted by material name
+   * @throws DbException Thrown if an error occurs.
    */
-  private List<Material> fetchMaterialsForProject(Connection conn, Integer projectId) throws SQLException {
-    String sql = "SELECT * FROM " + MATERIAL_TABLE + " WHERE project_id = ?";
+  @Override
+  public List<MaterialRequirement> fetchMaterialRequirements(Collection<Integer> projectIds) {
+    Map<Integer, List<Integer>> idsByShard = new TreeMap<>();
     
-    try(PreparedStatement stmt = conn.prepareStatement(sql)){
-      setParameter(stmt, 1, projectId, Integer.class);
+    for(Integer projectId : new LinkedHashSet<>(projectIds)) {
+      idsByShard.computeIfAbsent(shardFor(projectId), shard -> new ArrayList<>()).add(projectId);
+    }
+    
+    List<List<MaterialRequirement>> results;
+    
+    if(idsByShard.size() <= 1) {
+      results = new ArrayList<>();
+      idsByShard.forEach((shard, ids) -> results.add(fetchMaterialRequirements(shard, ids)));
+    }
+    else {
+      List<Future<List<MaterialRequirement>>> futures = new ArrayList<>();
       
-      try(ResultSet rs = stmt.executeQuery()){
-        List<Material> materials = new LinkedList<>();
-        
-        while(rs.next()) {
-          materials.add(extract(rs, Material.class));
-        }
-        
-        return materials;
+      idsByShard.forEach((shard, ids) -> futures.add(SCATTER_EXECUTOR.submit(
+          Deadline.propagate(() -> fetchMaterialRequirements(shard, ids)))));
+      
+      results = gather(futures);
+    }
+    
+    Map<String, MaterialRequirement> totals = new TreeMap<>();
+    
+    for(List<MaterialRequirement> requirements : results) {
+      for(MaterialRequirement requirement : requirements) {
+        totals.merge(requirement.getMaterialName(), requirement, (total, more) -> {
+          total.add(more);
+          return total;
+        });
       }
-    }  
+    }
+    
+    return new ArrayList<>(totals.values());
   }
 
- 
+  
   /**
-   * A method that updates a project from database.
-   * @param project Project object
-   * @return true if the project is updated, false otherwise.
-   * @throws DbException Thrown if an error occurs updating the row.
+   * Totals the materials of projects on one shard, in chunks of at most 1000 project IDs.
+   * @param shard The shard number
+   * @param projectIds The IDs of projects on the shard
+   * @return The totals per chunk and catalog material. A material can appear once per chunk.
    */
-  public boolean modifyProjectDetails(Project project) {
-    // @formatter:off
-    String sql = ""
-        + "UPDATE " + PROJECT_TABLE + " SET "
-        + "project_name = ?, estimated_hours = ?, actual_hours = ?, difficulty = ?, notes = ? "
-        + "WHERE project_id = ?";
-    // @formatter:on
+  private List<MaterialRequirement> fetchMaterialRequirements(int shard, List<Integer> projectIds) {
+    List<MaterialRequirement> requirements = new ArrayList<>();
     
-    try(Connection conn = DbConnection.getConnection()){
-      // start transaction
-      startTransaction(conn);
-      
-      try(PreparedStatement stmt = conn.prepareStatement(sql)){
-        setParameter(stmt, 1, project.getProjectName(), String.class);
-        setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-        setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-        setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-        setParameter(stmt, 5, project.getNotes(), String.class);
-        setParameter(stmt, 6, project.getProjectId(), Integer.class);
-        
-        boolean updated = stmt.executeUpdate() == 1;
-
-        // Commit transaction
-        commitTransaction(conn);
+    try(Connection conn = DbConnection.getConnection(shard)){
+      for(int from = 0; from < projectIds.size(); from += IDS_PER_QUERY) {
+        List<Integer> chunk =
+            projectIds.subList(from, Math.min(projectIds.size(), from + IDS_PER_QUERY));
+        String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
         
-        return updated;
+        // @formatter:off
+        String sql = ""
+            + "SELECT c.material_name, t.num_required, t.cost, t.project_count "
+            + "FROM ("
+            + "SELECT material_catalog_id, SUM(num_required) AS num_required, SUM(cost) AS cost, "
+            + "COUNT(DISTINCT project_id) AS project_count "
+            + "FROM " + MATERIAL_TABLE + " "
+            + "WHERE project_id IN ("
+            + "SELECT project_id FROM " + PROJECT_TABLE + " "
+            + "WHERE project_id IN (" + placeholders + ") AND deleted_at IS NULL) "
+            + "GROUP BY material_catalog_id"
+            + ") t "
+            + "JOIN " + MATERIAL_CATALOG_TABLE + " c USING (material_catalog_id)";
+        // @formatter:on
         
-      }catch(SQLException e) {
-        // Roll back transaction if SQL exception happens
-         rollbackTransaction(conn);
-         throw new DbException(e);
+        try(PreparedStatement stmt = conn.prepareStatement(sql)){
+          for(int index = 0; index < chunk.size(); index++) {
+            setParameter(stmt, index + 1, chunk.get(index), Integer.class);
+          }
+          
+          try(ResultSet rs = stmt.executeQuery()){
+            while(rs.next()) {
+              MaterialRequirement requirement = new MaterialRequirement();
+              requirement.setMaterialName(rs.getString("material_name"));
+              requirement.setNumRequired(rs.getLong("num_required"));
+              
+              BigDecimal cost = rs.getBigDecimal("cost");
+              requirement.setCost(Objects.isNull(cost) ? BigDecimal.ZERO : cost);
+              
+              requirement.setProjectCount(rs.getInt("project_count"));
+              requirements.add(requirement);
+            }
+          }
+        }
       }
       
+      return requirements;
+      
     }catch(SQLException e) {
       throw new DbException(e);
     }
   }
 
+  
+  @Override
+  public int getShardCount() {
+    return DbConnection.getShardMap().getShardCount();
+  }
 
+  
   /**
-   * A method that deletes a project from database by a given project ID.
-   * @param projectId Integer
-   * @return true if the project is deleted, false otherwise.
-   * @throws DbException Thrown if an error occurs deleting the row.
+   * A method that fetches the IDs of the live and archived projects on one shard in ascending
+   * order, reading only the primary keys. Each table's part is limited separately so that a page
+   * never reads more than twice the limit, however many pages come before it.
+   * @param shard The shard number
+   * @param afterProjectId Only higher IDs are returned. Use 0 for the first page.
+   * @param limit The maximum number of IDs
+   * @return The IDs, empty after the last page
+   * @throws DbException Thrown if an error occurs.
    */
-  public boolean deleteProject(Integer projectId) {
+  @Override
+  public List<Integer> fetchProjectIdPage(int shard, int afterProjectId, int limit) {
+    // @formatter:off
     String sql = ""
-        + "DELETE FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+        + "(SELECT project_id FROM " + PROJECT_TABLE + " "
+        + "WHERE project_id > ? AND deleted_at IS NULL ORDER BY project_id LIMIT ?) "
+        + "UNION ALL "
+        + "(SELECT project_id FROM " + ProjectArchiver.archiveOf(PROJECT_TABLE) + " "
+        + "WHERE project_id > ? ORDER BY project_id LIMIT ?) "
+        + "ORDER BY project_id "
+        + "LIMIT ?";
+    // @formatter:on
     
-    try(Connection conn = DbConnection.getConnection()){
-      // start transaction
-      startTransaction(conn);
-      
+    try(Connection conn = DbConnection.getConnection(shard)){
       try(PreparedStatement stmt = conn.prepareStatement(sql)){
-        setParameter(stmt, 1, projectId, Integer.class);
-        
-        boolean deleted = stmt.executeUpdate() == 1;
-
-        // Commit transaction
-        commitTransaction(conn);
+        setParameter(stmt, 1, afterProjectId, Integer.class);
+        setParameter(stmt, 2, limit, Integer.class);
+        setParameter(stmt, 3, afterProjectId, Integer.class);
+        setParameter(stmt, 4, limit, Integer.class);
+        setParameter(stmt, 5, limit, Integer.class);
         
-        return deleted;
+        try(ResultSet rs = stmt.executeQuery()){
+          List<Integer> projectIds = new ArrayList<>();
+          
+          while(rs.next()) {
+            projectIds.add(rs.getInt(1));
+          }
+          
+          return projectIds;
+        }
+      }
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  
+  /**
+   * A method that reads the highest live project ID on one shard from the primary key index.
+   * @param shard The shard number
+   * @return The highest ID, or 0 if the shard has no live projects
+   * @throws DbException Thrown if an error occurs.
+   */
+  @Override
+  public int fetchMaxProjectId(int shard) {
+    String sql = "SELECT COALESCE(MAX(project_id), 0) FROM " + PROJECT_TABLE
+        + " WHERE deleted_at IS NULL";
+    
+    try(Connection conn = DbConnection.getConnection(shard)){
+      try(PreparedStatement stmt = conn.prepareStatement(sql)){
+        try(ResultSet rs = stmt.executeQuery()){
+          rs.next();
+          return rs.getInt(1);
+        }
+      }
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  
+  /**
+   * A method that fetches the report figures of the live projects in an ID range on one shard. The
+   * material cost is summed in the database and the categories are read as IDs and resolved
+   * through the category cache, so the range costs two queries and returns a few columns per
+   * project. Both queries run in one transaction and see the same snapshot.
+   * @param shard The shard number
+   * @param afterProjectId The exclusive lower end of the range
+   * @param toProjectId The inclusive upper end of the range
+   * @return The summaries in project ID order
+   * @throws DbException Thrown if an error occurs.
+   */
+  @Override
+  public List<ProjectSummary> fetchProjectSummaries(int shard, int afterProjectId,
+      int toProjectId) {
+    // @formatter:off
+    String sql = ""
+        + "SELECT p.project_id, p.difficulty, p.estimated_hours, p.actual_hours, "
+        + "COALESCE(m.material_cost, 0) AS material_cost "
+        + "FROM " + PROJECT_TABLE + " p "
+        + "LEFT JOIN ("
+        + "SELECT project_id, SUM(cost) AS material_cost FROM " + MATERIAL_TABLE + " "
+        + "WHERE project_id > ? AND project_id <= ? "
+        + "GROUP BY project_id"
+        + ") m USING (project_id) "
+        + "WHERE p.project_id > ? AND p.project_id <= ? AND p.deleted_at IS NULL "
+        + "ORDER BY p.project_id";
+    String categorySql = ""
+        + "SELECT project_id, category_id FROM " + PROJECT_CATEGORY_TABLE + " "
+        + "WHERE project_id > ? AND project_id <= ?";
+    // @formatter:on
+    
+    try(Connection conn = DbConnection.getConnection(shard)){
+      startTransaction(conn);
+      
+      try{
+        Map<Integer, ProjectSummary> summaries = new LinkedHashMap<>();
+        
+        try(PreparedStatement stmt = conn.prepareStatement(sql)){
+          setParameter(stmt, 1, afterProjectId, Integer.class);
+          setParameter(stmt, 2, toProjectId, Integer.class);
+          setParameter(stmt, 3, afterProjectId, Integer.class);
+          setParameter(stmt, 4, toProjectId, Integer.class);
+          
+          try(ResultSet rs = stmt.executeQuery()){
+            while(rs.next()) {
+              ProjectSummary summary = new ProjectSummary();
+              summary.setProjectId(rs.getInt("project_id"));
+              summary.setDifficulty(rs.getObject("difficulty", Integer.class));
+              summary.setEstimatedHours(rs.getBigDecimal("estimated_hours"));
+              summary.setActualHours(rs.getBigDecimal("actual_hours"));
+              summary.setMaterialCost(rs.getBigDecimal("material_cost"));
+              summaries.put(summary.getProjectId(), summary);
+            }
+          }
+        }
+        
+        if(!summaries.isEmpty()) {
+          Map<Integer, List<Integer>> categoryIdsByProject = new HashMap<>();
+          Set<Integer> categoryIds = new HashSet<>();
+          
+          try(PreparedStatement stmt = conn.prepareStatement(categorySql)){
+            setParameter(stmt, 1, afterProjectId, Integer.class);
+            setParameter(stmt, 2, toProjectId, Integer.class);
+            
+            try(ResultSet rs = stmt.executeQuery()){
+              while(rs.next()) {
+                Integer categoryId = rs.getInt("category_id");
+                categoryIdsByProject.computeIfAbsent(rs.getInt("project_id"),
+                    projectId -> new ArrayList<>()).add(categoryId);
+                categoryIds.add(categoryId);
+              }
+            }
+          }
+          
+          Map<Integer, Category> categories = new HashMap<>();
+          
+          for(Category category : categoryCache.resolve(conn, categoryIds)) {
+            categories.put(category.getCategoryId(), category);
+          }
+          
+          categoryIdsByProject.forEach((projectId, ids) -> {
+            ProjectSummary summary = summaries.get(projectId);
+            
+            // Links of deleted projects are read too; they have no summary
+            if(Objects.nonNull(summary)) {
+              ids.stream().map(categories::get).filter(Objects::nonNull)
+                  .forEach(summary.getCategories()::add);
+            }
+          });
+        }
+        
+        commitTransaction(conn);
+        return new ArrayList<>(summaries.values());
+        
+      }catch(SQLException e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+      
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  
+  /**
+   * A method that fetches a page of live projects from one shard in project ID order, with their
+   * materials and steps but without categories or notes. Use it to scan all projects, passing the
+   * last ID of each page to get the next. The children of the whole page are read with one query
+   * per child table.
+   * @param shard The shard number
+   * @param afterProjectId Only projects with a higher ID are returned. Use 0 for the first page.
+   * @param limit The maximum number of projects
+   * @return The projects, empty after the last page
+   * @throws DbException Thrown if an error occurs.
+   */
+  @Override
+  public List<Project> fetchProjectPage(int shard, int afterProjectId, int limit) {
+    // @formatter:off
+    String sql = ""
+        + "SELECT " + String.join(", ", LISTING_COLUMNS) + " FROM " + PROJECT_TABLE + " "
+        + "WHERE project_id > ? AND deleted_at IS NULL "
+        + "ORDER BY project_id "
+        + "LIMIT ?";
+    // @formatter:on
+    
+    try(Connection conn = DbConnection.getConnection(shard)){
+      startTransaction(conn);
+      
+      try{
+        Map<Integer, Project> projects = new LinkedHashMap<>();
+        
+        try(PreparedStatement stmt = conn.prepareStatement(sql)){
+          setParameter(stmt, 1, afterProjectId, Integer.class);
+          setParameter(stmt, 2, limit, Integer.class);
+          
+          try(ResultSet rs = stmt.executeQuery()){
+            while(rs.next()) {
+              Project project = extract(rs, Project.class);
+              projects.put(project.getProjectId(), project);
+            }
+          }
+        }
+        
+        if(!projects.isEmpty()) {
+          String placeholders = String.join(", ", Collections.nCopies(projects.size(), "?"));
+          String materialSql = materialSql(MATERIAL_TABLE, "IN (" + placeholders + ")");
+          String stepSql = "SELECT * FROM " + STEP_TABLE + " WHERE project_id IN (" + placeholders
+              + ") ORDER BY project_id, step_order";
+          
+          for(Material material : fetchPageChildren(conn, materialSql, projects.keySet(),
+              Material.class)) {
+            projects.get(material.getProjectId()).getMaterials().add(material);
+          }
+          
+          for(Step step : fetchPageChildren(conn, stepSql, projects.keySet(), Step.class)) {
+            projects.get(step.getProjectId()).getSteps().add(step);
+          }
+        }
+        
+        commitTransaction(conn);
+        return new ArrayList<>(projects.values());
+        
+      }catch(SQLException e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+      
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  
+  private <T> List<T> fetchPageChildren(Connection conn, String sql, Collection<Integer> projectIds,
+      Class<T> classType) throws SQLException {
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      int index = 1;
+      
+      for(Integer projectId : projectIds) {
+        setParameter(stmt, index++, projectId, Integer.class);
+      }
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        List<T> children = new ArrayList<>();
+        
+        while(rs.next()) {
+          children.add(extract(rs, classType));
+        }
+        
+        return children;
+      }
+    }
+  }
+
+  
+  /**
+   * A method that fetches a single project in its compact form, with compact materials and steps
+   * and the shared cached categories.
+   * @param projectId Integer
+   * @return Optional<CompactProject>
+   * @throws DbException
+   */
+  @Override
+  public Optional<CompactProject> fetchCompactProjectById(Integer projectId) {
+    String sql = "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id = ? AND deleted_at IS NULL";
+    
+    try(Connection conn = DbConnection.getConnection(shardFor(projectId))){
+      startTransaction(conn);
+      
+      try{
+        CompactProject project = null;
+        
+        try(PreparedStatement stmt = conn.prepareStatement(sql)){
+          setParameter(stmt, 1, projectId, Integer.class);
+          
+          try(ResultSet rs = stmt.executeQuery()){
+            if(rs.next()) {
+              project = extract(rs, CompactProject.class);
+            }
+          }
+        }
+        
+        if(Objects.nonNull(project)) {
+          project.setMaterials(fetchMaterials(conn, MATERIAL_TABLE, projectId, CompactMaterial.class));
+          project.setSteps(fetchChildren(conn, STEP_TABLE, projectId, CompactStep.class));
+          
+          List<Category> categories = fetchCategoriesForProject(conn, projectId);
+          project.setCategories(categories.isEmpty() ? List.of() : categories);
+        }
+        
+        commitTransaction(conn);
+        return Optional.ofNullable(project);
+        
+      }catch (Exception e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  
+  /**
+   * Fetches the child rows of a project into a right-sized list. An empty result returns the
+   * shared empty list.
+   * @param conn Connection
+   * @param table The child table
+   * @param projectId Integer
+   * @param classType The entity class to extract
+   * @return List of children
+   * @throws SQLException
+   */
+  private <T> List<T> fetchChildren(Connection conn, String table, Integer projectId,
+      Class<T> classType) throws SQLException {
+    return fetchChildRows(conn, "SELECT * FROM " + table + " WHERE project_id = ?", projectId,
+        classType);
+  }
+
+  
+  /**
+   * Fetches the materials of a project from the given material table, either material or
+   * material_archive, with their names read from the material catalog.
+   * @param conn Connection
+   * @param table The material table
+   * @param projectId Integer
+   * @param classType The entity class to extract
+   * @return List of materials
+   * @throws SQLException
+   */
+  private <T> List<T> fetchMaterials(Connection conn, String table, Integer projectId,
+      Class<T> classType) throws SQLException {
+    return fetchChildRows(conn, materialSql(table), projectId, classType);
+  }
+
+  
+  /**
+   * @param table The material table, either material or material_archive
+   * @return A query for the materials of one project, including the catalog name
+   */
+  private String materialSql(String table) {
+    return materialSql(table, "= ?");
+  }
+
+  
+  /**
+   * @param table The material table, either material or material_archive
+   * @param projectCondition The condition on the project ID, for example "= ?"
+   * @return A query for materials including the catalog name
+   */
+  private String materialSql(String table, String projectCondition) {
+    // @formatter:off
+    return ""
+        + "SELECT m.*, c.material_name "
+        + "FROM " + table + " m "
+        + "JOIN " + MATERIAL_CATALOG_TABLE + " c USING (material_catalog_id) "
+        + "WHERE m.project_id " + projectCondition;
+    // @formatter:on
+  }
+
+  
+  private <T> List<T> fetchChildRows(Connection conn, String sql, Integer projectId,
+      Class<T> classType) throws SQLException {
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        ArrayList<T> children = new ArrayList<>();
+        
+        while(rs.next()) {
+          children.add(extract(rs, classType));
+        }
+        
+        if(children.isEmpty()) {
+          return List.of();
+        }
+        
+        children.trimToSize();
+        return children;
+      }
+    }
+  }
+
+  
+  /**
+   * This method fetches list of categories that associated with a single project by a given project ID.
+   * Only the category IDs are read from project_category. They are resolved to shared
+   * {@link Category} objects through the in-memory category cache.
+   * @param conn Connection
+   * @param projectId Integer
+   * @return List of categories
+   * @throws SQLException
+   */
+  private List<Category> fetchCategoriesForProject(Connection conn, Integer projectId) throws SQLException {
+    return fetchCategoriesForProject(conn, PROJECT_CATEGORY_TABLE, projectId);
+  }
+
+  
+  /**
+   * Fetches the categories of a project from the given join table, either project_category or
+   * its archive.
+   * @param conn Connection
+   * @param table The join table
+   * @param projectId Integer
+   * @return List of categories
+   * @throws SQLException
+   */
+  private List<Category> fetchCategoriesForProject(Connection conn, String table,
+      Integer projectId) throws SQLException {
+    String sql = "SELECT category_id FROM " + table + " WHERE project_id = ?";
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        List<Integer> categoryIds = new ArrayList<>();
+        
+        while(rs.next()) {
+          categoryIds.add(rs.getInt("category_id"));
+        }
+        
+        return categoryCache.resolve(conn, categoryIds);
+      }
+    }
+  }
+
+  
+  /**
+   * This method fetches list of steps that associated with a single project by a given project ID.
+   * @param conn Connection
+   * @param projectId Integer
+   * @param lazyText If true, the step text is not read here. It is loaded for all the steps in one
+   *        query when the first step's text is read.
+   * @return List of steps
+   * @throws SQLException
+   */
+  private List<Step> fetchStepsForProject(Connection conn, Integer projectId, boolean lazyText)
+      throws SQLException {
+    String selectList = lazyText ? STEP_LISTING_COLUMNS : "*";
+    String sql = "SELECT " + selectList + " FROM " + STEP_TABLE + " WHERE project_id = ?";
+    LazyTextLoader textLoader = new LazyTextLoader(shardFor(projectId), STEP_TABLE, "step_id",
+        "step_text");
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        List<Step> steps = new ArrayList<>();
+        
+        while(rs.next()) {
+          Step step = extract(rs, Step.class);
+          
+          if(lazyText) {
+            step.setStepTextLoader(textLoader.register(step.getStepId()));
+          }
+          
+          steps.add(step);
+        }
+        
+        return steps;
+      }
+    }  
+  }
+
+  
+  /**
+   * This method fetches list of materials that associated with a single project by a given project ID.
+   * @param conn Connection
+   * @param projectId Integer
+   * @return List of materials
+   * @throws SQLException
+   */
+  private List<Material> fetchMaterialsForProject(Connection conn, Integer projectId) throws SQLException {
+    String sql = materialSql(MATERIAL_TABLE);
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        List<Material> materials = new ArrayList<>();
+        
+        while(rs.next()) {
+          materials.add(extract(rs, Material.class));
+        }
+        
+        return materials;
+      }
+    }  
+  }
+
+ 
+  /**
+   * A method that updates a project from database. The update only succeeds if the version of the
+   * stored row still matches the version in the given project, so that changes made by another
+   * user since the project was read are never silently overwritten. On success the version in the
+   * project object is advanced to match the stored row.
+   * @param project Project object
+   * @return true if the project is updated, false if the project does not exist.
+   * @throws ProjectConflictException Thrown if the project was modified by someone else.
+   * @throws ProjectArchivedException Thrown if the project is archived.
+   * @throws DbException Thrown if an error occurs updating the row.
+   */
+  @Override
+  public boolean modifyProjectDetails(Project project) {
+    // @formatter:off
+    String sql = ""
+        + "UPDATE " + PROJECT_TABLE + " SET "
+        + "project_name = ?, estimated_hours = ?, actual_hours = ?, difficulty = ?, notes = ?, "
+        + "version = version + 1 "
+        + "WHERE project_id = ? AND version = ? AND deleted_at IS NULL";
+    // @formatter:on
+    
+    boolean updated = false;
+    boolean archived = false;
+    Project current = null;
+    List<AuditRecord> audit = new ArrayList<>();
+    
+    try(Connection conn = DbConnection.getConnection(shardFor(project.getProjectId()))){
+      // start transaction
+      startTransaction(conn);
+      
+      try(PreparedStatement stmt = conn.prepareStatement(sql)){
+        // The row is about to be locked by the update anyway, so locking it a statement earlier
+        // to read the values it had costs no extra contention
+        Map<String, Object> before = AUDIT.isCapturing()
+            ? fetchProjectValues(conn, PROJECT_TABLE, project.getProjectId()) : null;
+        
+        setParameter(stmt, 1, project.getProjectName(), String.class);
+        setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+        setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+        setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+        setParameter(stmt, 5, project.getNotes(), String.class);
+        setParameter(stmt, 6, project.getProjectId(), Integer.class);
+        setParameter(stmt, 7, project.getVersion(), Integer.class);
+        
+        updated = stmt.executeUpdate() == 1;
+        
+        // A miss is a missing row, an archived one or a stale version. Read the row to find out.
+        if(!updated) {
+          current = fetchProjectById(conn, project.getProjectId());
+          archived = Objects.isNull(current) && isArchived(conn, project.getProjectId());
+        }
+        else if(Objects.nonNull(before)) {
+          AuditRecord record = AuditRecord.update(PROJECT_TABLE, project.getProjectId(),
+              project.getProjectId(), before, GraphChanges.projectValues(project));
+          
+          if(Objects.nonNull(record)) {
+            audit.add(record);
+            AUDIT.beforeCommit(conn, audit);
+          }
+        }
+
+        // Commit transaction
+        commitTransaction(conn);
+        
+      }catch(SQLException e) {
+        // Roll back transaction if SQL exception happens
+         rollbackTransaction(conn);
+         throw new DbException(e);
+      }
+      
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+    
+    if(Objects.nonNull(current)) {
+      throw new ProjectConflictException(current);
+    }
+    
+    if(archived) {
+      throw new ProjectArchivedException(project.getProjectId());
+    }
+    
+    if(updated) {
+      project.setVersion(project.getVersion() + 1);
+    }
+    
+    AUDIT.afterCommit(audit);
+    return updated;
+  }
+
+
+  /**
+   * A method that deletes a project from database by a given project ID. The project is only
+   * marked as deleted, which takes effect immediately for all reads. Its rows are removed later by
+   * the {@link ProjectPurger} in small batches, so that deleting a large project doesn't hold locks
+   * on all of its children in one long transaction. An archived project is removed from the
+   * archive tables right away.
+   * @param projectId Integer
+   * @return true if the project is deleted, false otherwise.
+   * @throws DbException Thrown if an error occurs deleting the row.
+   */
+  @Override
+  public boolean deleteProject(Integer projectId) {
+    // @formatter:off
+    String sql = ""
+        + "UPDATE " + PROJECT_TABLE + " SET "
+        + "deleted_at = NOW(), version = version + 1 "
+        + "WHERE project_id = ? AND deleted_at IS NULL";
+    // @formatter:on
+    
+    boolean deleted;
+    List<AuditRecord> audit = new ArrayList<>();
+    
+    try(Connection conn = DbConnection.getConnection(shardFor(projectId))){
+      // start transaction
+      startTransaction(conn);
+      
+      try(PreparedStatement stmt = conn.prepareStatement(sql)){
+        setParameter(stmt, 1, projectId, Integer.class);
+        
+        deleted = stmt.executeUpdate() == 1;
+        String table = PROJECT_TABLE;
+        
+        // An archived project is deleted from the archive directly; its archived children cascade
+        if(!deleted) {
+          table = ProjectArchiver.archiveOf(PROJECT_TABLE);
+          Map<String, Object> before =
+              AUDIT.isCapturing() ? fetchProjectValues(conn, table, projectId) : null;
+          
+          deleted = deleteArchivedProject(conn, projectId);
+          
+          if(deleted && Objects.nonNull(before)) {
+            audit.add(AuditRecord.delete(PROJECT_TABLE, projectId, projectId, before));
+          }
+        }
+        else if(AUDIT.isCapturing()) {
+          // The soft-deleted row keeps its values until it is purged
+          audit.add(AuditRecord.delete(PROJECT_TABLE, projectId, projectId,
+              fetchProjectValues(conn, table, projectId)));
+        }
+        
+        AUDIT.beforeCommit(conn, audit);
+
+        // Commit transaction
+        commitTransaction(conn);
+        
+        if(deleted) {
+          PURGER.wake();
+        }
+        
+      }catch(SQLException e) {
+        // Roll back transaction if SQL exception happens
+         rollbackTransaction(conn);
+         throw new DbException(e);
+      }
+      
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+    
+    AUDIT.afterCommit(audit);
+    return deleted;
+  }
+
+
+  /**
+   * Writes the entries and the project updates in one transaction on the shard, as described in
+   * {@link TimeEntryDao#insertTimeEntries(int, List)}.
+   */
+  @Override
+  public Map<Integer, BigDecimal> insertTimeEntries(int shard, List<TimeEntry> entries) {
+    return TIME_ENTRIES.insertTimeEntries(shard, entries);
+  }
+
+
+  /**
+   * Moves the qualifying project graphs of every shard into that shard's archive tables with
+   * {@link ProjectArchiver}.
+   */
+  @Override
+  public int archiveProjects(ArchivePolicy policy) {
+    return ARCHIVER.archive(policy);
+  }
+
+
+  @Override
+  public boolean restoreProject(Integer projectId) {
+    return ARCHIVER.restore(projectId);
+  }
+
+
+  /**
+   * Saves a whole project graph in one transaction. The incoming materials, steps and categories
+   * are compared with the stored ones and only the differences are written: children without an
+   * ID are inserted, children whose values changed are updated, and stored children missing from
+   * the project are deleted, each kind as a single JDBC batch. If anything changed, the project
+   * version is advanced. A project without an ID is inserted along with all its children.
+   * @param project The project graph to save
+   * @return The rows the save wrote, empty if nothing changed, or an empty Optional if the project
+   *         does not exist.
+   * @throws ProjectConflictException Thrown if the project was modified by someone else.
+   * @throws ProjectArchivedException Thrown if the project is archived.
+   * @throws DbException Thrown if an error occurs saving the graph.
+   */
+  @Override
+  public Optional<List<AuditRecord>> saveProject(Project project) {
+    boolean isNew = Objects.isNull(project.getProjectId());
+    int shard = isNew ? DbConnection.getShardMap().nextInsertShard()
+        : shardFor(project.getProjectId());
+    Project conflict = null;
+    List<AuditRecord> written = new ArrayList<>();
+    
+    try(Connection conn = DbConnection.getConnection(shard)){
+      startTransaction(conn);
+      
+      try{
+        Project stored;
+        
+        if(isNew) {
+          insertProjectRow(conn, project);
+          stored = new Project();
+        }
+        else {
+          Integer storedVersion = lockProjectRow(conn, project.getProjectId());
+          
+          if(Objects.isNull(storedVersion)) {
+            boolean archived = isArchived(conn, project.getProjectId());
+            rollbackTransaction(conn);
+            
+            if(archived) {
+              throw new ProjectArchivedException(project.getProjectId());
+            }
+            
+            return Optional.empty();
+          }
+          
+          stored = fetchProjectById(conn, project.getProjectId());
+          
+          if(!storedVersion.equals(project.getVersion())) {
+            conflict = stored;
+          }
+        }
+        
+        if(Objects.isNull(conflict)) {
+          boolean changed = syncMaterials(conn, project, stored.getMaterials());
+          changed |= syncSteps(conn, project, stored.getSteps());
+          changed |= syncCategories(conn, project, stored.getCategories());
+          
+          if(!isNew && (changed || projectDetailsChanged(project, stored))) {
+            updateProjectRow(conn, project);
+            project.setVersion(project.getVersion() + 1);
+          }
+          
+          written.addAll(GraphChanges.describe(project, stored, isNew));
+          AUDIT.beforeCommit(conn, written);
+        }
+        
+        commitTransaction(conn);
+        
+      }catch(SQLException e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+      
+    }catch(SQLException e) {
+      throw new DbException(e);
+    }
+    
+    if(Objects.nonNull(conflict)) {
+      throw new ProjectConflictException(conflict);
+    }
+    
+    AUDIT.afterCommit(written);
+    return Optional.of(written);
+  }
+
+  
+  /**
+   * Reads the audited column values of a project row, locking it. Soft-deleted rows are read too.
+   * @param conn Connection
+   * @param table The live or archive project table
+   * @param projectId The project ID
+   * @return The values by column name, or null if there is no such row
+   * @throws SQLException
+   */
+  private Map<String, Object> fetchProjectValues(Connection conn, String table, Integer projectId)
+      throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "SELECT project_name, estimated_hours, actual_hours, difficulty, notes "
+        + "FROM " + table + " "
+        + "WHERE project_id = ? "
+        + "FOR UPDATE";
+    // @formatter:on
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        return rs.next() ? GraphChanges.projectValues(extract(rs, Project.class)) : null;
+      }
+    }
+  }
+
+  
+  /**
+   * A method that copies a project graph, for example to start a new project from a template. The
+   * copy is made on the database server with one INSERT ... SELECT statement each for the project,
+   * its materials, its steps and its category links, so no row is sent to the client however large
+   * the project is. The copy goes on the same shard as the original; the ID the shard generates
+   * routes to it. The actual hours are not copied. An archived project can be copied as well.
+   * Reading the original in the same transaction locks it against changes until the copy is
+   * committed, so the copy is always of one consistent version.
+   * @param projectId The ID of the project to copy
+   * @param projectName The name of the copy
+   * @return The ID of the copy, or empty if the project does not exist
+   * @throws DbException Thrown if an error occurs copying the graph.
+   */
+  @Override
+  public Optional<Integer> cloneProject(Integer projectId, String projectName) {
+    try(Connection conn = DbConnection.getConnection(shardFor(projectId))){
+      startTransaction(conn);
+      
+      try{
+        boolean archived = false;
+        Integer cloneId = copyProjectRow(conn, PROJECT_TABLE, projectId, projectName);
+        
+        if(Objects.isNull(cloneId)) {
+          archived = true;
+          cloneId = copyProjectRow(conn, ProjectArchiver.archiveOf(PROJECT_TABLE), projectId,
+              projectName);
+        }
+        
+        if(Objects.isNull(cloneId)) {
+          rollbackTransaction(conn);
+          return Optional.empty();
+        }
+        
+        copyChildRows(conn, MATERIAL_TABLE, archived, "material_catalog_id, num_required, cost",
+            "material_id", projectId, cloneId);
+        copyChildRows(conn, STEP_TABLE, archived, "step_text, step_order", "step_id", projectId,
+            cloneId);
+        copyChildRows(conn, PROJECT_CATEGORY_TABLE, archived, "category_id", "category_id",
+            projectId, cloneId);
+        
+        // The copied rows never reach the client, so the record names the original instead
+        List<AuditRecord> audit = new ArrayList<>();
+        
+        if(AUDIT.isCapturing()) {
+          Map<String, Object> values = new LinkedHashMap<>();
+          values.put("project_name", projectName);
+          values.put("copied_from_project_id", projectId);
+          audit.add(AuditRecord.insert(PROJECT_TABLE, cloneId, cloneId, values));
+          AUDIT.beforeCommit(conn, audit);
+        }
+        
+        commitTransaction(conn);
+        AUDIT.afterCommit(audit);
+        return Optional.of(cloneId);
         
       }catch(SQLException e) {
-        // Roll back transaction if SQL exception happens
-         rollbackTransaction(conn);
-         throw new DbException(e);
+        rollbackTransaction(conn);
+        throw new DbException(e);
       }
       
     }catch(SQLException e) {
@@ -320,4 +1518,477 @@ public class ProjectDao extends DaoBase {
     }
   }
 
+  
+  /**
+   * Copies a project row under a new name.
+   * @param conn Connection
+   * @param table The table the original is in, live or archive
+   * @param projectId The ID of the original
+   * @param projectName The name of the copy
+   * @return The ID of the copy, or null if the original is not in the table
+   * @throws SQLException
+   */
+  private Integer copyProjectRow(Connection conn, String table, Integer projectId,
+      String projectName) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "INSERT INTO " + PROJECT_TABLE + " "
+        + "(project_name, estimated_hours, difficulty, notes) "
+        + "SELECT ?, estimated_hours, difficulty, notes "
+        + "FROM " + table + " "
+        + "WHERE project_id = ? AND deleted_at IS NULL";
+    // @formatter:on
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)){
+      setParameter(stmt, 1, projectName, String.class);
+      setParameter(stmt, 2, projectId, Integer.class);
+      
+      if(stmt.executeUpdate() == 0) {
+        return null;
+      }
+      
+      try(ResultSet keys = stmt.getGeneratedKeys()){
+        keys.next();
+        return keys.getInt(1);
+      }
+    }
+  }
+
+  
+  /**
+   * Copies the child rows of one project to another. The rows are inserted in the original's
+   * order, so the copies get their IDs in the same order.
+   * @param conn Connection
+   * @param table The live child table, which receives the copies
+   * @param archived If true, the rows are copied from the child table's archive
+   * @param columns The columns to copy, apart from the project ID
+   * @param orderBy The column that gives the original order
+   * @param projectId The ID of the original
+   * @param cloneId The ID of the copy
+   * @throws SQLException
+   */
+  private void copyChildRows(Connection conn, String table, boolean archived, String columns,
+      String orderBy, Integer projectId, Integer cloneId) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "INSERT INTO " + table + " (project_id, " + columns + ") "
+        + "SELECT ?, " + columns + " "
+        + "FROM " + (archived ? ProjectArchiver.archiveOf(table) : table) + " "
+        + "WHERE project_id = ? "
+        + "ORDER BY " + orderBy;
+    // @formatter:on
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, cloneId, Integer.class);
+      setParameter(stmt, 2, projectId, Integer.class);
+      
+      stmt.executeUpdate();
+    }
+  }
+
+  
+  /**
+   * Checks whether a project that is missing from the live table has been archived, so that a
+   * change to it can be refused with a reason instead of as a missing project.
+   * @param conn Connection
+   * @param projectId Integer
+   * @return true if the project is in the archive table
+   * @throws SQLException
+   */
+  private boolean isArchived(Connection conn, Integer projectId) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "SELECT 1 FROM " + ProjectArchiver.archiveOf(PROJECT_TABLE) + " "
+        + "WHERE project_id = ?";
+    // @formatter:on
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        return rs.next();
+      }
+    }
+  }
+
+  
+  private boolean deleteArchivedProject(Connection conn, Integer projectId) throws SQLException {
+    String sql = "DELETE FROM " + ProjectArchiver.archiveOf(PROJECT_TABLE) + " WHERE project_id = ?";
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      return stmt.executeUpdate() == 1;
+    }
+  }
+
+  
+  /**
+   * Locks the project row for the rest of the transaction so that concurrent writers of the same
+   * project graph are serialized.
+   * @param conn Connection
+   * @param projectId Integer
+   * @return The stored version, or null if the project does not exist.
+   * @throws SQLException
+   */
+  private Integer lockProjectRow(Connection conn, Integer projectId) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "SELECT version FROM " + PROJECT_TABLE + " "
+        + "WHERE project_id = ? AND deleted_at IS NULL "
+        + "FOR UPDATE";
+    // @formatter:on
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, projectId, Integer.class);
+      
+      try(ResultSet rs = stmt.executeQuery()){
+        return rs.next() ? rs.getInt("version") : null;
+      }
+    }
+  }
+
+  
+  /**
+   * Writes the project columns and advances the version. The row must already be locked.
+   * @param conn Connection
+   * @param project Project object
+   * @throws SQLException
+   */
+  private void updateProjectRow(Connection conn, Project project) throws SQLException {
+    // @formatter:off
+    String sql = ""
+        + "UPDATE " + PROJECT_TABLE + " SET "
+        + "project_name = ?, estimated_hours = ?, actual_hours = ?, difficulty = ?, notes = ?, "
+        + "version = version + 1 "
+        + "WHERE project_id = ?";
+    // @formatter:on
+    
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      setParameter(stmt, 1, project.getProjectName(), String.class);
+      setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
+      setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
+      setParameter(stmt, 4, project.getDifficulty(), Integer.class);
+      setParameter(stmt, 5, project.getNotes(), String.class);
+      setParameter(stmt, 6, project.getProjectId(), Integer.class);
+      
+      stmt.executeUpdate();
+    }
+  }
+
+  
+  private boolean projectDetailsChanged(Project project, Project stored) {
+    return !Objects.equals(project.getProjectName(), stored.getProjectName())
+        || !sameDecimal(project.getEstimatedHours(), stored.getEstimatedHours())
+        || !sameDecimal(project.getActualHours(), stored.getActualHours())
+        || !Objects.equals(project.getDifficulty(), stored.getDifficulty())
+        || !Objects.equals(project.getNotes(), stored.getNotes());
+  }
+
+  
+  /**
+   * Brings the material rows in line with the project's materials.
+   * @param conn Connection
+   * @param project The project with the desired materials
+   * @param storedMaterials The materials currently stored
+   * @return true if any row was written
+   * @throws SQLException
+   */
+  private boolean syncMaterials(Connection conn, Project project, List<Material> storedMaterials)
+      throws SQLException {
+    // @formatter:off
+    String insertSql = ""
+        + "INSERT INTO " + MATERIAL_TABLE + " "
+        + "(project_id, material_catalog_id, num_required, cost) "
+        + "VALUES (?, ?, ?, ?)";
+    String updateSql = ""
+        + "UPDATE " + MATERIAL_TABLE + " SET "
+        + "material_catalog_id = ?, num_required = ?, cost = ?, version = version + 1 "
+        + "WHERE material_id = ? AND project_id = ?";
+    String deleteSql = ""
+        + "DELETE FROM " + MATERIAL_TABLE + " WHERE material_id = ? AND project_id = ?";
+    // @formatter:on
+    
+    Map<Integer, Material> stored = new HashMap<>();
+    storedMaterials.forEach(material -> stored.put(material.getMaterialId(), material));
+    
+    List<Material> inserts = new ArrayList<>();
+    List<Material> updates = new ArrayList<>();
+    
+    for(Material material : project.getMaterials()) {
+      material.setProjectId(project.getProjectId());
+      Material current = stored.remove(material.getMaterialId());
+      
+      if(Objects.isNull(current)) {
+        inserts.add(material);
+      }
+      else if(!Objects.equals(material.getMaterialName(), current.getMaterialName())
+          || !Objects.equals(material.getNumRequired(), current.getNumRequired())
+          || !sameDecimal(material.getCost(), current.getCost())) {
+        updates.add(material);
+      }
+    }
+    
+    Map<String, Integer> catalogIds = Map.of();
+    
+    if(!inserts.isEmpty() || !updates.isEmpty()) {
+      List<String> names = new ArrayList<>();
+      inserts.forEach(material -> names.add(material.getMaterialName()));
+      updates.forEach(material -> names.add(material.getMaterialName()));
+      catalogIds = materialCatalog.resolve(shardFor(project.getProjectId()), names);
+    }
+    
+    if(!inserts.isEmpty()) {
+      try(PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)){
+        for(Material material : inserts) {
+          setParameter(stmt, 1, project.getProjectId(), Integer.class);
+          setParameter(stmt, 2, catalogIds.get(material.getMaterialName()), Integer.class);
+          setParameter(stmt, 3, material.getNumRequired(), Integer.class);
+          setParameter(stmt, 4, material.getCost(), BigDecimal.class);
+          stmt.addBatch();
+        }
+        
+        stmt.executeBatch();
+        
+        try(ResultSet keys = stmt.getGeneratedKeys()){
+          for(Material material : inserts) {
+            keys.next();
+            material.setMaterialId(keys.getInt(1));
+            material.setVersion(0);
+          }
+        }
+      }
+    }
+    
+    if(!updates.isEmpty()) {
+      try(PreparedStatement stmt = conn.prepareStatement(updateSql)){
+        for(Material material : updates) {
+          setParameter(stmt, 1, catalogIds.get(material.getMaterialName()), Integer.class);
+          setParameter(stmt, 2, material.getNumRequired(), Integer.class);
+          setParameter(stmt, 3, material.getCost(), BigDecimal.class);
+          setParameter(stmt, 4, material.getMaterialId(), Integer.class);
+          setParameter(stmt, 5, project.getProjectId(), Integer.class);
+          stmt.addBatch();
+        }
+        
+        stmt.executeBatch();
+      }
+      
+      for(Material material : updates) {
+        Integer version = material.getVersion();
+        material.setVersion(Objects.isNull(version) ? null : version + 1);
+      }
+    }
+    
+    if(!stored.isEmpty()) {
+      executeChildBatch(conn, deleteSql, stored.keySet(), project.getProjectId());
+    }
+    
+    return !inserts.isEmpty() || !updates.isEmpty() || !stored.isEmpty();
+  }
+
+  
+  /**
+   * Brings the step rows in line with the project's steps. Steps without an order are numbered by
+   * their position in the list.
+   * @param conn Connection
+   * @param project The project with the desired steps
+   * @param storedSteps The steps currently stored
+   * @return true if any row was written
+   * @throws SQLException
+   */
+  private boolean syncSteps(Connection conn, Project project, List<Step> storedSteps)
+      throws SQLException {
+    // @formatter:off
+    String insertSql = ""
+        + "INSERT INTO " + STEP_TABLE + " "
+        + "(project_id, step_text, step_order) "
+        + "VALUES (?, ?, ?)";
+    String updateSql = ""
+        + "UPDATE " + STEP_TABLE + " SET "
+        + "step_text = ?, step_order = ?, version = version + 1 "
+        + "WHERE step_id = ? AND project_id = ?";
+    String deleteSql = ""
+        + "DELETE FROM " + STEP_TABLE + " WHERE step_id = ? AND project_id = ?";
+    // @formatter:on
+    
+    Map<Integer, Step> stored = new HashMap<>();
+    storedSteps.forEach(step -> stored.put(step.getStepId(), step));
+    
+    List<Step> inserts = new ArrayList<>();
+    List<Step> updates = new ArrayList<>();
+    int position = 0;
+    
+    for(Step step : project.getSteps()) {
+      position++;
+      step.setProjectId(project.getProjectId());
+      
+      if(Objects.isNull(step.getStepOrder())) {
+        step.setStepOrder(position);
+      }
+      
+      Step current = stored.remove(step.getStepId());
+      
+      if(Objects.isNull(current)) {
+        inserts.add(step);
+      }
+      else if(!Objects.equals(step.getStepText(), current.getStepText())
+          || !Objects.equals(step.getStepOrder(), current.getStepOrder())) {
+        updates.add(step);
+      }
+    }
+    
+    if(!inserts.isEmpty()) {
+      try(PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)){
+        for(Step step : inserts) {
+          setParameter(stmt, 1, project.getProjectId(), Integer.class);
+          setParameter(stmt, 2, step.getStepText(), String.class);
+          setParameter(stmt, 3, step.getStepOrder(), Integer.class);
+          stmt.addBatch();
+        }
+        
+        stmt.executeBatch();
+        
+        try(ResultSet keys = stmt.getGeneratedKeys()){
+          for(Step step : inserts) {
+            keys.next();
+            step.setStepId(keys.getInt(1));
+            step.setVersion(0);
+          }
+        }
+      }
+    }
+    
+    if(!updates.isEmpty()) {
+      try(PreparedStatement stmt = conn.prepareStatement(updateSql)){
+        for(Step step : updates) {
+          setParameter(stmt, 1, step.getStepText(), String.class);
+          setParameter(stmt, 2, step.getStepOrder(), Integer.class);
+          setParameter(stmt, 3, step.getStepId(), Integer.class);
+          setParameter(stmt, 4, project.getProjectId(), Integer.class);
+          stmt.addBatch();
+        }
+        
+        stmt.executeBatch();
+      }
+      
+      for(Step step : updates) {
+        Integer version = step.getVersion();
+        step.setVersion(Objects.isNull(version) ? null : version + 1);
+      }
+    }
+    
+    if(!stored.isEmpty()) {
+      executeChildBatch(conn, deleteSql, stored.keySet(), project.getProjectId());
+    }
+    
+    return !inserts.isEmpty() || !updates.isEmpty() || !stored.isEmpty();
+  }
+
+  
+  /**
+   * Brings the project_category links in line with the project's categories.
+   * @param conn Connection
+   * @param project The project with the desired categories
+   * @param storedCategories The categories currently linked
+   * @return true if any row was written
+   * @throws SQLException
+   */
+  private boolean syncCategories(Connection conn, Project project, List<Category> storedCategories)
+      throws SQLException {
+    // @formatter:off
+    String insertSql = ""
+        + "INSERT INTO " + PROJECT_CATEGORY_TABLE + " (category_id, project_id) VALUES (?, ?)";
+    String deleteSql = ""
+        + "DELETE FROM " + PROJECT_CATEGORY_TABLE + " WHERE category_id = ? AND project_id = ?";
+    // @formatter:on
+    
+    Set<Integer> stored = new HashSet<>();
+    storedCategories.forEach(category -> stored.add(category.getCategoryId()));
+    
+    Set<Integer> inserts = new LinkedHashSet<>();
+    
+    for(Category category : project.getCategories()) {
+      if(!stored.remove(category.getCategoryId())) {
+        inserts.add(category.getCategoryId());
+      }
+    }
+    
+    if(!inserts.isEmpty()) {
+      executeChildBatch(conn, insertSql, inserts, project.getProjectId());
+    }
+    
+    if(!stored.isEmpty()) {
+      executeChildBatch(conn, deleteSql, stored, project.getProjectId());
+    }
+    
+    return !inserts.isEmpty() || !stored.isEmpty();
+  }
+
+  
+  /**
+   * Runs a statement taking (child ID, project ID) parameters as one batch over the given IDs.
+   * @param conn Connection
+   * @param sql The statement
+   * @param ids The child IDs
+   * @param projectId The parent project ID
+   * @throws SQLException
+   */
+  private void executeChildBatch(Connection conn, String sql, Collection<Integer> ids,
+      Integer projectId) throws SQLException {
+    try(PreparedStatement stmt = conn.prepareStatement(sql)){
+      for(Integer id : ids) {
+        setParameter(stmt, 1, id, Integer.class);
+        setParameter(stmt, 2, projectId, Integer.class);
+        stmt.addBatch();
+      }
+      
+      stmt.executeBatch();
+    }
+  }
+
+  
+  private boolean sameDecimal(BigDecimal a, BigDecimal b) {
+    return Objects.isNull(a) ? Objects.isNull(b) : Objects.nonNull(b) && a.compareTo(b) == 0;
+  }
+
+
+  /**
+   * @param projectId The project ID
+   * @return The shard that holds the project
+   */
+  @Override
+  public int shardFor(Integer projectId) {
+    return DbConnection.getShardMap().shardFor(projectId);
+  }
+
+
+  /**
+   * An iterator that can look at its next element without consuming it. Used to merge sorted
+   * shard results.
+   */
+  private static class PeekingIterator {
+    private final Iterator<Project> iterator;
+    private Project next;
+
+    PeekingIterator(Iterator<Project> iterator) {
+      this.iterator = iterator;
+      this.next = iterator.next();
+    }
+
+    Project peek() {
+      return next;
+    }
+
+    boolean hasNext() {
+      return Objects.nonNull(next);
+    }
+
+    Project next() {
+      Project current = next;
+      next = iterator.hasNext() ? iterator.next() : null;
+      return current;
+    }
+  }
+
 }
@@ -0,0 +1,244 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import projects.dao.ShardMap.Shard;
+import projects.exception.DbException;
+import projects.exception.ErrorReporter;
+import provided.util.DaoBase;
+
+/**
+ * Removes the rows of soft-deleted projects in the background. The child rows of each project are
+ * deleted in small batches, each in its own short transaction, and the project row goes last. This
+ * keeps lock times and undo per transaction bounded no matter how large the project is.
+ *
+ * <p>
+ * The purger gives way to the application:
+ * </p>
+ * <ul>
+ * <li>After each batch it pauses for as long as the batch took, so it uses at most about half of
+ * one connection's time.</li>
+ * <li>Before each batch it checks the shard's current InnoDB row lock waits and backs off while
+ * other transactions are waiting on locks.</li>
+ * <li>If replicas are configured with the {@code projects.purge.replicas} system property (a
+ * comma-separated list of {@code host:port/schema} entries), it also backs off while any replica
+ * is lagging or not replicating.</li>
+ * </ul>
+ */
+public class ProjectPurger extends DaoBase {
+  /* Children first, in an order that never violates a foreign key. */
+  //@formatter:off
+  private static final List<String> CHILD_TABLES = List.of(
+      "time_entry", "material", "step", "project_category");
+  //@formatter:on
+
+  private static final int BATCH_SIZE = 500;
+  private static final int PROJECTS_PER_SCAN = 50;
+  private static final int MAX_LOCK_WAITS = 2;
+  private static final long MAX_REPLICA_LAG_SECONDS = 5;
+  private static final long BACKOFF_MILLIS = 1_000;
+  private static final long RETRY_MILLIS = 30_000;
+
+  private final List<Shard> replicas =
+      ShardMap.parseEndpoints(System.getProperty("projects.purge.replicas"));
+  private final Object signal = new Object();
+
+  private Thread thread;
+  private boolean wakeRequested;
+
+  /**
+   * Starts the background thread if it isn't running yet.
+   */
+  public synchronized void start() {
+    if(Objects.isNull(thread)) {
+      thread = new Thread(this::run, "project-purger");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Tells the purger that a project was deleted. Starts the purger if needed.
+   */
+  public void wake() {
+    start();
+
+    synchronized(signal) {
+      wakeRequested = true;
+      signal.notifyAll();
+    }
+  }
+
+  /**
+   * Purges the soft-deleted projects of one shard, oldest deletion first, up to
+   * {@link #PROJECTS_PER_SCAN} projects.
+   * @param shard The shard number
+   * @return The number of projects purged
+   * @throws DbException Thrown if an error occurs.
+   * @throws InterruptedException if the thread is interrupted while pausing.
+   */
+  public int purgeShard(int shard) throws InterruptedException {
+    // @formatter:off
+    String sql = ""
+        + "SELECT project_id FROM project "
+        + "WHERE deleted_at IS NOT NULL "
+        + "ORDER BY deleted_at "
+        + "LIMIT " + PROJECTS_PER_SCAN;
+    // @formatter:on
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      List<Integer> projectIds = new ArrayList<>();
+
+      try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try(ResultSet rs = stmt.executeQuery()) {
+          while(rs.next()) {
+            projectIds.add(rs.getInt(1));
+          }
+        }
+      }
+
+      for(Integer projectId : projectIds) {
+        purgeProject(conn, projectId);
+      }
+
+      return projectIds.size();
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  private void run() {
+    int shardCount = DbConnection.getShardMap().getShardCount();
+
+    try {
+      while(!Thread.currentThread().isInterrupted()) {
+        int purged = 0;
+        boolean failed = false;
+
+        for(int shard = 0; shard < shardCount; shard++) {
+          try {
+            purged += purgeShard(shard);
+          } catch(DbException e) {
+            ErrorReporter.report("project-purger",
+                "Purge of shard " + shard + " failed. Will retry.", e);
+            failed = true;
+          }
+        }
+
+        /*
+         * Keep going while there is work. Once every shard is clean, sleep until the next delete;
+         * after a failure, retry later.
+         */
+        if(purged == 0 || failed) {
+          synchronized(signal) {
+            if(!wakeRequested) {
+              signal.wait(failed ? RETRY_MILLIS : 0);
+            }
+
+            wakeRequested = false;
+          }
+        }
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Deletes the child rows of a project batch by batch and then the project row. Each statement
+   * commits on its own. If the purge is interrupted, the project stays marked as deleted and the
+   * next scan continues where this one stopped.
+   */
+  private void purgeProject(Connection conn, Integer projectId)
+      throws SQLException, InterruptedException {
+    for(String table : CHILD_TABLES) {
+      String sql = "DELETE FROM " + table + " WHERE project_id = ? LIMIT " + BATCH_SIZE;
+      int deleted;
+
+      do {
+        throttle(conn);
+        long start = System.nanoTime();
+
+        try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+          setParameter(stmt, 1, projectId, Integer.class);
+          deleted = stmt.executeUpdate();
+        }
+
+        TimeUnit.NANOSECONDS.sleep(System.nanoTime() - start);
+      } while(deleted == BATCH_SIZE);
+    }
+
+    String sql = "DELETE FROM project WHERE project_id = ? AND deleted_at IS NOT NULL";
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      setParameter(stmt, 1, projectId, Integer.class);
+      stmt.executeUpdate();
+    }
+  }
+
+  /**
+   * Waits while the shard has transactions waiting on row locks or a replica is behind.
+   */
+  private void throttle(Connection conn) throws SQLException, InterruptedException {
+    while(currentLockWaits(conn) > MAX_LOCK_WAITS || replicasLagging()) {
+      TimeUnit.MILLISECONDS.sleep(BACKOFF_MILLIS);
+    }
+  }
+
+  private long currentLockWaits(Connection conn) throws SQLException {
+    String sql = "SHOW GLOBAL STATUS LIKE 'Innodb_row_lock_current_waits'";
+
+    try(Statement stmt = conn.createStatement()) {
+      try(ResultSet rs = stmt.executeQuery(sql)) {
+        return rs.next() ? rs.getLong(2) : 0;
+      }
+    }
+  }
+
+  /**
+   * @return true if any configured replica is more than {@link #MAX_REPLICA_LAG_SECONDS} behind,
+   *         has stopped replicating or can't be reached.
+   */
+  private boolean replicasLagging() {
+    for(Shard replica : replicas) {
+      try(Connection conn = DbConnection.getConnection(replica)) {
+        Long lag = replicaLagSeconds(conn);
+
+        if(Objects.isNull(lag) || lag > MAX_REPLICA_LAG_SECONDS) {
+          return true;
+        }
+      } catch(SQLException | DbException e) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Reads the replica's lag. MySQL 8.0.22 and later name the column Seconds_Behind_Source; older
+   * versions only understand SHOW SLAVE STATUS and Seconds_Behind_Master.
+   * @return The lag in seconds, or null if replication is not running
+   */
+  private Long replicaLagSeconds(Connection conn) throws SQLException {
+    try(Statement stmt = conn.createStatement()) {
+      try(ResultSet rs = stmt.executeQuery("SHOW REPLICA STATUS")) {
+        return rs.next() ? rs.getObject("Seconds_Behind_Source", Long.class) : null;
+      }
+    } catch(SQLException e) {
+      try(Statement stmt = conn.createStatement()) {
+        try(ResultSet rs = stmt.executeQuery("SHOW SLAVE STATUS")) {
+          return rs.next() ? rs.getObject("Seconds_Behind_Master", Long.class) : null;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import projects.entity.AuditRecord;
+import projects.entity.CompactProject;
+import projects.entity.MaterialRequirement;
+import projects.entity.Project;
+import projects.entity.ProjectSummary;
+import projects.entity.TimeEntry;
+import projects.exception.DbException;
+import projects.exception.ProjectArchivedException;
+import projects.exception.ProjectConflictException;
+
+/**
+ * The operations the service layer performs on stored project graphs. {@link ProjectDao} keeps
+ * them in the sharded MySQL database; {@link InMemoryProjectRepository} keeps them in memory for
+ * tests and for deployments without a database. Both implementations:
+ * <ul>
+ * <li>assign project, material and step IDs on insert and start versions at 0,</li>
+ * <li>advance the project version on every change and reject changes made against an older
+ * version with a {@link ProjectConflictException},</li>
+ * <li>remove a project's materials, steps and category links along with the project,</li>
+ * <li>list projects by name, case-insensitively first, and</li>
+ * <li>keep archived projects out of listings while they can still be fetched by ID.</li>
+ * </ul>
+ */
+public interface ProjectRepository {
+
+  /**
+   * Inserts a project row. Its children are not written.
+   * @param project The project
+   * @return The project with its new ID and version
+   * @throws DbException Thrown if an error occurs.
+   */
+  Project insertProject(Project project);
+
+  /**
+   * @return All projects sorted by project name, without their children
+   * @throws DbException Thrown if an error occurs.
+   */
+  List<Project> fetchAllProjects();
+
+  /**
+   * Lists all projects with only the given columns. The project ID and name are always read.
+   * @param columns The project columns to read, for example "project_id" and "project_name"
+   * @return All projects sorted by project name, without their children
+   * @throws DbException Thrown if a column is not a project column.
+   */
+  List<Project> fetchAllProjects(Collection<String> columns);
+
+  /**
+   * @param projectId The project ID
+   * @return The project with its materials, steps and categories, if it exists
+   * @throws DbException Thrown if an error occurs.
+   */
+  Optional<Project> fetchProjectById(Integer projectId);
+
+  /**
+   * @param projectId The project ID
+   * @param lazyText If true, the implementation may load notes and step text on first access
+   * @return The project with its materials, steps and categories, if it exists
+   * @throws DbException Thrown if an error occurs.
+   */
+  Optional<Project> fetchProjectById(Integer projectId, boolean lazyText);
+
+  /**
+   * Fetches a project, sending the read to a second replica if the first one is slow. Without
+   * replicas this is a plain fetch.
+   * @param projectId The project ID
+   * @return The project, if it exists
+   * @throws DbException Thrown if an error occurs.
+   */
+  default Optional<Project> fetchProjectByIdHedged(Integer projectId) {
+    return fetchProjectById(projectId);
+  }
+
+  /**
+   * @param projectId The project ID
+   * @return The project in its compact form, if it exists
+   * @throws DbException Thrown if an error occurs.
+   */
+  Optional<CompactProject> fetchCompactProjectById(Integer projectId);
+
+  /**
+   * Totals the materials of a set of projects per material name. Deleted projects are not counted.
+   * @param projectIds The project IDs
+   * @return The totals, sorted by material name
+   * @throws DbException Thrown if an error occurs.
+   */
+  List<MaterialRequirement> fetchMaterialRequirements(Collection<Integer> projectIds);
+
+  /**
+   * @return The number of partitions {@link #fetchProjectPage(int, int, int)} scans
+   */
+  int getShardCount();
+
+  /**
+   * @param projectId The project ID
+   * @return The partition that holds the project, from 0 to {@link #getShardCount()} - 1
+   */
+  int shardFor(Integer projectId);
+
+  /**
+   * Fetches the IDs of the projects in one partition that can be fetched by ID, including archived
+   * projects, in ascending order.
+   * @param shard The partition number
+   * @param afterProjectId Only higher IDs are returned. Use 0 for the first page.
+   * @param limit The maximum number of IDs
+   * @return The IDs, empty after the last page
+   * @throws DbException Thrown if an error occurs.
+   */
+  List<Integer> fetchProjectIdPage(int shard, int afterProjectId, int limit);
+
+  /**
+   * @param shard The partition number
+   * @return The highest live project ID in the partition, or 0 if it has no projects
+   * @throws DbException Thrown if an error occurs.
+   */
+  int fetchMaxProjectId(int shard);
+
+  /**
+   * Fetches the report figures of the live projects in one partition whose IDs fall in a range.
+   * @param shard The partition number
+   * @param afterProjectId The exclusive lower end of the range
+   * @param toProjectId The inclusive upper end of the range
+   * @return The summaries in project ID order
+   * @throws DbException Thrown if an error occurs.
+   */
+  List<ProjectSummary> fetchProjectSummaries(int shard, int afterProjectId, int toProjectId);
+
+  /**
+   * Fetches a page of projects from one partition in project ID order, with their materials and
+   * steps but without categories.
+   * @param shard The partition number, from 0 to {@link #getShardCount()} - 1
+   * @param afterProjectId Only projects with a higher ID are returned. Use 0 for the first page.
+   * @param limit The maximum number of projects
+   * @return The projects, empty after the last page
+   * @throws DbException Thrown if an error occurs.
+   */
+  List<Project> fetchProjectPage(int shard, int afterProjectId, int limit);
+
+  /**
+   * Updates the project's own fields if its version matches the stored one, and advances the
+   * version in the given project.
+   * @param project The project
+   * @return true if the project was updated, false if it does not exist
+   * @throws ProjectConflictException Thrown if the project was modified by someone else.
+   * @throws ProjectArchivedException Thrown if the project is archived.
+   * @throws DbException Thrown if an error occurs.
+   */
+  boolean modifyProjectDetails(Project project);
+
+  /**
+   * Saves a whole project graph atomically. Children without an ID are inserted, changed children
+   * are updated and stored children missing from the project are deleted. A project without an ID
+   * is inserted.
+   * @param project The project graph
+   * @return The rows the save wrote, described as audit records: the project row if its columns or
+   *         its version changed, then each inserted, updated or deleted child row. The list is empty
+   *         if nothing changed. The Optional is empty if the project does not exist.
+   * @throws ProjectConflictException Thrown if the project was modified by someone else.
+   * @throws ProjectArchivedException Thrown if the project is archived.
+   * @throws DbException Thrown if an error occurs.
+   */
+  Optional<List<AuditRecord>> saveProject(Project project);
+
+  /**
+   * Copies a project with its materials, steps and category links under a new name. The copy gets
+   * new IDs and starts at version 0 without actual hours.
+   * @param projectId The ID of the project to copy
+   * @param projectName The name of the copy
+   * @return The ID of the copy, or empty if the project does not exist
+   * @throws DbException Thrown if an error occurs.
+   */
+  Optional<Integer> cloneProject(Integer projectId, String projectName);
+
+  /**
+   * Deletes a project with its materials, steps and category links.
+   * @param projectId The project ID
+   * @return true if the project was deleted, false if it does not exist
+   * @throws DbException Thrown if an error occurs.
+   */
+  boolean deleteProject(Integer projectId);
+
+  /**
+   * Records time entries of projects in one partition and adds their hours to the projects'
+   * actual hours, advancing each project's version once however many entries it has. The batch is
+   * all-or-nothing.
+   * @param shard The partition that holds the projects
+   * @param entries The time entries
+   * @return The total hours added per project ID
+   * @throws DbException Thrown if an error occurs. Nothing is written. If a project does not
+   *         exist, is deleted or is archived, the cause is an SQLException with an integrity
+   *         constraint SQL state (class 23).
+   */
+  Map<Integer, BigDecimal> insertTimeEntries(int shard, List<TimeEntry> entries);
+
+  /**
+   * Archives every project that meets the policy. Each project is archived on its own.
+   * @param policy Decides which projects to archive
+   * @return The number of projects archived
+   * @throws DbException Thrown if an error occurs. Projects archived before the error stay
+   *         archived.
+   */
+  int archiveProjects(ArchivePolicy policy);
+
+  /**
+   * Moves an archived project back among the live projects, as if it had just changed.
+   * @param projectId The project ID
+   * @return true if the project was restored, false if it is not archived
+   * @throws DbException Thrown if an error occurs.
+   */
+  boolean restoreProject(Integer projectId);
+}
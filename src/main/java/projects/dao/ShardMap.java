@@ -0,0 +1,141 @@
+package projects.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps project IDs to the MySQL instances (or schemas) that hold them. A project and all of its
+ * material, step and project_category rows live on the same shard.
+ *
+ * <p>
+ * IDs are made globally unique by interleaving the auto-increment sequences: with N shards, shard
+ * <i>i</i> generates IDs i+1, i+1+N, i+1+2N, ... (see {@link DbConnection}). The shard of a project
+ * can therefore be computed from its ID alone, without a lookup table.
+ * </p>
+ *
+ * <p>
+ * Shards are configured with the {@code projects.shards} system property as a comma-separated list
+ * of {@code host:port/schema} entries, for example
+ * {@code -Dprojects.shards=localhost:3306/projects,localhost:3307/projects}. Without the property
+ * there is a single shard at the default location.
+ * </p>
+ */
+public class ShardMap {
+  private final List<Shard> shards;
+  private final AtomicInteger nextInsertShard = new AtomicInteger();
+
+  /**
+   * @param shards The shard endpoints, in shard number order
+   */
+  public ShardMap(List<Shard> shards) {
+    if(shards.isEmpty()) {
+      throw new IllegalArgumentException("At least one shard is required");
+    }
+
+    this.shards = List.copyOf(shards);
+  }
+
+  /**
+   * Builds the shard map from the {@code projects.shards} system property.
+   * @param defaultShard The shard to use if the property is not set
+   * @return The shard map
+   */
+  static ShardMap fromSystemProperty(Shard defaultShard) {
+    String property = System.getProperty("projects.shards");
+
+    if(Objects.isNull(property) || property.isBlank()) {
+      return new ShardMap(List.of(defaultShard));
+    }
+
+    return new ShardMap(parseEndpoints(property));
+  }
+
+  /**
+   * Parses a comma-separated list of {@code host:port/schema} endpoints.
+   * @param endpoints The endpoint list. May be null or blank.
+   * @return The endpoints, empty if none are given
+   */
+  static List<Shard> parseEndpoints(String endpoints) {
+    List<Shard> shards = new ArrayList<>();
+
+    if(Objects.isNull(endpoints) || endpoints.isBlank()) {
+      return shards;
+    }
+
+    for(String entry : endpoints.split(",")) {
+      String[] hostAndRest = entry.trim().split(":", 2);
+      String[] portAndSchema = hostAndRest[1].split("/", 2);
+      shards.add(new Shard(hostAndRest[0], Integer.parseInt(portAndSchema[0]), portAndSchema[1]));
+    }
+
+    return shards;
+  }
+
+  /**
+   * @return The number of shards
+   */
+  public int getShardCount() {
+    return shards.size();
+  }
+
+  /**
+   * @param shard The shard number
+   * @return The endpoint of the shard
+   */
+  public Shard getShard(int shard) {
+    return shards.get(shard);
+  }
+
+  /**
+   * Returns the shard that holds a project. A null ID maps to shard 0 so that lookups of a missing
+   * ID simply find nothing.
+   * @param projectId The project ID
+   * @return The shard number
+   */
+  public int shardFor(Integer projectId) {
+    return Objects.isNull(projectId) ? 0 : Math.floorMod(projectId - 1, shards.size());
+  }
+
+  /**
+   * Chooses the shard for a new project. New projects are spread round-robin, and the ID the shard
+   * generates then routes all later requests back to it.
+   * @return The shard number
+   */
+  public int nextInsertShard() {
+    return Math.floorMod(nextInsertShard.getAndIncrement(), shards.size());
+  }
+
+  /**
+   * The location of one shard.
+   */
+  public static class Shard {
+    private final String host;
+    private final int port;
+    private final String schema;
+
+    public Shard(String host, int port, String schema) {
+      this.host = host;
+      this.port = port;
+      this.schema = schema;
+    }
+
+    public String getHost() {
+      return host;
+    }
+
+    public int getPort() {
+      return port;
+    }
+
+    public String getSchema() {
+      return schema;
+    }
+
+    @Override
+    public String toString() {
+      return host + ":" + port + "/" + schema;
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import projects.entity.AuditRecord;
+import projects.entity.TimeEntry;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ * This class uses JDBC to write time entries and accumulate them into project actual hours.
+ */
+public class TimeEntryDao extends DaoBase {
+  private static final String PROJECT_TABLE = "project";
+  private static final String TIME_ENTRY_TABLE = "time_entry";
+
+  private static final AuditTrail AUDIT = AuditTrail.getDefault();
+
+  /**
+   * Writes time entries that all belong to projects on the same shard, and adds their hours to the
+   * projects' actual hours, in one transaction: one batched INSERT for the entries and one batched
+   * UPDATE with one row per project, however many entries each project has. Each UPDATE also
+   * advances the project version so that concurrent detail edits see the change. Deleted projects
+   * are not updated; if any project of the batch is deleted, the whole batch is rolled back with an
+   * integrity constraint violation, as it is for a project that no longer exists at all. The
+   * project updates are audited along with the inserted entries.
+   * @param shard The shard that holds the projects
+   * @param entries The time entries
+   * @return The total hours added per project ID
+   * @throws DbException Thrown if an error occurs. Nothing is written in that case.
+   */
+  public Map<Integer, BigDecimal> insertTimeEntries(int shard, List<TimeEntry> entries) {
+    // @formatter:off
+    String insertSql = ""
+        + "INSERT INTO " + TIME_ENTRY_TABLE + " "
+        + "(project_id, hours, logged_at, notes) "
+        + "VALUES (?, ?, ?, ?)";
+    String updateSql = ""
+        + "UPDATE " + PROJECT_TABLE + " SET "
+        + "actual_hours = COALESCE(actual_hours, 0) + ?, version = version + 1 "
+        + "WHERE project_id = ? AND deleted_at IS NULL";
+    // @formatter:on
+
+    /* Sorted by ID so that concurrent flushers lock project rows in the same order. */
+    Map<Integer, BigDecimal> hoursByProject = new TreeMap<>();
+
+    for(TimeEntry entry : entries) {
+      hoursByProject.merge(entry.getProjectId(), entry.getHours(), BigDecimal::add);
+    }
+
+    List<AuditRecord> audit = new ArrayList<>();
+
+    try(Connection conn = DbConnection.getConnection(shard)) {
+      startTransaction(conn);
+
+      try {
+        try(PreparedStatement stmt =
+            conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+          for(TimeEntry entry : entries) {
+            setParameter(stmt, 1, entry.getProjectId(), Integer.class);
+            setParameter(stmt, 2, entry.getHours(), BigDecimal.class);
+            setParameter(stmt, 3, entry.getLoggedAt(), LocalDateTime.class);
+            setParameter(stmt, 4, entry.getNotes(), String.class);
+            stmt.addBatch();
+          }
+
+          stmt.executeBatch();
+
+          if(AUDIT.isCapturing()) {
+            try(ResultSet keys = stmt.getGeneratedKeys()) {
+              for(TimeEntry entry : entries) {
+                keys.next();
+                audit.add(AuditRecord.insert(TIME_ENTRY_TABLE, keys.getInt(1),
+                    entry.getProjectId(), timeEntryValues(entry)));
+              }
+            }
+          }
+        }
+
+        if(AUDIT.isCapturing()) {
+          audit.addAll(describeProjectUpdates(conn, hoursByProject));
+        }
+
+        try(PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+          for(Map.Entry<Integer, BigDecimal> projectHours : hoursByProject.entrySet()) {
+            setParameter(stmt, 1, projectHours.getValue(), BigDecimal.class);
+            setParameter(stmt, 2, projectHours.getKey(), Integer.class);
+            stmt.addBatch();
+          }
+
+          int[] counts = stmt.executeBatch();
+          int index = 0;
+
+          for(Integer projectId : hoursByProject.keySet()) {
+            if(counts[index++] == 0) {
+              throw new SQLIntegrityConstraintViolationException(
+                  "Project with ID=" + projectId + " is deleted.", "23000");
+            }
+          }
+        }
+
+        AUDIT.beforeCommit(conn, audit);
+        commitTransaction(conn);
+
+      } catch(SQLException e) {
+        rollbackTransaction(conn);
+        throw new DbException(e);
+      }
+
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+
+    AUDIT.afterCommit(audit);
+    return hoursByProject;
+  }
+
+  /**
+   * Reads the actual hours and versions the projects have before the update, locking their rows,
+   * and describes the update each of them is about to get. Deleted projects are left out; the
+   * update refuses them anyway.
+   * @param conn Connection
+   * @param hoursByProject The hours to add per project ID
+   * @return One audit record per project
+   * @throws SQLException
+   */
+  private List<AuditRecord> describeProjectUpdates(Connection conn,
+      Map<Integer, BigDecimal> hoursByProject) throws SQLException {
+    String placeholders = String.join(", ", Collections.nCopies(hoursByProject.size(), "?"));
+    // @formatter:off
+    String sql = ""
+        + "SELECT project_id, actual_hours, version FROM " + PROJECT_TABLE + " "
+        + "WHERE project_id IN (" + placeholders + ") AND deleted_at IS NULL "
+        + "ORDER BY project_id "
+        + "FOR UPDATE";
+    // @formatter:on
+
+    List<AuditRecord> records = new ArrayList<>();
+
+    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+      int index = 1;
+
+      for(Integer projectId : hoursByProject.keySet()) {
+        setParameter(stmt, index++, projectId, Integer.class);
+      }
+
+      try(ResultSet rs = stmt.executeQuery()) {
+        while(rs.next()) {
+          Integer projectId = rs.getInt("project_id");
+          BigDecimal actualHours = rs.getBigDecimal("actual_hours");
+          int version = rs.getInt("version");
+
+          Map<String, Object> before = new LinkedHashMap<>();
+          before.put("actual_hours", actualHours);
+          before.put("version", version);
+
+          Map<String, Object> after = new LinkedHashMap<>();
+          after.put("actual_hours", (Objects.isNull(actualHours) ? BigDecimal.ZERO : actualHours)
+              .add(hoursByProject.get(projectId)));
+          after.put("version", version + 1);
+
+          records.add(AuditRecord.update(PROJECT_TABLE, projectId, projectId, before, after));
+        }
+      }
+    }
+
+    return records;
+  }
+
+  private Map<String, Object> timeEntryValues(TimeEntry entry) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("hours", entry.getHours());
+    values.put("logged_at", entry.getLoggedAt());
+    values.put("notes", entry.getNotes());
+    return values;
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import projects.event.ChangeEvent.ChangeType;
+
+/**
+ * One row of the audit trail: a change to a project or one of its children, with the column values
+ * before and after the change. Inserts only have after values and deletes only before values. An
+ * update only carries the columns whose value changed. Records are immutable.
+ */
+public final class AuditRecord {
+  private final String entity;
+  private final Integer entityId;
+  private final Integer projectId;
+  private final ChangeType changeType;
+  private final Map<String, Object> beforeValues;
+  private final Map<String, Object> afterValues;
+  private final LocalDateTime changedAt;
+
+  private AuditRecord(String entity, Integer entityId, Integer projectId, ChangeType changeType,
+      Map<String, Object> beforeValues, Map<String, Object> afterValues) {
+    this.entity = entity;
+    this.entityId = entityId;
+    this.projectId = projectId;
+    this.changeType = changeType;
+    this.beforeValues = copy(beforeValues);
+    this.afterValues = copy(afterValues);
+    this.changedAt = LocalDateTime.now();
+  }
+
+  /**
+   * @param entity The table of the inserted row, for example "material"
+   * @param entityId The primary key of the inserted row
+   * @param projectId The project the row belongs to
+   * @param afterValues The inserted column values by column name
+   * @return The record
+   */
+  public static AuditRecord insert(String entity, Integer entityId, Integer projectId,
+      Map<String, Object> afterValues) {
+    return new AuditRecord(entity, entityId, projectId, ChangeType.INSERT, null, afterValues);
+  }
+
+  /**
+   * Records an update. Only the columns whose value differs are kept; decimals that differ only in
+   * scale are equal.
+   * @param entity The table of the updated row
+   * @param entityId The primary key of the updated row
+   * @param projectId The project the row belongs to
+   * @param beforeValues The column values before the update
+   * @param afterValues The column values after the update
+   * @return The record, or null if no column changed
+   */
+  public static AuditRecord update(String entity, Integer entityId, Integer projectId,
+      Map<String, Object> beforeValues, Map<String, Object> afterValues) {
+    Map<String, Object> before = new LinkedHashMap<>();
+    Map<String, Object> after = new LinkedHashMap<>();
+
+    for(Map.Entry<String, Object> column : afterValues.entrySet()) {
+      Object oldValue = beforeValues.get(column.getKey());
+
+      if(!sameValue(oldValue, column.getValue())) {
+        before.put(column.getKey(), oldValue);
+        after.put(column.getKey(), column.getValue());
+      }
+    }
+
+    return after.isEmpty() ? null
+        : new AuditRecord(entity, entityId, projectId, ChangeType.UPDATE, before, after);
+  }
+
+  /**
+   * @param entity The table of the deleted row
+   * @param entityId The primary key of the deleted row
+   * @param projectId The project the row belonged to
+   * @param beforeValues The column values of the row when it was deleted
+   * @return The record
+   */
+  public static AuditRecord delete(String entity, Integer entityId, Integer projectId,
+      Map<String, Object> beforeValues) {
+    return new AuditRecord(entity, entityId, projectId, ChangeType.DELETE, beforeValues, null);
+  }
+
+  public String getEntity() {
+    return entity;
+  }
+
+  public Integer getEntityId() {
+    return entityId;
+  }
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public ChangeType getChangeType() {
+    return changeType;
+  }
+
+  /**
+   * @return The values before the change by column name, or null for an insert
+   */
+  public Map<String, Object> getBeforeValues() {
+    return beforeValues;
+  }
+
+  /**
+   * @return The values after the change by column name, or null for a delete
+   */
+  public Map<String, Object> getAfterValues() {
+    return afterValues;
+  }
+
+  public LocalDateTime getChangedAt() {
+    return changedAt;
+  }
+
+  private static Map<String, Object> copy(Map<String, Object> values) {
+    return Objects.isNull(values) ? null : Collections.unmodifiableMap(new LinkedHashMap<>(values));
+  }
+
+  private static boolean sameValue(Object a, Object b) {
+    if(a instanceof BigDecimal && b instanceof BigDecimal) {
+      return ((BigDecimal)a).compareTo((BigDecimal)b) == 0;
+    }
+
+    return Objects.equals(a, b);
+  }
+
+  @Override
+  public String toString() {
+    return changeType + " " + entity + " ID=" + entityId + ", projectId=" + projectId
+        + ", before=" + beforeValues + ", after=" + afterValues;
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import provided.util.NullTracking;
+
+/**
+ * A memory-compact, read-only form of {@link Material}. IDs and counts are primitive ints, the cost
+ * is held in cents, and nullable columns are tracked in a bit mask instead of by boxing.
+ */
+public class CompactMaterial implements NullTracking {
+  private static final byte NUM_REQUIRED_NULL = 1;
+  private static final byte COST_NULL = 2;
+
+  private int materialId;
+  private int projectId;
+  private String materialName;
+  private int numRequired;
+  private int cost;
+  private int version;
+  private byte nulls;
+
+  /**
+   * @param material The material
+   * @return The compact form of the material
+   */
+  public static CompactMaterial of(Material material) {
+    CompactMaterial compact = new CompactMaterial();
+    compact.materialId = material.getMaterialId();
+    compact.projectId = material.getProjectId();
+    compact.materialName = material.getMaterialName();
+    compact.numRequired = Objects.isNull(material.getNumRequired()) ? 0 : material.getNumRequired();
+    compact.cost = CompactProject.hundredths(material.getCost());
+    compact.version = material.getVersion();
+    compact.setNull("numRequired", Objects.isNull(material.getNumRequired()));
+    compact.setNull("cost", Objects.isNull(material.getCost()));
+    return compact;
+  }
+
+  public int getMaterialId() {
+    return materialId;
+  }
+
+  public int getProjectId() {
+    return projectId;
+  }
+
+  public String getMaterialName() {
+    return materialName;
+  }
+
+  /**
+   * @return The number required, or null if not set.
+   */
+  public Integer getNumRequired() {
+    return (nulls & NUM_REQUIRED_NULL) != 0 ? null : numRequired;
+  }
+
+  /**
+   * @return The cost in cents. Only meaningful if {@link #getCost()} is not null.
+   */
+  public int getCostCents() {
+    return cost;
+  }
+
+  /**
+   * @return The cost, or null if not set. A new BigDecimal is created on each call.
+   */
+  public BigDecimal getCost() {
+    return (nulls & COST_NULL) != 0 ? null : BigDecimal.valueOf(cost, 2);
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  @Override
+  public void setNull(String fieldName, boolean isNull) {
+    byte flag;
+
+    switch(fieldName) {
+      case "numRequired":
+        flag = NUM_REQUIRED_NULL;
+        break;
+
+      case "cost":
+        flag = COST_NULL;
+        break;
+
+      default:
+        return;
+    }
+
+    nulls = (byte)(isNull ? nulls | flag : nulls & ~flag);
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + materialId + ", materialName=" + materialName + ", numRequired="
+        + getNumRequired() + ", cost=" + getCost();
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import provided.util.NullTracking;
+
+/**
+ * A memory-compact, read-only form of {@link Project} for loading many project graphs at once.
+ * Compared with {@link Project}:
+ * <ul>
+ * <li>IDs, difficulty and version are primitive ints.</li>
+ * <li>The DECIMAL(7,2) hour columns are stored as hundredths of an hour in ints.</li>
+ * <li>Nullable columns are tracked in a bit mask.</li>
+ * <li>Child lists start as the shared empty list and are replaced by right-sized lists when
+ * loaded.</li>
+ * <li>Categories are the shared instances from the category cache.</li>
+ * </ul>
+ */
+public class CompactProject implements NullTracking {
+  private static final byte ESTIMATED_HOURS_NULL = 1;
+  private static final byte ACTUAL_HOURS_NULL = 2;
+  private static final byte DIFFICULTY_NULL = 4;
+
+  private int projectId;
+  private String projectName;
+  private int estimatedHours;
+  private int actualHours;
+  private int difficulty;
+  private String notes;
+  private int version;
+  private byte nulls;
+
+  private List<CompactMaterial> materials = List.of();
+  private List<CompactStep> steps = List.of();
+  private List<Category> categories = List.of();
+
+  /**
+   * Creates the compact form of a project graph that was not read through the entity mapping, for
+   * example one held by an in-memory store.
+   * @param project The project with its materials, steps and categories
+   * @return The compact project
+   */
+  public static CompactProject of(Project project) {
+    CompactProject compact = new CompactProject();
+    compact.projectId = project.getProjectId();
+    compact.projectName = project.getProjectName();
+    compact.estimatedHours = hundredths(project.getEstimatedHours());
+    compact.actualHours = hundredths(project.getActualHours());
+    compact.difficulty = Objects.isNull(project.getDifficulty()) ? 0 : project.getDifficulty();
+    compact.notes = project.getNotes();
+    compact.version = project.getVersion();
+    compact.setNull("estimatedHours", Objects.isNull(project.getEstimatedHours()));
+    compact.setNull("actualHours", Objects.isNull(project.getActualHours()));
+    compact.setNull("difficulty", Objects.isNull(project.getDifficulty()));
+
+    if(!project.getMaterials().isEmpty()) {
+      List<CompactMaterial> materials = new ArrayList<>(project.getMaterials().size());
+      project.getMaterials().forEach(material -> materials.add(CompactMaterial.of(material)));
+      compact.materials = materials;
+    }
+
+    if(!project.getSteps().isEmpty()) {
+      List<CompactStep> steps = new ArrayList<>(project.getSteps().size());
+      project.getSteps().forEach(step -> steps.add(CompactStep.of(step)));
+      compact.steps = steps;
+    }
+
+    if(!project.getCategories().isEmpty()) {
+      compact.categories = new ArrayList<>(project.getCategories());
+    }
+
+    return compact;
+  }
+
+  /**
+   * @return A DECIMAL(7,2) value in hundredths, or 0 if the value is null
+   */
+  static int hundredths(BigDecimal value) {
+    return Objects.isNull(value) ? 0
+        : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+  }
+
+  public int getProjectId() {
+    return projectId;
+  }
+
+  public String getProjectName() {
+    return projectName;
+  }
+
+  /**
+   * @return The estimated hours, or null if not set. A new BigDecimal is created on each call.
+   */
+  public BigDecimal getEstimatedHours() {
+    return (nulls & ESTIMATED_HOURS_NULL) != 0 ? null : BigDecimal.valueOf(estimatedHours, 2);
+  }
+
+  /**
+   * @return The actual hours, or null if not set. A new BigDecimal is created on each call.
+   */
+  public BigDecimal getActualHours() {
+    return (nulls & ACTUAL_HOURS_NULL) != 0 ? null : BigDecimal.valueOf(actualHours, 2);
+  }
+
+  /**
+   * @return The estimated hours in hundredths. Only meaningful if the hours are not null.
+   */
+  public int getEstimatedHundredths() {
+    return estimatedHours;
+  }
+
+  /**
+   * @return The actual hours in hundredths. Only meaningful if the hours are not null.
+   */
+  public int getActualHundredths() {
+    return actualHours;
+  }
+
+  /**
+   * @return The difficulty, or null if not set.
+   */
+  public Integer getDifficulty() {
+    return (nulls & DIFFICULTY_NULL) != 0 ? null : difficulty;
+  }
+
+  public String getNotes() {
+    return notes;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public List<CompactMaterial> getMaterials() {
+    return materials;
+  }
+
+  public void setMaterials(List<CompactMaterial> materials) {
+    this.materials = materials;
+  }
+
+  public List<CompactStep> getSteps() {
+    return steps;
+  }
+
+  public void setSteps(List<CompactStep> steps) {
+    this.steps = steps;
+  }
+
+  public List<Category> getCategories() {
+    return categories;
+  }
+
+  public void setCategories(List<Category> categories) {
+    this.categories = categories;
+  }
+
+  @Override
+  public void setNull(String fieldName, boolean isNull) {
+    byte flag;
+
+    switch(fieldName) {
+      case "estimatedHours":
+        flag = ESTIMATED_HOURS_NULL;
+        break;
+
+      case "actualHours":
+        flag = ACTUAL_HOURS_NULL;
+        break;
+
+      case "difficulty":
+        flag = DIFFICULTY_NULL;
+        break;
+
+      default:
+        return;
+    }
+
+    nulls = (byte)(isNull ? nulls | flag : nulls & ~flag);
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + projectId + ", name=" + projectName + ", materials=" + materials.size()
+        + ", steps=" + steps.size() + ", categories=" + categories.size();
+  }
+}
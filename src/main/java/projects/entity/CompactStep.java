@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package projects.entity;
+
+/**
+ * A memory-compact, read-only form of {@link Step}. All columns of a step are NOT NULL, so the
+ * numeric fields are plain primitive ints.
+ */
+public class CompactStep {
+  private int stepId;
+  private int projectId;
+  private String stepText;
+  private int stepOrder;
+  private int version;
+
+  /**
+   * @param step The step
+   * @return The compact form of the step
+   */
+  public static CompactStep of(Step step) {
+    CompactStep compact = new CompactStep();
+    compact.stepId = step.getStepId();
+    compact.projectId = step.getProjectId();
+    compact.stepText = step.getStepText();
+    compact.stepOrder = step.getStepOrder();
+    compact.version = step.getVersion();
+    return compact;
+  }
+
+  public int getStepId() {
+    return stepId;
+  }
+
+  public int getProjectId() {
+    return projectId;
+  }
+
+  public String getStepText() {
+    return stepText;
+  }
+
+  public int getStepOrder() {
+    return stepOrder;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + stepId + ", stepText=" + stepText;
+  }
+}
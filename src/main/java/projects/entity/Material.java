@@ -15,6 +15,7 @@ public class Material {
   private String materialName;
   private Integer numRequired;
   private BigDecimal cost;
+  private Integer version;
 
   public Integer getMaterialId() {
     return materialId;
@@ -56,6 +57,14 @@ public class Material {
     this.cost = cost;
   }
 
+  public Integer getVersion() {
+    return version;
+  }
+
+  public void setVersion(Integer version) {
+    this.version = version;
+  }
+
   @Override
   public String toString() {
     return "ID=" + materialId + ", materialName=" + materialName + ", numRequired=" + numRequired
@@ -0,0 +1,65 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * The total requirement for one catalog material across a set of projects: the number required and
+ * the cost summed over the material rows, and the number of projects that use the material.
+ */
+public class MaterialRequirement {
+  private String materialName;
+  private long numRequired;
+  private BigDecimal cost = BigDecimal.ZERO;
+  private int projectCount;
+
+  public String getMaterialName() {
+    return materialName;
+  }
+
+  public void setMaterialName(String materialName) {
+    this.materialName = materialName;
+  }
+
+  public long getNumRequired() {
+    return numRequired;
+  }
+
+  public void setNumRequired(long numRequired) {
+    this.numRequired = numRequired;
+  }
+
+  public BigDecimal getCost() {
+    return cost;
+  }
+
+  public void setCost(BigDecimal cost) {
+    this.cost = cost;
+  }
+
+  public int getProjectCount() {
+    return projectCount;
+  }
+
+  public void setProjectCount(int projectCount) {
+    this.projectCount = projectCount;
+  }
+
+  /**
+   * Adds another partial total for the same material, for example from another shard.
+   * @param other The other total
+   */
+  public void add(MaterialRequirement other) {
+    numRequired += other.numRequired;
+    cost = cost.add(other.cost);
+    projectCount += other.projectCount;
+  }
+
+  @Override
+  public String toString() {
+    return "materialName=" + materialName + ", numRequired=" + numRequired + ", cost=" + cost
+        + ", projectCount=" + projectCount;
+  }
+}
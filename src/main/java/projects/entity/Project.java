@@ -4,8 +4,10 @@
 package projects.entity;
 
 import java.math.BigDecimal;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * @author Promineo
@@ -18,10 +20,12 @@ public class Project {
   private BigDecimal actualHours;
   private Integer difficulty;
   private String notes;
+  private Integer version;
+  private Supplier<String> notesLoader;
 
-  private List<Material> materials = new LinkedList<>();
-  private List<Step> steps = new LinkedList<>();
-  private List<Category> categories = new LinkedList<>();
+  private List<Material> materials = new ArrayList<>();
+  private List<Step> steps = new ArrayList<>();
+  private List<Category> categories = new ArrayList<>();
 
   public Integer getProjectId() {
     return projectId;
@@ -63,12 +67,37 @@ public class Project {
     this.difficulty = difficulty;
   }
 
+  /**
+   * @return The notes. If the notes were not fetched with the project, they are loaded now.
+   */
   public String getNotes() {
+    if(Objects.nonNull(notesLoader)) {
+      notes = notesLoader.get();
+      notesLoader = null;
+    }
+
     return notes;
   }
 
   public void setNotes(String notes) {
     this.notes = notes;
+    this.notesLoader = null;
+  }
+
+  /**
+   * Defers loading the notes until {@link #getNotes()} is first called.
+   * @param notesLoader Supplies the notes
+   */
+  public void setNotesLoader(Supplier<String> notesLoader) {
+    this.notesLoader = notesLoader;
+  }
+
+  public Integer getVersion() {
+    return version;
+  }
+
+  public void setVersion(Integer version) {
+    this.version = version;
   }
 
   public List<Material> getMaterials() {
@@ -83,35 +112,39 @@ public class Project {
     return categories;
   }
 
+  /**
+   * A short debugging form. Use a {@code projects.render} renderer to display a project.
+   */
   @Override
   public String toString() {
-    String result = "";
-    
-    result += "\n   ID=" + projectId;
-    result += "\n   name=" + projectName;
-    result += "\n   estimatedHours=" + estimatedHours;
-    result += "\n   actualHours=" + actualHours;
-    result += "\n   difficulty=" + difficulty;
-    result += "\n   notes=" + notes;
-    
-    result += "\n   Materials:";
-    
+    StringBuilder result = new StringBuilder(128);
+
+    result.append("\n   ID=").append(projectId);
+    result.append("\n   name=").append(projectName);
+    result.append("\n   estimatedHours=").append(estimatedHours);
+    result.append("\n   actualHours=").append(actualHours);
+    result.append("\n   difficulty=").append(difficulty);
+    result.append("\n   notes=").append(Objects.isNull(notesLoader) ? notes : "(not loaded)");
+    result.append("\n   version=").append(version);
+
+    result.append("\n   Materials:");
+
     for(Material material : materials) {
-      result += "\n      " + material;
+      result.append("\n      ").append(material);
     }
-    
-    result += "\n   Steps:";
-    
+
+    result.append("\n   Steps:");
+
     for(Step step : steps) {
-      result += "\n      " + step;
+      result.append("\n      ").append(step);
     }
-    
-    result += "\n   Categories:";
-    
+
+    result.append("\n   Categories:");
+
     for(Category category : categories) {
-      result += "\n      " + category;
+      result.append("\n      ").append(category);
     }
-    
-    return result;
+
+    return result.toString();
   }
 }
@@ -0,0 +1,73 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The figures of one project that reports aggregate: its difficulty, estimated and actual hours,
+ * the cost of its materials summed over the material rows, and its categories. Reading these
+ * instead of whole project graphs keeps a report over every project to a few columns per project.
+ */
+public class ProjectSummary {
+  private Integer projectId;
+  private Integer difficulty;
+  private BigDecimal estimatedHours;
+  private BigDecimal actualHours;
+  private BigDecimal materialCost = BigDecimal.ZERO;
+  private List<Category> categories = new ArrayList<>();
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(Integer projectId) {
+    this.projectId = projectId;
+  }
+
+  public Integer getDifficulty() {
+    return difficulty;
+  }
+
+  public void setDifficulty(Integer difficulty) {
+    this.difficulty = difficulty;
+  }
+
+  public BigDecimal getEstimatedHours() {
+    return estimatedHours;
+  }
+
+  public void setEstimatedHours(BigDecimal estimatedHours) {
+    this.estimatedHours = estimatedHours;
+  }
+
+  public BigDecimal getActualHours() {
+    return actualHours;
+  }
+
+  public void setActualHours(BigDecimal actualHours) {
+    this.actualHours = actualHours;
+  }
+
+  public BigDecimal getMaterialCost() {
+    return materialCost;
+  }
+
+  public void setMaterialCost(BigDecimal materialCost) {
+    this.materialCost = materialCost;
+  }
+
+  public List<Category> getCategories() {
+    return categories;
+  }
+
+  @Override
+  public String toString() {
+    return "projectId=" + projectId + ", difficulty=" + difficulty + ", estimatedHours="
+        + estimatedHours + ", actualHours=" + actualHours + ", materialCost=" + materialCost
+        + ", categories=" + categories;
+  }
+}
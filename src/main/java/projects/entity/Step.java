@@ -3,6 +3,9 @@
  */
 package projects.entity;
 
+import java.util.Objects;
+import java.util.function.Supplier;
+
 /**
  * @author Promineo
  *
@@ -12,6 +15,8 @@ public class Step {
   private Integer projectId;
   private String stepText;
   private Integer stepOrder;
+  private Integer version;
+  private Supplier<String> stepTextLoader;
 
   public Integer getStepId() {
     return stepId;
@@ -29,12 +34,29 @@ public class Step {
     this.projectId = projectId;
   }
 
+  /**
+   * @return The step text. If the text was not fetched with the step, it is loaded now.
+   */
   public String getStepText() {
+    if(Objects.nonNull(stepTextLoader)) {
+      stepText = stepTextLoader.get();
+      stepTextLoader = null;
+    }
+
     return stepText;
   }
 
   public void setStepText(String stepText) {
     this.stepText = stepText;
+    this.stepTextLoader = null;
+  }
+
+  /**
+   * Defers loading the step text until {@link #getStepText()} is first called.
+   * @param stepTextLoader Supplies the step text
+   */
+  public void setStepTextLoader(Supplier<String> stepTextLoader) {
+    this.stepTextLoader = stepTextLoader;
   }
 
   public Integer getStepOrder() {
@@ -45,8 +67,17 @@ public class Step {
     this.stepOrder = stepOrder;
   }
 
+  public Integer getVersion() {
+    return version;
+  }
+
+  public void setVersion(Integer version) {
+    this.version = version;
+  }
+
   @Override
   public String toString() {
-    return "ID=" + stepId + ", stepText=" + stepText;
+    return "ID=" + stepId + ", stepText="
+        + (Objects.isNull(stepTextLoader) ? stepText : "(not loaded)");
   }
 }
@@ -0,0 +1,65 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A work session logged against a project. The hours of all entries are added to the project's
+ * actual hours.
+ */
+public class TimeEntry {
+  private Integer timeEntryId;
+  private Integer projectId;
+  private BigDecimal hours;
+  private LocalDateTime loggedAt;
+  private String notes;
+
+  public Integer getTimeEntryId() {
+    return timeEntryId;
+  }
+
+  public void setTimeEntryId(Integer timeEntryId) {
+    this.timeEntryId = timeEntryId;
+  }
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(Integer projectId) {
+    this.projectId = projectId;
+  }
+
+  public BigDecimal getHours() {
+    return hours;
+  }
+
+  public void setHours(BigDecimal hours) {
+    this.hours = hours;
+  }
+
+  public LocalDateTime getLoggedAt() {
+    return loggedAt;
+  }
+
+  public void setLoggedAt(LocalDateTime loggedAt) {
+    this.loggedAt = loggedAt;
+  }
+
+  public String getNotes() {
+    return notes;
+  }
+
+  public void setNotes(String notes) {
+    this.notes = notes;
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + timeEntryId + ", projectId=" + projectId + ", hours=" + hours + ", loggedAt="
+        + loggedAt + ", notes=" + notes;
+  }
+}
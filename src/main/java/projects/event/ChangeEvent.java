@@ -0,0 +1,72 @@
+package projects.event;
+
+import java.util.List;
+
+/**
+ * Describes a committed change to a single row. Events are immutable and are published only after
+ * the transaction that made the change has committed.
+ */
+public final class ChangeEvent {
+
+  /**
+   * The kind of change made to the row.
+   */
+  public enum ChangeType {
+    INSERT, UPDATE, DELETE;
+  }
+
+  private final String entity;
+  private final Integer entityId;
+  private final Integer projectId;
+  private final ChangeType changeType;
+  private final List<String> changedColumns;
+  private final long transactionId;
+
+  /**
+   * @param entity The table name of the changed row, for example "project".
+   * @param entityId The primary key of the changed row. For a category link, the category ID.
+   * @param projectId The project the row belongs to. For the project row, its own ID.
+   * @param changeType The kind of change.
+   * @param changedColumns The columns written by the change. Empty for deletes.
+   * @param transactionId Identifies the transaction. Events from the same transaction share it.
+   */
+  public ChangeEvent(String entity, Integer entityId, Integer projectId, ChangeType changeType,
+      List<String> changedColumns, long transactionId) {
+    this.entity = entity;
+    this.entityId = entityId;
+    this.projectId = projectId;
+    this.changeType = changeType;
+    this.changedColumns = List.copyOf(changedColumns);
+    this.transactionId = transactionId;
+  }
+
+  public String getEntity() {
+    return entity;
+  }
+
+  public Integer getEntityId() {
+    return entityId;
+  }
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public ChangeType getChangeType() {
+    return changeType;
+  }
+
+  public List<String> getChangedColumns() {
+    return changedColumns;
+  }
+
+  public long getTransactionId() {
+    return transactionId;
+  }
+
+  @Override
+  public String toString() {
+    return changeType + " " + entity + " ID=" + entityId + ", projectId=" + projectId
+        + ", columns=" + changedColumns + ", transactionId=" + transactionId;
+  }
+}
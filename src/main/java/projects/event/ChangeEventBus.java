@@ -0,0 +1,199 @@
+package projects.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import projects.exception.ErrorReporter;
+
+/**
+ * An in-process, lock-free broadcast bus for {@link ChangeEvent}s. Events are written into a
+ * fixed-size ring buffer. Every subscriber has its own thread and its own read position and sees
+ * every event published after it subscribed, in order, delivered in batches.
+ *
+ * <p>
+ * Publishers claim a slot with a compare-and-set on the shared cursor and then mark the slot as
+ * published. A publisher never overtakes the slowest subscriber: when the ring is full it waits
+ * using the configured {@link WaitStrategy}, which gives natural back-pressure instead of unbounded
+ * memory growth.
+ * </p>
+ */
+public class ChangeEventBus {
+  public static final int DEFAULT_CAPACITY = 4096;
+  public static final int DEFAULT_MAX_BATCH = 256;
+
+  private final int capacity;
+  private final int mask;
+  private final int maxBatch;
+  private final WaitStrategy waitStrategy;
+
+  private final AtomicReferenceArray<ChangeEvent> slots;
+  private final AtomicLongArray published;
+  private final AtomicLong cursor = new AtomicLong(-1);
+  private final AtomicLong transactionIds = new AtomicLong();
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates a bus with the default capacity, batch size and a sleeping wait strategy.
+   */
+  public ChangeEventBus() {
+    this(DEFAULT_CAPACITY, DEFAULT_MAX_BATCH, WaitStrategy.SLEEPING);
+  }
+
+  /**
+   * @param capacity The number of slots in the ring. Must be a power of two.
+   * @param maxBatch The largest batch handed to a listener in one call.
+   * @param waitStrategy How publishers and subscribers wait.
+   */
+  public ChangeEventBus(int capacity, int maxBatch, WaitStrategy waitStrategy) {
+    if(Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.maxBatch = maxBatch;
+    this.waitStrategy = waitStrategy;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.published = new AtomicLongArray(capacity);
+
+    for(int i = 0; i < capacity; i++) {
+      published.set(i, -1);
+    }
+  }
+
+  /**
+   * @return A new transaction ID to tag the events of one committed transaction with.
+   */
+  public long nextTransactionId() {
+    return transactionIds.incrementAndGet();
+  }
+
+  /**
+   * Publishes an event to all current subscribers. Waits if the slowest subscriber is a full ring
+   * behind.
+   * @param event The event
+   */
+  public void publish(ChangeEvent event) {
+    long sequence;
+    int attempt = 0;
+
+    while(true) {
+      long current = cursor.get();
+      sequence = current + 1;
+
+      if(sequence - capacity > minimumSubscriberSequence(current)) {
+        waitStrategy.idle(attempt++);
+      }
+      else if(cursor.compareAndSet(current, sequence)) {
+        break;
+      }
+    }
+
+    int index = (int)(sequence & mask);
+    slots.set(index, event);
+    published.set(index, sequence);
+  }
+
+  /**
+   * Registers a listener. It receives every event published from now on on a dedicated daemon
+   * thread.
+   * @param name A name for the listener thread
+   * @param listener The listener
+   * @return The subscription, used to unsubscribe.
+   */
+  public Subscription subscribe(String name, ChangeListener listener) {
+    Subscription subscription = new Subscription(listener, cursor.get());
+    subscriptions.add(subscription);
+
+    Thread thread = new Thread(subscription::run, "change-listener-" + name);
+    thread.setDaemon(true);
+    thread.start();
+
+    return subscription;
+  }
+
+  /**
+   * @return The number of events published but not yet consumed by the slowest subscriber.
+   */
+  public long getBacklog() {
+    long current = cursor.get();
+    return current - minimumSubscriberSequence(current);
+  }
+
+  private long minimumSubscriberSequence(long defaultValue) {
+    long minimum = defaultValue;
+
+    for(Subscription subscription : subscriptions) {
+      minimum = Math.min(minimum, subscription.sequence.get());
+    }
+
+    return minimum;
+  }
+
+  private boolean isPublished(long sequence) {
+    return published.get((int)(sequence & mask)) == sequence;
+  }
+
+  /**
+   * A registered listener and its read position in the ring.
+   */
+  public class Subscription {
+    private final ChangeListener listener;
+    private final AtomicLong sequence;
+    private volatile boolean running = true;
+
+    private Subscription(ChangeListener listener, long startSequence) {
+      this.listener = listener;
+      this.sequence = new AtomicLong(startSequence);
+    }
+
+    /**
+     * Stops delivery to the listener and releases its hold on the ring.
+     */
+    public void unsubscribe() {
+      running = false;
+      subscriptions.remove(this);
+    }
+
+    private void run() {
+      List<ChangeEvent> batch = new ArrayList<>(maxBatch);
+      List<ChangeEvent> view = Collections.unmodifiableList(batch);
+      long next = sequence.get() + 1;
+      int attempt = 0;
+
+      while(running) {
+        long available = next - 1;
+
+        while(available + 1 - next < maxBatch && isPublished(available + 1)) {
+          available++;
+        }
+
+        if(available < next) {
+          waitStrategy.idle(attempt++);
+          continue;
+        }
+
+        attempt = 0;
+        batch.clear();
+
+        for(long s = next; s <= available; s++) {
+          batch.add(slots.get((int)(s & mask)));
+        }
+
+        try {
+          listener.onEvents(view);
+        } catch(RuntimeException e) {
+          // The batch is skipped for this listener; the other subscribers are not affected
+          ErrorReporter.report("change-event-bus", "Change listener " + listener + " failed", e);
+        }
+
+        sequence.set(available);
+        next = available + 1;
+      }
+    }
+  }
+}
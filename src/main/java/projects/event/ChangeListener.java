@@ -0,0 +1,16 @@
+package projects.event;
+
+import java.util.List;
+
+/**
+ * Receives change events from a {@link ChangeEventBus}. Each listener runs on its own thread and
+ * receives events in publication order, in batches of whatever has accumulated since the last call.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+  /**
+   * @param events The events, oldest first. The list is only valid for the duration of the call.
+   */
+  void onEvents(List<ChangeEvent> events);
+}
@@ -0,0 +1,65 @@
+package projects.event;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits on the {@link ChangeEventBus} ring buffer, either a subscriber waiting for new
+ * events or a publisher waiting for the slowest subscriber to free a slot. The strategies trade
+ * latency for CPU usage.
+ */
+public enum WaitStrategy {
+
+  /**
+   * Spin continuously. Lowest latency, but burns a core per waiting thread.
+   */
+  BUSY_SPIN {
+    @Override
+    void idle(int attempt) {
+      Thread.onSpinWait();
+    }
+  },
+
+  /**
+   * Spin briefly, then yield the CPU to other threads.
+   */
+  YIELDING {
+    @Override
+    void idle(int attempt) {
+      if(attempt < SPIN_TRIES) {
+        Thread.onSpinWait();
+      }
+      else {
+        Thread.yield();
+      }
+    }
+  },
+
+  /**
+   * Spin, then yield, then park with a growing back-off up to a millisecond. Suited to background
+   * consumers such as cache invalidation where a little latency does not matter.
+   */
+  SLEEPING {
+    @Override
+    void idle(int attempt) {
+      if(attempt < SPIN_TRIES) {
+        Thread.onSpinWait();
+      }
+      else if(attempt < SPIN_TRIES + YIELD_TRIES) {
+        Thread.yield();
+      }
+      else {
+        int shift = Math.min(attempt - SPIN_TRIES - YIELD_TRIES, 10);
+        LockSupport.parkNanos(1_000L << shift);
+      }
+    }
+  };
+
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 100;
+
+  /**
+   * Waits once.
+   * @param attempt How many times the caller has already waited for the same condition.
+   */
+  abstract void idle(int attempt);
+}
@@ -0,0 +1,18 @@
+package projects.exception;
+
+/**
+ * Thrown when a request runs out of its time budget. Any statement that was still running when the
+ * deadline passed has been cancelled on the server.
+ */
+@SuppressWarnings("serial")
+public class DeadlineExceededException extends DbException {
+
+  public DeadlineExceededException(String message) {
+    super(message);
+  }
+
+  public DeadlineExceededException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+}
@@ -0,0 +1,94 @@
+package projects.exception;
+
+import java.lang.System.Logger.Level;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The one place where background work reports failures it cannot throw to a caller, such as a
+ * failing change listener, a flush or refresh that will be retried, or records that had to be
+ * dropped. By default reports go to the platform logger named "projects" at WARNING level. An
+ * application can install its own {@link Handler}, for example to feed its monitoring. Reports are
+ * also counted per source, so a health check can read them without parsing logs.
+ */
+public final class ErrorReporter {
+
+  /**
+   * Receives the reports. Must not block for long: it runs on the thread that hit the failure.
+   */
+  @FunctionalInterface
+  public interface Handler {
+    /**
+     * @param source The component that failed, for example "audit-trail"
+     * @param message What failed and what happens next
+     * @param error The failure, or null if there is no exception
+     */
+    void report(String source, String message, Throwable error);
+  }
+
+  private static final System.Logger LOGGER = System.getLogger("projects");
+
+  private static final Handler LOG =
+      (source, message, error) -> LOGGER.log(Level.WARNING, source + ": " + message, error);
+
+  private static final Map<String, LongAdder> COUNTS = new ConcurrentHashMap<>();
+
+  private static volatile Handler handler = LOG;
+
+  private ErrorReporter() {
+  }
+
+  /**
+   * Replaces the handler.
+   * @param newHandler The handler, or null to log again
+   */
+  public static void setHandler(Handler newHandler) {
+    handler = Objects.isNull(newHandler) ? LOG : newHandler;
+  }
+
+  /**
+   * Reports a failure. Never throws, even if the handler does.
+   * @param source The component that failed
+   * @param message What failed and what happens next
+   * @param error The failure, or null
+   */
+  public static void report(String source, String message, Throwable error) {
+    COUNTS.computeIfAbsent(source, key -> new LongAdder()).increment();
+
+    try {
+      handler.report(source, message, error);
+    } catch(RuntimeException e) {
+      // A broken handler must not break the background work that reported to it
+    }
+  }
+
+  /**
+   * Reports a failure that has no exception.
+   * @param source The component that failed
+   * @param message What failed and what happens next
+   */
+  public static void report(String source, String message) {
+    report(source, message, null);
+  }
+
+  /**
+   * @param source The component
+   * @return The number of failures the component has reported
+   */
+  public static long getReportCount(String source) {
+    LongAdder count = COUNTS.get(source);
+    return Objects.isNull(count) ? 0 : count.sum();
+  }
+
+  /**
+   * @return The number of failures reported so far by source, sorted by source
+   */
+  public static Map<String, Long> getReportCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    COUNTS.forEach((source, count) -> counts.put(source, count.sum()));
+    return counts;
+  }
+}
@@ -0,0 +1,15 @@
+package projects.exception;
+
+/**
+ * Thrown when a request is turned away because the database is already running as much work as it
+ * can handle and the wait for a free slot would be too long. The request was not started, so it is
+ * safe to retry later.
+ */
+@SuppressWarnings("serial")
+public class OverloadException extends DbException {
+
+  public OverloadException(String message) {
+    super(message);
+  }
+
+}
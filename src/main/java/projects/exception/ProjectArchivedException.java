@@ -0,0 +1,24 @@
+package projects.exception;
+
+/**
+ * Thrown when a change is made to a project that has been moved to the archive tables. Archived
+ * projects can be read but not changed; the caller has to restore the project first.
+ */
+@SuppressWarnings("serial")
+public class ProjectArchivedException extends DbException {
+
+  private final Integer projectId;
+
+  public ProjectArchivedException(Integer projectId) {
+    super("Project with ID=" + projectId + " is archived. Restore it before changing it.");
+    this.projectId = projectId;
+  }
+
+  /**
+   * @return The ID of the archived project
+   */
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+}
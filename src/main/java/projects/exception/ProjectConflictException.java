@@ -0,0 +1,28 @@
+package projects.exception;
+
+import projects.entity.Project;
+
+/**
+ * Thrown when an update is rejected because the row was changed by another writer after the
+ * caller read it. The exception carries the project as it currently exists in the database so
+ * that the caller can merge its changes and try again.
+ */
+@SuppressWarnings("serial")
+public class ProjectConflictException extends DbException {
+
+  private final transient Project currentProject;
+
+  public ProjectConflictException(Project currentProject) {
+    super("Project with ID=" + currentProject.getProjectId()
+        + " was modified by another user (current version=" + currentProject.getVersion() + ").");
+    this.currentProject = currentProject;
+  }
+
+  /**
+   * @return The project as it is currently stored, including its version.
+   */
+  public Project getCurrentProject() {
+    return currentProject;
+  }
+
+}
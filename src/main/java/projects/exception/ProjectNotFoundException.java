@@ -0,0 +1,14 @@
+package projects.exception;
+
+/**
+ * Thrown when a project that the caller named by ID does not exist, so that callers can tell a
+ * missing project from a failed query without inspecting the message or the cause.
+ */
+@SuppressWarnings("serial")
+public class ProjectNotFoundException extends DbException {
+
+  public ProjectNotFoundException(String message) {
+    super(message);
+  }
+
+}
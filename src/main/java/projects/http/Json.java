@@ -0,0 +1,209 @@
+package projects.http;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import projects.render.JsonRenderer;
+
+/**
+ * Minimal JSON support for the HTTP API. Projects are written by the {@link JsonRenderer}. Request
+ * bodies are flat JSON objects of strings, numbers and nulls.
+ */
+class Json {
+
+  private Json() {
+  }
+
+  /**
+   * Writes an error message as a JSON object.
+   */
+  static void writeError(String message, Appendable out) throws IOException {
+    out.append("{\"error\":");
+    JsonRenderer.appendString(message, out);
+    out.append('}');
+  }
+
+  /**
+   * Parses a flat JSON object. Values are returned as {@link String}, {@link BigDecimal},
+   * {@link Boolean} or null.
+   * @param json The JSON text
+   * @return The members of the object in document order
+   * @throws IllegalArgumentException if the text is not a flat JSON object.
+   */
+  static Map<String, Object> parseObject(String json) {
+    Parser parser = new Parser(json);
+    Map<String, Object> members = new LinkedHashMap<>();
+
+    parser.expect('{');
+
+    if(!parser.consume('}')) {
+      do {
+        String name = parser.readString();
+        parser.expect(':');
+        members.put(name, parser.readValue());
+      } while(parser.consume(','));
+
+      parser.expect('}');
+    }
+
+    parser.skipWhitespace();
+
+    if(parser.pos != json.length()) {
+      throw new IllegalArgumentException("Unexpected content after JSON object");
+    }
+
+    return members;
+  }
+
+  private static class Parser {
+    private final String text;
+    private int pos;
+
+    Parser(String text) {
+      this.text = text;
+    }
+
+    void skipWhitespace() {
+      while(pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    boolean consume(char ch) {
+      skipWhitespace();
+
+      if(pos < text.length() && text.charAt(pos) == ch) {
+        pos++;
+        return true;
+      }
+
+      return false;
+    }
+
+    void expect(char ch) {
+      if(!consume(ch)) {
+        throw new IllegalArgumentException("Expected '" + ch + "' at position " + pos);
+      }
+    }
+
+    Object readValue() {
+      skipWhitespace();
+
+      if(pos >= text.length()) {
+        throw new IllegalArgumentException("Unexpected end of JSON");
+      }
+
+      char ch = text.charAt(pos);
+
+      if(ch == '"') {
+        return readString();
+      }
+
+      if(text.startsWith("null", pos)) {
+        pos += 4;
+        return null;
+      }
+
+      if(text.startsWith("true", pos)) {
+        pos += 4;
+        return Boolean.TRUE;
+      }
+
+      if(text.startsWith("false", pos)) {
+        pos += 5;
+        return Boolean.FALSE;
+      }
+
+      int start = pos;
+
+      while(pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+        pos++;
+      }
+
+      try {
+        return new BigDecimal(text.substring(start, pos));
+      } catch(NumberFormatException e) {
+        throw new IllegalArgumentException("Unsupported JSON value at position " + start);
+      }
+    }
+
+    String readString() {
+      expect('"');
+      StringBuilder builder = new StringBuilder();
+
+      while(pos < text.length()) {
+        char ch = text.charAt(pos++);
+
+        if(ch == '"') {
+          return builder.toString();
+        }
+
+        if(ch == '\\') {
+          if(pos >= text.length()) {
+            throw new IllegalArgumentException("Unterminated JSON string");
+          }
+
+          char escaped = text.charAt(pos++);
+
+          switch(escaped) {
+            case 'n':
+              builder.append('\n');
+              break;
+
+            case 'r':
+              builder.append('\r');
+              break;
+
+            case 't':
+              builder.append('\t');
+              break;
+
+            case 'b':
+              builder.append('\b');
+              break;
+
+            case 'f':
+              builder.append('\f');
+              break;
+
+            case 'u':
+              builder.append(readUnicodeEscape());
+              break;
+
+            default:
+              builder.append(escaped);
+          }
+        }
+        else {
+          builder.append(ch);
+        }
+      }
+
+      throw new IllegalArgumentException("Unterminated JSON string");
+    }
+
+    /**
+     * Reads the four hex digits of a \\u escape.
+     */
+    private char readUnicodeEscape() {
+      if(pos + 4 > text.length()) {
+        throw new IllegalArgumentException("Incomplete \\u escape at position " + pos);
+      }
+
+      int value = 0;
+
+      for(int end = pos + 4; pos < end; pos++) {
+        int digit = Character.digit(text.charAt(pos), 16);
+
+        if(digit < 0) {
+          throw new IllegalArgumentException("Invalid \\u escape at position " + pos);
+        }
+
+        value = value * 16 + digit;
+      }
+
+      return (char)value;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package projects.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.exception.DeadlineExceededException;
+import projects.exception.OverloadException;
+import projects.exception.ProjectArchivedException;
+import projects.exception.ProjectConflictException;
+import projects.exception.ProjectNotFoundException;
+import projects.render.JsonRenderer;
+import projects.service.ProjectService;
+
+/**
+ * Routes /projects requests to the {@link ProjectService} and writes JSON responses.
+ */
+class ProjectHandler implements HttpHandler {
+  private static final String JSON = "application/json; charset=utf-8";
+  private static final List<String> SUMMARY_COLUMNS = List.of("project_id", "project_name");
+  private static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+  private static final Duration DEFAULT_READ_BUDGET = Duration.ofSeconds(2);
+  private static final String RETRY_AFTER_SECONDS = "1";
+
+  private final ProjectService projectService;
+
+  ProjectHandler(ProjectService projectService) {
+    this.projectService = projectService;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      Integer projectId = parseProjectId(exchange.getRequestURI().getPath());
+      String method = exchange.getRequestMethod();
+
+      if(Objects.isNull(projectId)) {
+        switch(method) {
+          case "GET":
+            listProjects(exchange);
+            break;
+
+          case "POST":
+            addProject(exchange);
+            break;
+
+          default:
+            sendError(exchange, 405, method + " is not supported on /projects");
+        }
+      }
+      else {
+        switch(method) {
+          case "GET":
+            sendProject(exchange, 200, projectService.fetchProjectById(projectId, budget(exchange)));
+            break;
+
+          case "PUT":
+            updateProject(exchange, projectId);
+            break;
+
+          case "DELETE":
+            projectService.deleteProject(projectId);
+            exchange.sendResponseHeaders(204, -1);
+            break;
+
+          default:
+            sendError(exchange, 405, method + " is not supported on /projects/{id}");
+        }
+      }
+    } catch(ProjectConflictException e) {
+      sendProject(exchange, 409, e.getCurrentProject());
+    } catch(ProjectArchivedException e) {
+      sendError(exchange, 409, e.getMessage());
+    } catch(DeadlineExceededException e) {
+      sendError(exchange, 504, e.getMessage());
+    } catch(OverloadException e) {
+      exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+      sendError(exchange, 503, e.getMessage());
+    } catch(IllegalArgumentException | ClassCastException | ArithmeticException e) {
+      sendError(exchange, 400, e.getMessage());
+    } catch(ProjectNotFoundException e) {
+      sendError(exchange, 404, e.getMessage());
+    } catch(DbException e) {
+      sendError(exchange, 500, e.getMessage());
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Streams the project list. The response is chunked so that the first projects go out before the
+   * last ones are serialized, and it is compressed when the client accepts gzip.
+   */
+  private void listProjects(HttpExchange exchange) throws IOException {
+    List<Project> projects = projectService.withDeadline(budget(exchange),
+        () -> projectService.fetchAllProjects(SUMMARY_COLUMNS));
+    boolean gzip = acceptsGzip(exchange);
+
+    exchange.getResponseHeaders().set("Content-Type", JSON);
+
+    if(gzip) {
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+    }
+
+    exchange.sendResponseHeaders(200, 0);
+
+    OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192)
+        : exchange.getResponseBody();
+
+    try(Writer out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+      out.write('[');
+
+      for(int i = 0; i < projects.size(); i++) {
+        if(i > 0) {
+          out.write(',');
+        }
+
+        JsonRenderer.INSTANCE.renderSummary(projects.get(i), out);
+      }
+
+      out.write(']');
+    }
+  }
+
+  /**
+   * @return The read budget the client asked for in the X-Request-Timeout-Ms header, or the
+   *         default
+   */
+  private Duration budget(HttpExchange exchange) {
+    String timeout = exchange.getRequestHeaders().getFirst(TIMEOUT_HEADER);
+
+    if(Objects.isNull(timeout)) {
+      return DEFAULT_READ_BUDGET;
+    }
+
+    try {
+      return Duration.ofMillis(Long.parseLong(timeout.trim()));
+    } catch(NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid " + TIMEOUT_HEADER + " header: " + timeout);
+    }
+  }
+
+  private void addProject(HttpExchange exchange) throws IOException {
+    Project project = readProject(exchange);
+    Project dbProject = projectService.addProject(project);
+
+    exchange.getResponseHeaders().set("Location", "/projects/" + dbProject.getProjectId());
+    sendProject(exchange, 201, dbProject);
+  }
+
+  private void updateProject(HttpExchange exchange, Integer projectId) throws IOException {
+    Project project = readProject(exchange);
+    project.setProjectId(projectId);
+
+    if(Objects.isNull(project.getVersion())) {
+      throw new IllegalArgumentException("The project version is required for an update.");
+    }
+
+    projectService.modifyProjectDetails(project);
+    sendProject(exchange, 200, projectService.fetchProjectById(projectId));
+  }
+
+  /**
+   * Reads a project from the JSON request body.
+   */
+  private Project readProject(HttpExchange exchange) throws IOException {
+    String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    Map<String, Object> members = Json.parseObject(body);
+    Project project = new Project();
+
+    project.setProjectName((String)members.get("projectName"));
+    project.setEstimatedHours(toHours(members.get("estimatedHours")));
+    project.setActualHours(toHours(members.get("actualHours")));
+    project.setDifficulty(toInteger(members.get("difficulty")));
+    project.setNotes((String)members.get("notes"));
+    project.setVersion(toInteger(members.get("version")));
+
+    if(Objects.isNull(project.getProjectName())) {
+      throw new IllegalArgumentException("projectName is required.");
+    }
+
+    int difficulty = Objects.isNull(project.getDifficulty()) ? 1 : project.getDifficulty();
+
+    if(difficulty < 1 || difficulty > 5) {
+      throw new IllegalArgumentException(difficulty + " is not a valid difficulty input.");
+    }
+
+    return project;
+  }
+
+  private BigDecimal toHours(Object value) {
+    return Objects.isNull(value) ? null
+        : ((BigDecimal)value).setScale(2, RoundingMode.HALF_UP);
+  }
+
+  private Integer toInteger(Object value) {
+    return Objects.isNull(value) ? null : ((BigDecimal)value).intValueExact();
+  }
+
+  private void sendProject(HttpExchange exchange, int status, Project project) throws IOException {
+    StringBuilder json = new StringBuilder(256);
+    JsonRenderer.INSTANCE.renderProject(project, json);
+    send(exchange, status, json);
+  }
+
+  private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+    StringBuilder json = new StringBuilder(64);
+    Json.writeError(message, json);
+    send(exchange, status, json);
+  }
+
+  private void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+    byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+    exchange.getResponseHeaders().set("Content-Type", JSON);
+    exchange.sendResponseHeaders(status, bytes.length);
+
+    try(OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private boolean acceptsGzip(HttpExchange exchange) {
+    List<String> encodings = exchange.getRequestHeaders().get("Accept-Encoding");
+    return Objects.nonNull(encodings) && encodings.stream().anyMatch(e -> e.contains("gzip"));
+  }
+
+  /**
+   * @param path The request path
+   * @return The project ID from /projects/{id}, or null for /projects.
+   * @throws IllegalArgumentException if the ID is not a number.
+   */
+  private Integer parseProjectId(String path) {
+    String rest = path.substring("/projects".length());
+
+    if(rest.isEmpty() || rest.equals("/")) {
+      return null;
+    }
+
+    try {
+      return Integer.parseInt(rest.substring(1));
+    } catch(NumberFormatException e) {
+      throw new IllegalArgumentException(rest.substring(1) + " is not a valid project ID.");
+    }
+  }
+}
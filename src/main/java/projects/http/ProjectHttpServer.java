@@ -0,0 +1,82 @@
+package projects.http;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import projects.exception.DbException;
+import projects.service.ProjectService;
+
+/**
+ * An embedded HTTP server exposing the {@link ProjectService} operations as JSON endpoints. It uses
+ * the JDK's built-in {@link HttpServer}, which keeps HTTP/1.1 connections alive and serves
+ * pipelined requests on a connection in order.
+ *
+ * <pre>
+ * GET    /projects          list projects (streamed, gzip if accepted)
+ * GET    /projects/{id}     project details
+ * POST   /projects          add a project
+ * PUT    /projects/{id}     update project details (requires the current version)
+ * DELETE /projects/{id}     delete a project
+ * </pre>
+ *
+ * The two GET requests accept an {@code X-Request-Timeout-Ms} header with the caller's time budget
+ * (2 seconds by default). A request that runs out of time is answered with 504. A request turned
+ * away because the database is saturated is answered with 503 and a {@code Retry-After} header.
+ */
+public class ProjectHttpServer {
+  private static final int FALLBACK_THREADS = 200;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Creates a server bound to the given port. The server is not started.
+   * @param projectService The service that handles the requests
+   * @param port The port to listen on
+   * @throws DbException if the port cannot be bound.
+   */
+  public ProjectHttpServer(ProjectService projectService, int port) {
+    try {
+      server = HttpServer.create(new InetSocketAddress(port), 0);
+    } catch(IOException e) {
+      throw new DbException("Unable to bind HTTP server to port " + port, e);
+    }
+
+    executor = newRequestExecutor();
+    server.setExecutor(executor);
+    server.createContext("/projects", new ProjectHandler(projectService));
+  }
+
+  /**
+   * Starts accepting requests.
+   */
+  public void start() {
+    server.start();
+    System.out.println("Listening on http://localhost:" + server.getAddress().getPort() + "/projects");
+  }
+
+  /**
+   * Stops the server, giving in-flight exchanges up to the given number of seconds to finish.
+   * @param delaySeconds The grace period
+   */
+  public void stop(int delaySeconds) {
+    server.stop(delaySeconds);
+    executor.shutdown();
+  }
+
+  /**
+   * Each request runs on its own virtual thread when the JVM supports them (Java 21+), so blocking
+   * JDBC calls don't tie up platform threads. On older JVMs a bounded platform thread pool is used.
+   * @return The executor for request handling
+   */
+  private static ExecutorService newRequestExecutor() {
+    try {
+      return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch(ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(FALLBACK_THREADS);
+    }
+  }
+}
@@ -0,0 +1,449 @@
+package projects.load;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import projects.dao.BulkLoadDao;
+import projects.dao.DbConnection;
+import projects.dao.ShardMap;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/**
+ * Fills the project schema with synthetic project graphs at production scale, for benchmarking
+ * and tuning. Projects get new IDs above the highest ID in use, so the generator can be run
+ * against a database that already has data.
+ *
+ * <p>
+ * The shape of the data follows skewed distributions rather than averages, because the averages
+ * hide the projects that make queries slow:
+ * </p>
+ * <ul>
+ * <li>Material counts are log-normal: most projects need a handful of materials, a few need
+ * dozens.</li>
+ * <li>Step counts are Pareto-distributed: a long tail of projects has hundreds of steps.</li>
+ * <li>Step text and notes lengths are log-normal, from a sentence to several kilobytes.</li>
+ * <li>Each project is linked to a Poisson-distributed number of categories, chosen with a Zipf
+ * distribution so that a few categories are very popular.</li>
+ * </ul>
+ *
+ * <p>
+ * The output depends only on the seed and the options: project <i>n</i> is generated from its own
+ * random stream derived from the seed and <i>n</i>, so the number of threads and the order in
+ * which they run don't change what is written. Worker threads generate chunks of projects and
+ * write each chunk with {@link BulkLoadDao}, one transaction per chunk and shard.
+ * </p>
+ *
+ * <pre>
+ * java projects.load.DatasetGenerator --projects=200000 --seed=42 --threads=8 --chunk=200 \
+ *     --categories=40 --materials-median=5 --steps-alpha=1.6 --text-median=160
+ * </pre>
+ */
+public class DatasetGenerator {
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+  private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private static final int MAX_MATERIALS = 250;
+  private static final int MAX_STEPS = 1_000;
+  private static final int MAX_TEXT_LENGTH = 16_000;
+  private static final int MAX_NAME_LENGTH = 128;
+
+  //@formatter:off
+  private static final String[] WORDS = {
+      "sand", "the", "board", "until", "smooth", "cut", "along", "line", "measure", "twice",
+      "glue", "clamp", "edges", "and", "let", "dry", "overnight", "drill", "pilot", "holes",
+      "for", "screws", "apply", "second", "coat", "of", "paint", "check", "square", "before",
+      "tightening", "trim", "excess", "with", "a", "sharp", "chisel", "wipe", "dust", "off",
+      "surface", "mark", "center", "attach", "hinges", "to", "door", "frame", "level", "shelf"};
+  private static final String[] NOUNS = {
+      "Bookshelf", "Deck", "Fence", "Birdhouse", "Workbench", "Cabinet", "Planter", "Gate",
+      "Shed", "Table", "Bench", "Trellis", "Pergola", "Staircase", "Door", "Floor"};
+  private static final String[] MATERIALS = {
+      "2-inch screws", "Wood glue", "Pine board 1x6", "Oak board 1x4", "Plywood sheet",
+      "Sandpaper 120 grit", "Sandpaper 220 grit", "Hinges", "Primer", "Exterior paint",
+      "Wood stain", "Deck screws", "Concrete mix", "Post anchors", "Joist hangers", "Brackets",
+      "Drawer slides", "Cabinet knobs", "Caulk", "Finishing nails"};
+  //@formatter:on
+
+  private final BulkLoadDao bulkLoadDao = new BulkLoadDao();
+  private final ShardMap shardMap = DbConnection.getShardMap();
+  private final AtomicLong loadedProjects = new AtomicLong();
+  private final AtomicLong loadedRows = new AtomicLong();
+
+  private long projects = 100_000;
+  private long seed = 1;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int chunk = 200;
+  private int categories = 50;
+  private double materialsMedian = 4;
+  private double materialsSigma = 1.0;
+  private double stepsMin = 3;
+  private double stepsAlpha = 1.5;
+  private double textMedian = 200;
+  private double textSigma = 0.9;
+  private double categoriesMean = 2;
+  private double notesRatio = 0.7;
+  private double completedRatio = 0.4;
+
+  private int firstProjectId;
+
+  /**
+   * The starting point of the generator.
+   * @param args Options in the form --name=value: projects, seed, threads, chunk (projects per
+   *        transaction), categories (number of categories), materials-median, materials-sigma,
+   *        steps-min and steps-alpha (Pareto scale and shape; a smaller shape means a longer
+   *        tail), text-median (characters), text-sigma, categories-mean (categories per project), notes-ratio (share of projects
+   *        with notes) and completed-ratio (share of projects with actual hours).
+   */
+  public static void main(String[] args) throws InterruptedException {
+    DatasetGenerator generator = new DatasetGenerator();
+    generator.parseArguments(args);
+    generator.run();
+  }
+
+  /**
+   * Parses the command line options.
+   * @param args The command line arguments
+   */
+  void parseArguments(String[] args) {
+    for(String arg : args) {
+      String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+      String value = parts.length > 1 ? parts[1] : "";
+
+      switch(parts[0]) {
+        case "projects":
+          projects = Long.parseLong(value);
+          break;
+
+        case "seed":
+          seed = Long.parseLong(value);
+          break;
+
+        case "threads":
+          threads = Integer.parseInt(value);
+          break;
+
+        case "chunk":
+          chunk = Integer.parseInt(value);
+          break;
+
+        case "categories":
+          categories = Integer.parseInt(value);
+          break;
+
+        case "materials-median":
+          materialsMedian = Double.parseDouble(value);
+          break;
+
+        case "materials-sigma":
+          materialsSigma = Double.parseDouble(value);
+          break;
+
+        case "steps-min":
+          stepsMin = Double.parseDouble(value);
+          break;
+
+        case "steps-alpha":
+          stepsAlpha = Double.parseDouble(value);
+          break;
+
+        case "text-median":
+          textMedian = Double.parseDouble(value);
+          break;
+
+        case "text-sigma":
+          textSigma = Double.parseDouble(value);
+          break;
+
+        case "categories-mean":
+          categoriesMean = Double.parseDouble(value);
+          break;
+
+        case "notes-ratio":
+          notesRatio = Double.parseDouble(value);
+          break;
+
+        case "completed-ratio":
+          completedRatio = Double.parseDouble(value);
+          break;
+
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+
+    if(projects < 0 || threads < 1 || chunk < 1 || categories < 1 || stepsAlpha <= 0) {
+      throw new IllegalArgumentException(
+          "projects must not be negative; threads, chunk, categories and steps-alpha must be "
+              + "positive");
+    }
+  }
+
+  /**
+   * Prepares the categories, generates and loads the projects and prints the totals.
+   */
+  void run() throws InterruptedException {
+    List<Category> categoryList = generateCategories();
+    int maxProjectId = 0;
+
+    for(int shard = 0; shard < shardMap.getShardCount(); shard++) {
+      bulkLoadDao.ensureCategories(shard, categoryList);
+      maxProjectId = Math.max(maxProjectId, bulkLoadDao.fetchMaxProjectId(shard));
+    }
+
+    if(maxProjectId + projects > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many projects for the remaining ID range");
+    }
+
+    firstProjectId = maxProjectId + 1;
+
+    System.out.println("Generating " + projects + " projects (IDs " + firstProjectId + " to "
+        + (maxProjectId + projects) + ") with seed " + seed + " on " + threads + " threads across "
+        + shardMap.getShardCount() + " shard(s)...");
+
+    AtomicLong nextChunk = new AtomicLong();
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    List<Thread> workers = new ArrayList<>();
+    long start = System.nanoTime();
+
+    for(int worker = 0; worker < threads; worker++) {
+      Thread thread = new Thread(() -> {
+        try {
+          load(nextChunk, failure);
+        } catch(RuntimeException e) {
+          failure.compareAndSet(null, e);
+        }
+      }, "dataset-generator-" + worker);
+
+      workers.add(thread);
+      thread.start();
+    }
+
+    long lastReport = start;
+
+    for(Thread thread : workers) {
+      while(thread.isAlive()) {
+        thread.join(TimeUnit.NANOSECONDS.toMillis(REPORT_INTERVAL_NANOS));
+
+        if(System.nanoTime() - lastReport >= REPORT_INTERVAL_NANOS) {
+          lastReport = System.nanoTime();
+          report(lastReport - start);
+        }
+      }
+    }
+
+    if(Objects.nonNull(failure.get())) {
+      throw failure.get();
+    }
+
+    System.out.println("\nDone.");
+    report(System.nanoTime() - start);
+  }
+
+  /**
+   * The loop of one worker thread: claims the next chunk of project numbers, generates the
+   * projects, groups them by shard and writes each group in one transaction.
+   */
+  private void load(AtomicLong nextChunk, AtomicReference<RuntimeException> failure) {
+    while(Objects.isNull(failure.get())) {
+      long from = nextChunk.getAndIncrement() * chunk;
+
+      if(from >= projects) {
+        return;
+      }
+
+      long to = Math.min(projects, from + chunk);
+      Map<Integer, List<Project>> byShard = new TreeMap<>();
+
+      for(long number = from; number < to; number++) {
+        Project project = generateProject(number);
+        byShard.computeIfAbsent(shardMap.shardFor(project.getProjectId()),
+            shard -> new ArrayList<>()).add(project);
+      }
+
+      for(Map.Entry<Integer, List<Project>> entry : byShard.entrySet()) {
+        loadedRows.addAndGet(bulkLoadDao.insertProjectGraphs(entry.getKey(), entry.getValue()));
+        loadedProjects.addAndGet(entry.getValue().size());
+      }
+    }
+  }
+
+  private void report(long elapsedNanos) {
+    double seconds = Math.max(elapsedNanos / 1e9, 1e-3);
+    long rows = loadedRows.get();
+
+    System.out.println(String.format("  %,d projects, %,d rows in %.1fs (%,.0f rows/s)",
+        loadedProjects.get(), rows, seconds, rows / seconds));
+  }
+
+  /**
+   * @return Categories 1 to {@link #categories}, with names that don't depend on the seed so that
+   *         generator runs with different seeds can share them
+   */
+  private List<Category> generateCategories() {
+    List<Category> result = new ArrayList<>();
+
+    for(int id = 1; id <= categories; id++) {
+      Category category = new Category();
+      category.setCategoryId(id);
+      category.setCategoryName("Category " + id);
+      result.add(category);
+    }
+
+    return result;
+  }
+
+  /**
+   * Generates one project graph. Everything about the project is drawn from a random stream that
+   * depends only on the seed and the project number.
+   * @param number The zero-based project number
+   * @return The project
+   */
+  Project generateProject(long number) {
+    SplittableRandom random = new SplittableRandom(mix(seed + GOLDEN_GAMMA * (number + 1)));
+    Integer projectId = (int)(firstProjectId + number);
+    Project project = new Project();
+
+    project.setProjectId(projectId);
+    project.setProjectName(truncate(NOUNS[random.nextInt(NOUNS.length)] + " #" + projectId + " "
+        + words(random, logNormal(random, 20, 0.5)), MAX_NAME_LENGTH));
+
+    BigDecimal estimatedHours = hours(logNormal(random, 24, 1.0));
+    project.setEstimatedHours(estimatedHours);
+
+    if(random.nextDouble() < completedRatio) {
+      project.setActualHours(hours(estimatedHours.doubleValue() * logNormal(random, 1.1, 0.35)));
+    }
+
+    project.setDifficulty(1 + (int)Math.min(4, Math.abs(random.nextGaussian() * 1.5)));
+
+    if(random.nextDouble() < notesRatio) {
+      project.setNotes(text(random));
+    }
+
+    int materialCount = (int)Math.min(MAX_MATERIALS, Math.round(
+        logNormal(random, materialsMedian, materialsSigma)));
+
+    for(int index = 0; index < materialCount; index++) {
+      Material material = new Material();
+      material.setProjectId(projectId);
+      material.setMaterialName(MATERIALS[random.nextInt(MATERIALS.length)]);
+      material.setNumRequired(1 + (int)Math.min(999, logNormal(random, 3, 1.2)));
+      material.setCost(hours(logNormal(random, 8, 1.3)));
+      project.getMaterials().add(material);
+    }
+
+    // Pareto: P(steps > x) = (min / x)^alpha
+    int stepCount = (int)Math.min(MAX_STEPS,
+        Math.floor(stepsMin * Math.pow(1 - random.nextDouble(), -1 / stepsAlpha)));
+
+    for(int order = 1; order <= stepCount; order++) {
+      Step step = new Step();
+      step.setProjectId(projectId);
+      step.setStepText(text(random));
+      step.setStepOrder(order);
+      project.getSteps().add(step);
+    }
+
+    Set<Integer> categoryIds = new LinkedHashSet<>();
+    int categoryCount = Math.min(categories, poisson(random, categoriesMean));
+
+    while(categoryIds.size() < categoryCount) {
+      categoryIds.add(zipf(random, categories));
+    }
+
+    for(Integer categoryId : categoryIds) {
+      Category category = new Category();
+      category.setCategoryId(categoryId);
+      project.getCategories().add(category);
+    }
+
+    return project;
+  }
+
+  /**
+   * @return Text with a log-normally distributed length
+   */
+  private String text(SplittableRandom random) {
+    return words(random, Math.min(MAX_TEXT_LENGTH, logNormal(random, textMedian, textSigma)));
+  }
+
+  /**
+   * @return Words from a small vocabulary up to about the given length
+   */
+  private String words(SplittableRandom random, double length) {
+    StringBuilder builder = new StringBuilder((int)length + 16);
+
+    do {
+      if(builder.length() > 0) {
+        builder.append(' ');
+      }
+
+      builder.append(WORDS[random.nextInt(WORDS.length)]);
+    } while(builder.length() < length);
+
+    builder.setCharAt(0, Character.toUpperCase(builder.charAt(0)));
+    return builder.append('.').toString();
+  }
+
+  private String truncate(String value, int maxLength) {
+    return value.length() <= maxLength ? value : value.substring(0, maxLength);
+  }
+
+  /**
+   * @return A positive amount with two decimals that fits DECIMAL(7,2)
+   */
+  private BigDecimal hours(double value) {
+    return BigDecimal.valueOf(Math.round(Math.min(99_999.99, Math.max(0.25, value)) * 100), 2);
+  }
+
+  private double logNormal(SplittableRandom random, double median, double sigma) {
+    return median * Math.exp(sigma * random.nextGaussian());
+  }
+
+  /**
+   * Knuth's method, which is fine for the small means used here.
+   */
+  private int poisson(SplittableRandom random, double mean) {
+    double limit = Math.exp(-mean);
+    double product = random.nextDouble();
+    int count = 0;
+
+    while(product > limit) {
+      count++;
+      product *= random.nextDouble();
+    }
+
+    return count;
+  }
+
+  /**
+   * Draws from a Zipf distribution with exponent 1 over 1 to n by inverting the continuous
+   * approximation of its distribution function. Rank 1 is the most popular.
+   */
+  private int zipf(SplittableRandom random, int n) {
+    double rank = Math.exp(random.nextDouble() * Math.log(n + 1));
+    return (int)Math.min(n, Math.max(1, Math.floor(rank)));
+  }
+
+  /**
+   * Scrambles a seed so that the streams of consecutive project numbers are unrelated (the
+   * finalizer of SplitMix64).
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+    return value ^ (value >>> 31);
+  }
+}
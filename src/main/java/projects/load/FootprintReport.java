@@ -0,0 +1,99 @@
+package projects.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import projects.entity.CompactProject;
+import projects.entity.Project;
+import projects.service.ProjectService;
+
+/**
+ * Reports the retained heap per loaded project graph for {@link Project} and for
+ * {@link CompactProject}. The same projects are loaded in both forms and held in memory, and the
+ * difference in used heap after a full collection is divided by the number of graphs.
+ *
+ * <pre>
+ * java -Xmx2g projects.load.FootprintReport --count=2000
+ * </pre>
+ *
+ * The figures include the project's own strings (name, notes, material names, step text), which
+ * are the same in both forms, so the difference between the two lines is the saving from the
+ * compact layout.
+ */
+public class FootprintReport {
+  private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+  /**
+   * The starting point of the report.
+   * @param args --count=N, the number of projects to load (default 1000)
+   */
+  public static void main(String[] args) {
+    int count = 1000;
+
+    for(String arg : args) {
+      if(arg.startsWith("--count=")) {
+        count = Integer.parseInt(arg.substring("--count=".length()));
+      }
+    }
+
+    ProjectService projectService = new ProjectService();
+    List<Integer> projectIds = new ArrayList<>();
+
+    for(Project project : projectService.fetchAllProjects()) {
+      if(projectIds.size() == count) {
+        break;
+      }
+
+      projectIds.add(project.getProjectId());
+    }
+
+    if(projectIds.isEmpty()) {
+      System.out.println("There are no projects to measure.");
+      return;
+    }
+
+    // Load both forms once first so that class loading and the category cache aren't measured
+    projectService.fetchProjectById(projectIds.get(0));
+    projectService.fetchCompactProjectById(projectIds.get(0));
+
+    long standard = measure(projectIds.size(), i -> projectService.fetchProjectById(projectIds.get(i)));
+    long compact =
+        measure(projectIds.size(), i -> projectService.fetchCompactProjectById(projectIds.get(i)));
+
+    System.out.println(String.format("%d project graphs", projectIds.size()));
+    System.out.println(String.format("  Project         %,8d bytes per graph", standard));
+    System.out.println(String.format("  CompactProject  %,8d bytes per graph", compact));
+    System.out.println(String.format("  saving          %7.1f %%", 100.0 * (standard - compact) / standard));
+  }
+
+  /**
+   * Loads the given number of graphs, keeps them reachable and returns the heap growth per graph.
+   */
+  private static long measure(int count, IntFunction<Object> loader) {
+    List<Object> graphs = new ArrayList<>(count);
+    long before = usedHeapAfterGc();
+
+    for(int i = 0; i < count; i++) {
+      graphs.add(loader.apply(i));
+    }
+
+    long after = usedHeapAfterGc();
+
+    // Keep the graphs reachable until after the measurement
+    if(graphs.size() != count) {
+      throw new IllegalStateException();
+    }
+
+    return (after - before) / count;
+  }
+
+  private static long usedHeapAfterGc() {
+    for(int i = 0; i < 3; i++) {
+      System.gc();
+    }
+
+    return MEMORY.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,86 @@
+package projects.load;
+
+import java.util.Arrays;
+
+/**
+ * Records latencies for one operation on one virtual user. Each virtual user owns its own recorder,
+ * so recording needs no synchronization. Recorders are merged after the run to compute percentiles.
+ */
+class LatencyRecorder {
+  private long[] responseTimes = new long[1024];
+  private long[] serviceTimes = new long[1024];
+  private int count;
+  private int errors;
+
+  /**
+   * Records one successful request.
+   * @param responseNanos Time from the intended start of the request to its completion. This
+   *        includes any time the request spent waiting behind earlier slow requests, which corrects
+   *        for coordinated omission.
+   * @param serviceNanos Time from the actual start of the request to its completion.
+   */
+  void record(long responseNanos, long serviceNanos) {
+    if(count == responseTimes.length) {
+      responseTimes = Arrays.copyOf(responseTimes, count * 2);
+      serviceTimes = Arrays.copyOf(serviceTimes, count * 2);
+    }
+
+    responseTimes[count] = responseNanos;
+    serviceTimes[count] = serviceNanos;
+    count++;
+  }
+
+  void recordError() {
+    errors++;
+  }
+
+  /**
+   * Adds the samples of another recorder to this one.
+   * @param other The recorder to merge
+   */
+  void merge(LatencyRecorder other) {
+    for(int i = 0; i < other.count; i++) {
+      record(other.responseTimes[i], other.serviceTimes[i]);
+    }
+
+    errors += other.errors;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  int getErrors() {
+    return errors;
+  }
+
+  /**
+   * @param percentiles The percentiles to compute, from 0 to 100.
+   * @return The response time in nanoseconds at each percentile.
+   */
+  long[] responsePercentiles(double... percentiles) {
+    return percentiles(responseTimes, percentiles);
+  }
+
+  /**
+   * @param percentiles The percentiles to compute, from 0 to 100.
+   * @return The service time in nanoseconds at each percentile.
+   */
+  long[] servicePercentiles(double... percentiles) {
+    return percentiles(serviceTimes, percentiles);
+  }
+
+  private long[] percentiles(long[] samples, double[] percentiles) {
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+
+    long[] result = new long[percentiles.length];
+
+    for(int i = 0; i < percentiles.length && count > 0; i++) {
+      int index = (int)Math.ceil(percentiles[i] / 100.0 * count) - 1;
+      result[i] = sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,340 @@
+package projects.load;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import projects.entity.Project;
+import projects.service.ConflictMergePolicy;
+import projects.service.ProjectService;
+
+/**
+ * Drives {@link ProjectService} with a configurable mix of operations from a number of concurrent
+ * virtual users and reports throughput, latency percentiles and error rates.
+ *
+ * <p>
+ * When an arrival rate is given the generator runs open-loop: request <i>n</i> is scheduled to
+ * start at {@code start + n / rate}, regardless of how long earlier requests took. Response times
+ * are measured from that intended start, so a stall shows up in every request that should have
+ * been issued during it instead of only in the one request that hit it (coordinated omission).
+ * Without a rate every virtual user issues requests back-to-back (closed-loop).
+ * </p>
+ *
+ * <pre>
+ * java projects.load.LoadGenerator --users=16 --rate=500 --duration=60 --warmup=10 \
+ *     --mix=add:10,list:10,select:60,update:15,delete:5
+ * </pre>
+ */
+public class LoadGenerator {
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+  private final ProjectService projectService = new ProjectService();
+  private final IdPool idPool = new IdPool();
+
+  private int users = 8;
+  private double rate;
+  private long durationSeconds = 60;
+  private long warmupSeconds = 5;
+  private Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+  /**
+   * The starting point of the load generator.
+   * @param args Options in the form --name=value: users, rate (requests per second, 0 for
+   *        closed-loop), duration and warmup (seconds) and mix (operation:weight pairs).
+   */
+  public static void main(String[] args) throws InterruptedException {
+    LoadGenerator generator = new LoadGenerator();
+    generator.parseArguments(args);
+    generator.run();
+  }
+
+  /**
+   * Parses the command line options.
+   * @param args The command line arguments
+   */
+  void parseArguments(String[] args) {
+    String mixOption = "add:10,list:10,select:60,update:15,delete:5";
+
+    for(String arg : args) {
+      String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+      String value = parts.length > 1 ? parts[1] : "";
+
+      switch(parts[0]) {
+        case "users":
+          users = Integer.parseInt(value);
+          break;
+
+        case "rate":
+          rate = Double.parseDouble(value);
+          break;
+
+        case "duration":
+          durationSeconds = Long.parseLong(value);
+          break;
+
+        case "warmup":
+          warmupSeconds = Long.parseLong(value);
+          break;
+
+        case "mix":
+          mixOption = value;
+          break;
+
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+
+    for(String entry : mixOption.split(",")) {
+      String[] parts = entry.split(":");
+      mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+    }
+  }
+
+  /**
+   * Runs the warm-up and measurement phases and prints the report.
+   */
+  void run() throws InterruptedException {
+    projectService.fetchAllProjects().forEach(project -> idPool.add(project.getProjectId()));
+
+    System.out.println("Warming up for " + warmupSeconds + "s...");
+    runPhase(warmupSeconds);
+
+    System.out.println("Measuring for " + durationSeconds + "s with " + users + " users at "
+        + (rate > 0 ? rate + " req/s (open-loop)" : "maximum rate (closed-loop)") + "...");
+    long start = System.nanoTime();
+    List<Map<Operation, LatencyRecorder>> results = runPhase(durationSeconds);
+    long elapsed = System.nanoTime() - start;
+
+    printReport(results, elapsed);
+  }
+
+  /**
+   * Runs all virtual users for the given number of seconds.
+   * @param seconds The length of the phase
+   * @return One recorder map per virtual user
+   */
+  private List<Map<Operation, LatencyRecorder>> runPhase(long seconds)
+      throws InterruptedException {
+    long start = System.nanoTime();
+    long end = start + TimeUnit.SECONDS.toNanos(seconds);
+    AtomicLong sequence = new AtomicLong();
+    List<Map<Operation, LatencyRecorder>> results = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+
+    for(int user = 0; user < users; user++) {
+      Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+      results.add(recorders);
+
+      Thread thread = new Thread(() -> runUser(recorders, sequence, start, end),
+          "virtual-user-" + user);
+      threads.add(thread);
+      thread.start();
+    }
+
+    for(Thread thread : threads) {
+      thread.join();
+    }
+
+    return results;
+  }
+
+  /**
+   * The loop of a single virtual user.
+   */
+  private void runUser(Map<Operation, LatencyRecorder> recorders, AtomicLong sequence, long start,
+      long end) {
+    while(true) {
+      long intendedStart;
+
+      if(rate > 0) {
+        intendedStart = start + (long)(sequence.getAndIncrement() * 1_000_000_000L / rate);
+
+        if(intendedStart >= end) {
+          return;
+        }
+
+        long wait = intendedStart - System.nanoTime();
+
+        if(wait > 0) {
+          LockSupport.parkNanos(wait);
+        }
+      }
+      else {
+        intendedStart = System.nanoTime();
+
+        if(intendedStart >= end) {
+          return;
+        }
+      }
+
+      Operation operation = nextOperation();
+      LatencyRecorder recorder = recorders.computeIfAbsent(operation, op -> new LatencyRecorder());
+      long actualStart = System.nanoTime();
+
+      try {
+        execute(operation);
+        long now = System.nanoTime();
+        recorder.record(now - intendedStart, now - actualStart);
+      } catch(Exception e) {
+        recorder.recordError();
+      }
+    }
+  }
+
+  /**
+   * Picks an operation at random according to the configured weights.
+   * @return The operation
+   */
+  private Operation nextOperation() {
+    int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+    int pick = ThreadLocalRandom.current().nextInt(total);
+
+    for(Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+      pick -= entry.getValue();
+
+      if(pick < 0) {
+        return entry.getKey();
+      }
+    }
+
+    throw new IllegalStateException("Empty operation mix");
+  }
+
+  /**
+   * Executes a single operation against the project service.
+   * @param operation The operation
+   */
+  private void execute(Operation operation) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    switch(operation) {
+      case ADD:
+        Project project = new Project();
+        project.setProjectName("Load test project " + random.nextInt(1_000_000));
+        project.setEstimatedHours(BigDecimal.valueOf(random.nextInt(1, 10_000), 2));
+        project.setDifficulty(random.nextInt(1, 6));
+        project.setNotes("Generated by the load generator");
+        idPool.add(projectService.addProject(project).getProjectId());
+        break;
+
+      case LIST:
+        projectService.fetchAllProjects();
+        break;
+
+      case SELECT:
+        projectService.fetchProjectById(idPool.pick());
+        break;
+
+      case UPDATE:
+        Project current = projectService.fetchProjectById(idPool.pick());
+        current.setActualHours(BigDecimal.valueOf(random.nextInt(1, 10_000), 2));
+        projectService.modifyProjectDetails(current, ConflictMergePolicy.LAST_WRITER_WINS);
+        break;
+
+      case DELETE:
+        Integer projectId = idPool.take();
+
+        if(Objects.nonNull(projectId)) {
+          projectService.deleteProject(projectId);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Prints the merged results of all virtual users.
+   */
+  private void printReport(List<Map<Operation, LatencyRecorder>> results, long elapsedNanos) {
+    double seconds = elapsedNanos / 1e9;
+    LatencyRecorder all = new LatencyRecorder();
+
+    System.out.println("\nResults (milliseconds; response time is corrected for coordinated omission):");
+    System.out.println(String.format("  %-8s %9s %9s %7s   %-40s  %s", "op", "count", "req/s",
+        "err%", "response p50/p90/p99/p99.9/max", "service p50/p90/p99/p99.9/max"));
+
+    for(Operation operation : Operation.values()) {
+      LatencyRecorder merged = new LatencyRecorder();
+      results.forEach(recorders -> {
+        if(recorders.containsKey(operation)) {
+          merged.merge(recorders.get(operation));
+        }
+      });
+
+      if(merged.getCount() + merged.getErrors() > 0) {
+        printLine(operation.name().toLowerCase(), merged, seconds);
+        all.merge(merged);
+      }
+    }
+
+    printLine("total", all, seconds);
+    System.out.println("\n" + ProjectService.getAuditTrail());
+  }
+
+  private void printLine(String name, LatencyRecorder recorder, double seconds) {
+    int attempts = recorder.getCount() + recorder.getErrors();
+    double errorRate = attempts == 0 ? 0 : 100.0 * recorder.getErrors() / attempts;
+
+    System.out.println(String.format("  %-8s %9d %9.1f %7.2f   %-40s  %s", name,
+        recorder.getCount(), recorder.getCount() / seconds, errorRate,
+        format(recorder.responsePercentiles(PERCENTILES)),
+        format(recorder.servicePercentiles(PERCENTILES))));
+  }
+
+  private String format(long[] nanos) {
+    StringBuilder builder = new StringBuilder();
+
+    for(long value : nanos) {
+      if(builder.length() > 0) {
+        builder.append('/');
+      }
+
+      builder.append(String.format("%.1f", value / 1e6));
+    }
+
+    return builder.toString();
+  }
+
+  /**
+   * The project IDs known to exist, shared by all virtual users.
+   */
+  private static class IdPool {
+    private final List<Integer> ids = new ArrayList<>();
+
+    synchronized void add(Integer id) {
+      ids.add(id);
+    }
+
+    /**
+     * @return A random ID that stays in the pool.
+     */
+    synchronized Integer pick() {
+      if(ids.isEmpty()) {
+        return 0;
+      }
+
+      return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    /**
+     * @return A random ID removed from the pool, or null if the pool is empty.
+     */
+    synchronized Integer take() {
+      if(ids.isEmpty()) {
+        return null;
+      }
+
+      int index = ThreadLocalRandom.current().nextInt(ids.size());
+      Integer id = ids.get(index);
+      ids.set(index, ids.get(ids.size() - 1));
+      ids.remove(ids.size() - 1);
+      return id;
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package projects.load;
+
+/**
+ * The {@link projects.service.ProjectService} operations the load generator can issue.
+ */
+public enum Operation {
+  ADD, LIST, SELECT, UPDATE, DELETE;
+}
@@ -0,0 +1,133 @@
+package projects.load;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Measures the time from launching a JVM to the first project listing, with and without the AppCDS
+ * archive. Each run starts {@code ProjectsApp --first-result} in a fresh JVM and measures the wall
+ * time until the process exits. The two configurations are interleaved so that drift in the machine
+ * or the database affects both equally.
+ *
+ * <pre>
+ * mvn -Pappcds package
+ * java -cp target/classes projects.load.StartupBenchmark --runs=20 \
+ *     --classpath=target/mysql-java-projects-0.0.1-SNAPSHOT.jar:target/lib/* \
+ *     --archive=target/projects-app.jsa
+ * </pre>
+ */
+public class StartupBenchmark {
+  private int runs = 10;
+  private String classpath = System.getProperty("java.class.path");
+  private String archive = "target/projects-app.jsa";
+
+  /**
+   * The starting point of the benchmark.
+   * @param args Options in the form --name=value: runs, classpath and archive.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    StartupBenchmark benchmark = new StartupBenchmark();
+
+    for(String arg : args) {
+      String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+
+      switch(parts[0]) {
+        case "runs":
+          benchmark.runs = Integer.parseInt(parts[1]);
+          break;
+
+        case "classpath":
+          benchmark.classpath = parts[1];
+          break;
+
+        case "archive":
+          benchmark.archive = parts[1];
+          break;
+
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+
+    benchmark.run();
+  }
+
+  private void run() throws IOException, InterruptedException {
+    boolean hasArchive = new File(archive).isFile();
+    List<Long> plain = new ArrayList<>();
+    List<Long> withArchive = new ArrayList<>();
+
+    if(!hasArchive) {
+      System.out.println("No archive at " + archive + ", measuring the default launch only.");
+    }
+
+    for(int run = 0; run < runs; run++) {
+      plain.add(launch(null));
+
+      if(hasArchive) {
+        withArchive.add(launch("-XX:SharedArchiveFile=" + archive));
+      }
+    }
+
+    report("default", plain);
+
+    if(hasArchive) {
+      report("AppCDS", withArchive);
+    }
+  }
+
+  /**
+   * Launches one JVM and waits for it to print its first result and exit.
+   * @param jvmOption An extra JVM option, or null
+   * @return The wall time in milliseconds
+   */
+  private long launch(String jvmOption) throws IOException, InterruptedException {
+    String java = ProcessHandle.current().info().command().orElse("java");
+    List<String> command = new ArrayList<>(List.of(java, "-Xshare:auto"));
+
+    if(Objects.nonNull(jvmOption)) {
+      command.add(jvmOption);
+    }
+
+    command.addAll(List.of("-cp", classpath, "projects.ProjectsApp", "--first-result"));
+
+    long start = System.nanoTime();
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    String result = null;
+
+    try(BufferedReader reader =
+        new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+
+      while(Objects.nonNull(line = reader.readLine())) {
+        if(line.startsWith("First result")) {
+          result = line;
+        }
+      }
+    }
+
+    process.waitFor();
+    long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+    if(Objects.isNull(result)) {
+      throw new IllegalStateException("The application did not produce a result: " + command);
+    }
+
+    return elapsed;
+  }
+
+  private void report(String name, List<Long> times) {
+    List<Long> sorted = new ArrayList<>(times);
+    Collections.sort(sorted);
+
+    System.out.println(String.format("%-8s min=%d ms  median=%d ms  max=%d ms  (%d runs)", name,
+        sorted.get(0), sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1),
+        sorted.size()));
+  }
+}
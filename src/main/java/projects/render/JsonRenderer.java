@@ -0,0 +1,165 @@
+package projects.render;
+
+import static projects.render.ProjectRenderer.appendDecimal;
+import static projects.render.ProjectRenderer.appendInteger;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/**
+ * Renders projects as JSON objects.
+ */
+public class JsonRenderer implements ProjectRenderer {
+
+  public static final JsonRenderer INSTANCE = new JsonRenderer();
+
+  @Override
+  public void renderProject(Project project, Appendable out) throws IOException {
+    out.append("{\"projectId\":");
+    appendInteger(project.getProjectId(), out);
+    out.append(",\"projectName\":");
+    appendString(project.getProjectName(), out);
+    out.append(",\"estimatedHours\":");
+    appendDecimal(project.getEstimatedHours(), out);
+    out.append(",\"actualHours\":");
+    appendDecimal(project.getActualHours(), out);
+    out.append(",\"difficulty\":");
+    appendInteger(project.getDifficulty(), out);
+    out.append(",\"notes\":");
+    appendString(project.getNotes(), out);
+    out.append(",\"version\":");
+    appendInteger(project.getVersion(), out);
+
+    out.append(",\"materials\":[");
+    List<Material> materials = project.getMaterials();
+    for(int i = 0; i < materials.size(); i++) {
+      if(i > 0) {
+        out.append(',');
+      }
+      renderMaterial(materials.get(i), out);
+    }
+
+    out.append("],\"steps\":[");
+    List<Step> steps = project.getSteps();
+    for(int i = 0; i < steps.size(); i++) {
+      if(i > 0) {
+        out.append(',');
+      }
+      renderStep(steps.get(i), out);
+    }
+
+    out.append("],\"categories\":[");
+    List<Category> categories = project.getCategories();
+    for(int i = 0; i < categories.size(); i++) {
+      if(i > 0) {
+        out.append(',');
+      }
+      renderCategory(categories.get(i), out);
+    }
+
+    out.append("]}");
+  }
+
+  @Override
+  public void renderSummary(Project project, Appendable out) throws IOException {
+    out.append("{\"projectId\":");
+    appendInteger(project.getProjectId(), out);
+    out.append(",\"projectName\":");
+    appendString(project.getProjectName(), out);
+    out.append('}');
+  }
+
+  @Override
+  public void renderMaterial(Material material, Appendable out) throws IOException {
+    out.append("{\"materialId\":");
+    appendInteger(material.getMaterialId(), out);
+    out.append(",\"materialName\":");
+    appendString(material.getMaterialName(), out);
+    out.append(",\"numRequired\":");
+    appendInteger(material.getNumRequired(), out);
+    out.append(",\"cost\":");
+    appendDecimal(material.getCost(), out);
+    out.append('}');
+  }
+
+  @Override
+  public void renderStep(Step step, Appendable out) throws IOException {
+    out.append("{\"stepId\":");
+    appendInteger(step.getStepId(), out);
+    out.append(",\"stepText\":");
+    appendString(step.getStepText(), out);
+    out.append(",\"stepOrder\":");
+    appendInteger(step.getStepOrder(), out);
+    out.append('}');
+  }
+
+  @Override
+  public void renderCategory(Category category, Appendable out) throws IOException {
+    out.append("{\"categoryId\":");
+    appendInteger(category.getCategoryId(), out);
+    out.append(",\"categoryName\":");
+    appendString(category.getCategoryName(), out);
+    out.append('}');
+  }
+
+  /**
+   * Writes a string as a quoted and escaped JSON string, or null. Runs of characters that need no
+   * escaping are appended as sub-sequences rather than one character at a time.
+   * @param value The value
+   * @param out Where to write it
+   * @throws IOException Thrown if the output can't be written.
+   */
+  public static void appendString(String value, Appendable out) throws IOException {
+    if(Objects.isNull(value)) {
+      out.append("null");
+      return;
+    }
+
+    out.append('"');
+    int start = 0;
+
+    for(int i = 0; i < value.length(); i++) {
+      char ch = value.charAt(i);
+
+      if(ch != '"' && ch != '\\' && ch >= 0x20) {
+        continue;
+      }
+
+      out.append(value, start, i);
+      start = i + 1;
+
+      switch(ch) {
+        case '"':
+          out.append("\\\"");
+          break;
+
+        case '\\':
+          out.append("\\\\");
+          break;
+
+        case '\n':
+          out.append("\\n");
+          break;
+
+        case '\r':
+          out.append("\\r");
+          break;
+
+        case '\t':
+          out.append("\\t");
+          break;
+
+        default:
+          out.append("\\u00");
+          out.append(Character.forDigit(ch >> 4, 16)).append(Character.forDigit(ch & 0xF, 16));
+      }
+    }
+
+    out.append(value, start, value.length());
+    out.append('"');
+  }
+}
@@ -0,0 +1,74 @@
+package projects.render;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Objects;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/**
+ * Writes projects and their children directly to an {@link Appendable}, such as a
+ * {@link StringBuilder} or a buffered {@link java.io.Writer}. Nothing is built up in intermediate
+ * strings, so rendering is linear in the size of the output.
+ */
+public interface ProjectRenderer {
+
+  /**
+   * Writes a project with its materials, steps and categories.
+   */
+  void renderProject(Project project, Appendable out) throws IOException;
+
+  /**
+   * Writes the one-line form of a project used in listings (ID and name).
+   */
+  void renderSummary(Project project, Appendable out) throws IOException;
+
+  void renderMaterial(Material material, Appendable out) throws IOException;
+
+  void renderStep(Step step, Appendable out) throws IOException;
+
+  void renderCategory(Category category, Appendable out) throws IOException;
+
+  /**
+   * Writes an integer without creating a string, or "null".
+   * @param value The value
+   * @param out Where to write it
+   * @throws IOException Thrown if the output can't be written.
+   */
+  static void appendInteger(Integer value, Appendable out) throws IOException {
+    if(Objects.isNull(value)) {
+      out.append("null");
+      return;
+    }
+
+    long number = value;
+
+    if(number < 0) {
+      out.append('-');
+      number = -number;
+    }
+
+    long divisor = 1;
+
+    while(divisor * 10 <= number) {
+      divisor *= 10;
+    }
+
+    for(; divisor > 0; divisor /= 10) {
+      out.append((char)('0' + (number / divisor) % 10));
+    }
+  }
+
+  /**
+   * Writes a decimal or "null". {@link BigDecimal} caches its string form, so rendering the same
+   * value again does not allocate.
+   * @param value The value
+   * @param out Where to write it
+   * @throws IOException Thrown if the output can't be written.
+   */
+  static void appendDecimal(BigDecimal value, Appendable out) throws IOException {
+    out.append(Objects.isNull(value) ? "null" : value.toString());
+  }
+}
@@ -0,0 +1,108 @@
+package projects.render;
+
+import static projects.render.ProjectRenderer.appendDecimal;
+import static projects.render.ProjectRenderer.appendInteger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/**
+ * Renders projects in the human-readable form printed by the console application.
+ */
+public class TextRenderer implements ProjectRenderer {
+
+  public static final TextRenderer INSTANCE = new TextRenderer();
+
+  private static final String FIELD = "\n   ";
+  private static final String CHILD = "\n      ";
+
+  @Override
+  public void renderProject(Project project, Appendable out) throws IOException {
+    out.append(FIELD).append("ID=");
+    appendInteger(project.getProjectId(), out);
+    out.append(FIELD).append("name=").append(project.getProjectName());
+    out.append(FIELD).append("estimatedHours=");
+    appendDecimal(project.getEstimatedHours(), out);
+    out.append(FIELD).append("actualHours=");
+    appendDecimal(project.getActualHours(), out);
+    out.append(FIELD).append("difficulty=");
+    appendInteger(project.getDifficulty(), out);
+    out.append(FIELD).append("notes=").append(project.getNotes());
+
+    out.append(FIELD).append("Materials:");
+
+    for(Material material : project.getMaterials()) {
+      out.append(CHILD);
+      renderMaterial(material, out);
+    }
+
+    out.append(FIELD).append("Steps:");
+
+    for(Step step : project.getSteps()) {
+      out.append(CHILD);
+      renderStep(step, out);
+    }
+
+    out.append(FIELD).append("Categories:");
+
+    for(Category category : project.getCategories()) {
+      out.append(CHILD);
+      renderCategory(category, out);
+    }
+  }
+
+  @Override
+  public void renderSummary(Project project, Appendable out) throws IOException {
+    out.append("  ");
+    appendInteger(project.getProjectId(), out);
+    out.append(": ").append(project.getProjectName());
+  }
+
+  @Override
+  public void renderMaterial(Material material, Appendable out) throws IOException {
+    out.append("ID=");
+    appendInteger(material.getMaterialId(), out);
+    out.append(", materialName=").append(material.getMaterialName());
+    out.append(", numRequired=");
+    appendInteger(material.getNumRequired(), out);
+    out.append(", cost=");
+    appendDecimal(material.getCost(), out);
+  }
+
+  @Override
+  public void renderStep(Step step, Appendable out) throws IOException {
+    out.append("ID=");
+    appendInteger(step.getStepId(), out);
+    out.append(", stepText=").append(step.getStepText());
+  }
+
+  @Override
+  public void renderCategory(Category category, Appendable out) throws IOException {
+    out.append("ID=");
+    appendInteger(category.getCategoryId(), out);
+    out.append(", categoryName=").append(category.getCategoryName());
+  }
+
+  /**
+   * Renders a project into a string.
+   * @param project The project
+   * @return The text form of the project
+   */
+  public static String toString(Project project) {
+    StringBuilder builder = new StringBuilder(128 + 64
+        * (project.getMaterials().size() + project.getSteps().size()
+            + project.getCategories().size()));
+
+    try {
+      INSTANCE.renderProject(project, builder);
+    } catch(IOException e) {
+      // A StringBuilder never throws
+      throw new UncheckedIOException(e);
+    }
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,278 @@
+package projects.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import projects.entity.Category;
+import projects.entity.ProjectSummary;
+import projects.render.JsonRenderer;
+
+/**
+ * Estimate accuracy and material cost per category and difficulty. A project with several
+ * categories counts once in each of them and a project without one counts under
+ * {@link #UNCATEGORIZED}. The {@link #ALL_CATEGORIES} rows count every project once per
+ * difficulty.
+ *
+ * <p>
+ * A project counts as completed when it has both estimated and actual hours. Accuracy is the actual
+ * hours of the completed projects divided by their estimated hours, so 1.25 means the work took a
+ * quarter longer than estimated. Partial reports over disjoint sets of projects are combined with
+ * {@link #merge(CatalogReport)}; a report is not safe for concurrent use while it is being built.
+ * </p>
+ */
+public class CatalogReport {
+  public static final String ALL_CATEGORIES = "All categories";
+  public static final String UNCATEGORIZED = "Uncategorized";
+
+  //@formatter:off
+  private static final String[] COLUMNS = {
+      "category", "difficulty", "projects", "estimated_hours", "completed_projects",
+      "completed_estimated_hours", "actual_hours", "accuracy", "mean_absolute_error_hours",
+      "material_cost"};
+  //@formatter:on
+
+  private static final Comparator<Row> ROW_ORDER = Comparator
+      .comparing((Row row) -> !ALL_CATEGORIES.equals(row.category))
+      .thenComparing(row -> row.category, String.CASE_INSENSITIVE_ORDER)
+      .thenComparing(row -> row.difficulty, Comparator.nullsLast(Comparator.naturalOrder()));
+
+  private final Map<String, Row> rows = new HashMap<>();
+  private long projectCount;
+
+  /**
+   * Counts one project.
+   * @param summary The project's figures
+   */
+  void add(ProjectSummary summary) {
+    projectCount++;
+    row(ALL_CATEGORIES, summary.getDifficulty()).add(summary);
+
+    if(summary.getCategories().isEmpty()) {
+      row(UNCATEGORIZED, summary.getDifficulty()).add(summary);
+    }
+
+    for(Category category : summary.getCategories()) {
+      row(category.getCategoryName(), summary.getDifficulty()).add(summary);
+    }
+  }
+
+  /**
+   * Adds a partial report over other projects into this one.
+   * @param other The other report
+   * @return This report
+   */
+  CatalogReport merge(CatalogReport other) {
+    projectCount += other.projectCount;
+    other.rows.forEach((key, row) -> rows.merge(key, row, Row::add));
+    return this;
+  }
+
+  /**
+   * @return The number of projects in the report
+   */
+  public long getProjectCount() {
+    return projectCount;
+  }
+
+  /**
+   * @return The rows, the {@link #ALL_CATEGORIES} rows first, then by category name and difficulty
+   */
+  public List<Row> getRows() {
+    List<Row> sorted = new ArrayList<>(rows.values());
+    sorted.sort(ROW_ORDER);
+    return sorted;
+  }
+
+  /**
+   * Writes the report as CSV with a header line, one row at a time.
+   * @param out Where to write
+   * @throws IOException Thrown if the output fails.
+   */
+  public void writeCsv(Appendable out) throws IOException {
+    out.append(String.join(",", COLUMNS)).append('\n');
+
+    for(Row row : getRows()) {
+      appendCsv(row.category, out);
+      out.append(',').append(text(row.difficulty));
+      out.append(',').append(Long.toString(row.projectCount));
+      out.append(',').append(row.estimatedHours.toPlainString());
+      out.append(',').append(Long.toString(row.completedCount));
+      out.append(',').append(row.completedEstimatedHours.toPlainString());
+      out.append(',').append(row.actualHours.toPlainString());
+      out.append(',').append(text(row.getAccuracy()));
+      out.append(',').append(text(row.getMeanAbsoluteError()));
+      out.append(',').append(row.materialCost.toPlainString());
+      out.append('\n');
+    }
+  }
+
+  /**
+   * Writes the report as a JSON object with the project count and an array of rows, one row at a
+   * time. Missing values are written as null.
+   * @param out Where to write
+   * @throws IOException Thrown if the output fails.
+   */
+  public void writeJson(Appendable out) throws IOException {
+    out.append("{\"projects\":").append(Long.toString(projectCount)).append(",\"rows\":[");
+    String separator = "";
+
+    for(Row row : getRows()) {
+      out.append(separator).append("{\"category\":");
+      JsonRenderer.appendString(row.category, out);
+      out.append(",\"difficulty\":").append(json(row.difficulty));
+      out.append(",\"projects\":").append(Long.toString(row.projectCount));
+      out.append(",\"estimatedHours\":").append(row.estimatedHours.toPlainString());
+      out.append(",\"completedProjects\":").append(Long.toString(row.completedCount));
+      out.append(",\"completedEstimatedHours\":")
+          .append(row.completedEstimatedHours.toPlainString());
+      out.append(",\"actualHours\":").append(row.actualHours.toPlainString());
+      out.append(",\"accuracy\":").append(json(row.getAccuracy()));
+      out.append(",\"meanAbsoluteErrorHours\":").append(json(row.getMeanAbsoluteError()));
+      out.append(",\"materialCost\":").append(row.materialCost.toPlainString());
+      out.append('}');
+      separator = ",";
+    }
+
+    out.append("]}");
+  }
+
+  private Row row(String category, Integer difficulty) {
+    return rows.computeIfAbsent(category + '\u0000' + difficulty,
+        key -> new Row(category, difficulty));
+  }
+
+  private static void appendCsv(String value, Appendable out) throws IOException {
+    if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+        && value.indexOf('\r') < 0) {
+      out.append(value);
+      return;
+    }
+
+    out.append('"').append(value.replace("\"", "\"\"")).append('"');
+  }
+
+  private static String text(Object value) {
+    return Objects.isNull(value) ? ""
+        : value instanceof BigDecimal ? ((BigDecimal)value).toPlainString() : value.toString();
+  }
+
+  private static String json(Object value) {
+    return Objects.isNull(value) ? "null" : text(value);
+  }
+
+  /**
+   * The totals for one category and difficulty.
+   */
+  public static class Row {
+    private final String category;
+    private final Integer difficulty;
+    private long projectCount;
+    private BigDecimal estimatedHours = BigDecimal.ZERO;
+    private long completedCount;
+    private BigDecimal completedEstimatedHours = BigDecimal.ZERO;
+    private BigDecimal actualHours = BigDecimal.ZERO;
+    private BigDecimal absoluteErrorHours = BigDecimal.ZERO;
+    private BigDecimal materialCost = BigDecimal.ZERO;
+
+    Row(String category, Integer difficulty) {
+      this.category = category;
+      this.difficulty = difficulty;
+    }
+
+    private void add(ProjectSummary summary) {
+      projectCount++;
+
+      if(Objects.nonNull(summary.getEstimatedHours())) {
+        estimatedHours = estimatedHours.add(summary.getEstimatedHours());
+      }
+
+      if(Objects.nonNull(summary.getEstimatedHours())
+          && Objects.nonNull(summary.getActualHours())) {
+        completedCount++;
+        completedEstimatedHours = completedEstimatedHours.add(summary.getEstimatedHours());
+        actualHours = actualHours.add(summary.getActualHours());
+        absoluteErrorHours = absoluteErrorHours
+            .add(summary.getActualHours().subtract(summary.getEstimatedHours()).abs());
+      }
+
+      if(Objects.nonNull(summary.getMaterialCost())) {
+        materialCost = materialCost.add(summary.getMaterialCost());
+      }
+    }
+
+    private Row add(Row other) {
+      projectCount += other.projectCount;
+      estimatedHours = estimatedHours.add(other.estimatedHours);
+      completedCount += other.completedCount;
+      completedEstimatedHours = completedEstimatedHours.add(other.completedEstimatedHours);
+      actualHours = actualHours.add(other.actualHours);
+      absoluteErrorHours = absoluteErrorHours.add(other.absoluteErrorHours);
+      materialCost = materialCost.add(other.materialCost);
+      return this;
+    }
+
+    public String getCategory() {
+      return category;
+    }
+
+    /**
+     * @return The difficulty, or null for projects without one
+     */
+    public Integer getDifficulty() {
+      return difficulty;
+    }
+
+    public long getProjectCount() {
+      return projectCount;
+    }
+
+    public BigDecimal getEstimatedHours() {
+      return estimatedHours;
+    }
+
+    public long getCompletedCount() {
+      return completedCount;
+    }
+
+    public BigDecimal getCompletedEstimatedHours() {
+      return completedEstimatedHours;
+    }
+
+    public BigDecimal getActualHours() {
+      return actualHours;
+    }
+
+    public BigDecimal getMaterialCost() {
+      return materialCost;
+    }
+
+    /**
+     * @return Actual over estimated hours of the completed projects, or null if there are none
+     */
+    public BigDecimal getAccuracy() {
+      return completedEstimatedHours.signum() == 0 ? null
+          : actualHours.divide(completedEstimatedHours, 3, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * @return The average hours by which a completed project missed its estimate either way, or
+     *         null if there are none
+     */
+    public BigDecimal getMeanAbsoluteError() {
+      return completedCount == 0 ? null
+          : absoluteErrorHours.divide(BigDecimal.valueOf(completedCount), 2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public String toString() {
+      return "category=" + category + ", difficulty=" + difficulty + ", projects=" + projectCount
+          + ", accuracy=" + getAccuracy() + ", materialCost=" + materialCost;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package projects.service;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import projects.dao.Deadline;
+import projects.exception.DbException;
+import projects.exception.DeadlineExceededException;
+import projects.exception.OverloadException;
+
+/**
+ * Admission control for database work. At most {@link #getLimit()} calls run at once; further
+ * calls wait briefly in a bounded queue and are rejected with an {@link OverloadException} when the
+ * queue is full or the wait runs out. Rejecting early keeps the database at the concurrency it
+ * serves best instead of letting a burst pile up connections until it thrashes.
+ *
+ * <p>
+ * The limit adapts to latency with a gradient rule. A long-term average of call latency stands in
+ * for the latency of an unloaded database and a short-term average tracks the current latency.
+ * While the current latency stays within a tolerance of the long-term one, the limit grows by
+ * about its square root per adjustment; as calls start queuing in the database and latency rises,
+ * the ratio of the two averages shrinks the limit in proportion. Calls that time out or are
+ * cancelled shrink it further. The limit is only raised while it is actually being used.
+ * </p>
+ */
+public class ConcurrencyLimiter {
+  private static final double TOLERANCE = 1.5;
+  private static final double SMOOTHING = 0.2;
+  private static final double SHORT_RTT_WEIGHT = 0.2;
+  private static final double LONG_RTT_WEIGHT = 0.01;
+  private static final double DROP_BACKOFF = 0.9;
+  private static final String QUERY_INTERRUPTED = "70100";
+
+  private final String name;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueue;
+  private final long maxWaitNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition slotFreed = lock.newCondition();
+
+  private double limit;
+  private int inFlight;
+  private int waiting;
+  private double shortRttNanos;
+  private double longRttNanos;
+  private long rejected;
+
+  /**
+   * @param name Used in rejection messages
+   * @param initialLimit The starting limit
+   * @param minLimit The lowest the limit can go
+   * @param maxLimit The highest the limit can go
+   * @param maxQueue How many calls may wait for a slot
+   * @param maxWait How long a call may wait for a slot
+   */
+  public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue,
+      Duration maxWait) {
+    this.name = name;
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueue = maxQueue;
+    this.maxWaitNanos = maxWait.toNanos();
+  }
+
+  /**
+   * Runs a call once a slot is free.
+   * @param call The call
+   * @return The call's result
+   * @throws OverloadException if no slot became free in time. The call was not run.
+   */
+  public <T> T execute(Supplier<T> call) {
+    int inFlightAtStart = acquire();
+    long start = System.nanoTime();
+    boolean dropped = false;
+
+    try {
+      return call.get();
+    } catch(RuntimeException e) {
+      dropped = isDrop(e);
+      throw e;
+    } finally {
+      release(System.nanoTime() - start, inFlightAtStart, dropped);
+    }
+  }
+
+  /**
+   * @return The current concurrency limit
+   */
+  public int getLimit() {
+    lock.lock();
+
+    try {
+      return (int)limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of calls running now
+   */
+  public int getInFlight() {
+    lock.lock();
+
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of calls rejected so far
+   */
+  public long getRejected() {
+    lock.lock();
+
+    try {
+      return rejected;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Takes a slot, waiting for one if necessary. The wait is bounded by the queue wait and by the
+   * current {@link Deadline}.
+   * @return The number of calls in flight, including this one
+   */
+  private int acquire() {
+    lock.lock();
+
+    try {
+      if(inFlight < (int)limit) {
+        return ++inFlight;
+      }
+
+      if(waiting >= maxQueue) {
+        throw reject("queue is full");
+      }
+
+      long waitNanos = maxWaitNanos;
+      Duration remaining = Deadline.current().map(Deadline::remaining).orElse(null);
+
+      if(Objects.nonNull(remaining)) {
+        waitNanos = Math.min(waitNanos, remaining.toNanos());
+      }
+
+      waiting++;
+
+      try {
+        while(inFlight >= (int)limit) {
+          if(waitNanos <= 0) {
+            throw reject("no slot freed up within " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+                + " ms");
+          }
+
+          waitNanos = slotFreed.awaitNanos(waitNanos);
+        }
+
+        return ++inFlight;
+      } finally {
+        waiting--;
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DbException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Tells whether a failed call was dropped for taking too long rather than failing on its own.
+   * DAO methods wrap the failure of a cancelled statement in a plain {@link DbException}, so the
+   * whole cause chain is searched, and a failure while the current deadline has expired counts
+   * whatever it was wrapped in.
+   */
+  private static boolean isDrop(Throwable e) {
+    if(Deadline.current().map(Deadline::isExpired).orElse(false)) {
+      return true;
+    }
+
+    for(Throwable cause = e; Objects.nonNull(cause); cause = cause.getCause()) {
+      if(cause instanceof DeadlineExceededException || cause instanceof SQLTimeoutException) {
+        return true;
+      }
+
+      // MySQL reports a statement cancelled by Deadline.cancel() with this state
+      if(cause instanceof SQLException
+          && QUERY_INTERRUPTED.equals(((SQLException)cause).getSQLState())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private OverloadException reject(String reason) {
+    rejected++;
+    return new OverloadException(
+        "The " + name + " limit of " + (int)limit + " concurrent calls is reached and the " + reason
+            + ". Try again later.");
+  }
+
+  private void release(long rttNanos, int inFlightAtStart, boolean dropped) {
+    lock.lock();
+
+    try {
+      inFlight--;
+      int before = (int)limit;
+
+      if(dropped) {
+        limit = Math.max(minLimit, limit * DROP_BACKOFF);
+      }
+      else {
+        adjust(rttNanos, inFlightAtStart);
+      }
+
+      if((int)limit > before) {
+        slotFreed.signalAll();
+      }
+      else {
+        slotFreed.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void adjust(long rttNanos, int inFlightAtStart) {
+    if(longRttNanos == 0) {
+      shortRttNanos = rttNanos;
+      longRttNanos = rttNanos;
+      return;
+    }
+
+    shortRttNanos += SHORT_RTT_WEIGHT * (rttNanos - shortRttNanos);
+    longRttNanos += LONG_RTT_WEIGHT * (rttNanos - longRttNanos);
+
+    // After a sustained slowdown the long-term average lags far behind; let it recover faster
+    if(longRttNanos > 2 * shortRttNanos) {
+      longRttNanos *= 0.95;
+    }
+
+    // Calls that didn't use the limit say nothing about whether it could be higher
+    if(inFlightAtStart < limit / 2) {
+      return;
+    }
+
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+    double newLimit = limit * gradient + Math.sqrt(limit);
+
+    limit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+    limit = Math.max(minLimit, Math.min(maxLimit, limit));
+  }
+}
@@ -0,0 +1,78 @@
+package projects.service;
+
+import java.util.Objects;
+import projects.entity.Project;
+
+/**
+ * Decides what to do when a project update loses an optimistic concurrency race. The policy gets
+ * the project the caller tried to write and the project as it is currently stored, and returns the
+ * project to write on the next attempt, or {@code null} to give up and report the conflict.
+ */
+@FunctionalInterface
+public interface ConflictMergePolicy {
+
+  /**
+   * Never retry. The conflict is reported to the caller.
+   */
+  ConflictMergePolicy FAIL = (attempted, current) -> null;
+
+  /**
+   * Retry with the caller's values on top of the current version, overwriting concurrent changes.
+   */
+  ConflictMergePolicy LAST_WRITER_WINS = (attempted, current) -> {
+    attempted.setVersion(current.getVersion());
+    return attempted;
+  };
+
+  /**
+   * Merges the attempted project with the current project.
+   * @param attempted The project the caller tried to write.
+   * @param current The project as it is currently stored.
+   * @return The project to write on the next attempt, or null to give up.
+   */
+  Project merge(Project attempted, Project current);
+
+  /**
+   * A three-way merge against the project the caller originally read. Fields the caller changed
+   * are kept, fields the caller left alone take the current stored value. If both sides changed the
+   * same field to different values, the merge gives up.
+   * @param base The project as the caller originally read it.
+   * @return The merge policy
+   */
+  static ConflictMergePolicy threeWay(Project base) {
+    return (attempted, current) -> {
+      Project merged = new Project();
+
+      merged.setProjectId(current.getProjectId());
+      merged.setVersion(current.getVersion());
+
+      try {
+        merged.setProjectName(mergeField(base.getProjectName(), attempted.getProjectName(),
+            current.getProjectName()));
+        merged.setEstimatedHours(mergeField(base.getEstimatedHours(),
+            attempted.getEstimatedHours(), current.getEstimatedHours()));
+        merged.setActualHours(mergeField(base.getActualHours(), attempted.getActualHours(),
+            current.getActualHours()));
+        merged.setDifficulty(mergeField(base.getDifficulty(), attempted.getDifficulty(),
+            current.getDifficulty()));
+        merged.setNotes(mergeField(base.getNotes(), attempted.getNotes(), current.getNotes()));
+      } catch(IllegalStateException e) {
+        return null;
+      }
+
+      return merged;
+    };
+  }
+
+  private static <T> T mergeField(T base, T attempted, T current) {
+    if(Objects.equals(base, attempted)) {
+      return current;
+    }
+
+    if(Objects.equals(base, current) || Objects.equals(attempted, current)) {
+      return attempted;
+    }
+
+    throw new IllegalStateException("Conflicting change");
+  }
+}
@@ -0,0 +1,367 @@
+package projects.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import projects.dao.ProjectRepository;
+import projects.exception.DbException;
+import projects.exception.ErrorReporter;
+
+/**
+ * Knows which project IDs exist, so that a request for an ID that doesn't can be refused without
+ * a connection or a query. Project IDs are generated by AUTO_INCREMENT and so are dense; the set is
+ * kept as one bit per ID, which is exact and takes about 1.2 MB for ten million IDs. Archived
+ * projects count as existing, because they can still be fetched.
+ *
+ * <p>
+ * The set is loaded from the repository in the background and kept current with the inserts and
+ * deletes made through this process. Projects inserted by other processes are found by rescanning
+ * every refresh interval. The watermark is the ID up to which the set is taken to be complete: it
+ * trails the highest ID seen by one rescan, so that a transaction that took an ID during a scan
+ * has one more interval to commit. IDs above the watermark, and all IDs before the second scan, are
+ * always let through.
+ * </p>
+ *
+ * <p>
+ * A transaction can still commit an ID below the watermark after the scan that passed it, if it
+ * runs for longer than the refresh interval. Such a project is refused until a rescan finds it, so
+ * each rescan starts from the watermark of {@link #RESCAN_PASSES} refreshes ago rather than the
+ * current one, and every {@link #FULL_RESCAN_PASSES} refreshes all IDs are rescanned. With the
+ * default interval, a project committed within a minute of taking its ID is found by the next
+ * refresh and any other within the hour. A project deleted by another process stays in the set
+ * until a request for it misses in the database; that is a false positive, which costs one query,
+ * and the rate of them is reported.
+ * </p>
+ */
+public class ProjectIdFilter {
+  public static final long DEFAULT_REFRESH_MILLIS = 10_000;
+
+  /* How many refreshes back each rescan starts. */
+  static final int RESCAN_PASSES = 6;
+
+  /* Every this many refreshes, all IDs are rescanned. */
+  static final int FULL_RESCAN_PASSES = 360;
+
+  private static final int PAGE_SIZE = 10_000;
+
+  /* IDs above this would make the bit set larger than 32 MB. The filter gives up instead. */
+  private static final int MAX_PROJECT_ID = 1 << 28;
+
+  private final ProjectRepository repository;
+  private final long refreshMillis;
+  private final Object writeLock = new Object();
+
+  private volatile AtomicLongArray bits = new AtomicLongArray(0);
+
+  /* Complete up to these IDs per shard. Null until the second scan. */
+  private volatile int[] watermarks;
+
+  /* The highest ID each shard's last scan saw. Used by the refresher thread only. */
+  private int[] lastSeen;
+
+  /* The watermarks of the last RESCAN_PASSES refreshes, oldest first. Refresher thread only. */
+  private final Deque<int[]> pastWatermarks = new ArrayDeque<>();
+  private long refreshCount;
+
+  private volatile boolean started;
+  private volatile boolean disabled;
+  private ScheduledExecutorService refresher;
+
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder passed = new LongAdder();
+  private final LongAdder unknown = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+
+  /**
+   * @param repository The store the IDs are read from
+   * @param refreshMillis How often the IDs above the watermarks are rescanned
+   */
+  public ProjectIdFilter(ProjectRepository repository, long refreshMillis) {
+    this.repository = repository;
+    this.refreshMillis = refreshMillis;
+  }
+
+  /**
+   * Starts loading the IDs in the background, if that hasn't started yet. Returns immediately.
+   */
+  public void start() {
+    if(started) {
+      return;
+    }
+
+    synchronized(this) {
+      if(started) {
+        return;
+      }
+
+      refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "project-id-filter");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+      refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshMillis,
+          TimeUnit.MILLISECONDS);
+      started = true;
+    }
+  }
+
+  /**
+   * Stops the background refresh. The filter lets every ID through from then on.
+   */
+  public synchronized void stop() {
+    disabled = true;
+
+    if(Objects.nonNull(refresher)) {
+      refresher.shutdownNow();
+    }
+  }
+
+  /**
+   * @param projectId The project ID
+   * @return false if the project certainly doesn't exist, true if it may exist
+   */
+  public boolean mightExist(Integer projectId) {
+    int[] marks = watermarks;
+
+    if(disabled || Objects.isNull(marks) || Objects.isNull(projectId)
+        || projectId > marks[repository.shardFor(projectId)]) {
+      unknown.increment();
+      return true;
+    }
+
+    if(projectId > 0 && isSet(projectId)) {
+      passed.increment();
+      return true;
+    }
+
+    rejected.increment();
+    return false;
+  }
+
+  /**
+   * Records a project inserted by this process.
+   * @param projectId The new project's ID
+   */
+  public void add(Integer projectId) {
+    update(projectId, true);
+  }
+
+  /**
+   * Records a project deleted by this process.
+   * @param projectId The deleted project's ID
+   */
+  public void remove(Integer projectId) {
+    update(projectId, false);
+  }
+
+  /**
+   * Records that the repository didn't find a project the filter let through. If the filter
+   * claimed to know the ID, that was a false positive, and the ID is removed. Only call this after
+   * a lookup that also searches the archive.
+   * @param projectId The project ID
+   */
+  public void confirmMissing(Integer projectId) {
+    int[] marks = watermarks;
+
+    if(Objects.nonNull(marks) && Objects.nonNull(projectId) && projectId > 0
+        && projectId <= marks[repository.shardFor(projectId)] && isSet(projectId)) {
+      falsePositives.increment();
+      remove(projectId);
+    }
+  }
+
+  /**
+   * @return true once the watermarks are set and the filter can refuse IDs
+   */
+  public boolean isReady() {
+    return !disabled && Objects.nonNull(watermarks);
+  }
+
+  /**
+   * @return The number of IDs in the set
+   */
+  public long getProjectCount() {
+    AtomicLongArray words = bits;
+    long count = 0;
+
+    for(int i = 0; i < words.length(); i++) {
+      count += Long.bitCount(words.get(i));
+    }
+
+    return count;
+  }
+
+  /**
+   * @return The size of the bit set in bytes
+   */
+  public long getMemoryBytes() {
+    return bits.length() * (long)Long.BYTES;
+  }
+
+  /**
+   * @return The number of lookups refused without a query
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * @return The number of lookups of IDs the filter knew to exist
+   */
+  public long getPassedCount() {
+    return passed.sum();
+  }
+
+  /**
+   * @return The number of lookups let through because the filter didn't know the ID yet
+   */
+  public long getUnknownCount() {
+    return unknown.sum();
+  }
+
+  /**
+   * @return The number of known IDs that turned out not to exist
+   */
+  public long getFalsePositiveCount() {
+    return falsePositives.sum();
+  }
+
+  /**
+   * @return The fraction of IDs the filter knew to exist that turned out not to, from 0 to 1
+   */
+  public double getFalsePositiveRate() {
+    long known = passed.sum();
+    return known == 0 ? 0 : (double)falsePositives.sum() / known;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT,
+        "project ID filter %s: ids=%d (%d KB), rejected=%d, passed=%d, unknown=%d, "
+            + "false positives=%d (%.4f%%)",
+        isReady() ? "ready" : "loading", getProjectCount(), getMemoryBytes() / 1024,
+        getRejectedCount(), getPassedCount(), getUnknownCount(), getFalsePositiveCount(),
+        100 * getFalsePositiveRate());
+  }
+
+  /**
+   * Rescans each shard from the watermark of {@link #RESCAN_PASSES} refreshes ago, or from the
+   * start every {@link #FULL_RESCAN_PASSES} refreshes, then moves each watermark up to the highest
+   * ID the previous scan saw. Any transaction that took an ID at or below that had started before
+   * the previous scan ended, and has committed or rolled back by now unless it runs for longer than
+   * the refresh interval; the rescans below the watermark find the ones that ran longer.
+   */
+  void refresh() {
+    int shardCount = repository.getShardCount();
+    int[] marks = Objects.isNull(watermarks) ? new int[shardCount] : watermarks.clone();
+    int[] seen = new int[shardCount];
+    // Until there are RESCAN_PASSES watermarks, the older ones were 0
+    boolean full = ++refreshCount % FULL_RESCAN_PASSES == 0
+        || pastWatermarks.size() < RESCAN_PASSES;
+    int[] from = full ? new int[shardCount] : pastWatermarks.peekFirst();
+
+    for(int shard = 0; shard < shardCount; shard++) {
+      int afterProjectId = Math.min(from[shard], marks[shard]);
+      seen[shard] = marks[shard];
+
+      while(true) {
+        List<Integer> page = repository.fetchProjectIdPage(shard, afterProjectId, PAGE_SIZE);
+
+        if(page.isEmpty()) {
+          break;
+        }
+
+        for(Integer projectId : page) {
+          add(projectId);
+        }
+
+        afterProjectId = page.get(page.size() - 1);
+        seen[shard] = Math.max(seen[shard], afterProjectId);
+      }
+    }
+
+    if(Objects.nonNull(lastSeen)) {
+      for(int shard = 0; shard < shardCount; shard++) {
+        marks[shard] = Math.max(marks[shard], lastSeen[shard]);
+      }
+
+      // Published after the bits, so a reader that sees a watermark also sees the IDs below it
+      watermarks = marks;
+      pastWatermarks.addLast(marks);
+
+      if(pastWatermarks.size() > RESCAN_PASSES) {
+        pastWatermarks.removeFirst();
+      }
+    }
+
+    lastSeen = seen;
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch(DbException e) {
+      ErrorReporter.report("project-id-filter",
+          "Refresh failed. The watermarks stay where they are until the next refresh.", e);
+    }
+  }
+
+  private boolean isSet(int projectId) {
+    AtomicLongArray words = bits;
+    int index = projectId >>> 6;
+
+    return index < words.length() && (words.get(index) & (1L << projectId)) != 0;
+  }
+
+  /**
+   * Sets or clears an ID's bit. Writers are serialized so that growing the array never loses a
+   * concurrent change; readers don't lock.
+   */
+  private void update(Integer projectId, boolean present) {
+    if(Objects.isNull(projectId) || projectId <= 0) {
+      return;
+    }
+
+    if(projectId > MAX_PROJECT_ID) {
+      if(!disabled) {
+        disabled = true;
+        ErrorReporter.report("project-id-filter",
+            "Disabled: ID " + projectId + " is too large. Every ID is let through.");
+      }
+
+      return;
+    }
+
+    synchronized(writeLock) {
+      int index = projectId >>> 6;
+      AtomicLongArray words = bits;
+
+      if(index >= words.length()) {
+        if(!present) {
+          return;
+        }
+
+        AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, words.length() * 2));
+
+        for(int i = 0; i < words.length(); i++) {
+          grown.set(i, words.get(i));
+        }
+
+        bits = grown;
+        words = grown;
+      }
+
+      long mask = 1L << projectId;
+      long word = words.get(index);
+      words.set(index, present ? word | mask : word & ~mask);
+    }
+  }
+}
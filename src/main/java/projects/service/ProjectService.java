@@ -1,13 +1,97 @@
 package projects.service;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import projects.dao.ArchivePolicy;
+import projects.dao.AuditTrail;
+import projects.dao.Deadline;
 import projects.dao.ProjectDao;
+import projects.dao.ProjectRepository;
+import projects.entity.AuditRecord;
+import projects.entity.CompactProject;
+import projects.entity.MaterialRequirement;
 import projects.entity.Project;
+import projects.entity.TimeEntry;
+import projects.event.ChangeEvent;
+import projects.event.ChangeEvent.ChangeType;
+import projects.event.ChangeEventBus;
 import projects.exception.DbException;
+import projects.exception.DeadlineExceededException;
+import projects.exception.ProjectArchivedException;
+import projects.exception.ProjectConflictException;
+import projects.exception.ProjectNotFoundException;
+import projects.similarity.SimilarProject;
+import projects.similarity.SimilarityIndex;
 
 public class ProjectService {
 
-  ProjectDao projectDao = new ProjectDao();
+  private static final int MAX_MERGE_ATTEMPTS = 3;
+  private static final double MIN_SIMILARITY = 0.3;
+  private static final String PROJECT_ENTITY = "project";
+  
+  //@formatter:off
+  private static final List<String> PROJECT_COLUMNS = List.of(
+      "project_name", "estimated_hours", "actual_hours", "difficulty", "notes", "version");
+  private static final List<String> TIME_LOG_COLUMNS = List.of("actual_hours", "version");
+  //@formatter:on
+
+  /*
+   * Shared by all service instances because they share the database. Writes hold row locks and
+   * take longer, so they get a lower limit and a longer queue wait than reads.
+   */
+  private static final ConcurrencyLimiter READS =
+      new ConcurrencyLimiter("read", 20, 4, 200, 200, Duration.ofMillis(200));
+  private static final ConcurrencyLimiter WRITES =
+      new ConcurrencyLimiter("write", 10, 2, 50, 100, Duration.ofMillis(500));
+
+  /* Reports read many ranges in a row, so they wait long for a slot but hold few. */
+  private static final ConcurrencyLimiter REPORTS =
+      new ConcurrencyLimiter("report", 4, 1, 8, 64, Duration.ofSeconds(30));
+
+  final ProjectRepository projectDao;
+  
+  private final ChangeEventBus eventBus = new ChangeEventBus();
+  
+  private TimeLogger timeLogger;
+  
+  private SimilarityIndex similarityIndex;
+  
+  private final ProjectIdFilter idFilter;
+  
+  /**
+   * Creates a service that stores the projects in the MySQL database.
+   */
+  public ProjectService() {
+    this(new ProjectDao());
+  }
+  
+  
+  /**
+   * Creates a service over the given project store, for example an
+   * {@link projects.dao.InMemoryProjectRepository} in tests. Archiving and time logging go to the
+   * same store.
+   * @param projectDao The project store
+   */
+  public ProjectService(ProjectRepository projectDao) {
+    this.projectDao = projectDao;
+    this.idFilter = new ProjectIdFilter(projectDao,
+        Long.getLong("projects.idfilter.refresh", ProjectIdFilter.DEFAULT_REFRESH_MILLIS));
+  }
+  
+  
+  /**
+   * Starts warming up the data access layer so that the first request doesn't pay for driver
+   * loading, connection setup and mapping metadata. Returns immediately.
+   */
+  public static void warmUp() {
+    ProjectDao.warmUp();
+  }
+  
   
   /**
    * A method calls the DAO class to insert a project row.
@@ -16,7 +100,10 @@ public class ProjectService {
    */
   public Project addProject(Project project) {
     // Calling insertProject method from project DAO for inserting a project 
-    return projectDao.insertProject(project);
+    Project dbProject = WRITES.execute(() -> projectDao.insertProject(project));
+    idFilter.add(dbProject.getProjectId());
+    publish(dbProject.getProjectId(), ChangeType.INSERT, PROJECT_COLUMNS);
+    return dbProject;
   }
 
   
@@ -25,7 +112,18 @@ public class ProjectService {
    * @return A list of project records
    */
   public List<Project> fetchAllProjects() {
-    return projectDao.fetchAllProjects();
+    return READS.execute(() -> projectDao.fetchAllProjects());
+  }
+
+  
+  /**
+   * Calls the project DAO to retrieve all projects with only the given columns read. Use this for
+   * listings that show a few fields.
+   * @param columns The project columns to read. The project ID and name are always read.
+   * @return A list of project records
+   */
+  public List<Project> fetchAllProjects(List<String> columns) {
+    return READS.execute(() -> projectDao.fetchAllProjects(columns));
   }
 
   
@@ -36,19 +134,179 @@ public class ProjectService {
    * @return project object if it is successful
    */
   public Project fetchProjectById(Integer projectId) {
-    return projectDao.fetchProjectById(projectId).
-        orElseThrow(() -> new DbException("Project with project ID=" + projectId + " does not exist."));
+    if(!mightExist(projectId)) {
+      throw new ProjectNotFoundException(
+          "Project with project ID=" + projectId + " does not exist.");
+    }
+    
+    return READS.execute(() -> projectDao.fetchProjectById(projectId)).
+        orElseThrow(() -> notFound(projectId));
+  }
+
+
+  /**
+   * Calls the project DAO to get a single project within a time budget. If the shard has a
+   * secondary endpoint, a slow read is hedged to it.
+   * @param projectId The project ID
+   * @param budget The time budget for the whole call
+   * @return project object if it is successful
+   * @throws DeadlineExceededException if the budget runs out. Running queries are cancelled.
+   */
+  public Project fetchProjectById(Integer projectId, Duration budget) {
+    if(!mightExist(projectId)) {
+      throw new ProjectNotFoundException(
+          "Project with project ID=" + projectId + " does not exist.");
+    }
+    
+    return Deadline.after(budget)
+        .call(() -> READS.execute(() -> projectDao.fetchProjectByIdHedged(projectId))).
+        orElseThrow(() -> notFound(projectId));
   }
 
 
   /**
-   * A method calls the DAO class to update a project row.
+   * Runs any service call within a time budget. Every connection and statement the call uses is
+   * bounded by the budget, and statements still running when it runs out are cancelled.
+   * @param budget The time budget
+   * @param call The service call
+   * @return The call's result
+   * @throws DeadlineExceededException if the budget runs out.
+   */
+  public <T> T withDeadline(Duration budget, Supplier<T> call) {
+    return Deadline.after(budget).call(call);
+  }
+
+
+  /**
+   * Calls the project DAO to get a single project in its memory-compact form. Use this when many
+   * project graphs are held in memory at once.
+   * @param projectId The project ID
+   * @return The compact project
+   */
+  public CompactProject fetchCompactProjectById(Integer projectId) {
+    if(!mightExist(projectId)) {
+      throw new ProjectNotFoundException(
+          "Project with project ID=" + projectId + " does not exist.");
+    }
+    
+    return READS.execute(() -> projectDao.fetchCompactProjectById(projectId)).
+        orElseThrow(() -> new ProjectNotFoundException(
+            "Project with project ID=" + projectId + " does not exist."));
+  }
+
+
+  /**
+   * Calls the project DAO to total the materials of a set of projects per catalog material, for
+   * example to build one shopping list for several projects. IDs of missing or deleted projects are
+   * ignored.
+   * @param projectIds The project IDs
+   * @return The totals, sorted by material name
+   */
+  public List<MaterialRequirement> fetchMaterialRequirements(Collection<Integer> projectIds) {
+    return READS.execute(() -> projectDao.fetchMaterialRequirements(projectIds));
+  }
+
+
+  /**
+   * A method calls the DAO class to update a project row. The project version must match the
+   * stored version, otherwise a {@link ProjectConflictException} is thrown.
    * @param project The {@link Project} object.
    */
   public void modifyProjectDetails(Project project) {
-    if(!projectDao.modifyProjectDetails(project)) {
-      throw new DbException("Project with ID=" + project.getProjectId() + " does not exist.");
-    }    
+    modifyProjectDetails(project, ConflictMergePolicy.FAIL);
+  }
+
+
+  /**
+   * A method calls the DAO class to update a project row. If another user changed the project in
+   * the meantime, the merge policy is asked for a merged project and the update is retried, up to
+   * {@link #MAX_MERGE_ATTEMPTS} times. The values that were written, merged ones included, are
+   * copied back into the given project along with the new version.
+   * @param project The {@link Project} object.
+   * @param mergePolicy The policy used to resolve version conflicts.
+   * @throws ProjectConflictException if the conflict could not be resolved.
+   * @throws ProjectArchivedException if the project is archived. {@link #restoreProject(Integer)}
+   *         makes it changeable again.
+   */
+  public void modifyProjectDetails(Project project, ConflictMergePolicy mergePolicy) {
+    if(!mightExist(project.getProjectId())) {
+      throw new ProjectNotFoundException(
+          "Project with ID=" + project.getProjectId() + " does not exist.");
+    }
+    
+    Project attempt = project;
+    
+    for(int attempts = 1; ; attempts++) {
+      Project current = attempt;
+      
+      try {
+        if(!WRITES.execute(() -> projectDao.modifyProjectDetails(current))) {
+          throw new ProjectNotFoundException(
+          "Project with ID=" + project.getProjectId() + " does not exist.");
+        }
+        
+        copyDetails(attempt, project);
+        publish(project.getProjectId(), ChangeType.UPDATE, PROJECT_COLUMNS);
+        return;
+        
+      } catch(ProjectConflictException e) {
+        Project merged = attempts < MAX_MERGE_ATTEMPTS 
+            ? mergePolicy.merge(attempt, e.getCurrentProject()) : null;
+        
+        if(Objects.isNull(merged)) {
+          throw e;
+        }
+        
+        attempt = merged;
+      }
+    }
+  }
+
+
+  /**
+   * Saves a whole project graph, including its materials, steps and categories, in one
+   * transaction. Only the rows that differ from the stored graph are written. A project without an
+   * ID is created. One event is published per written row, all with the same transaction ID, and
+   * none if nothing changed.
+   * @param project The project graph. Its version must match the stored version.
+   * @return The saved project, with generated IDs and advanced versions filled in.
+   * @throws ProjectConflictException if the project was modified by someone else.
+   * @throws ProjectArchivedException if the project is archived.
+   */
+  public Project saveProject(Project project) {
+    boolean isNew = Objects.isNull(project.getProjectId());
+    List<AuditRecord> written = WRITES.execute(() -> projectDao.saveProject(project))
+        .orElseThrow(() -> new ProjectNotFoundException(
+            "Project with ID=" + project.getProjectId() + " does not exist."));
+    
+    if(isNew) {
+      idFilter.add(project.getProjectId());
+    }
+    
+    publish(written);
+    return project;
+  }
+
+
+  /**
+   * Creates a new project as a copy of an existing one, with all its materials, steps and
+   * categories. The copy is made inside the database without reading the original.
+   * @param projectId The ID of the project to copy
+   * @param projectName The name of the new project
+   * @return The ID of the new project
+   */
+  public Integer cloneProject(Integer projectId, String projectName) {
+    if(Objects.isNull(projectName) || projectName.isBlank()) {
+      throw new DbException("A project name is required for the copy.");
+    }
+    
+    Integer cloneId = WRITES.execute(() -> projectDao.cloneProject(projectId, projectName))
+        .orElseThrow(() -> new ProjectNotFoundException(
+            "Project with ID=" + projectId + " does not exist."));
+    
+    idFilter.add(cloneId);
+    publish(cloneId, ChangeType.INSERT, PROJECT_COLUMNS);
+    return cloneId;
   }
 
 
@@ -57,9 +315,247 @@ public class ProjectService {
    * @param projectId The project ID
    */
   public void deleteProject(Integer projectId) {
-    if(!projectDao.deleteProject(projectId)) {
-      throw new DbException("Project with ID=" + projectId + " does not exist.");
-    }    
+    if(!mightExist(projectId) || !WRITES.execute(() -> projectDao.deleteProject(projectId))) {
+      idFilter.confirmMissing(projectId);
+      throw new ProjectNotFoundException("Project with ID=" + projectId + " does not exist.");
+    }
+    
+    idFilter.remove(projectId);
+    publish(projectId, ChangeType.DELETE, List.of());
+  }
+
+
+  /**
+   * Moves the project graphs that meet the policy from the live tables into the archive tables.
+   * Archived projects no longer appear in listings but can still be fetched by ID.
+   * @param policy Decides which projects to archive
+   * @return The number of projects archived
+   */
+  public int archiveProjects(ArchivePolicy policy) {
+    return projectDao.archiveProjects(policy);
+  }
+
+
+  /**
+   * Moves an archived project back into the live tables so that it can be changed again.
+   * @param projectId The project ID
+   */
+  public void restoreProject(Integer projectId) {
+    if(!WRITES.execute(() -> projectDao.restoreProject(projectId))) {
+      throw new DbException("Project with ID=" + projectId + " is not archived.");
+    }
+  }
+
+
+  /**
+   * Logs a work session against a project. The entry is buffered and written together with other
+   * entries on the next flush, which also adds the hours to the project's actual hours.
+   * @param projectId The project ID
+   * @param hours The hours worked. Must be greater than zero.
+   * @param notes Optional notes about the session
+   */
+  public void logTime(Integer projectId, BigDecimal hours, String notes) {
+    if(Objects.isNull(projectId)) {
+      throw new DbException("A project ID is required to log time.");
+    }
+    
+    if(Objects.isNull(hours) || hours.signum() <= 0) {
+      throw new DbException("Logged hours must be greater than zero.");
+    }
+    
+    TimeEntry entry = new TimeEntry();
+    entry.setProjectId(projectId);
+    entry.setHours(hours);
+    entry.setLoggedAt(LocalDateTime.now());
+    entry.setNotes(notes);
+    
+    getTimeLogger().log(entry);
+  }
+
+
+  /**
+   * Writes all buffered time entries now instead of waiting for the next scheduled flush.
+   * @throws DbException if some entries could not be written. They stay buffered.
+   */
+  public void flushTimeLog() {
+    getTimeLogger().flush();
+  }
+
+
+  /**
+   * @return The admission limiter for reads
+   */
+  public static ConcurrencyLimiter getReadLimiter() {
+    return READS;
+  }
+
+
+  /**
+   * @return The admission limiter for writes
+   */
+  public static ConcurrencyLimiter getWriteLimiter() {
+    return WRITES;
+  }
+
+
+  /**
+   * Returns the audit trail the data access layer records changes to, for its queue depth and
+   * flush latency. The durability mode is set with {@code -Dprojects.audit.durability}.
+   * @return The audit trail
+   */
+  public static AuditTrail getAuditTrail() {
+    return AuditTrail.getDefault();
+  }
+
+
+  /**
+   * Builds the estimate accuracy and material cost report per category and difficulty over every
+   * live project. The projects are read in ID ranges in parallel and only their aggregates are
+   * kept, so the report costs a few queries per two thousand projects rather than one per project.
+   * The reads go through a limiter of their own, so a report neither starves the interactive reads
+   * nor fails because they are busy.
+   * @return The report, which can be written as CSV or JSON
+   */
+  public CatalogReport generateCatalogReport() {
+    return new ReportEngine(projectDao, REPORTS).generate();
+  }
+
+
+  /**
+   * Returns the filter that refuses requests for project IDs that don't exist before they reach the
+   * database, for its rejection count and false-positive rate.
+   * @return The project ID filter
+   */
+  public ProjectIdFilter getProjectIdFilter() {
+    return idFilter;
+  }
+
+
+  /**
+   * Returns the bus on which committed changes are published. Subscribers receive the events
+   * asynchronously on their own threads, off the request path.
+   * @return The change event bus
+   */
+  public ChangeEventBus getEventBus() {
+    return eventBus;
+  }
+
+
+  /**
+   * Finds the projects whose materials and step text are most like those of a project, for example
+   * to reuse one as a template. The similarity index is built on the first call, which reads every
+   * project once; after that it follows the changes made through this service.
+   * @param projectId The project ID
+   * @param limit The maximum number of results
+   * @return The similar projects, most similar first, or none if the project doesn't exist
+   */
+  public List<SimilarProject> fetchSimilarProjects(Integer projectId, int limit) {
+    if(!mightExist(projectId)) {
+      return List.of();
+    }
+    
+    SimilarityIndex index = getSimilarityIndex();
+    
+    if(!index.isBuilt()) {
+      index.build();
+    }
+    
+    return READS.execute(() -> index.findSimilar(projectId, limit, MIN_SIMILARITY));
+  }
+
+
+  /**
+   * Copies the project's own fields, as they were written, into the caller's project so that it
+   * matches the stored row and a later save doesn't revert a merged change.
+   */
+  private void copyDetails(Project written, Project project) {
+    if(written != project) {
+      project.setProjectName(written.getProjectName());
+      project.setEstimatedHours(written.getEstimatedHours());
+      project.setActualHours(written.getActualHours());
+      project.setDifficulty(written.getDifficulty());
+      project.setNotes(written.getNotes());
+    }
+    
+    project.setVersion(written.getVersion());
+  }
+
+
+  /**
+   * Asks the project ID filter whether a project may exist, starting the filter's load on the first
+   * call. A false answer is certain and saves a connection and a query.
+   */
+  private boolean mightExist(Integer projectId) {
+    idFilter.start();
+    return idFilter.mightExist(projectId);
+  }
+
+
+  /**
+   * Tells the project ID filter about a project it let through that the database didn't have.
+   */
+  private ProjectNotFoundException notFound(Integer projectId) {
+    idFilter.confirmMissing(projectId);
+    return new ProjectNotFoundException(
+        "Project with project ID=" + projectId + " does not exist.");
+  }
+
+
+  /**
+   * Creates the similarity index on first use and subscribes it to the change events, before it is
+   * built so that changes made during the build are not missed.
+   */
+  private synchronized SimilarityIndex getSimilarityIndex() {
+    if(Objects.isNull(similarityIndex)) {
+      similarityIndex = new SimilarityIndex(projectDao);
+      similarityIndex.follow(eventBus);
+    }
+    
+    return similarityIndex;
+  }
+
+
+  /**
+   * Creates the time logger on first use so that its flush thread and spool recovery only happen
+   * when time is logged.
+   */
+  private synchronized TimeLogger getTimeLogger() {
+    if(Objects.isNull(timeLogger)) {
+      timeLogger = new TimeLogger(projectDao, projectIds -> projectIds
+          .forEach(projectId -> publish(projectId, ChangeType.UPDATE, TIME_LOG_COLUMNS)));
+    }
+    
+    return timeLogger;
+  }
+
+
+  /**
+   * Publishes a change to a project row. Called only after the DAO has committed the change.
+   */
+  private void publish(Integer projectId, ChangeType changeType, List<String> columns) {
+    eventBus.publish(new ChangeEvent(PROJECT_ENTITY, projectId, projectId, changeType, columns,
+        eventBus.nextTransactionId()));
+  }
+
+
+  /**
+   * Publishes the rows one transaction wrote, as one event per row. The changed columns of an
+   * insert or update are the columns the record carries after values for.
+   */
+  private void publish(List<AuditRecord> written) {
+    if(written.isEmpty()) {
+      return;
+    }
+    
+    long transactionId = eventBus.nextTransactionId();
+    
+    for(AuditRecord record : written) {
+      List<String> columns = Objects.isNull(record.getAfterValues()) ? List.of()
+          : List.copyOf(record.getAfterValues().keySet());
+      
+      eventBus.publish(new ChangeEvent(record.getEntity(), record.getEntityId(),
+          record.getProjectId(), record.getChangeType(), columns, transactionId));
+    }
   }
 
 }
@@ -0,0 +1,163 @@
+package projects.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+import projects.dao.ProjectRepository;
+import projects.entity.ProjectSummary;
+import projects.exception.DbException;
+import projects.exception.OverloadException;
+
+/**
+ * Builds a {@link CatalogReport} over every live project in parallel. Each partition's project ID
+ * range is split in halves on a fork/join pool until a range holds about
+ * {@link #PROJECTS_PER_RANGE} projects. Each range is read with one
+ * {@link ProjectRepository#fetchProjectSummaries} call and aggregated into a partial report, and
+ * the partial reports are merged as the tasks join. Only the aggregates are held in memory, never
+ * the projects of more than one range per thread.
+ *
+ * <p>
+ * The pool has one thread per core, but no more than the given limiter currently admits. The
+ * limiter should be one of the report's own, so that a report is held to a few connections without
+ * taking slots from the interactive reads, and its queue wait should be long. A range read that is
+ * turned away anyway is retried with a growing pause, up to {@link #MAX_ATTEMPTS} times, before
+ * the report fails.
+ * </p>
+ */
+public class ReportEngine {
+  static final int PROJECTS_PER_RANGE = 2000;
+  static final int MAX_ATTEMPTS = 5;
+
+  private static final long FIRST_BACKOFF_MILLIS = 100;
+
+  private final ProjectRepository repository;
+  private final ConcurrencyLimiter limiter;
+
+  /**
+   * @param repository The store the projects are read from
+   * @param limiter Admits the range reads and caps the pool size
+   */
+  public ReportEngine(ProjectRepository repository, ConcurrencyLimiter limiter) {
+    this.repository = repository;
+    this.limiter = limiter;
+  }
+
+  /**
+   * Reads and aggregates every live project. Blocks until the report is complete.
+   * @return The report
+   * @throws DbException if a read fails or is still turned away after {@link #MAX_ATTEMPTS}
+   *         attempts. The pool is shut down.
+   */
+  public CatalogReport generate() {
+    int parallelism = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+        Integer.getInteger("projects.report.parallelism", limiter.getLimit())));
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+    try {
+      return pool.invoke(new AllShardsTask());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs a read through the limiter, pausing and trying again while the limiter turns it away.
+   */
+  private <T> T read(Supplier<T> call) {
+    long backoffMillis = FIRST_BACKOFF_MILLIS;
+
+    for(int attempt = 1; ; attempt++) {
+      try {
+        return limiter.execute(call);
+      } catch(OverloadException e) {
+        if(attempt == MAX_ATTEMPTS) {
+          throw e;
+        }
+      }
+
+      try {
+        Thread.sleep(backoffMillis);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DbException(e);
+      }
+
+      backoffMillis *= 2;
+    }
+  }
+
+  /**
+   * Finds each partition's highest ID and reports on the partitions side by side.
+   */
+  private class AllShardsTask extends RecursiveTask<CatalogReport> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected CatalogReport compute() {
+      int shardCount = repository.getShardCount();
+
+      /*
+       * A partition's IDs are spread over its range one in every shardCount, so a range of
+       * PROJECTS_PER_RANGE projects spans that many times as many IDs.
+       */
+      int span = PROJECTS_PER_RANGE * shardCount;
+      List<RangeTask> tasks = new ArrayList<>();
+
+      for(int shard = 0; shard < shardCount; shard++) {
+        int current = shard;
+        int maxProjectId = read(() -> repository.fetchMaxProjectId(current));
+        tasks.add(new RangeTask(shard, 0, maxProjectId, span));
+      }
+
+      CatalogReport report = new CatalogReport();
+
+      for(RangeTask task : ForkJoinTask.invokeAll(tasks)) {
+        report.merge(task.join());
+      }
+
+      return report;
+    }
+  }
+
+  /**
+   * Reports on the projects of one partition with IDs above afterProjectId and up to toProjectId.
+   */
+  private class RangeTask extends RecursiveTask<CatalogReport> {
+    private static final long serialVersionUID = 1L;
+
+    private final int shard;
+    private final int afterProjectId;
+    private final int toProjectId;
+    private final int span;
+
+    RangeTask(int shard, int afterProjectId, int toProjectId, int span) {
+      this.shard = shard;
+      this.afterProjectId = afterProjectId;
+      this.toProjectId = toProjectId;
+      this.span = span;
+    }
+
+    @Override
+    protected CatalogReport compute() {
+      if(toProjectId - afterProjectId <= span) {
+        CatalogReport report = new CatalogReport();
+        List<ProjectSummary> summaries =
+            read(() -> repository.fetchProjectSummaries(shard, afterProjectId, toProjectId));
+
+        summaries.forEach(report::add);
+        return report;
+      }
+
+      int middle = afterProjectId + (toProjectId - afterProjectId) / 2;
+      RangeTask lower = new RangeTask(shard, afterProjectId, middle, span);
+      RangeTask upper = new RangeTask(shard, middle, toProjectId, span);
+
+      lower.fork();
+      CatalogReport report = upper.compute();
+      return report.merge(lower.join());
+    }
+  }
+}
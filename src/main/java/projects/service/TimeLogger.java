@@ -0,0 +1,380 @@
+package projects.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import projects.dao.ProjectRepository;
+import projects.entity.TimeEntry;
+import projects.exception.DbException;
+import projects.exception.ErrorReporter;
+
+/**
+ * Buffers logged work sessions in memory and writes them in batches. Each flush inserts the
+ * buffered time entries and adds their hours to the projects with one UPDATE per project, so a
+ * project that gets many entries between flushes is updated once instead of once per entry.
+ *
+ * <p>
+ * A flush runs every flush interval, and early when the buffer reaches its size threshold. Entries
+ * that can't be written are kept and retried on the next flush. On shutdown the buffer is flushed
+ * one last time, and anything that still can't be written is appended to a spool file, which is
+ * read back the next time a logger starts.
+ * </p>
+ */
+public class TimeLogger implements AutoCloseable {
+  public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5_000;
+  public static final int DEFAULT_FLUSH_THRESHOLD = 500;
+
+  private static final String NULL_MARKER = "\\N";
+
+  private final ProjectRepository repository;
+  private final Consumer<Set<Integer>> onFlushed;
+  private final int flushThreshold;
+  private final Path spoolFile;
+  private final ScheduledExecutorService scheduler;
+  private final Object flushLock = new Object();
+  private final Thread shutdownHook;
+
+  private List<TimeEntry> pending = new ArrayList<>();
+  private boolean closed;
+
+  /**
+   * Creates a logger with the default interval and threshold. The spool file is taken from the
+   * {@code projects.timelog.spool} system property, defaulting to time-entries.spool in the working
+   * directory.
+   * @param repository The store the entries are written to
+   * @param onFlushed Called with the IDs of the projects whose actual hours were updated, after the
+   *        update has committed.
+   */
+  public TimeLogger(ProjectRepository repository, Consumer<Set<Integer>> onFlushed) {
+    this(repository, onFlushed, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_FLUSH_THRESHOLD,
+        Paths.get(System.getProperty("projects.timelog.spool", "time-entries.spool")));
+  }
+
+  /**
+   * @param repository The store the entries are written to
+   * @param onFlushed Called with the IDs of the projects whose actual hours were updated
+   * @param flushIntervalMillis How often buffered entries are written
+   * @param flushThreshold The buffer size that triggers an early flush
+   * @param spoolFile Where unwritten entries are kept across restarts
+   */
+  public TimeLogger(ProjectRepository repository, Consumer<Set<Integer>> onFlushed,
+      long flushIntervalMillis, int flushThreshold, Path spoolFile) {
+    this.repository = repository;
+    this.onFlushed = onFlushed;
+    this.flushThreshold = flushThreshold;
+    this.spoolFile = spoolFile;
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "time-log-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    recoverSpool();
+
+    scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+        TimeUnit.MILLISECONDS);
+    shutdownHook = new Thread(this::close, "time-log-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /**
+   * Buffers a time entry. It is written to the repository on the next flush.
+   * @param entry The time entry
+   * @throws IllegalStateException if the logger has been closed.
+   */
+  public void log(TimeEntry entry) {
+    int size;
+
+    synchronized(this) {
+      if(closed) {
+        throw new IllegalStateException("The time logger has been closed.");
+      }
+
+      pending.add(entry);
+      size = pending.size();
+    }
+
+    if(size == flushThreshold) {
+      scheduler.execute(this::flushQuietly);
+    }
+  }
+
+  /**
+   * @return The number of entries not yet written
+   */
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Writes all buffered entries now. Entries are grouped by shard and each shard is written in one
+   * transaction.
+   * @throws DbException if some entries could not be written. They stay buffered for the next
+   *         flush.
+   */
+  public void flush() {
+    synchronized(flushLock) {
+      List<TimeEntry> batch;
+
+      synchronized(this) {
+        batch = pending;
+        pending = new ArrayList<>();
+      }
+
+      if(batch.isEmpty()) {
+        return;
+      }
+
+      Map<Integer, List<TimeEntry>> byShard = new LinkedHashMap<>();
+
+      for(TimeEntry entry : batch) {
+        int shard = repository.shardFor(entry.getProjectId());
+        byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(entry);
+      }
+
+      Set<Integer> flushedProjects = new HashSet<>();
+      List<TimeEntry> failed = new ArrayList<>();
+      DbException failure = null;
+
+      for(Map.Entry<Integer, List<TimeEntry>> shardEntries : byShard.entrySet()) {
+        int shard = shardEntries.getKey();
+        List<TimeEntry> entries = shardEntries.getValue();
+
+        try {
+          flushedProjects.addAll(repository.insertTimeEntries(shard, entries).keySet());
+        } catch(DbException e) {
+          if(isIntegrityViolation(e)) {
+            flushedProjects.addAll(flushByProject(shard, entries));
+          }
+          else {
+            failed.addAll(entries);
+            failure = e;
+          }
+        }
+      }
+
+      if(!failed.isEmpty()) {
+        synchronized(this) {
+          failed.addAll(pending);
+          pending = failed;
+        }
+      }
+
+      if(!flushedProjects.isEmpty()) {
+        onFlushed.accept(flushedProjects);
+      }
+
+      if(Objects.nonNull(failure)) {
+        throw new DbException("Unable to write " + failed.size() + " time entries. Will retry.",
+            failure);
+      }
+    }
+  }
+
+  /**
+   * Stops the flush timer, writes the remaining entries and spools anything that can't be written.
+   * A logger closed before shutdown also unregisters its shutdown hook, so that it can be
+   * collected.
+   */
+  @Override
+  public void close() {
+    synchronized(this) {
+      if(closed) {
+        return;
+      }
+
+      closed = true;
+    }
+
+    if(Thread.currentThread() != shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch(IllegalStateException e) {
+        // The JVM is already shutting down and the hook will find the logger closed
+      }
+    }
+
+    scheduler.shutdown();
+
+    try {
+      flush();
+    } catch(DbException e) {
+      List<TimeEntry> remaining;
+
+      synchronized(this) {
+        remaining = pending;
+        pending = new ArrayList<>();
+      }
+
+      spool(remaining);
+      ErrorReporter.report("time-logger",
+          "Saved " + remaining.size() + " unwritten time entries to " + spoolFile, e);
+    }
+  }
+
+  /**
+   * Writes the entries of a shard one project at a time after a batch was rejected for a
+   * constraint violation, typically because a project was deleted after time was logged against
+   * it. Entries of projects that no longer exist are dropped.
+   * @return The IDs of the projects that were updated
+   */
+  private Set<Integer> flushByProject(int shard, List<TimeEntry> entries) {
+    Map<Integer, List<TimeEntry>> byProject = new LinkedHashMap<>();
+    entries.forEach(entry -> byProject
+        .computeIfAbsent(entry.getProjectId(), id -> new ArrayList<>()).add(entry));
+
+    Set<Integer> flushed = new HashSet<>();
+
+    for(Map.Entry<Integer, List<TimeEntry>> projectEntries : byProject.entrySet()) {
+      try {
+        repository.insertTimeEntries(shard, projectEntries.getValue());
+        flushed.add(projectEntries.getKey());
+      } catch(DbException e) {
+        ErrorReporter.report("time-logger", "Dropping " + projectEntries.getValue().size()
+            + " time entries for project " + projectEntries.getKey(), e);
+      }
+    }
+
+    return flushed;
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch(DbException e) {
+      // The entries stay buffered and are retried on the next flush
+    }
+  }
+
+  private boolean isIntegrityViolation(Throwable e) {
+    for(Throwable cause = e; Objects.nonNull(cause); cause = cause.getCause()) {
+      if(cause instanceof SQLException) {
+        String state = ((SQLException)cause).getSQLState();
+
+        if(Objects.nonNull(state) && state.startsWith("23")) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Appends entries to the spool file, one tab-separated line per entry.
+   */
+  private void spool(List<TimeEntry> entries) {
+    try(BufferedWriter out = Files.newBufferedWriter(spoolFile, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      for(TimeEntry entry : entries) {
+        out.write(entry.getProjectId() + "\t" + entry.getHours() + "\t" + entry.getLoggedAt()
+            + "\t" + escape(entry.getNotes()));
+        out.newLine();
+      }
+    } catch(IOException e) {
+      throw new UncheckedIOException("Unable to spool time entries to " + spoolFile, e);
+    }
+  }
+
+  /**
+   * Loads entries left in the spool file by an earlier run into the buffer.
+   */
+  private void recoverSpool() {
+    if(!Files.isRegularFile(spoolFile)) {
+      return;
+    }
+
+    try {
+      List<TimeEntry> recovered = new ArrayList<>();
+
+      for(String line : Files.readAllLines(spoolFile, StandardCharsets.UTF_8)) {
+        if(line.isBlank()) {
+          continue;
+        }
+
+        String[] fields = line.split("\t", 4);
+        TimeEntry entry = new TimeEntry();
+        entry.setProjectId(Integer.valueOf(fields[0]));
+        entry.setHours(new BigDecimal(fields[1]));
+        entry.setLoggedAt(LocalDateTime.parse(fields[2]));
+        entry.setNotes(unescape(fields[3]));
+        recovered.add(entry);
+      }
+
+      synchronized(this) {
+        pending.addAll(recovered);
+      }
+
+      Files.delete(spoolFile);
+    } catch(IOException e) {
+      throw new UncheckedIOException("Unable to read spooled time entries from " + spoolFile, e);
+    }
+  }
+
+  private String escape(String value) {
+    if(Objects.isNull(value)) {
+      return NULL_MARKER;
+    }
+
+    return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r",
+        "\\r");
+  }
+
+  private String unescape(String value) {
+    if(value.equals(NULL_MARKER)) {
+      return null;
+    }
+
+    StringBuilder builder = new StringBuilder(value.length());
+
+    for(int i = 0; i < value.length(); i++) {
+      char ch = value.charAt(i);
+
+      if(ch == '\\' && i + 1 < value.length()) {
+        char escaped = value.charAt(++i);
+
+        switch(escaped) {
+          case 't':
+            builder.append('\t');
+            break;
+
+          case 'n':
+            builder.append('\n');
+            break;
+
+          case 'r':
+            builder.append('\r');
+            break;
+
+          default:
+            builder.append(escaped);
+        }
+      }
+      else {
+        builder.append(ch);
+      }
+    }
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,144 @@
+package projects.similarity;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/**
+ * Computes MinHash signatures of projects. A project is reduced to a set of features: the
+ * normalized name of each material, and every run of three consecutive words in its step text. The
+ * fraction of positions at which two signatures agree estimates the Jaccard similarity of the two
+ * feature sets.
+ *
+ * <p>
+ * Every feature is hashed once to 64 bits; the i-th hash function is that hash scrambled with a
+ * per-function constant. Only the upper 32 bits of each minimum are kept.
+ * </p>
+ */
+class MinHasher {
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+  private static final int SHINGLE_WORDS = 3;
+
+  private final long[] seeds;
+
+  /**
+   * @param numHashes The signature length
+   */
+  MinHasher(int numHashes) {
+    seeds = new long[numHashes];
+
+    for(int i = 0; i < numHashes; i++) {
+      seeds[i] = mix(GOLDEN_GAMMA * (i + 1));
+    }
+  }
+
+  /**
+   * @param project The project with its materials and steps
+   * @return The signature, or null if the project has no features to compare
+   */
+  int[] signature(Project project) {
+    Set<Long> features = features(project);
+
+    if(features.isEmpty()) {
+      return null;
+    }
+
+    int[] signature = new int[seeds.length];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+
+    for(long feature : features) {
+      for(int i = 0; i < seeds.length; i++) {
+        int hash = (int)(mix(feature ^ seeds[i]) >>> 33);
+
+        if(hash < signature[i]) {
+          signature[i] = hash;
+        }
+      }
+    }
+
+    return signature;
+  }
+
+  /**
+   * @return The fraction of positions at which the two signatures agree
+   */
+  static double similarity(int[] a, int[] b) {
+    int same = 0;
+
+    for(int i = 0; i < a.length; i++) {
+      if(a[i] == b[i]) {
+        same++;
+      }
+    }
+
+    return (double)same / a.length;
+  }
+
+  private Set<Long> features(Project project) {
+    Set<Long> features = new HashSet<>();
+
+    for(Material material : project.getMaterials()) {
+      String name = material.getMaterialName();
+
+      if(Objects.nonNull(name) && !name.isBlank()) {
+        features.add(hash("m:" + name.trim().toLowerCase(Locale.ROOT)));
+      }
+    }
+
+    for(Step step : project.getSteps()) {
+      String text = step.getStepText();
+
+      if(Objects.isNull(text)) {
+        continue;
+      }
+
+      String[] words = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+      int start = words.length > 0 && words[0].isEmpty() ? 1 : 0;
+
+      if(words.length - start < SHINGLE_WORDS) {
+        // Short steps count as a single feature
+        if(words.length > start) {
+          String[] shortStep = Arrays.copyOfRange(words, start, words.length);
+          features.add(hash("s:" + String.join(" ", shortStep)));
+        }
+
+        continue;
+      }
+
+      for(int i = start; i + SHINGLE_WORDS <= words.length; i++) {
+        features.add(hash("s:" + words[i] + " " + words[i + 1] + " " + words[i + 2]));
+      }
+    }
+
+    return features;
+  }
+
+  /**
+   * 64-bit FNV-1a over the characters, which unlike {@link String#hashCode()} leaves few
+   * collisions among millions of features.
+   */
+  private static long hash(String value) {
+    long hash = 0xCBF29CE484222325L;
+
+    for(int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001B3L;
+    }
+
+    return mix(hash);
+  }
+
+  /**
+   * The finalizer of SplitMix64.
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+    return value ^ (value >>> 31);
+  }
+}
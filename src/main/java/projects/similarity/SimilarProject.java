@@ -0,0 +1,31 @@
+package projects.similarity;
+
+/**
+ * A project found by a similarity query, with its estimated Jaccard similarity to the queried
+ * project over materials and step text.
+ */
+public final class SimilarProject {
+  private final Integer projectId;
+  private final double similarity;
+
+  public SimilarProject(Integer projectId, double similarity) {
+    this.projectId = projectId;
+    this.similarity = similarity;
+  }
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  /**
+   * @return The estimated similarity, from 0 (nothing in common) to 1 (the same features)
+   */
+  public double getSimilarity() {
+    return similarity;
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + projectId + ", similarity=" + String.format("%.2f", similarity);
+  }
+}
@@ -0,0 +1,401 @@
+package projects.similarity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import projects.dao.ProjectRepository;
+import projects.entity.Project;
+import projects.event.ChangeEvent;
+import projects.event.ChangeEvent.ChangeType;
+import projects.event.ChangeEventBus;
+import projects.exception.DbException;
+import projects.exception.ErrorReporter;
+
+/**
+ * Finds projects that are similar to a given project, judged by their material names and step
+ * text, without comparing it to every other project.
+ *
+ * <p>
+ * Each project's {@link MinHasher MinHash} signature is cut into bands of a few values each, and
+ * the project is filed in one hash bucket per band (locality-sensitive hashing). Two projects share
+ * a bucket if all values of one band agree, which is likely for similar projects and unlikely for
+ * different ones. A query only scores the projects that share at least one bucket with the
+ * queried project. With the default 16 bands of 4 values, pairs with a similarity of 0.5 share a
+ * bucket two times in three, pairs at 0.8 practically always, and pairs at 0.2 about one time in
+ * forty.
+ * </p>
+ *
+ * <p>
+ * {@link #build()} scans all shards through {@link ProjectRepository#fetchProjectPage}, one
+ * reader per shard, while the signatures are computed in parallel on the common fork/join pool.
+ * After that, {@link #follow(ChangeEventBus)} keeps the index current: changed projects are
+ * re-read and re-signed on a background thread, and deleted projects are dropped. Each entry
+ * remembers the project version it was computed from, so a stale read from the initial scan never
+ * replaces a newer signature.
+ * </p>
+ */
+public class SimilarityIndex {
+  private static final String PROJECT_ENTITY = "project";
+  private static final Set<String> FEATURE_ENTITIES = Set.of(PROJECT_ENTITY, "material", "step");
+  private static final int DEFAULT_BANDS = 16;
+  private static final int DEFAULT_ROWS_PER_BAND = 4;
+  private static final int PAGE_SIZE = 500;
+
+  private final ProjectRepository projectDao;
+  private final MinHasher hasher;
+  private final int bands;
+  private final int rowsPerBand;
+
+  private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+  private final List<Map<Long, Set<Integer>>> buckets = new ArrayList<>();
+
+  private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+  private final Object signal = new Object();
+
+  private Thread refresher;
+  private volatile boolean built;
+
+  /**
+   * Creates an index with 16 bands of 4 signature values.
+   * @param projectDao The store the projects are read through
+   */
+  public SimilarityIndex(ProjectRepository projectDao) {
+    this(projectDao, DEFAULT_BANDS, DEFAULT_ROWS_PER_BAND);
+  }
+
+  /**
+   * @param projectDao The store the projects are read through
+   * @param bands The number of bands. More bands find less similar pairs.
+   * @param rowsPerBand The signature values per band. More values per band make a shared bucket
+   *        rarer for dissimilar pairs.
+   */
+  public SimilarityIndex(ProjectRepository projectDao, int bands, int rowsPerBand) {
+    this.projectDao = projectDao;
+    this.hasher = new MinHasher(bands * rowsPerBand);
+    this.bands = bands;
+    this.rowsPerBand = rowsPerBand;
+
+    for(int band = 0; band < bands; band++) {
+      buckets.add(new ConcurrentHashMap<>());
+    }
+  }
+
+  /**
+   * Keeps the index in line with the changes published on the bus from now on. Call before
+   * {@link #build()} so that no change made during the build is missed.
+   * @param eventBus The bus
+   */
+  public synchronized void follow(ChangeEventBus eventBus) {
+    if(Objects.isNull(refresher)) {
+      refresher = new Thread(this::refreshDirty, "similarity-refresher");
+      refresher.setDaemon(true);
+      refresher.start();
+    }
+
+    eventBus.subscribe("similarity-index", this::onEvents);
+  }
+
+  /**
+   * Reads every live project and indexes it. Projects without materials or step text are not
+   * indexed.
+   * @return The number of projects read
+   * @throws DbException Thrown if an error occurs reading a shard.
+   */
+  public synchronized int build() {
+    int shardCount = projectDao.getShardCount();
+    ExecutorService readers = Executors.newFixedThreadPool(shardCount, runnable -> {
+      Thread thread = new Thread(runnable, "similarity-build");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+
+      for(int shard = 0; shard < shardCount; shard++) {
+        int target = shard;
+        futures.add(readers.submit(() -> scanShard(target)));
+      }
+
+      int read = 0;
+
+      for(Future<Integer> future : futures) {
+        read += future.get();
+      }
+
+      built = true;
+      return read;
+
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DbException(e);
+    } catch(ExecutionException e) {
+      throw e.getCause() instanceof DbException ? (DbException)e.getCause()
+          : new DbException(e.getCause());
+    } finally {
+      readers.shutdownNow();
+    }
+  }
+
+  /**
+   * @return true once {@link #build()} has completed
+   */
+  public boolean isBuilt() {
+    return built;
+  }
+
+  /**
+   * @return The number of projects in the index
+   */
+  public int size() {
+    return (int)entries.values().stream().filter(entry -> Objects.nonNull(entry.signature))
+        .count();
+  }
+
+  /**
+   * Finds the projects most similar to a project. A project that isn't in the index yet is read
+   * and indexed first.
+   * @param projectId The project ID
+   * @param limit The maximum number of results
+   * @param minSimilarity The lowest estimated similarity to report, from 0 to 1
+   * @return The similar projects, most similar first. Empty if the project doesn't exist or has no
+   *         materials or step text.
+   * @throws DbException Thrown if an error occurs reading the project.
+   */
+  public List<SimilarProject> findSimilar(Integer projectId, int limit, double minSimilarity) {
+    Entry entry = entries.get(projectId);
+
+    if(Objects.isNull(entry)) {
+      refresh(projectId);
+      entry = entries.get(projectId);
+    }
+
+    if(Objects.isNull(entry) || Objects.isNull(entry.signature)) {
+      return List.of();
+    }
+
+    Set<Integer> candidates = new HashSet<>();
+
+    for(int band = 0; band < bands; band++) {
+      Set<Integer> bucket = buckets.get(band).get(bandKey(entry.signature, band));
+
+      if(Objects.nonNull(bucket)) {
+        candidates.addAll(bucket);
+      }
+    }
+
+    candidates.remove(projectId);
+    List<SimilarProject> similar = new ArrayList<>();
+
+    for(Integer candidateId : candidates) {
+      Entry candidate = entries.get(candidateId);
+
+      if(Objects.nonNull(candidate) && Objects.nonNull(candidate.signature)) {
+        double similarity = MinHasher.similarity(entry.signature, candidate.signature);
+
+        if(similarity >= minSimilarity) {
+          similar.add(new SimilarProject(candidateId, similarity));
+        }
+      }
+    }
+
+    similar.sort(Comparator.comparingDouble(SimilarProject::getSimilarity).reversed()
+        .thenComparing(SimilarProject::getProjectId));
+
+    return similar.size() > limit ? new ArrayList<>(similar.subList(0, limit)) : similar;
+  }
+
+  /**
+   * Re-reads a project and updates its entry, or drops the entry if the project no longer exists.
+   * @param projectId The project ID
+   * @throws DbException Thrown if an error occurs reading the project.
+   */
+  public void refresh(Integer projectId) {
+    Optional<Project> project = projectDao.fetchProjectById(projectId, false);
+
+    if(project.isPresent()) {
+      index(project.get());
+    }
+    else {
+      remove(projectId);
+    }
+  }
+
+  /**
+   * Reads one shard page by page. Signatures are computed on the common pool while the next page
+   * is read; at most two pages per pool thread wait to be signed at any time.
+   */
+  private int scanShard(int shard) {
+    int maxPending = 2 * ForkJoinPool.getCommonPoolParallelism();
+    Deque<CompletableFuture<Void>> pending = new ArrayDeque<>();
+    int read = 0;
+    int afterProjectId = 0;
+
+    while(true) {
+      List<Project> page = projectDao.fetchProjectPage(shard, afterProjectId, PAGE_SIZE);
+
+      if(page.isEmpty()) {
+        break;
+      }
+
+      afterProjectId = page.get(page.size() - 1).getProjectId();
+      read += page.size();
+
+      for(Project project : page) {
+        pending.add(CompletableFuture.runAsync(() -> index(project), ForkJoinPool.commonPool()));
+      }
+
+      while(pending.size() > maxPending * PAGE_SIZE) {
+        pending.poll().join();
+      }
+    }
+
+    pending.forEach(CompletableFuture::join);
+    return read;
+  }
+
+  private void index(Project project) {
+    update(project.getProjectId(), project.getVersion(), hasher.signature(project));
+  }
+
+  /**
+   * Replaces a project's entry unless the stored entry comes from a newer version, and moves the
+   * project to the buckets of its new signature. Runs under the entry's map lock, so updates of
+   * the same project never interleave.
+   */
+  private void update(Integer projectId, int version, int[] signature) {
+    entries.compute(projectId, (id, old) -> replace(id, old, version, signature));
+  }
+
+  /**
+   * Drops a deleted project. The entry stays as a marker with the highest version, so that a read
+   * from before the delete can't bring it back. Once the index is built, only projects that have
+   * an entry get a marker, so lookups of IDs that don't exist leave nothing behind. During the
+   * build a read from the scan may still be on its way, so every delete is marked.
+   */
+  private void remove(Integer projectId) {
+    if(built) {
+      entries.computeIfPresent(projectId,
+          (id, old) -> replace(id, old, Integer.MAX_VALUE, null));
+    }
+    else {
+      update(projectId, Integer.MAX_VALUE, null);
+    }
+  }
+
+  private Entry replace(Integer projectId, Entry old, int version, int[] signature) {
+    if(Objects.nonNull(old) && old.version > version) {
+      return old;
+    }
+
+    if(Objects.nonNull(old) && Objects.nonNull(old.signature)) {
+      for(int band = 0; band < bands; band++) {
+        buckets.get(band).computeIfPresent(bandKey(old.signature, band), (key, bucket) -> {
+          bucket.remove(projectId);
+          return bucket.isEmpty() ? null : bucket;
+        });
+      }
+    }
+
+    if(Objects.nonNull(signature)) {
+      for(int band = 0; band < bands; band++) {
+        buckets.get(band).computeIfAbsent(bandKey(signature, band),
+            key -> ConcurrentHashMap.newKeySet()).add(projectId);
+      }
+    }
+
+    return new Entry(version, signature);
+  }
+
+  private long bandKey(int[] signature, int band) {
+    long key = band;
+
+    for(int row = band * rowsPerBand; row < (band + 1) * rowsPerBand; row++) {
+      key = (key ^ signature[row]) * 0x100000001B3L;
+    }
+
+    return key;
+  }
+
+  /**
+   * Runs on the bus's listener thread, so it only records what changed. Project deletes are
+   * applied at once; other changes to a project, its materials or its steps mark the project to be
+   * re-read by the refresher thread. Category links are not features and are ignored.
+   */
+  private void onEvents(List<ChangeEvent> events) {
+    boolean changed = false;
+
+    for(ChangeEvent event : events) {
+      if(!FEATURE_ENTITIES.contains(event.getEntity())) {
+        continue;
+      }
+
+      if(PROJECT_ENTITY.equals(event.getEntity()) && event.getChangeType() == ChangeType.DELETE) {
+        dirty.remove(event.getProjectId());
+        remove(event.getProjectId());
+      }
+      else {
+        changed |= dirty.add(event.getProjectId());
+      }
+    }
+
+    if(changed) {
+      synchronized(signal) {
+        signal.notifyAll();
+      }
+    }
+  }
+
+  private void refreshDirty() {
+    try {
+      while(!Thread.currentThread().isInterrupted()) {
+        synchronized(signal) {
+          while(dirty.isEmpty()) {
+            signal.wait();
+          }
+        }
+
+        for(Integer projectId : new ArrayList<>(dirty)) {
+          dirty.remove(projectId);
+
+          try {
+            refresh(projectId);
+          } catch(DbException e) {
+            ErrorReporter.report("similarity-index",
+                "Refresh of project " + projectId + " failed. The old entry stays.", e);
+          }
+        }
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The signature of one project and the version it was computed from. The signature is null for
+   * projects without features and for deleted projects.
+   */
+  private static class Entry {
+    private final int version;
+    private final int[] signature;
+
+    Entry(int version, int[] signature) {
+      this.version = version;
+      this.signature = signature;
+    }
+  }
+}
@@ -3,12 +3,14 @@
  */
 package provided.util;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Time;
@@ -16,6 +18,9 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -133,6 +138,10 @@ public abstract class DaoBase {
       return Types.OTHER;
     }
 
+    if(LocalDateTime.class.equals(classType)) {
+      return Types.OTHER;
+    }
+
     throw new DaoException("Unsupported class type: " + classType.getName());
   }
 
@@ -196,13 +205,15 @@ public abstract class DaoBase {
    * This extracts an object of the given type from a result set. The object must have a
    * zero-argument constructor. It builds an object from a result set using reflection as follows:
    * <ol>
-   * <li>The zero-argument constructor is obtained.</li>
+   * <li>The zero-argument constructor is obtained (cached per class).</li>
    * <li>An object of the given class type is created.</li>
-   * <li>A list of fields is obtained using reflection.</li>
+   * <li>A list of fields is obtained using reflection (cached per class).</li>
    * <li>The field name is converted from Java naming to SQL naming conventions (camel case to snake
    * case). Obviously, for this to work, the Java name must match the column name. So, if the Java
    * name is numServings, the column name must be num_servings.</li>
-   * <li>The value is assigned to the field in the object.</li>
+   * <li>The value is assigned to the field in the object. A DECIMAL value assigned to an int or
+   * long field is stored as an integer scaled by the column's scale. If the object implements
+   * {@link NullTracking}, it is told which primitive fields had null columns.</li>
    * </ol>
    * 
    * Example: if a query returns values for a recipe, a Recipe object is returned. So:
@@ -222,7 +233,8 @@ public abstract class DaoBase {
    * </pre>
    * 
    * Since the result set does not contain a column named "ingredients", the value is left alone and
-   * the list initialization is preserved.
+   * the list initialization is preserved. The same applies to a query that selects only some of the
+   * entity's columns: the fields of the columns that weren't selected keep their initial values.
    * 
    * @param <T> The Generic for the type of object to create and return.
    * @param rs The result set in which to extract values. The result set must be positioned on the
@@ -232,30 +244,35 @@ public abstract class DaoBase {
    */
   protected <T> T extract(ResultSet rs, Class<T> classType) {
     try {
-      /* Obtain the constructor and create an object of the correct type. */
-      Constructor<T> con = classType.getConstructor();
-      T obj = con.newInstance();
+      /* Look up the cached constructor and field list for the class. */
+      @SuppressWarnings("unchecked")
+      EntityMapping<T> mapping = (EntityMapping<T>)MAPPINGS.get(classType);
+      T obj = mapping.constructor.newInstance();
+      ResultSetMetaData meta = rs.getMetaData();
+      int[] columns = columnIndexes(rs, meta, mapping);
+
+      /* Loop through the fields. */
+      for(int index = 0; index < mapping.fields.length; index++) {
+        Field field = mapping.fields[index];
+        int column = columns[index];
+
+        /*
+         * The query selected only some columns. Fields without a column are left alone, so a
+         * projection doesn't pay for the columns it didn't ask for.
+         */
+        if(column == 0) {
+          continue;
+        }
 
-      /* Get the list of fields and loop through them. */
-      for(Field field : classType.getDeclaredFields()) {
-        String colName = camelCaseToSnakeCase(field.getName());
         Class<?> fieldType = field.getType();
+        Object fieldValue = rs.getObject(column);
 
         /*
-         * Set the field accessible flag which means that we can populate even private fields
-         * without using the setter.
+         * Primitive fields can't hold null, so a null column is reported to entities that track
+         * nulls themselves.
          */
-        field.setAccessible(true);
-        Object fieldValue = null;
-
-        try {
-          fieldValue = rs.getObject(colName);
-        }
-        catch(SQLException e) {
-          /*
-           * An exception caught here means that the field name isn't in the result set. Don't take
-           * any action.
-           */
+        if(fieldType.isPrimitive() && obj instanceof NullTracking) {
+          ((NullTracking)obj).setNull(field.getName(), Objects.isNull(fieldValue));
         }
 
         /*
@@ -273,6 +290,17 @@ public abstract class DaoBase {
           else if(fieldValue instanceof Timestamp && fieldType.equals(LocalDateTime.class)) {
             fieldValue = ((Timestamp)fieldValue).toLocalDateTime();
           }
+          /*
+           * Fixed-scale decimals can be stored as scaled integers: DECIMAL(7,2) 12.50 -> 1250. The
+           * scale is the column's declared scale.
+           */
+          else if(fieldValue instanceof BigDecimal
+              && (fieldType.equals(int.class) || fieldType.equals(long.class))) {
+            int scale = meta.getScale(column);
+            BigDecimal scaled = ((BigDecimal)fieldValue).movePointRight(scale);
+            fieldValue = fieldType.equals(int.class) ? (Object)scaled.intValueExact()
+                : (Object)scaled.longValueExact();
+          }
 
           field.set(obj, fieldValue);
         }
@@ -286,13 +314,118 @@ public abstract class DaoBase {
     }
   }
 
+  /**
+   * Finds the result set column of each field of an entity. Callers extract row after row from
+   * the same result set, so the indexes of the last result set the thread extracted from are kept
+   * and the metadata is only searched again for a new result set or entity class.
+   * 
+   * @param rs The result set
+   * @param meta The result set metadata
+   * @param mapping The entity mapping
+   * @return The one-based column index of each field, or 0 if the result set has no such column
+   * @throws SQLException Thrown if the metadata can't be read.
+   */
+  private static int[] columnIndexes(ResultSet rs, ResultSetMetaData meta,
+      EntityMapping<?> mapping) throws SQLException {
+    ColumnIndexes last = LAST_COLUMN_INDEXES.get();
+
+    if(Objects.nonNull(last) && last.resultSet.get() == rs && last.mapping == mapping) {
+      return last.columns;
+    }
+
+    Map<String, Integer> columnsByLabel = new HashMap<>();
+
+    for(int column = meta.getColumnCount(); column >= 1; column--) {
+      // The first column with a label wins, as with ResultSet.findColumn
+      columnsByLabel.put(meta.getColumnLabel(column).toLowerCase(Locale.ROOT), column);
+    }
+
+    int[] columns = new int[mapping.columnNames.length];
+
+    for(int index = 0; index < columns.length; index++) {
+      columns[index] = columnsByLabel.getOrDefault(mapping.columnNames[index], 0);
+    }
+
+    LAST_COLUMN_INDEXES.set(new ColumnIndexes(rs, mapping, columns));
+    return columns;
+  }
+
+  /**
+   * The field column indexes of one entity class in one result set. The result set is only weakly
+   * referenced so that a closed one can be collected.
+   */
+  private static class ColumnIndexes {
+    private final WeakReference<ResultSet> resultSet;
+    private final EntityMapping<?> mapping;
+    private final int[] columns;
+
+    ColumnIndexes(ResultSet resultSet, EntityMapping<?> mapping, int[] columns) {
+      this.resultSet = new WeakReference<>(resultSet);
+      this.mapping = mapping;
+      this.columns = columns;
+    }
+  }
+
+  private static final ThreadLocal<ColumnIndexes> LAST_COLUMN_INDEXES = new ThreadLocal<>();
+
+  /**
+   * Builds the reflection metadata used by {@link #extract(ResultSet, Class)} ahead of time, so
+   * that the first query doesn't pay for it. Metadata is built once per class and then reused.
+   * 
+   * @param classTypes The entity classes to prepare
+   */
+  public static void preloadMappings(Class<?>... classTypes) {
+    for(Class<?> classType : classTypes) {
+      MAPPINGS.get(classType);
+    }
+  }
+
+  /**
+   * The zero-argument constructor, the fields and the matching column names of an entity class.
+   * The reflective lookups, {@link Field#setAccessible(boolean)} calls and camel case conversions
+   * are done once per class instead of on every row.
+   */
+  private static class EntityMapping<T> {
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final String[] columnNames;
+
+    EntityMapping(Class<T> classType) {
+      try {
+        constructor = classType.getConstructor();
+      }
+      catch(NoSuchMethodException e) {
+        throw new DaoException("No zero-argument constructor on " + classType.getName(), e);
+      }
+
+      fields = classType.getDeclaredFields();
+      columnNames = new String[fields.length];
+
+      for(int index = 0; index < fields.length; index++) {
+        /*
+         * Set the field accessible flag which means that we can populate even private fields
+         * without using the setter.
+         */
+        fields[index].setAccessible(true);
+        columnNames[index] = camelCaseToSnakeCase(fields[index].getName());
+      }
+    }
+  }
+
+  private static final ClassValue<EntityMapping<?>> MAPPINGS = new ClassValue<>() {
+    @Override
+    protected EntityMapping<?> computeValue(Class<?> classType) {
+      return new EntityMapping<>(classType);
+    }
+  };
+
   /**
    * This converts a camel case value (rowInsertTime) to snake case (row_insert_time).
    * 
    * @param identifier The name in camel case to convert.
    * @return The name converted to snake case.
    */
-  private String camelCaseToSnakeCase(String identifier) {
+  private static String camelCaseToSnakeCase(String identifier) {
     StringBuilder nameBuilder = new StringBuilder();
 
     for(char ch : identifier.toCharArray()) {
@@ -0,0 +1,20 @@
+/**
+ *
+ */
+package provided.util;
+
+/**
+ * Implemented by entities that store nullable columns in primitive fields. A primitive can't hold
+ * null, so {@link DaoBase#extract} reports for each primitive field whether its column was null and
+ * the entity records that in its own flags.
+ */
+public interface NullTracking {
+
+  /**
+   * Records whether the column backing a primitive field was null.
+   *
+   * @param fieldName The Java field name
+   * @param isNull true if the column value was null
+   */
+  void setNull(String fieldName, boolean isNull);
+}
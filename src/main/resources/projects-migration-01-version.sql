@@ -0,0 +1,9 @@
+-- Adds the version columns used for optimistic concurrency control. Run once on every shard of a
+-- database created with the original projects-schema-week08.sql, before the later migrations.
+-- Existing rows start at version 0, as new rows do.
+
+ALTER TABLE project ADD COLUMN version INT NOT NULL DEFAULT 0 AFTER notes;
+
+ALTER TABLE material ADD COLUMN version INT NOT NULL DEFAULT 0 AFTER cost;
+
+ALTER TABLE step ADD COLUMN version INT NOT NULL DEFAULT 0 AFTER step_order;
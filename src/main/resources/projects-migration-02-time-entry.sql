@@ -0,0 +1,12 @@
+-- Adds the time_entry table that TimeLogger writes logged work sessions to. Run once on every
+-- shard, after projects-migration-01-version.sql.
+
+CREATE TABLE time_entry (
+  time_entry_id INT AUTO_INCREMENT NOT NULL,
+  project_id INT NOT NULL,
+  hours DECIMAL(7,2) NOT NULL,
+  logged_at DATETIME NOT NULL,
+  notes TEXT,
+  PRIMARY KEY (time_entry_id),
+  FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
+);
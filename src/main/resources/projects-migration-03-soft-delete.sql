@@ -0,0 +1,5 @@
+-- Adds the deleted_at column that marks soft-deleted projects until ProjectPurger removes their
+-- rows. Run once on every shard, after projects-migration-02-time-entry.sql. Existing projects
+-- stay live.
+
+ALTER TABLE project ADD COLUMN deleted_at DATETIME AFTER version, ADD KEY (deleted_at);
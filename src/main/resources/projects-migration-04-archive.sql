@@ -0,0 +1,65 @@
+-- Adds the updated_at column that ArchivePolicy ages projects by, and the archive tables that
+-- ProjectArchiver moves cold projects into. Run once on every shard, after
+-- projects-migration-03-soft-delete.sql. Existing projects get the time the migration ran as their
+-- updated_at, so none of them is archived until it has been untouched for the policy's age.
+
+ALTER TABLE project
+  ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+    AFTER deleted_at,
+  ADD KEY (updated_at);
+
+-- Each archive table has the same columns in the same order as its live table, because projects
+-- are moved with INSERT ... SELECT *. Materials still carry their names here;
+-- projects-migration-05-material-catalog.sql replaces them with catalog references.
+
+CREATE TABLE project_archive (
+  project_id INT NOT NULL,
+  project_name VARCHAR(128) NOT NULL,
+  estimated_hours DECIMAL(7,2),
+  actual_hours DECIMAL(7,2),
+  difficulty INT,
+  notes TEXT,
+  version INT NOT NULL DEFAULT 0,
+  deleted_at DATETIME,
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (project_id)
+);
+
+CREATE TABLE material_archive (
+  material_id INT NOT NULL,
+  project_id INT NOT NULL,
+  material_name VARCHAR(128) NOT NULL,
+  num_required INT,
+  cost DECIMAL(7,2),
+  version INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (material_id),
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE
+);
+
+CREATE TABLE step_archive (
+  step_id INT NOT NULL,
+  project_id INT NOT NULL,
+  step_text TEXT NOT NULL,
+  step_order INT NOT NULL,
+  version INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (step_id),
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE
+);
+
+CREATE TABLE project_category_archive (
+  project_id INT NOT NULL,
+  category_id INT NOT NULL,
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE,
+  FOREIGN KEY (category_id) REFERENCES category (category_id) ON DELETE CASCADE,
+  UNIQUE KEY (project_id, category_id)
+);
+
+CREATE TABLE time_entry_archive (
+  time_entry_id INT NOT NULL,
+  project_id INT NOT NULL,
+  hours DECIMAL(7,2) NOT NULL,
+  logged_at DATETIME NOT NULL,
+  notes TEXT,
+  PRIMARY KEY (time_entry_id),
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE
+);
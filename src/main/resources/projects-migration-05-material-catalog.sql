@@ -0,0 +1,65 @@
+-- Moves material names into material_catalog and replaces material.material_name (and
+-- material_archive.material_name) with a reference to the catalog. Run once on every shard, after
+-- projects-migration-04-archive.sql. The application must be stopped while it runs.
+
+CREATE TABLE material_catalog (
+  material_catalog_id INT AUTO_INCREMENT NOT NULL,
+  material_name VARCHAR(128) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_bin NOT NULL,
+  PRIMARY KEY (material_catalog_id),
+  UNIQUE KEY (material_name)
+);
+
+-- The old material_name columns compare case- and accent-insensitively, so the names are made
+-- distinct, and later matched, in the catalog's binary collation. Otherwise "Oak" and "oak" would
+-- share one catalog row and only one of them would find it.
+
+INSERT IGNORE INTO material_catalog (material_name)
+SELECT DISTINCT material_name COLLATE utf8mb4_0900_bin FROM material;
+
+INSERT IGNORE INTO material_catalog (material_name)
+SELECT DISTINCT material_name COLLATE utf8mb4_0900_bin FROM material_archive;
+
+-- Each table's unmatched rows are counted into this table before its material_catalog_id is made
+-- NOT NULL. A count other than zero violates the check (enforced from MySQL 8.0.16) and stops the
+-- migration there, before the table is altered.
+
+CREATE TEMPORARY TABLE material_catalog_check (
+  table_name VARCHAR(64) NOT NULL,
+  unmatched_rows INT NOT NULL,
+  CONSTRAINT every_material_row_has_a_catalog_id CHECK (unmatched_rows = 0)
+);
+
+-- material
+
+ALTER TABLE material ADD COLUMN material_catalog_id INT AFTER project_id;
+
+UPDATE material m
+JOIN material_catalog c ON c.material_name = m.material_name COLLATE utf8mb4_0900_bin
+SET m.material_catalog_id = c.material_catalog_id;
+
+INSERT INTO material_catalog_check (table_name, unmatched_rows)
+SELECT 'material', COUNT(*) FROM material WHERE material_catalog_id IS NULL;
+
+ALTER TABLE material
+  MODIFY material_catalog_id INT NOT NULL,
+  DROP COLUMN material_name,
+  ADD KEY (project_id, material_catalog_id, num_required, cost),
+  ADD FOREIGN KEY (material_catalog_id) REFERENCES material_catalog (material_catalog_id);
+
+-- material_archive, which must keep the same column order as material
+
+ALTER TABLE material_archive ADD COLUMN material_catalog_id INT AFTER project_id;
+
+UPDATE material_archive m
+JOIN material_catalog c ON c.material_name = m.material_name COLLATE utf8mb4_0900_bin
+SET m.material_catalog_id = c.material_catalog_id;
+
+INSERT INTO material_catalog_check (table_name, unmatched_rows)
+SELECT 'material_archive', COUNT(*) FROM material_archive WHERE material_catalog_id IS NULL;
+
+ALTER TABLE material_archive
+  MODIFY material_catalog_id INT NOT NULL,
+  DROP COLUMN material_name,
+  ADD FOREIGN KEY (material_catalog_id) REFERENCES material_catalog (material_catalog_id);
+
+DROP TEMPORARY TABLE material_catalog_check;
@@ -0,0 +1,17 @@
+-- Adds the project_audit table that AuditTrail writes the change history to. Run once on every
+-- shard, after projects-migration-05-material-catalog.sql. Until it has run, audit records are
+-- reported as dropped, or with -Dprojects.audit.durability=sync every change fails; start with
+-- -Dprojects.audit.durability=off to run without the table.
+
+CREATE TABLE project_audit (
+  audit_id BIGINT AUTO_INCREMENT NOT NULL,
+  project_id INT NOT NULL,
+  entity VARCHAR(32) NOT NULL,
+  entity_id INT,
+  change_type ENUM('INSERT', 'UPDATE', 'DELETE') NOT NULL,
+  before_values JSON,
+  after_values JSON,
+  changed_at DATETIME(3) NOT NULL,
+  PRIMARY KEY (audit_id),
+  KEY (project_id, audit_id)
+);
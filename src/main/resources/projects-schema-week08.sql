@@ -1,7 +1,15 @@
+DROP TABLE IF EXISTS project_audit;
+DROP TABLE IF EXISTS time_entry_archive;
+DROP TABLE IF EXISTS material_archive;
+DROP TABLE IF EXISTS step_archive;
+DROP TABLE IF EXISTS project_category_archive;
+DROP TABLE IF EXISTS project_archive;
+DROP TABLE IF EXISTS time_entry;
 DROP TABLE IF EXISTS material;
 DROP TABLE IF EXISTS step;
 DROP TABLE IF EXISTS project_category;
 DROP TABLE IF EXISTS category;
+DROP TABLE IF EXISTS material_catalog;
 DROP TABLE IF EXISTS project;
 
 CREATE TABLE project (
@@ -11,17 +19,35 @@ CREATE TABLE project (
   actual_hours DECIMAL(7,2),
   difficulty INT,
   notes TEXT,
-  PRIMARY KEY (project_id)
+  version INT NOT NULL DEFAULT 0,
+  deleted_at DATETIME,
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (project_id),
+  KEY (deleted_at),
+  KEY (updated_at)
+);
+
+-- Material names are stored once per shard and referenced by ID. The binary collation keeps
+-- names that differ only in case or trailing spaces apart, as they were in material.
+
+CREATE TABLE material_catalog (
+  material_catalog_id INT AUTO_INCREMENT NOT NULL,
+  material_name VARCHAR(128) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_bin NOT NULL,
+  PRIMARY KEY (material_catalog_id),
+  UNIQUE KEY (material_name)
 );
 
 CREATE TABLE material (
   material_id INT AUTO_INCREMENT NOT NULL,
   project_id INT NOT NULL,
-  material_name VARCHAR(128) NOT NULL,
+  material_catalog_id INT NOT NULL,
   num_required INT,
   cost DECIMAL(7,2),
+  version INT NOT NULL DEFAULT 0,
   PRIMARY KEY (material_id),
-  FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
+  KEY (project_id, material_catalog_id, num_required, cost),
+  FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE,
+  FOREIGN KEY (material_catalog_id) REFERENCES material_catalog (material_catalog_id)
 );
 
 CREATE TABLE step (
@@ -29,6 +55,7 @@ CREATE TABLE step (
   project_id INT NOT NULL,
   step_text TEXT NOT NULL,
   step_order INT NOT NULL,
+  version INT NOT NULL DEFAULT 0,
   PRIMARY KEY (step_id),
   FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
 );
@@ -47,5 +74,84 @@ CREATE TABLE project_category (
   UNIQUE KEY (project_id, category_id)
 );
 
+CREATE TABLE time_entry (
+  time_entry_id INT AUTO_INCREMENT NOT NULL,
+  project_id INT NOT NULL,
+  hours DECIMAL(7,2) NOT NULL,
+  logged_at DATETIME NOT NULL,
+  notes TEXT,
+  PRIMARY KEY (time_entry_id),
+  FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
+);
+
+-- The history of changes to projects and their children, written by AuditTrail. There is no
+-- foreign key to project, so the history of a project outlives it.
+
+CREATE TABLE project_audit (
+  audit_id BIGINT AUTO_INCREMENT NOT NULL,
+  project_id INT NOT NULL,
+  entity VARCHAR(32) NOT NULL,
+  entity_id INT,
+  change_type ENUM('INSERT', 'UPDATE', 'DELETE') NOT NULL,
+  before_values JSON,
+  after_values JSON,
+  changed_at DATETIME(3) NOT NULL,
+  PRIMARY KEY (audit_id),
+  KEY (project_id, audit_id)
+);
+
+-- Archived project graphs. Each archive table has the same columns in the same order as its live
+-- table, because projects are moved with INSERT ... SELECT *.
+
+CREATE TABLE project_archive (
+  project_id INT NOT NULL,
+  project_name VARCHAR(128) NOT NULL,    
+  estimated_hours DECIMAL(7,2),
+  actual_hours DECIMAL(7,2),
+  difficulty INT,
+  notes TEXT,
+  version INT NOT NULL DEFAULT 0,
+  deleted_at DATETIME,
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (project_id)
+);
+
+CREATE TABLE material_archive (
+  material_id INT NOT NULL,
+  project_id INT NOT NULL,
+  material_catalog_id INT NOT NULL,
+  num_required INT,
+  cost DECIMAL(7,2),
+  version INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (material_id),
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE,
+  FOREIGN KEY (material_catalog_id) REFERENCES material_catalog (material_catalog_id)
+);
+
+CREATE TABLE step_archive (
+  step_id INT NOT NULL,
+  project_id INT NOT NULL,
+  step_text TEXT NOT NULL,
+  step_order INT NOT NULL,
+  version INT NOT NULL DEFAULT 0,
+  PRIMARY KEY (step_id),
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE
+);
 
+CREATE TABLE project_category_archive (
+  project_id INT NOT NULL,
+  category_id INT NOT NULL,
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE,
+  FOREIGN KEY (category_id) REFERENCES category (category_id) ON DELETE CASCADE,
+  UNIQUE KEY (project_id, category_id)
+);
 
+CREATE TABLE time_entry_archive (
+  time_entry_id INT NOT NULL,
+  project_id INT NOT NULL,
+  hours DECIMAL(7,2) NOT NULL,
+  logged_at DATETIME NOT NULL,
+  notes TEXT,
+  PRIMARY KEY (time_entry_id),
+  FOREIGN KEY (project_id) REFERENCES project_archive (project_id) ON DELETE CASCADE
+);
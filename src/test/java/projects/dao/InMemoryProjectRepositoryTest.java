@@ -0,0 +1,31 @@
+package projects.dao;
+
+import java.time.Duration;
+import java.time.Instant;
+import projects.entity.Category;
+
+/**
+ * Runs the repository contract against {@link InMemoryProjectRepository}.
+ */
+class InMemoryProjectRepositoryTest extends ProjectRepositoryContractTest {
+  private InMemoryProjectRepository inMemory;
+
+  @Override
+  protected ProjectRepository createRepository() {
+    inMemory = new InMemoryProjectRepository();
+    return inMemory;
+  }
+
+  @Override
+  protected void addCategory(Integer categoryId, String categoryName) {
+    Category category = new Category();
+    category.setCategoryId(categoryId);
+    category.setCategoryName(categoryName);
+    inMemory.addCategory(category);
+  }
+
+  @Override
+  protected void backdate(Integer projectId, int days) {
+    inMemory.setLastChanged(projectId, Instant.now().minus(Duration.ofDays(days)));
+  }
+}
@@ -0,0 +1,114 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import projects.exception.DbException;
+
+/**
+ * Runs the repository contract against {@link ProjectDao} on the MySQL database the application is
+ * configured for, one shard or several. Runs only with {@code -Dprojects.test.db=true}, because
+ * every test drops and recreates the tables from projects-schema-week08.sql on every shard.
+ */
+@EnabledIfSystemProperty(named = "projects.test.db", matches = "true")
+class ProjectDaoTest extends ProjectRepositoryContractTest {
+  private static final String SCHEMA_RESOURCE = "/projects-schema-week08.sql";
+
+  @Override
+  protected ProjectRepository createRepository() {
+    List<String> statements = schemaStatements();
+
+    for(int shard = 0; shard < DbConnection.getShardMap().getShardCount(); shard++) {
+      try(Connection conn = DbConnection.getConnection(shard);
+          Statement stmt = conn.createStatement()) {
+        for(String sql : statements) {
+          stmt.execute(sql);
+        }
+      } catch(SQLException e) {
+        throw new DbException(e);
+      }
+    }
+
+    // The shared caches would still hold the IDs of the tables just dropped
+    return new ProjectDao(new CategoryCache(), new MaterialCatalog());
+  }
+
+  /**
+   * Inserts the category on every shard, as the category table is replicated to all of them.
+   */
+  @Override
+  protected void addCategory(Integer categoryId, String categoryName) {
+    String sql = "INSERT INTO category (category_id, category_name) VALUES (?, ?)";
+
+    for(int shard = 0; shard < DbConnection.getShardMap().getShardCount(); shard++) {
+      try(Connection conn = DbConnection.getConnection(shard);
+          PreparedStatement stmt = conn.prepareStatement(sql)) {
+        stmt.setInt(1, categoryId);
+        stmt.setString(2, categoryName);
+        stmt.executeUpdate();
+      } catch(SQLException e) {
+        throw new DbException(e);
+      }
+    }
+  }
+
+  @Override
+  protected void backdate(Integer projectId, int days) {
+    String sql = "UPDATE project SET updated_at = NOW() - INTERVAL ? DAY WHERE project_id = ?";
+
+    try(Connection conn = DbConnection.getConnection(repository.shardFor(projectId));
+        PreparedStatement stmt = conn.prepareStatement(sql)) {
+      stmt.setInt(1, days);
+      stmt.setInt(2, projectId);
+      assertEquals(1, stmt.executeUpdate());
+    } catch(SQLException e) {
+      throw new DbException(e);
+    }
+  }
+
+  /**
+   * Splits the schema script into statements. The script has no semicolons in comments or
+   * literals.
+   */
+  private static List<String> schemaStatements() {
+    String script;
+
+    try(InputStream in = ProjectDaoTest.class.getResourceAsStream(SCHEMA_RESOURCE)) {
+      if(Objects.isNull(in)) {
+        throw new IllegalStateException(SCHEMA_RESOURCE + " is not on the class path");
+      }
+
+      script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    StringBuilder withoutComments = new StringBuilder();
+
+    for(String line : script.split("\n")) {
+      if(!line.trim().startsWith("--")) {
+        withoutComments.append(line).append('\n');
+      }
+    }
+
+    List<String> statements = new ArrayList<>();
+
+    for(String sql : withoutComments.toString().split(";")) {
+      if(!sql.isBlank()) {
+        statements.add(sql.trim());
+      }
+    }
+
+    return statements;
+  }
+}
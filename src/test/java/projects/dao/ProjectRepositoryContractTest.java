@@ -0,0 +1,736 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import projects.entity.AuditRecord;
+import projects.entity.Category;
+import projects.entity.CompactProject;
+import projects.entity.Material;
+import projects.entity.MaterialRequirement;
+import projects.entity.Project;
+import projects.entity.ProjectSummary;
+import projects.entity.Step;
+import projects.entity.TimeEntry;
+import projects.exception.DbException;
+import projects.exception.ProjectArchivedException;
+import projects.exception.ProjectConflictException;
+
+/**
+ * The behavior every {@link ProjectRepository} must share, with one test per repository method.
+ * Each backend runs the suite through a subclass that supplies an empty repository and the
+ * reference data the repository itself can't create.
+ */
+abstract class ProjectRepositoryContractTest {
+  private static final int PAGE_LIMIT = 2;
+
+  protected ProjectRepository repository;
+  protected Category woodworking;
+  protected Category gardening;
+
+  /**
+   * @return A repository without projects. Categories 1 and 2 are registered by
+   *         {@link #addCategory(Integer, String)} afterwards.
+   */
+  protected abstract ProjectRepository createRepository();
+
+  /**
+   * Registers a category that projects may link to.
+   * @param categoryId The category ID
+   * @param categoryName The category name
+   */
+  protected abstract void addCategory(Integer categoryId, String categoryName);
+
+  /**
+   * Makes a live project look unchanged for the given number of days, so that an archive policy
+   * picks it out from projects saved during the test.
+   * @param projectId The project ID
+   * @param days The days since the last change
+   */
+  protected abstract void backdate(Integer projectId, int days);
+
+  @BeforeEach
+  void setUpRepository() {
+    repository = createRepository();
+    woodworking = category(1, "Woodworking");
+    gardening = category(2, "Gardening");
+    addCategory(woodworking.getCategoryId(), woodworking.getCategoryName());
+    addCategory(gardening.getCategoryId(), gardening.getCategoryName());
+  }
+
+  @Test
+  void insertProjectAssignsIdAndVersionZero() {
+    Project project = repository.insertProject(project("Bird house"));
+
+    assertTrue(Objects.nonNull(project.getProjectId()) && project.getProjectId() > 0);
+    assertEquals(0, project.getVersion());
+
+    Project stored = repository.fetchProjectById(project.getProjectId()).orElseThrow();
+    assertEquals("Bird house", stored.getProjectName());
+    assertEquals(0, stored.getVersion());
+    assertTrue(stored.getMaterials().isEmpty());
+  }
+
+  @Test
+  void fetchAllProjectsListsByNameCaseInsensitivelyWithoutChildren() {
+    saveGraph("beta");
+    saveGraph("Alpha");
+    saveGraph("Gamma");
+
+    List<Project> projects = repository.fetchAllProjects();
+
+    assertEquals(List.of("Alpha", "beta", "Gamma"), names(projects));
+
+    for(Project project : projects) {
+      assertTrue(project.getMaterials().isEmpty());
+      assertTrue(project.getSteps().isEmpty());
+    }
+  }
+
+  @Test
+  void fetchAllProjectsWithColumnsReadsOnlyThoseColumns() {
+    Project saved = saveGraph("Bench");
+
+    List<Project> projects = repository.fetchAllProjects(List.of("difficulty"));
+
+    assertEquals(1, projects.size());
+    assertEquals(saved.getProjectId(), projects.get(0).getProjectId());
+    assertEquals("Bench", projects.get(0).getProjectName());
+    assertEquals(3, projects.get(0).getDifficulty());
+    assertNull(projects.get(0).getEstimatedHours());
+    assertThrows(DbException.class, () -> repository.fetchAllProjects(List.of("no_such_column")));
+  }
+
+  @Test
+  void fetchProjectByIdReadsTheWholeGraph() {
+    Project saved = saveGraph("Bench");
+
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+
+    assertEquals("Bench", stored.getProjectName());
+    assertEquals("Some notes", stored.getNotes());
+    assertEquals(List.of("Glue", "Wood"), materialNames(stored));
+    assertEquals(List.of("Cut", "Glue"), stepTexts(stored));
+    assertEquals(List.of(woodworking.getCategoryId()), categoryIds(stored));
+    assertTrue(repository.fetchProjectById(saved.getProjectId() + 1000).isEmpty());
+  }
+
+  @Test
+  void fetchProjectByIdFallsBackToTheArchive() {
+    Project saved = saveGraph("Bench");
+    archive(saved.getProjectId());
+
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+
+    assertEquals("Bench", stored.getProjectName());
+    assertEquals(List.of("Glue", "Wood"), materialNames(stored));
+    assertEquals(List.of("Cut", "Glue"), stepTexts(stored));
+    assertEquals(List.of(woodworking.getCategoryId()), categoryIds(stored));
+    assertTrue(names(repository.fetchAllProjects()).isEmpty());
+  }
+
+  @Test
+  void fetchProjectByIdWithLazyTextLoadsTheText() {
+    Project saved = saveGraph("Bench");
+
+    Project stored = repository.fetchProjectById(saved.getProjectId(), true).orElseThrow();
+
+    assertEquals("Some notes", stored.getNotes());
+    assertEquals(List.of("Cut", "Glue"), stepTexts(stored));
+  }
+
+  @Test
+  void fetchProjectByIdHedgedReadsLikeAPlainFetch() {
+    Project saved = saveGraph("Bench");
+
+    Project stored = repository.fetchProjectByIdHedged(saved.getProjectId()).orElseThrow();
+
+    assertEquals("Bench", stored.getProjectName());
+    assertEquals(List.of("Glue", "Wood"), materialNames(stored));
+  }
+
+  @Test
+  void fetchCompactProjectByIdReadsTheWholeGraph() {
+    Project saved = saveGraph("Bench");
+
+    CompactProject compact = repository.fetchCompactProjectById(saved.getProjectId()).orElseThrow();
+
+    assertEquals("Bench", compact.getProjectName());
+    assertEquals(0, new BigDecimal("4").compareTo(compact.getEstimatedHours()));
+    assertEquals(2, compact.getMaterials().size());
+    assertEquals(2, compact.getSteps().size());
+    assertEquals(1, compact.getCategories().size());
+    assertTrue(repository.fetchCompactProjectById(saved.getProjectId() + 1000).isEmpty());
+  }
+
+  @Test
+  void fetchMaterialRequirementsTotalsByNameAndSkipsDeletedProjects() {
+    Project first = saveGraph("Bench");
+    Project second = saveGraph("Shelf");
+    Project deleted = saveGraph("Stool");
+    assertTrue(repository.deleteProject(deleted.getProjectId()));
+
+    List<MaterialRequirement> totals = repository.fetchMaterialRequirements(
+        List.of(first.getProjectId(), second.getProjectId(), deleted.getProjectId()));
+
+    assertEquals(List.of("Glue", "Wood"),
+        totals.stream().map(MaterialRequirement::getMaterialName).toList());
+    MaterialRequirement wood = totals.get(1);
+    assertEquals(8, wood.getNumRequired());
+    assertEquals(0, new BigDecimal("50.00").compareTo(wood.getCost()));
+    assertEquals(2, wood.getProjectCount());
+  }
+
+  @Test
+  void getShardCountAndShardForAgree() {
+    Project saved = saveGraph("Bench");
+    int shard = repository.shardFor(saved.getProjectId());
+
+    assertTrue(repository.getShardCount() >= 1);
+    assertTrue(shard >= 0 && shard < repository.getShardCount());
+    assertTrue(idsOn(shard).contains(saved.getProjectId()));
+  }
+
+  @Test
+  void fetchProjectIdPagePagesInIdOrderAndKeepsArchivedProjects() {
+    Set<Integer> expected = new HashSet<>();
+
+    for(int i = 0; i < 5; i++) {
+      expected.add(saveGraph("Project " + i).getProjectId());
+    }
+
+    Project deleted = saveGraph("Deleted");
+    assertTrue(repository.deleteProject(deleted.getProjectId()));
+
+    Set<Integer> found = new HashSet<>();
+
+    for(int shard = 0; shard < repository.getShardCount(); shard++) {
+      List<Integer> ids = idsOn(shard);
+      List<Integer> sorted = new ArrayList<>(ids);
+      sorted.sort(null);
+
+      assertEquals(sorted, ids);
+      for(Integer id : ids) {
+        assertEquals(shard, repository.shardFor(id));
+      }
+
+      found.addAll(ids);
+    }
+
+    assertEquals(expected, found);
+
+    Integer archived = expected.iterator().next();
+
+    archive(archived);
+    assertTrue(idsOn(repository.shardFor(archived)).contains(archived));
+  }
+
+  @Test
+  void fetchMaxProjectIdIsTheHighestLiveId() {
+    Project first = saveGraph("Bench");
+    Project last = saveGraph("Shelf");
+    int shard = repository.shardFor(last.getProjectId());
+
+    assertEquals(last.getProjectId(), repository.fetchMaxProjectId(shard));
+
+    assertTrue(repository.deleteProject(last.getProjectId()));
+    int expected = repository.shardFor(first.getProjectId()) == shard ? first.getProjectId() : 0;
+
+    assertEquals(expected, repository.fetchMaxProjectId(shard));
+  }
+
+  @Test
+  void fetchProjectSummariesCoversTheRangeWithMaterialCostAndCategories() {
+    Project first = saveGraph("Bench");
+    Project second = saveGraph("Shelf");
+    int shard = repository.shardFor(second.getProjectId());
+
+    List<ProjectSummary> summaries = repository.fetchProjectSummaries(shard,
+        second.getProjectId() - 1, second.getProjectId());
+
+    assertEquals(1, summaries.size());
+    ProjectSummary summary = summaries.get(0);
+    assertEquals(second.getProjectId(), summary.getProjectId());
+    assertEquals(3, summary.getDifficulty());
+    assertEquals(0, new BigDecimal("30.00").compareTo(summary.getMaterialCost()));
+    assertEquals(List.of(woodworking.getCategoryId()),
+        summary.getCategories().stream().map(Category::getCategoryId).toList());
+
+    // The lower end is exclusive
+    assertTrue(repository
+        .fetchProjectSummaries(shard, second.getProjectId(), second.getProjectId() + 1000)
+        .isEmpty());
+
+    assertTrue(repository.deleteProject(first.getProjectId()));
+    int firstShard = repository.shardFor(first.getProjectId());
+    assertTrue(repository.fetchProjectSummaries(firstShard, 0, first.getProjectId()).isEmpty());
+  }
+
+  @Test
+  void fetchProjectPagePagesWithChildrenButWithoutCategories() {
+    for(int i = 0; i < 5; i++) {
+      saveGraph("Project " + i);
+    }
+
+    int read = 0;
+
+    for(int shard = 0; shard < repository.getShardCount(); shard++) {
+      int afterProjectId = 0;
+
+      while(true) {
+        List<Project> page = repository.fetchProjectPage(shard, afterProjectId, PAGE_LIMIT);
+
+        if(page.isEmpty()) {
+          break;
+        }
+
+        assertTrue(page.size() <= PAGE_LIMIT);
+
+        for(Project project : page) {
+          assertTrue(project.getProjectId() > afterProjectId);
+          assertEquals(List.of("Glue", "Wood"), materialNames(project));
+          assertEquals(List.of("Cut", "Glue"), stepTexts(project));
+          assertTrue(project.getCategories().isEmpty());
+          afterProjectId = project.getProjectId();
+          read++;
+        }
+      }
+    }
+
+    assertEquals(5, read);
+  }
+
+  @Test
+  void modifyProjectDetailsAdvancesTheVersionAndRejectsStaleVersions() {
+    Project saved = saveGraph("Bench");
+    Project stale = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+
+    saved.setProjectName("Garden bench");
+    assertTrue(repository.modifyProjectDetails(saved));
+    assertEquals(1, saved.getVersion());
+
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals("Garden bench", stored.getProjectName());
+    assertEquals(1, stored.getVersion());
+    assertEquals(List.of("Glue", "Wood"), materialNames(stored));
+
+    stale.setProjectName("Park bench");
+    ProjectConflictException conflict =
+        assertThrows(ProjectConflictException.class, () -> repository.modifyProjectDetails(stale));
+    assertEquals("Garden bench", conflict.getCurrentProject().getProjectName());
+    assertEquals(1, conflict.getCurrentProject().getVersion());
+
+    Project missing = project("Missing");
+    missing.setProjectId(saved.getProjectId() + 1000);
+    missing.setVersion(0);
+    assertFalse(repository.modifyProjectDetails(missing));
+  }
+
+  @Test
+  void modifyProjectDetailsRefusesArchivedProjects() {
+    Project saved = saveGraph("Bench");
+    archive(saved.getProjectId());
+
+    saved.setProjectName("Garden bench");
+
+    assertThrows(ProjectArchivedException.class, () -> repository.modifyProjectDetails(saved));
+  }
+
+  @Test
+  void saveProjectWritesOnlyTheDifferences() {
+    Project saved = saveGraph("Bench");
+
+    assertTrue(saved.getMaterials().stream().allMatch(m -> Objects.nonNull(m.getMaterialId())));
+    assertTrue(saved.getSteps().stream().allMatch(s -> Objects.nonNull(s.getStepId())));
+
+    Project unchanged = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals(List.of(), repository.saveProject(unchanged).orElseThrow());
+    assertEquals(0, unchanged.getVersion());
+
+    Project changed = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    changed.getMaterials().removeIf(material -> material.getMaterialName().equals("Glue"));
+    changed.getSteps().get(0).setStepText("Measure and cut");
+    changed.getCategories().add(gardening);
+
+    List<AuditRecord> written = repository.saveProject(changed).orElseThrow();
+
+    assertEquals(1, changed.getVersion());
+    assertFalse(written.isEmpty());
+
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals(1, stored.getVersion());
+    assertEquals(List.of("Wood"), materialNames(stored));
+    assertEquals(List.of("Measure and cut", "Glue"), stepTexts(stored));
+    assertEquals(List.of(woodworking.getCategoryId(), gardening.getCategoryId()),
+        categoryIds(stored));
+  }
+
+  @Test
+  void saveProjectRejectsStaleVersionsAndMissingProjects() {
+    Project saved = saveGraph("Bench");
+    Project stale = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+
+    saved.setNotes("Changed");
+    repository.saveProject(saved);
+    stale.setNotes("Also changed");
+
+    assertThrows(ProjectConflictException.class, () -> repository.saveProject(stale));
+    assertEquals("Changed",
+        repository.fetchProjectById(saved.getProjectId()).orElseThrow().getNotes());
+
+    Project missing = project("Missing");
+    missing.setProjectId(saved.getProjectId() + 1000);
+    missing.setVersion(0);
+    assertTrue(repository.saveProject(missing).isEmpty());
+  }
+
+  @Test
+  void saveProjectRefusesArchivedProjects() {
+    Project saved = saveGraph("Bench");
+    archive(saved.getProjectId());
+
+    saved.setNotes("Changed");
+
+    assertThrows(ProjectArchivedException.class, () -> repository.saveProject(saved));
+  }
+
+  @Test
+  void saveProjectIsAllOrNothing() {
+    Project saved = saveGraph("Bench");
+    Project changed = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    changed.setProjectName("Garden bench");
+    changed.getMaterials().add(material("Paint", 1, "9.99"));
+    changed.getCategories().add(category(999, "Unregistered"));
+
+    assertThrows(DbException.class, () -> repository.saveProject(changed));
+
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals("Bench", stored.getProjectName());
+    assertEquals(0, stored.getVersion());
+    assertEquals(List.of("Glue", "Wood"), materialNames(stored));
+
+    Project invalid = project("Invalid");
+    invalid.getCategories().add(category(999, "Unregistered"));
+
+    assertThrows(DbException.class, () -> repository.saveProject(invalid));
+    assertEquals(List.of("Bench"), names(repository.fetchAllProjects()));
+  }
+
+  @Test
+  void storedProjectsAreCopiedOnWriteAndOnRead() {
+    Project saved = saveGraph("Bench");
+
+    // Changes to the caller's objects after a write don't reach the stored graph
+    saved.setProjectName("Changed after save");
+    saved.getMaterials().get(0).setMaterialName("Changed after save");
+    saved.getSteps().clear();
+
+    Project fetched = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals("Bench", fetched.getProjectName());
+    assertEquals(List.of("Glue", "Wood"), materialNames(fetched));
+    assertEquals(2, fetched.getSteps().size());
+
+    // Nor do changes to a fetched graph
+    fetched.setProjectName("Changed after fetch");
+    fetched.getMaterials().clear();
+    fetched.getCategories().clear();
+
+    Project again = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals("Bench", again.getProjectName());
+    assertEquals(2, again.getMaterials().size());
+    assertEquals(1, again.getCategories().size());
+  }
+
+  @Test
+  void cloneProjectCopiesTheGraphUnderNewIds() {
+    Project original = saveGraph("Bench");
+    original.setActualHours(new BigDecimal("5.50"));
+    assertTrue(repository.modifyProjectDetails(original));
+
+    Integer cloneId = repository.cloneProject(original.getProjectId(), "Bench copy").orElseThrow();
+
+    assertNotEquals(original.getProjectId(), cloneId);
+
+    Project clone = repository.fetchProjectById(cloneId).orElseThrow();
+    assertEquals("Bench copy", clone.getProjectName());
+    assertEquals(0, clone.getVersion());
+    assertNull(clone.getActualHours());
+    assertEquals(List.of("Glue", "Wood"), materialNames(clone));
+    assertEquals(List.of("Cut", "Glue"), stepTexts(clone));
+    assertEquals(List.of(woodworking.getCategoryId()), categoryIds(clone));
+
+    for(Material material : clone.getMaterials()) {
+      assertTrue(original.getMaterials().stream()
+          .noneMatch(m -> m.getMaterialId().equals(material.getMaterialId())));
+    }
+
+    assertTrue(repository.cloneProject(cloneId + 1000, "Missing").isEmpty());
+  }
+
+  @Test
+  void deleteProjectRemovesTheProjectWithItsChildren() {
+    Project deleted = saveGraph("Bench");
+    Project kept = saveGraph("Shelf");
+
+    assertTrue(repository.deleteProject(deleted.getProjectId()));
+    assertFalse(repository.deleteProject(deleted.getProjectId()));
+
+    assertTrue(repository.fetchProjectById(deleted.getProjectId()).isEmpty());
+    assertTrue(repository.fetchCompactProjectById(deleted.getProjectId()).isEmpty());
+    assertEquals(List.of("Shelf"), names(repository.fetchAllProjects()));
+    assertFalse(idsOn(repository.shardFor(deleted.getProjectId()))
+        .contains(deleted.getProjectId()));
+
+    List<MaterialRequirement> totals =
+        repository.fetchMaterialRequirements(List.of(deleted.getProjectId()));
+    assertTrue(totals.isEmpty());
+
+    Project stored = repository.fetchProjectById(kept.getProjectId()).orElseThrow();
+    assertEquals(List.of("Glue", "Wood"), materialNames(stored));
+  }
+
+  @Test
+  void deleteProjectRemovesArchivedProjects() {
+    Project saved = saveGraph("Bench");
+    archive(saved.getProjectId());
+
+    assertTrue(repository.deleteProject(saved.getProjectId()));
+
+    assertTrue(repository.fetchProjectById(saved.getProjectId()).isEmpty());
+    assertFalse(idsOn(repository.shardFor(saved.getProjectId())).contains(saved.getProjectId()));
+  }
+
+  @Test
+  void insertTimeEntriesAddsTheHoursAndAdvancesEachVersionOnce() {
+    Project saved = saveGraph("Bench");
+    int shard = repository.shardFor(saved.getProjectId());
+    Project unstarted = insertOnShard(shard, "Shelf");
+
+    Map<Integer, BigDecimal> added = repository.insertTimeEntries(shard, List.of(
+        timeEntry(saved, "1.25"), timeEntry(unstarted, "2.00"), timeEntry(saved, "0.75")));
+
+    assertEquals(Set.of(saved.getProjectId(), unstarted.getProjectId()), added.keySet());
+    assertEquals(0, new BigDecimal("2.00").compareTo(added.get(saved.getProjectId())));
+    assertEquals(0, new BigDecimal("2.00").compareTo(added.get(unstarted.getProjectId())));
+
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals(0, new BigDecimal("6.50").compareTo(stored.getActualHours()));
+    assertEquals(saved.getVersion() + 1, stored.getVersion());
+    assertEquals(List.of("Glue", "Wood"), materialNames(stored));
+
+    Project started = repository.fetchProjectById(unstarted.getProjectId()).orElseThrow();
+    assertEquals(0, new BigDecimal("2.00").compareTo(started.getActualHours()));
+    assertEquals(1, started.getVersion());
+  }
+
+  @Test
+  void insertTimeEntriesWritesNothingIfAProjectIsDeleted() {
+    Project saved = saveGraph("Bench");
+    int shard = repository.shardFor(saved.getProjectId());
+    Project deleted = insertOnShard(shard, "Shelf");
+    assertTrue(repository.deleteProject(deleted.getProjectId()));
+
+    DbException e = assertThrows(DbException.class, () -> repository.insertTimeEntries(shard,
+        List.of(timeEntry(saved, "1.00"), timeEntry(deleted, "1.00"))));
+
+    assertTrue(isIntegrityViolation(e), e.toString());
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals(0, new BigDecimal("4.50").compareTo(stored.getActualHours()));
+    assertEquals(saved.getVersion(), stored.getVersion());
+  }
+
+  @Test
+  void insertTimeEntriesRefusesArchivedProjects() {
+    Project saved = saveGraph("Bench");
+    int shard = repository.shardFor(saved.getProjectId());
+    archive(saved.getProjectId());
+
+    DbException e = assertThrows(DbException.class,
+        () -> repository.insertTimeEntries(shard, List.of(timeEntry(saved, "1.00"))));
+
+    assertTrue(isIntegrityViolation(e), e.toString());
+    Project stored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals(0, new BigDecimal("4.50").compareTo(stored.getActualHours()));
+  }
+
+  @Test
+  void archiveProjectsMovesOnlyCompletedProjectsIdleForThePolicyAge() {
+    Project idle = saveGraph("Bench");
+    saveGraph("Shelf");
+    Project unfinished = repository.insertProject(project("Stool"));
+    backdate(idle.getProjectId(), 30);
+    backdate(unfinished.getProjectId(), 30);
+
+    assertEquals(0, repository.archiveProjects(ArchivePolicy.completedAndIdleFor(60)));
+    assertEquals(1, repository.archiveProjects(ArchivePolicy.completedAndIdleFor(7)));
+    assertEquals(0, repository.archiveProjects(ArchivePolicy.completedAndIdleFor(7)));
+
+    assertEquals(List.of("Shelf", "Stool"), names(repository.fetchAllProjects()));
+    assertEquals("Bench",
+        repository.fetchProjectById(idle.getProjectId()).orElseThrow().getProjectName());
+  }
+
+  @Test
+  void restoreProjectMovesAnArchivedProjectBack() {
+    Project saved = saveGraph("Bench");
+    archive(saved.getProjectId());
+
+    assertTrue(repository.restoreProject(saved.getProjectId()));
+    assertFalse(repository.restoreProject(saved.getProjectId()));
+
+    assertEquals(List.of("Bench"), names(repository.fetchAllProjects()));
+    Project restored = repository.fetchProjectById(saved.getProjectId()).orElseThrow();
+    assertEquals(List.of("Glue", "Wood"), materialNames(restored));
+    assertEquals(List.of("Cut", "Glue"), stepTexts(restored));
+    assertEquals(List.of(woodworking.getCategoryId()), categoryIds(restored));
+
+    // Restoring counts as a change, so the next run doesn't archive the project straight back
+    assertEquals(0, repository.archiveProjects(ArchivePolicy.completedAndIdleFor(7)));
+
+    restored.setProjectName("Garden bench");
+    assertTrue(repository.modifyProjectDetails(restored));
+  }
+
+  /**
+   * Moves one project with actual hours to the archive through the archive policy.
+   */
+  private void archive(Integer projectId) {
+    backdate(projectId, 30);
+    assertEquals(1, repository.archiveProjects(ArchivePolicy.completedAndIdleFor(7)));
+  }
+
+  /**
+   * Inserts projects without children until one lands on the shard. Projects are spread over the
+   * shards in turn, so this takes at most one round.
+   */
+  private Project insertOnShard(int shard, String projectName) {
+    for(int i = 0; i <= repository.getShardCount(); i++) {
+      Project project = repository.insertProject(project(projectName));
+
+      if(repository.shardFor(project.getProjectId()) == shard) {
+        return project;
+      }
+
+      assertTrue(repository.deleteProject(project.getProjectId()));
+    }
+
+    throw new AssertionError("No project was inserted on shard " + shard);
+  }
+
+  /**
+   * Saves a new project with two materials, two steps and one category. The project has actual
+   * hours so that it can be archived.
+   */
+  protected Project saveGraph(String projectName) {
+    Project project = project(projectName);
+    project.setActualHours(new BigDecimal("4.50"));
+    project.getMaterials().add(material("Wood", 4, "25.00"));
+    project.getMaterials().add(material("Glue", 1, "5.00"));
+    project.getSteps().add(step("Cut", 1));
+    project.getSteps().add(step("Glue", 2));
+    project.getCategories().add(woodworking);
+
+    repository.saveProject(project).orElseThrow();
+    return project;
+  }
+
+  private List<Integer> idsOn(int shard) {
+    List<Integer> ids = new ArrayList<>();
+    int afterProjectId = 0;
+
+    while(true) {
+      List<Integer> page = repository.fetchProjectIdPage(shard, afterProjectId, PAGE_LIMIT);
+
+      if(page.isEmpty()) {
+        return ids;
+      }
+
+      assertTrue(page.size() <= PAGE_LIMIT);
+      ids.addAll(page);
+      afterProjectId = page.get(page.size() - 1);
+    }
+  }
+
+  private static Project project(String projectName) {
+    Project project = new Project();
+    project.setProjectName(projectName);
+    project.setEstimatedHours(new BigDecimal("4.00"));
+    project.setDifficulty(3);
+    project.setNotes("Some notes");
+    return project;
+  }
+
+  private static TimeEntry timeEntry(Project project, String hours) {
+    TimeEntry entry = new TimeEntry();
+    entry.setProjectId(project.getProjectId());
+    entry.setHours(new BigDecimal(hours));
+    entry.setLoggedAt(LocalDateTime.now().withNano(0));
+    return entry;
+  }
+
+  /**
+   * @return true if the cause chain holds an SQLException with an integrity constraint SQL state
+   */
+  private static boolean isIntegrityViolation(Throwable e) {
+    for(Throwable cause = e; Objects.nonNull(cause); cause = cause.getCause()) {
+      if(cause instanceof SQLException && Objects.nonNull(((SQLException)cause).getSQLState())
+          && ((SQLException)cause).getSQLState().startsWith("23")) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static Material material(String materialName, int numRequired, String cost) {
+    Material material = new Material();
+    material.setMaterialName(materialName);
+    material.setNumRequired(numRequired);
+    material.setCost(new BigDecimal(cost));
+    return material;
+  }
+
+  private static Step step(String stepText, int stepOrder) {
+    Step step = new Step();
+    step.setStepText(stepText);
+    step.setStepOrder(stepOrder);
+    return step;
+  }
+
+  private static Category category(Integer categoryId, String categoryName) {
+    Category category = new Category();
+    category.setCategoryId(categoryId);
+    category.setCategoryName(categoryName);
+    return category;
+  }
+
+  private static List<String> names(List<Project> projects) {
+    return projects.stream().map(Project::getProjectName).toList();
+  }
+
+  private static List<String> materialNames(Project project) {
+    return project.getMaterials().stream().map(Material::getMaterialName).sorted().toList();
+  }
+
+  private static List<String> stepTexts(Project project) {
+    return project.getSteps().stream().map(Step::getStepText).toList();
+  }
+
+  private static List<Integer> categoryIds(Project project) {
+    return project.getCategories().stream().map(Category::getCategoryId).sorted().toList();
+  }
+}